@@ -3,11 +3,16 @@ package org.mozilla.vrbrowser;
 import android.os.Handler;
 import android.os.HandlerThread;
 import android.os.Looper;
+import android.os.SystemClock;
 
 import androidx.annotation.NonNull;
 
 import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class AppExecutors {
 
@@ -15,12 +20,14 @@ public class AppExecutors {
 
     private final Executor mNetworkIO;
 
-    private final Executor mMainThread;
+    private final MainThreadExecutor mMainThread;
 
     private final HandlerThread mBackgroundThread;
     private Handler mBackgroundHandler;
+    private final AtomicBoolean mBackgroundProbePending = new AtomicBoolean();
+    private volatile long mBackgroundDelay;
 
-    private AppExecutors(Executor diskIO, Executor networkIO, Executor mainThread) {
+    private AppExecutors(Executor diskIO, Executor networkIO, MainThreadExecutor mainThread) {
         this.mDiskIO = diskIO;
         this.mNetworkIO = networkIO;
         this.mMainThread = mainThread;
@@ -28,11 +35,16 @@ public class AppExecutors {
     }
 
     public AppExecutors() {
-        this(Executors.newSingleThreadExecutor(),
-                Executors.newFixedThreadPool(3),
+        this(newFixedThreadPool(1),
+                newFixedThreadPool(3),
                 new MainThreadExecutor());
     }
 
+    // Same as Executors.newFixedThreadPool but the queue stays reachable for the queue sizes
+    private static ThreadPoolExecutor newFixedThreadPool(int aThreads) {
+        return new ThreadPoolExecutor(aThreads, aThreads, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>());
+    }
+
     public Executor diskIO() {
         return mDiskIO;
     }
@@ -45,7 +57,8 @@ public class AppExecutors {
         return mMainThread;
     }
 
-    public Handler backgroundThread() {
+    // Started on first use, which can happen from any thread
+    public synchronized Handler backgroundThread() {
         if (!mBackgroundThread.isAlive()) {
             mBackgroundThread.start();
             mBackgroundHandler = new Handler(mBackgroundThread.getLooper());
@@ -53,12 +66,51 @@ public class AppExecutors {
         return mBackgroundHandler;
     }
 
+    public int getDiskIOQueueSize() {
+        return getQueueSize(mDiskIO);
+    }
+
+    public int getNetworkIOQueueSize() {
+        return getQueueSize(mNetworkIO);
+    }
+
+    public int getMainThreadQueueSize() {
+        return mMainThread.mPending.get();
+    }
+
+    /**
+     * Returns how long the last probe waited for the background thread, in milliseconds, and
+     * posts a new one. Handlers don't expose the length of their queue.
+     */
+    public long probeBackgroundThreadDelay() {
+        if (mBackgroundProbePending.compareAndSet(false, true)) {
+            final long posted = SystemClock.uptimeMillis();
+            backgroundThread().post(() -> {
+                mBackgroundDelay = SystemClock.uptimeMillis() - posted;
+                mBackgroundProbePending.set(false);
+            });
+        }
+        return mBackgroundDelay;
+    }
+
+    private static int getQueueSize(Executor aExecutor) {
+        if (aExecutor instanceof ThreadPoolExecutor) {
+            return ((ThreadPoolExecutor) aExecutor).getQueue().size();
+        }
+        return 0;
+    }
+
     private static class MainThreadExecutor implements Executor {
         private Handler mainThreadHandler = new Handler(Looper.getMainLooper());
+        private final AtomicInteger mPending = new AtomicInteger();
 
         @Override
         public void execute(@NonNull Runnable command) {
-            mainThreadHandler.post(command);
+            mPending.incrementAndGet();
+            mainThreadHandler.post(() -> {
+                mPending.decrementAndGet();
+                command.run();
+            });
         }
     }
 }
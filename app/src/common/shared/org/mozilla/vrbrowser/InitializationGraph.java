@@ -0,0 +1,252 @@
+package org.mozilla.vrbrowser;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import org.mozilla.vrbrowser.telemetry.StartupTracer;
+import org.mozilla.vrbrowser.utils.SystemUtils;
+
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Runs the app initialization as a graph of named nodes, each one declaring the nodes it depends
+ * on. A node runs as soon as its dependencies are done, so independent background nodes run in
+ * parallel with each other and with the UI thread.
+ *
+ * Nodes of the {@link Stage#AFTER_FIRST_FRAME} stage also wait for {@link #onFirstFrame()}, they
+ * are meant for services that are not needed to show the first frame. Consumers can wait for a
+ * node with {@link #getReadiness(String)}, or block until it's done with {@link #await(String)},
+ * which runs the pending UI thread nodes when called from the UI thread.
+ */
+public class InitializationGraph {
+
+    private static final String LOGTAG = SystemUtils.createLogtag(InitializationGraph.class);
+
+    public enum Stage {
+        STARTUP,
+        AFTER_FIRST_FRAME
+    }
+
+    public enum Affinity {
+        UI_THREAD,
+        BACKGROUND
+    }
+
+    private static class Node {
+        final String name;
+        final Stage stage;
+        final Affinity affinity;
+        final Runnable task;
+        final String[] dependencies;
+        final CompletableFuture<Void> readiness = new CompletableFuture<>();
+
+        Node(String aName, Stage aStage, Affinity aAffinity, Runnable aTask, String[] aDependencies) {
+            name = aName;
+            stage = aStage;
+            affinity = aAffinity;
+            task = aTask;
+            dependencies = aDependencies;
+        }
+    }
+
+    private static final Runnable WAKE_UP = () -> {};
+
+    private final Executor mUIThread;
+    private final Executor mBackground;
+    private final StartupTracer mTracer;
+    private final Thread mUIThreadInstance;
+    // Nodes are added on the UI thread, but their readiness can be queried from any thread
+    private final Map<String, Node> mNodes = new ConcurrentHashMap<>();
+    private final LinkedBlockingQueue<Runnable> mUIThreadQueue = new LinkedBlockingQueue<>();
+    private final CompletableFuture<Void> mFirstFrame = new CompletableFuture<>();
+    private boolean mStarted;
+
+    /**
+     * Must be created on the UI thread.
+     * @param aTracer Records a span for each node.
+     */
+    public InitializationGraph(@NonNull Executor aUIThread, @NonNull Executor aBackground, @NonNull StartupTracer aTracer) {
+        mUIThread = aUIThread;
+        mBackground = aBackground;
+        mTracer = aTracer;
+        mUIThreadInstance = Thread.currentThread();
+    }
+
+    /**
+     * Adds a node. The dependencies must have been added before, so the graph can't have cycles.
+     */
+    public InitializationGraph add(@NonNull String aName, @NonNull Stage aStage, @NonNull Affinity aAffinity,
+                                   @NonNull Runnable aTask, @NonNull String... aDependencies) {
+        if (mNodes.containsKey(aName)) {
+            throw new IllegalArgumentException("Duplicated initialization node: " + aName);
+        }
+        for (String dependency : aDependencies) {
+            Node node = mNodes.get(dependency);
+            if (node == null) {
+                throw new IllegalArgumentException("Unknown dependency of " + aName + ": " + dependency);
+            }
+            if (node.stage == Stage.AFTER_FIRST_FRAME && aStage == Stage.STARTUP) {
+                throw new IllegalArgumentException(aName + " can't depend on " + dependency + ", it runs after the first frame");
+            }
+        }
+        Node node = new Node(aName, aStage, aAffinity, aTask, aDependencies);
+        mNodes.put(aName, node);
+        if (mStarted) {
+            schedule(node);
+        }
+        return this;
+    }
+
+    /**
+     * Removes a node so it can be added again, i.e. by a recreated activity. If it hasn't run yet
+     * it's skipped, and its dependents fail.
+     */
+    public void remove(@NonNull String aName) {
+        Node node = mNodes.remove(aName);
+        if (node != null) {
+            node.readiness.completeExceptionally(new CancellationException(aName + " was removed"));
+        }
+    }
+
+    /**
+     * Schedules the nodes added so far, later ones are scheduled as they are added.
+     */
+    public void start() {
+        if (mStarted) {
+            return;
+        }
+        mStarted = true;
+        for (Node node : mNodes.values()) {
+            schedule(node);
+        }
+    }
+
+    /**
+     * Releases the {@link Stage#AFTER_FIRST_FRAME} nodes.
+     */
+    public void onFirstFrame() {
+        mFirstFrame.complete(null);
+    }
+
+    public boolean isFirstFrameDone() {
+        return mFirstFrame.isDone();
+    }
+
+    /**
+     * Returns a future completed when the node has run, exceptionally if it or a dependency failed.
+     */
+    @NonNull
+    public CompletableFuture<Void> getReadiness(@NonNull String aName) {
+        Node node = mNodes.get(aName);
+        if (node == null) {
+            throw new IllegalArgumentException("Unknown initialization node: " + aName);
+        }
+        return node.readiness;
+    }
+
+    /**
+     * Returns true if the node has run successfully.
+     */
+    public boolean isReady(@NonNull String aName) {
+        CompletableFuture<Void> readiness = getReadiness(aName);
+        return readiness.isDone() && !readiness.isCompletedExceptionally();
+    }
+
+    /**
+     * Blocks until a node is done. On the UI thread the UI thread nodes are run meanwhile, it must
+     * not be called there for a node that waits for the first frame.
+     * @return false if the node or one of its dependencies failed.
+     */
+    public boolean await(@NonNull String aName) {
+        CompletableFuture<Void> readiness = getReadiness(aName);
+        if (Thread.currentThread() == mUIThreadInstance) {
+            if (!mStarted) {
+                throw new IllegalStateException("Initialization not started, " + aName + " would never be ready");
+            }
+            while (!readiness.isDone()) {
+                try {
+                    mUIThreadQueue.take().run();
+
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        }
+        try {
+            readiness.get();
+            return true;
+
+        } catch (ExecutionException e) {
+            return false;
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void schedule(@NonNull Node aNode) {
+        CompletableFuture<?>[] dependencies = new CompletableFuture<?>[aNode.dependencies.length + 1];
+        for (int i = 0; i < aNode.dependencies.length; i++) {
+            dependencies[i] = mNodes.get(aNode.dependencies[i]).readiness;
+        }
+        dependencies[aNode.dependencies.length] = aNode.stage == Stage.AFTER_FIRST_FRAME ?
+                mFirstFrame : CompletableFuture.completedFuture(null);
+
+        Executor executor = aNode.affinity == Affinity.UI_THREAD ? this::executeOnUIThread : mBackground;
+        CompletableFuture.allOf(dependencies).whenComplete((result, error) -> {
+            if (error != null) {
+                Log.e(LOGTAG, "Skipping " + aNode.name + ", a dependency failed");
+                complete(aNode, error);
+                return;
+            }
+            executor.execute(() -> {
+                if (aNode.readiness.isDone()) {
+                    // Removed before it could run
+                    return;
+                }
+                try {
+                    mTracer.trace(aNode.name, aNode.task);
+                    complete(aNode, null);
+
+                } catch (RuntimeException e) {
+                    Log.e(LOGTAG, "Error initializing " + aNode.name + ": " + e.getMessage());
+                    complete(aNode, e);
+                }
+            });
+        });
+    }
+
+    private void complete(@NonNull Node aNode, Throwable aError) {
+        if (aError != null) {
+            aNode.readiness.completeExceptionally(aError);
+        } else {
+            aNode.readiness.complete(null);
+        }
+        // An await on the UI thread may be waiting for a background node
+        mUIThreadQueue.offer(WAKE_UP);
+    }
+
+    // The tasks are queued so await can run them without waiting for the UI thread to be free
+    private void executeOnUIThread(@NonNull Runnable aTask) {
+        mUIThreadQueue.offer(aTask);
+        mUIThread.execute(() -> {
+            // Runs at most one task, it may already have been run by await
+            Runnable task;
+            do {
+                task = mUIThreadQueue.poll();
+            } while (task == WAKE_UP);
+            if (task != null) {
+                task.run();
+            }
+        });
+    }
+}
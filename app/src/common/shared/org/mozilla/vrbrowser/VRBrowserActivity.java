@@ -26,6 +26,7 @@ import android.os.Looper;
 import android.os.Process;
 import android.util.Log;
 import android.util.Pair;
+import android.view.Choreographer;
 import android.view.KeyEvent;
 import android.view.Surface;
 import android.view.View;
@@ -45,9 +46,14 @@ import org.json.JSONObject;
 import org.mozilla.geckoview.GeckoRuntime;
 import org.mozilla.geckoview.GeckoSession;
 import org.mozilla.geckoview.GeckoVRManager;
+import org.mozilla.vrbrowser.InitializationGraph.Affinity;
+import org.mozilla.vrbrowser.InitializationGraph.Stage;
 import org.mozilla.vrbrowser.audio.AudioEngine;
 import org.mozilla.vrbrowser.browser.Accounts;
+import org.mozilla.vrbrowser.browser.HistoryStore;
+import org.mozilla.vrbrowser.browser.PerformanceScorer;
 import org.mozilla.vrbrowser.browser.PermissionDelegate;
+import org.mozilla.vrbrowser.browser.PlacesVisit;
 import org.mozilla.vrbrowser.browser.SettingsStore;
 import org.mozilla.vrbrowser.browser.engine.EngineProvider;
 import org.mozilla.vrbrowser.browser.engine.Session;
@@ -55,9 +61,12 @@ import org.mozilla.vrbrowser.browser.engine.SessionStore;
 import org.mozilla.vrbrowser.crashreporting.CrashReporterService;
 import org.mozilla.vrbrowser.crashreporting.GlobalExceptionHandler;
 import org.mozilla.vrbrowser.geolocation.GeolocationWrapper;
+import org.mozilla.vrbrowser.input.InputMailbox;
 import org.mozilla.vrbrowser.input.MotionEventGenerator;
 import org.mozilla.vrbrowser.search.SearchEngineWrapper;
+import org.mozilla.vrbrowser.telemetry.FrameTimingAggregator;
 import org.mozilla.vrbrowser.telemetry.GleanMetricsService;
+import org.mozilla.vrbrowser.telemetry.StartupTracer;
 import org.mozilla.vrbrowser.telemetry.TelemetryWrapper;
 import org.mozilla.vrbrowser.ui.OffscreenDisplay;
 import org.mozilla.vrbrowser.ui.adapters.Language;
@@ -86,14 +95,16 @@ import org.mozilla.vrbrowser.utils.LocaleUtils;
 import org.mozilla.vrbrowser.utils.ServoUtils;
 import org.mozilla.vrbrowser.utils.StringUtils;
 import org.mozilla.vrbrowser.utils.SystemUtils;
+import org.mozilla.vrbrowser.utils.UrlUtils;
 
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.LinkedList;
-import java.util.Set;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.function.Consumer;
 
@@ -154,6 +165,11 @@ public class VRBrowserActivity extends PlatformActivity implements WidgetManager
     static final int GestureSwipeRight = 1;
     static final int SwipeDelay = 1000; // milliseconds
     static final long RESET_CRASH_COUNT_DELAY = 5000;
+    static final float REDUCED_TEXTURE_SCALE = 0.75f;
+    // Releases the deferred initialization if the renderer doesn't report frames
+    static final long FIRST_FRAME_TIMEOUT = 5000;
+    static final String INIT_GEOLOCATION = "geolocation";
+    static final String INIT_DOWNLOADS = "downloads";
 
     static final String LOGTAG = SystemUtils.createLogtag(VRBrowserActivity.class);
     HashMap<Integer, Widget> mWidgets;
@@ -164,6 +180,9 @@ public class VRBrowserActivity extends PlatformActivity implements WidgetManager
     int mLastGesture;
     SwipeRunnable mLastRunnable;
     Handler mHandler = new Handler();
+    // Controller samples from the render thread, delivered once per UI frame
+    private InputMailbox mInputMailbox;
+    private final Choreographer.FrameCallback mInputFrameCallback = frameTimeNanos -> mInputMailbox.drain();
     Runnable mAudioUpdateRunnable;
     Windows mWindows;
     RootWidget mRootWidget;
@@ -191,7 +210,29 @@ public class VRBrowserActivity extends PlatformActivity implements WidgetManager
     private boolean mConnectionAvailable = true;
     private AudioManager mAudioManager;
     private Widget mActiveDialog;
-    private Set<String> mPoorPerformanceWhiteList;
+    private PerformanceScorer mPerformanceScorer;
+    // Origin of the focused page and what was done while it performed poorly
+    private String mPerformancePage;
+    private WindowWidget mReducedTextureWindow;
+    private List<Session> mPausedSessions = new ArrayList<>();
+    private final Runnable mFirstFrameTimeout = () -> ((VRBrowserApplication)getApplication()).getInitialization().onFirstFrame();
+    private boolean mDeviceEventsPollScheduled;
+    // Set once onServicesReady has run, the widgets and sessions don't exist before
+    private boolean mIsServicesReady;
+    private boolean mIsResumed;
+    // The scores name the visited origins, they go away with the history
+    private final HistoryStore.HistoryListener mPerformanceHistoryListener = change -> {
+        if (change.hasRemovedRange()) {
+            mPerformanceScorer.clear();
+            return;
+        }
+        for (String url : change.getRemoved()) {
+            mPerformanceScorer.remove(UrlUtils.getHost(url));
+        }
+        for (PlacesVisit visit : change.getRemovedVisits()) {
+            mPerformanceScorer.remove(UrlUtils.getHost(visit.getUrl()));
+        }
+    };
     private float mCurrentCylinderDensity = 0;
     private boolean mHideWebXRIntersitial = false;
 
@@ -228,7 +269,9 @@ public class VRBrowserActivity extends PlatformActivity implements WidgetManager
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
-        ((VRBrowserApplication)getApplication()).onActivityCreate();
+        StartupTracer tracer = StartupTracer.get();
+        StartupTracer.Span onCreateSpan = tracer.begin("activity.onCreate");
+        tracer.trace("application.onActivityCreate", () -> ((VRBrowserApplication)getApplication()).onActivityCreate());
         SettingsStore.getInstance(getBaseContext()).setPid(Process.myPid());
         // Fix for infinite restart on startup crashes.
         long count = SettingsStore.getInstance(getBaseContext()).getCrashRestartCount();
@@ -236,6 +279,8 @@ public class VRBrowserActivity extends PlatformActivity implements WidgetManager
         if (cancelRestart) {
             super.onCreate(savedInstanceState);
             Log.e(LOGTAG, "Cancel Restart");
+            onCreateSpan.close();
+            tracer.finish();
             finish();
             return;
         }
@@ -248,16 +293,25 @@ public class VRBrowserActivity extends PlatformActivity implements WidgetManager
             workaroundGeckoSigAction();
         }
         mUiThread = Thread.currentThread();
+        final Choreographer choreographer = Choreographer.getInstance();
+        mInputMailbox = new InputMailbox(new InputMailbox.Consumer() {
+            @Override
+            public void onMotionEvent(int aHandle, int aDevice, boolean aFocused, boolean aPressed, float aX, float aY) {
+                dispatchMotionEvent(aHandle, aDevice, aFocused, aPressed, aX, aY);
+            }
 
-        BitmapCache.getInstance(this).onCreate();
+            @Override
+            public void onScrollEvent(int aHandle, int aDevice, float aX, float aY) {
+                dispatchScrollEvent(aHandle, aDevice, aX, aY);
+            }
 
-        Bundle extras = getIntent() != null ? getIntent().getExtras() : null;
-        SessionStore.get().setContext(this, extras);
-        SessionStore.get().initializeServices();
-        SessionStore.get().initializeStores(this);
-        SessionStore.get().setLocales(LocaleUtils.getPreferredLanguageTags(this));
+            @Override
+            public void onDrainRequested() {
+                choreographer.postFrameCallback(mInputFrameCallback);
+            }
+        });
 
-        EngineProvider.INSTANCE.getOrCreateRuntime(this).appendAppNotesToCrashReport("Firefox Reality " + BuildConfig.VERSION_NAME + "-" + BuildConfig.VERSION_CODE + "-" + BuildConfig.FLAVOR + "-" + BuildConfig.BUILD_TYPE + " (" + BuildConfig.GIT_HASH + ")");
+        BitmapCache.getInstance(this).onCreate();
 
         // Create broadcast receiver for getting crash messages from crash process
         IntentFilter intentFilter = new IntentFilter();
@@ -280,8 +334,6 @@ public class VRBrowserActivity extends PlatformActivity implements WidgetManager
         mWidgets = new HashMap<>();
         mWidgetContainer = new FrameLayout(this);
 
-        mPermissionDelegate = new PermissionDelegate(this, this);
-
         mAudioEngine = new AudioEngine(this, null);
         mAudioEngine.setEnabled(SettingsStore.getInstance(this).isAudioEnabled());
         mAudioEngine.preloadAsync(() -> {
@@ -291,7 +343,7 @@ public class VRBrowserActivity extends PlatformActivity implements WidgetManager
         mAudioUpdateRunnable = () -> mAudioEngine.update();
 
         mSettings = SettingsStore.getInstance(this);
-        mSettings.initModel(this);
+        tracer.trace("settings", () -> mSettings.initModel(this));
 
         queueRunnable(() -> {
             createOffscreenDisplay();
@@ -300,23 +352,87 @@ public class VRBrowserActivity extends PlatformActivity implements WidgetManager
         final String tempPath = getCacheDir().getAbsolutePath();
         queueRunnable(() -> setTemporaryFilePath(tempPath));
 
-        initializeWidgets();
+        mConnectivityReceiver = new ConnectivityReceiver();
+
+        mLifeCycle.setCurrentState(Lifecycle.State.CREATED);
+        mHandler.postDelayed(mFirstFrameTimeout, FIRST_FRAME_TIMEOUT);
+
+        // Sessions need the services, and the widgets the accounts and downloads. Their UI thread
+        // nodes run once onCreate returns, so the rest of the setup continues when they are ready.
+        VRBrowserApplication application = (VRBrowserApplication)getApplication();
+        InitializationGraph initialization = application.getInitialization();
+        CompletableFuture.allOf(
+                initialization.getReadiness(VRBrowserApplication.INIT_ACCOUNTS),
+                initialization.getReadiness(VRBrowserApplication.INIT_DOWNLOADS_MANAGER))
+                .whenCompleteAsync((result, error) -> {
+                    if (error == null && !isFinishing() && !isDestroyed()) {
+                        onServicesReady();
+                        return;
+                    }
+                    if (error != null) {
+                        Log.e(LOGTAG, "Services failed to initialize: " + error.getMessage());
+                        finish();
+                    }
+                    tracer.finish();
+                }, application.getExecutors().mainThread());
+
+        onCreateSpan.close();
+    }
 
-        loadFromIntent(getIntent());
+    /**
+     * Continues onCreate once the services are ready. The lifecycle callbacks that happened
+     * meanwhile only ran the parts that don't need them, the rest is caught up here.
+     */
+    private void onServicesReady() {
+        StartupTracer tracer = StartupTracer.get();
+        StartupTracer.Span servicesSpan = tracer.begin("activity.onServicesReady");
+
+        Bundle extras = getIntent() != null ? getIntent().getExtras() : null;
+        StartupTracer.Span span = tracer.begin("session_store");
+        SessionStore.get().setContext(this, extras);
+        SessionStore.get().initializeServices();
+        SessionStore.get().initializeStores(this);
+        SessionStore.get().setLocales(LocaleUtils.getPreferredLanguageTags(this));
+        span.close();
+
+        tracer.trace("runtime", () -> EngineProvider.INSTANCE.getOrCreateRuntime(this));
+        EngineProvider.INSTANCE.getOrCreateRuntime(this).appendAppNotesToCrashReport("Firefox Reality " + BuildConfig.VERSION_NAME + "-" + BuildConfig.VERSION_CODE + "-" + BuildConfig.FLAVOR + "-" + BuildConfig.BUILD_TYPE + " (" + BuildConfig.GIT_HASH + ")");
+
+        mPermissionDelegate = new PermissionDelegate(this, this);
+
+        tracer.trace("widgets", this::initializeWidgets);
+
+        tracer.trace("intent", () -> loadFromIntent(getIntent()));
 
         // Setup the search engine
+        span = tracer.begin("search_engine");
         mSearchEngineWrapper = SearchEngineWrapper.get(this);
         mSearchEngineWrapper.registerForUpdates();
+        span.close();
 
-        GeolocationWrapper.INSTANCE.update(this);
-
-        mConnectivityReceiver = new ConnectivityReceiver();
-        mPoorPerformanceWhiteList = new HashSet<>();
+        mPerformanceScorer = PerformanceScorer.create(this);
+        mPerformanceScorer.setDelegate((origin, action) -> {
+            if (origin.equals(mPerformancePage)) {
+                applyPerformanceAction(origin, action, true);
+            }
+        });
+        SessionStore.get().getHistoryStore().addListener(mPerformanceHistoryListener);
         checkForCrash();
 
-        mLifeCycle.setCurrentState(Lifecycle.State.CREATED);
+        ((VRBrowserApplication)getApplication()).getInitialization()
+                .add(INIT_GEOLOCATION, Stage.AFTER_FIRST_FRAME, Affinity.UI_THREAD, () -> GeolocationWrapper.INSTANCE.update(this))
+                .add(INIT_DOWNLOADS, Stage.AFTER_FIRST_FRAME, Affinity.UI_THREAD,
+                        () -> getServicesProvider().getDownloadsManager().init(), VRBrowserApplication.INIT_DOWNLOADS_MANAGER);
+
+        mIsServicesReady = true;
+        if (mIsResumed) {
+            resumeServices();
+        }
 
-        getServicesProvider().getDownloadsManager().init();
+        servicesSpan.close();
+        tracer.finish();
+        Log.d(LOGTAG, tracer.getSummary());
+        tracer.export(this);
     }
 
     protected void initializeWidgets() {
@@ -447,12 +563,16 @@ public class VRBrowserActivity extends PlatformActivity implements WidgetManager
 
         mAudioEngine.pauseEngine();
 
-        mWindows.onPause();
+        mIsResumed = false;
+        if (mIsServicesReady) {
+            mWindows.onPause();
+            mPerformanceScorer.flush();
 
-        for (Widget widget: mWidgets.values()) {
-            widget.onPause();
+            for (Widget widget: mWidgets.values()) {
+                widget.onPause();
+            }
+            mConnectivityReceiver.unregister(this);
         }
-        mConnectivityReceiver.unregister(this);
         // Reset so the dialog will show again on resume.
         mConnectionAvailable = true;
         if (mOffscreenDisplay != null) {
@@ -472,9 +592,20 @@ public class VRBrowserActivity extends PlatformActivity implements WidgetManager
             mOffscreenDisplay.onResume();
         }
 
+        mAudioEngine.resumeEngine();
+
+        mIsResumed = true;
+        if (mIsServicesReady) {
+            resumeServices();
+        }
+
+        super.onResume();
+        mLifeCycle.setCurrentState(Lifecycle.State.RESUMED);
+    }
+
+    private void resumeServices() {
         mWindows.onResume();
 
-        mAudioEngine.resumeEngine();
         for (Widget widget: mWidgets.values()) {
             widget.onResume();
         }
@@ -483,11 +614,26 @@ public class VRBrowserActivity extends PlatformActivity implements WidgetManager
 
         // If we're signed-in, poll for any new device events (e.g. received tabs) on activity resume.
         // There's no push support right now, so this helps with the perception of speedy tab delivery.
-        ((VRBrowserApplication)getApplicationContext()).getAccounts().refreshDevicesAsync();
-        ((VRBrowserApplication)getApplicationContext()).getAccounts().pollForEventsAsync();
+        VRBrowserApplication application = (VRBrowserApplication)getApplicationContext();
+        if (application.getInitialization().isReady(VRBrowserApplication.INIT_SYNC)) {
+            pollForDeviceEvents();
+
+        } else if (!mDeviceEventsPollScheduled) {
+            // Polls once sync is ready, however many times the activity resumes meanwhile
+            mDeviceEventsPollScheduled = true;
+            application.getInitialization().getReadiness(VRBrowserApplication.INIT_SYNC).thenRunAsync(() -> {
+                mDeviceEventsPollScheduled = false;
+                if (!isDestroyed()) {
+                    pollForDeviceEvents();
+                }
+            }, application.getExecutors().mainThread());
+        }
+    }
 
-        super.onResume();
-        mLifeCycle.setCurrentState(Lifecycle.State.RESUMED);
+    private void pollForDeviceEvents() {
+        VRBrowserApplication application = (VRBrowserApplication)getApplicationContext();
+        application.getAccounts().refreshDevicesAsync();
+        application.getAccounts().pollForEventsAsync();
     }
 
     @Override
@@ -495,7 +641,9 @@ public class VRBrowserActivity extends PlatformActivity implements WidgetManager
         SettingsStore.getInstance(getBaseContext()).setPid(0);
         // Unregister the crash service broadcast receiver
         unregisterReceiver(mCrashReceiver);
-        mSearchEngineWrapper.unregisterForUpdates();
+        if (mSearchEngineWrapper != null) {
+            mSearchEngineWrapper.unregisterForUpdates();
+        }
 
         for (Widget widget: mWidgets.values()) {
             widget.releaseWidget();
@@ -511,14 +659,24 @@ public class VRBrowserActivity extends PlatformActivity implements WidgetManager
             mPermissionDelegate.release();
         }
 
-        // Remove all widget listeners
-        mWindows.onDestroy();
-
         BitmapCache.getInstance(this).onDestroy();
 
-        SessionStore.get().onDestroy();
+        if (mIsServicesReady) {
+            // Remove all widget listeners
+            mWindows.onDestroy();
 
-        getServicesProvider().getDownloadsManager().end();
+            SessionStore.get().onDestroy();
+        }
+
+        // The downloads are only observed once the first frame was shown. The nodes of this
+        // activity that didn't run yet are skipped, a recreated activity adds them again.
+        mHandler.removeCallbacks(mFirstFrameTimeout);
+        InitializationGraph initialization = ((VRBrowserApplication)getApplication()).getInitialization();
+        if (mIsServicesReady && initialization.isReady(INIT_DOWNLOADS)) {
+            getServicesProvider().getDownloadsManager().end();
+        }
+        initialization.remove(INIT_DOWNLOADS);
+        initialization.remove(INIT_GEOLOCATION);
 
         super.onDestroy();
         mLifeCycle.setCurrentState(Lifecycle.State.DESTROYED);
@@ -531,7 +689,8 @@ public class VRBrowserActivity extends PlatformActivity implements WidgetManager
         super.onNewIntent(intent);
         setIntent(intent);
         final String action = intent.getAction();
-        if (Intent.ACTION_VIEW.equals(action)) {
+        if (Intent.ACTION_VIEW.equals(action) && mIsServicesReady) {
+            // Otherwise it's loaded once the services are ready
             loadFromIntent(intent);
 
         } else if (GeckoRuntime.ACTION_CRASHED.equals(intent.getAction())) {
@@ -547,7 +706,9 @@ public class VRBrowserActivity extends PlatformActivity implements WidgetManager
 
         LocaleUtils.update(this, language);
 
-        SessionStore.get().onConfigurationChanged(newConfig);
+        if (mIsServicesReady) {
+            SessionStore.get().onConfigurationChanged(newConfig);
+        }
         mWidgets.forEach((i, widget) -> widget.onConfigurationChanged(newConfig));
 
         super.onConfigurationChanged(newConfig);
@@ -719,8 +880,10 @@ public class VRBrowserActivity extends PlatformActivity implements WidgetManager
             case ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW:
             case ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL:
                 // It looks like these come in all at the same time so just always suspend inactive Sessions.
-                Log.d(LOGTAG, "Memory pressure, suspending inactive sessions.");
-                SessionStore.get().suspendAllInactiveSessions();
+                if (mIsServicesReady) {
+                    Log.d(LOGTAG, "Memory pressure, suspending inactive sessions.");
+                    SessionStore.get().suspendAllInactiveSessions();
+                }
                 break;
             default:
                 Log.e(LOGTAG, "onTrimMemory unknown level: " + level);
@@ -739,6 +902,10 @@ public class VRBrowserActivity extends PlatformActivity implements WidgetManager
             mBackHandlers.getLast().run();
             return;
         }
+        if (!mIsServicesReady) {
+            super.onBackPressed();
+            return;
+        }
         if (!mWindows.handleBack()) {
             if (DeviceType.isPicoVR()) {
                 mWindows.getFocusedWindow().showConfirmPrompt(
@@ -761,7 +928,7 @@ public class VRBrowserActivity extends PlatformActivity implements WidgetManager
 
     @Override
     public boolean dispatchKeyEvent(KeyEvent event) {
-        if (isNotSpecialKey(event) && mKeyboard.dispatchKeyEvent(event)) {
+        if (isNotSpecialKey(event) && mKeyboard != null && mKeyboard.dispatchKeyEvent(event)) {
             return true;
         }
         final int keyCode = event.getKeyCode();
@@ -882,50 +1049,57 @@ public class VRBrowserActivity extends PlatformActivity implements WidgetManager
     @Keep
     @SuppressWarnings("unused")
     void handleMotionEvent(final int aHandle, final int aDevice, final boolean aFocused, final boolean aPressed, final float aX, final float aY) {
-        runOnUiThread(() -> {
-            Widget widget = mWidgets.get(aHandle);
-            if (!isWidgetInputEnabled(widget)) {
-                widget = null; // Fallback to mRootWidget in order to allow world clicks to dismiss UI.
-            }
+        mInputMailbox.postMotionEvent(aHandle, aDevice, aFocused, aPressed, aX, aY);
+    }
 
-            float scale = widget != null ? widget.getPlacement().textureScale : 1.0f;
-            final float x = aX / scale;
-            final float y = aY / scale;
+    @Keep
+    @SuppressWarnings("unused")
+    void handleScrollEvent(final int aHandle, final int aDevice, final float aX, final float aY) {
+        mInputMailbox.postScrollEvent(aHandle, aDevice, aX, aY);
+    }
 
-            if (widget == null) {
-                MotionEventGenerator.dispatch(mRootWidget, aDevice, aFocused, aPressed, x, y);
+    private void dispatchMotionEvent(int aHandle, int aDevice, boolean aFocused, boolean aPressed, float aX, float aY) {
+        Widget widget = mWidgets.get(aHandle);
+        if (!isWidgetInputEnabled(widget)) {
+            widget = null; // Fallback to mRootWidget in order to allow world clicks to dismiss UI.
+        }
 
-            } else if (widget.getBorderWidth() > 0) {
-                final int border = widget.getBorderWidth();
-                MotionEventGenerator.dispatch(widget, aDevice, aFocused, aPressed, x - border, y - border);
+        float scale = widget != null ? widget.getPlacement().textureScale : 1.0f;
+        final float x = aX / scale;
+        final float y = aY / scale;
 
-            } else {
-                MotionEventGenerator.dispatch(widget, aDevice, aFocused, aPressed, x, y);
-            }
-        });
+        if (widget == null) {
+            MotionEventGenerator.dispatch(mRootWidget, aDevice, aFocused, aPressed, x, y);
+
+        } else if (widget.getBorderWidth() > 0) {
+            final int border = widget.getBorderWidth();
+            MotionEventGenerator.dispatch(widget, aDevice, aFocused, aPressed, x - border, y - border);
+
+        } else {
+            MotionEventGenerator.dispatch(widget, aDevice, aFocused, aPressed, x, y);
+        }
     }
 
-    @Keep
-    @SuppressWarnings("unused")
-    void handleScrollEvent(final int aHandle, final int aDevice, final float aX, final float aY) {
-        runOnUiThread(() -> {
-            Widget widget = mWidgets.get(aHandle);
-            if (!isWidgetInputEnabled(widget)) {
-                return;
-            }
-            if (widget != null) {
-                float scrollDirection = mSettings.getScrollDirection() == 0 ? 1.0f : -1.0f;
-                MotionEventGenerator.dispatchScroll(widget, aDevice, true,aX * scrollDirection, aY * scrollDirection);
-            } else {
-                Log.e(LOGTAG, "Failed to find widget for scroll event: " + aHandle);
-            }
-        });
+    private void dispatchScrollEvent(int aHandle, int aDevice, float aX, float aY) {
+        Widget widget = mWidgets.get(aHandle);
+        if (!isWidgetInputEnabled(widget)) {
+            return;
+        }
+        if (widget != null) {
+            float scrollDirection = mSettings.getScrollDirection() == 0 ? 1.0f : -1.0f;
+            MotionEventGenerator.dispatchScroll(widget, aDevice, true,aX * scrollDirection, aY * scrollDirection);
+        } else {
+            Log.e(LOGTAG, "Failed to find widget for scroll event: " + aHandle);
+        }
     }
 
     @Keep
     @SuppressWarnings("unused")
     void handleGesture(final int aType) {
         runOnUiThread(() -> {
+            if (!mIsServicesReady) {
+                return;
+            }
             boolean consumed = false;
             if ((aType == GestureSwipeLeft) && (mLastGesture == GestureSwipeLeft)) {
                 Log.d(LOGTAG, "Go back!");
@@ -1184,33 +1358,150 @@ public class VRBrowserActivity extends PlatformActivity implements WidgetManager
     @SuppressWarnings("unused")
     private void handlePoorPerformance() {
         runOnUiThread(() -> {
-            if (!mSettings.isPerformanceMonitorEnabled()) {
+            if (!mIsServicesReady || !mSettings.isPerformanceMonitorEnabled()) {
                 return;
             }
             // Don't block poorly performing immersive pages.
             if (mIsPresentingImmersive) {
                 return;
             }
-            WindowWidget window = mWindows.getFocusedWindow();
-            if (window == null || window.getSession() == null) {
+            String page = getFrameTimingPage();
+            if (page == null) {
+                clearPerformancePage();
                 return;
             }
-            final String originalUri = window.getSession().getCurrentUri();
-            if (mPoorPerformanceWhiteList.contains(originalUri)) {
+            updatePerformancePage(page);
+            mPerformanceScorer.onPoorPerformance(page);
+        });
+    }
+
+    @Keep
+    @SuppressWarnings("unused")
+    private void handleFrameTimings(int[] aFrames, int aCount) {
+        // The render thread reuses the array for the next batch
+        final int[] frames = Arrays.copyOf(aFrames, aCount * FrameTimingAggregator.FIELDS_PER_FRAME);
+        runOnUiThread(() -> {
+            ((VRBrowserApplication)getApplication()).getInitialization().onFirstFrame();
+            if (!mIsServicesReady) {
                 return;
             }
-            window.getSession().loadHomePage();
+
+            // A batch is around a second of frames, they are attributed to the current page and layout
+            FrameTimingAggregator aggregator = getServicesProvider().getFrameTimingAggregator();
+            String page = getFrameTimingPage();
+            aggregator.setContext(page, getFrameTimingLayout());
+            aggregator.addFrames(frames, aCount);
+
+            if (page == null) {
+                clearPerformancePage();
+                return;
+            }
+            if (!mSettings.isPerformanceMonitorEnabled() || mIsPresentingImmersive) {
+                return;
+            }
+            updatePerformancePage(page);
+            FrameTimingAggregator.Report report = aggregator.getPageReport(page);
+            if (report != null) {
+                mPerformanceScorer.onFrameTimings(page, report);
+            }
+        });
+    }
+
+    // Applies what the focused origin needed last time it was scored, short of leaving it again
+    private void updatePerformancePage(@NonNull String aPage) {
+        if (Objects.equals(aPage, mPerformancePage)) {
+            return;
+        }
+        mPerformancePage = aPage;
+        applyPerformanceAction(aPage, mPerformanceScorer.getAction(aPage), false);
+    }
+
+    // Restores the windows and sessions when the focused page isn't scored
+    private void clearPerformancePage() {
+        mPerformancePage = null;
+        if (mReducedTextureWindow != null) {
+            mReducedTextureWindow.setTextureScale(1.0f);
+            mReducedTextureWindow = null;
+        }
+        for (Session session : mPausedSessions) {
+            session.setActive(true);
+        }
+        mPausedSessions.clear();
+    }
+
+    private void applyPerformanceAction(@NonNull String aOrigin, @NonNull PerformanceScorer.Action aAction, boolean aDecided) {
+        WindowWidget focused = mWindows.getFocusedWindow();
+        boolean reduceTextureScale = aAction.compareTo(PerformanceScorer.Action.REDUCE_TEXTURE_SCALE) >= 0;
+        if (mReducedTextureWindow != null && (mReducedTextureWindow != focused || !reduceTextureScale)) {
+            mReducedTextureWindow.setTextureScale(1.0f);
+            mReducedTextureWindow = null;
+        }
+        // The focused window may be one that was paused, they are paused again below if needed
+        for (Session session : mPausedSessions) {
+            session.setActive(true);
+        }
+        mPausedSessions.clear();
+        if (focused == null || focused.getSession() == null) {
+            return;
+        }
+
+        if (aAction.compareTo(PerformanceScorer.Action.THROTTLE_BACKGROUND_TABS) >= 0) {
+            SessionStore.get().suspendAllInactiveSessions();
+        }
+        if (reduceTextureScale) {
+            focused.setTextureScale(REDUCED_TEXTURE_SCALE);
+            mReducedTextureWindow = focused;
+        }
+        if (aAction.compareTo(PerformanceScorer.Action.PAUSE_INACTIVE_WINDOWS) >= 0) {
+            for (WindowWidget window : mWindows.getCurrentWindows()) {
+                Session session = window.getSession();
+                if (window != focused && session != null && session.isActive()) {
+                    session.setActive(false);
+                    mPausedSessions.add(session);
+                }
+            }
+        }
+        if (aAction == PerformanceScorer.Action.LEAVE_PAGE && aDecided) {
+            final String originalUri = focused.getSession().getCurrentUri();
+            focused.getSession().loadHomePage();
             final String[] buttons = {getString(R.string.ok_button), getString(R.string.performance_unblock_page)};
-            window.showConfirmPrompt(getString(R.string.performance_title),
+            focused.showConfirmPrompt(getString(R.string.performance_title),
                     getString(R.string.performance_message),
                     buttons,
                     (index, isChecked) -> {
                 if (index == PromptDialogWidget.NEGATIVE) {
-                    mPoorPerformanceWhiteList.add(originalUri);
-                    window.getSession().loadUri(originalUri);
+                    mPerformanceScorer.allow(aOrigin);
+                    focused.getSession().loadUri(originalUri);
                 }
             });
-        });
+        }
+    }
+
+    // Private pages are neither attributed nor scored, the scores are persisted
+    @Nullable
+    private String getFrameTimingPage() {
+        WindowWidget window = mWindows.getFocusedWindow();
+        if (window == null || window.getSession() == null || window.getSession().isPrivateMode()) {
+            return null;
+        }
+        String uri = window.getSession().getCurrentUri();
+        if (uri == null || UrlUtils.isAboutPage(uri)) {
+            return null;
+        }
+        return UrlUtils.getHost(uri);
+    }
+
+    @NonNull
+    private String getFrameTimingLayout() {
+        if (mIsPresentingImmersive) {
+            return "immersive";
+        }
+        WindowWidget window = mWindows.getFocusedWindow();
+        if (window != null && window.isFullScreen()) {
+            return "fullscreen";
+        }
+        int windows = mWindows.getCurrentWindows().size();
+        return windows == 1 ? "1_window" : windows + "_windows";
     }
 
     @Keep
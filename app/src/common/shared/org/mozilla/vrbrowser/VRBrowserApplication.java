@@ -9,13 +9,17 @@ import android.app.Application;
 import android.content.Context;
 import android.content.res.Configuration;
 
+import org.mozilla.vrbrowser.InitializationGraph.Affinity;
+import org.mozilla.vrbrowser.InitializationGraph.Stage;
 import org.mozilla.vrbrowser.browser.Accounts;
 import org.mozilla.vrbrowser.browser.Places;
 import org.mozilla.vrbrowser.browser.Services;
 import org.mozilla.vrbrowser.db.AppDatabase;
 import org.mozilla.vrbrowser.db.DataRepository;
 import org.mozilla.vrbrowser.downloads.DownloadsManager;
+import org.mozilla.vrbrowser.telemetry.FrameTimingAggregator;
 import org.mozilla.vrbrowser.telemetry.GleanMetricsService;
+import org.mozilla.vrbrowser.telemetry.StartupTracer;
 import org.mozilla.vrbrowser.telemetry.TelemetryWrapper;
 import org.mozilla.vrbrowser.ui.adapters.Language;
 import org.mozilla.vrbrowser.ui.widgets.AppServicesProvider;
@@ -24,28 +28,54 @@ import org.mozilla.vrbrowser.utils.LocaleUtils;
 
 public class VRBrowserApplication extends Application implements AppServicesProvider {
 
+    // Initialization nodes
+    public static final String INIT_PLACES = "places";
+    public static final String INIT_SERVICES = "services";
+    public static final String INIT_ACCOUNTS = "accounts";
+    public static final String INIT_DOWNLOADS_MANAGER = "downloads_manager";
+    public static final String INIT_SYNC = "sync";
+
     private AppExecutors mAppExecutors;
     private BitmapCache mBitmapCache;
     private Services mServices;
     private Places mPlaces;
     private Accounts mAccounts;
     private DownloadsManager mDownloadsManager;
+    private FrameTimingAggregator mFrameTimingAggregator;
+    private InitializationGraph mInitialization;
 
     @Override
     public void onCreate() {
+        StartupTracer tracer = StartupTracer.get();
+        StartupTracer.Span span = tracer.begin("application.onCreate");
         super.onCreate();
         mAppExecutors = new AppExecutors();
-        mBitmapCache = new BitmapCache(this, mAppExecutors.diskIO(), mAppExecutors.mainThread());
+        tracer.trace("bitmap_cache", () -> mBitmapCache = new BitmapCache(this, mAppExecutors.diskIO(), mAppExecutors.mainThread()));
+        mFrameTimingAggregator = new FrameTimingAggregator();
 
-        TelemetryWrapper.init(this);
-        GleanMetricsService.init(this);
+        tracer.trace("telemetry.init", () -> TelemetryWrapper.init(this));
+        tracer.trace("glean.init", () -> GleanMetricsService.init(this));
+        span.close();
     }
 
+    /**
+     * Starts creating the services used by the activity, it must wait for the nodes it needs.
+     */
     protected void onActivityCreate() {
-        mPlaces = new Places(this);
-        mServices = new Services(this, mPlaces);
-        mAccounts = new Accounts(this);
-        mDownloadsManager = new DownloadsManager(this);
+        // The network pool is the only one with several threads
+        mInitialization = new InitializationGraph(mAppExecutors.mainThread(), mAppExecutors.networkIO(), StartupTracer.get());
+        mInitialization
+                .add(INIT_PLACES, Stage.STARTUP, Affinity.BACKGROUND, () -> mPlaces = new Places(this))
+                .add(INIT_DOWNLOADS_MANAGER, Stage.STARTUP, Affinity.BACKGROUND, () -> mDownloadsManager = new DownloadsManager(this))
+                // The account manager observes the process lifecycle, that needs the UI thread
+                .add(INIT_SERVICES, Stage.STARTUP, Affinity.UI_THREAD, () -> mServices = new Services(this, mPlaces), INIT_PLACES)
+                .add(INIT_ACCOUNTS, Stage.STARTUP, Affinity.UI_THREAD, () -> mAccounts = new Accounts(this), INIT_SERVICES)
+                .add(INIT_SYNC, Stage.AFTER_FIRST_FRAME, Affinity.UI_THREAD, () -> mServices.start(), INIT_ACCOUNTS);
+        mInitialization.start();
+    }
+
+    public InitializationGraph getInitialization() {
+        return mInitialization;
     }
 
     @Override
@@ -94,4 +124,8 @@ public class VRBrowserApplication extends Application implements AppServicesProv
     public DownloadsManager getDownloadsManager() {
         return mDownloadsManager;
     }
+
+    public FrameTimingAggregator getFrameTimingAggregator() {
+        return mFrameTimingAggregator;
+    }
 }
@@ -7,8 +7,6 @@ package org.mozilla.vrbrowser.browser
 
 import android.content.Context
 import android.content.res.Configuration
-import android.os.Handler
-import android.os.Looper
 import androidx.lifecycle.ProcessLifecycleOwner
 import kotlinx.coroutines.GlobalScope
 import kotlinx.coroutines.future.future
@@ -19,12 +17,13 @@ import mozilla.components.service.fxa.sync.SyncStatusObserver
 import mozilla.components.support.base.log.logger.Logger
 import org.mozilla.vrbrowser.R
 import org.mozilla.vrbrowser.VRBrowserApplication
+import org.mozilla.vrbrowser.search.suggestions.LocalSuggestionIndex
 import org.mozilla.vrbrowser.utils.SystemUtils
 import java.util.concurrent.CompletableFuture
 
 const val DESKTOP_ROOT = "fake_desktop_root"
 
-class BookmarksStore constructor(val context: Context) {
+class BookmarksStore constructor(val context: Context, private val suggestionIndex: LocalSuggestionIndex) {
 
     private val LOGTAG = SystemUtils.createLogtag(BookmarksStore::class.java)
 
@@ -57,9 +56,55 @@ class BookmarksStore constructor(val context: Context) {
                 BookmarkRoot.Unfiled.id to context.getString(R.string.bookmarks_desktop_unfiled_title)
             )
         }
+
+        /**
+         * Returns a copy of the given bookmark tree without the nodes (and their descendants)
+         * whose GUIDs are in [guids].
+         */
+        @JvmStatic
+        fun removeFromTree(nodes: List<BookmarkNode>, guids: Set<String>): List<BookmarkNode> {
+            return nodes.filter { !guids.contains(it.guid) }
+                    .map { node ->
+                        node.children?.let { node.copy(children = removeFromTree(it, guids)) } ?: node
+                    }
+        }
+
+        /**
+         * Returns a copy of the given bookmark tree with [node] inserted in its parent folder at
+         * its position, or null if the parent folder is not part of the tree.
+         */
+        @JvmStatic
+        fun insertIntoTree(nodes: List<BookmarkNode>, node: BookmarkNode): List<BookmarkNode>? {
+            var inserted = false
+            val result = removeFromTree(nodes, setOf(node.guid)).map { parent ->
+                val children = parent.children
+                when {
+                    inserted || children == null -> parent
+                    parent.guid == node.parentGuid -> {
+                        inserted = true
+                        val index = node.position?.coerceIn(0, children.size) ?: children.size
+                        // Keep the sibling positions in sync, the adapter uses them as item ids
+                        val shifted = children.mapIndexed { i, child ->
+                            if (i >= index) child.copy(position = child.position?.plus(1)) else child
+                        }
+                        parent.copy(children = shifted.take(index) + node + shifted.drop(index))
+                    }
+                    else -> insertIntoTree(children, node)?.let {
+                        inserted = true
+                        parent.copy(children = it)
+                    } ?: parent
+                }
+            }
+            return if (inserted) result else null
+        }
     }
 
-    private val listeners = ArrayList<BookmarkListener>()
+    private val notifier = PlacesChangeNotifier<BookmarkListener> { listener, change ->
+        listener.onBookmarksUpdated(change)
+        if (change.added.isNotEmpty()) {
+            listener.onBookmarkAdded()
+        }
+    }
     private var storage = (context.applicationContext as VRBrowserApplication).places.bookmarks
     private var titles = rootTitles(context)
     private val accountManager = (context.applicationContext as VRBrowserApplication).services.accountManager
@@ -70,7 +115,8 @@ class BookmarksStore constructor(val context: Context) {
 
         override fun onIdle() {
             Logger(LOGTAG).debug("Detected that sync is finished, notifying listeners")
-            notifyListeners()
+            rebuildSuggestionIndex()
+            notifyListeners(PlacesChange.reset())
         }
 
         override fun onError(error: Exception?) {}
@@ -80,6 +126,7 @@ class BookmarksStore constructor(val context: Context) {
         accountManager.registerForSyncEvents(
             syncStatusObserver, ProcessLifecycleOwner.get(), false
         )
+        rebuildSuggestionIndex()
     }
 
     // Update the folder strings after a language update
@@ -88,91 +135,120 @@ class BookmarksStore constructor(val context: Context) {
     }
 
     interface BookmarkListener {
-        fun onBookmarksUpdated()
+        fun onBookmarksUpdated(change: PlacesChange)
         fun onBookmarkAdded()
     }
 
     fun addListener(aListener: BookmarkListener) {
-        if (!listeners.contains(aListener)) {
-            listeners.add(aListener)
-        }
+        notifier.addListener(aListener)
     }
 
     fun removeListener(aListener: BookmarkListener) {
-        listeners.remove(aListener)
+        notifier.removeListener(aListener)
     }
 
     fun removeAllListeners() {
-        listeners.clear()
+        notifier.removeAllListeners()
     }
 
     internal fun updateStorage() {
         storage = (context.applicationContext as VRBrowserApplication).places.bookmarks
-        notifyListeners()
+        rebuildSuggestionIndex()
+        notifyListeners(PlacesChange.reset())
     }
 
     fun getBookmarks(guid: String): CompletableFuture<List<BookmarkNode>?> = GlobalScope.future {
-        when (guid) {
-            BookmarkRoot.Mobile.id -> {
-                // Construct a "virtual" desktop folder as the first bookmark item in the list.
-                val withDesktopFolder = mutableListOf(
-                    BookmarkNode(
-                        BookmarkNodeType.FOLDER,
-                        DESKTOP_ROOT,
-                        BookmarkRoot.Mobile.id,
-                        title = titles[DESKTOP_ROOT],
-                        children = emptyList(),
-                        position = null,
-                        url = null
+        measure("bookmarks.bookmarks") {
+            when (guid) {
+                BookmarkRoot.Mobile.id -> {
+                    // Construct a "virtual" desktop folder as the first bookmark item in the list.
+                    val withDesktopFolder = mutableListOf(
+                        BookmarkNode(
+                            BookmarkNodeType.FOLDER,
+                            DESKTOP_ROOT,
+                            BookmarkRoot.Mobile.id,
+                            title = titles[DESKTOP_ROOT],
+                            children = emptyList(),
+                            position = null,
+                            url = null
+                        )
                     )
-                )
-                // Append all of the bookmarks in the mobile root.
-                storage.getTree(BookmarkRoot.Mobile.id)?.children?.let { withDesktopFolder.addAll(it) }
-                withDesktopFolder
-            }
-            DESKTOP_ROOT -> {
-                val root = storage.getTree(BookmarkRoot.Root.id)
-                root?.children
-                    ?.filter { it.guid != BookmarkRoot.Mobile.id }
-                    ?.map {
-                        it.copy(title = titles[it.guid])
+                    // Append all of the bookmarks in the mobile root.
+                    storage.getTree(BookmarkRoot.Mobile.id)?.children?.let { withDesktopFolder.addAll(it) }
+                    withDesktopFolder
+                }
+                DESKTOP_ROOT -> {
+                    val root = storage.getTree(BookmarkRoot.Root.id)
+                    root?.children
+                        ?.filter { it.guid != BookmarkRoot.Mobile.id }
+                        ?.map {
+                            it.copy(title = titles[it.guid])
+                        }
                     }
+                else -> {
+                    storage.getTree(guid)?.children?.toList()
                 }
-            else -> {
-                storage.getTree(guid)?.children?.toList()
             }
         }
     }
 
     fun addBookmark(aURL: String, aTitle: String) = GlobalScope.future {
-        storage.addItem(BookmarkRoot.Mobile.id, aURL, aTitle, null)
-        notifyAddedListeners()
+        val guid = storage.addItem(BookmarkRoot.Mobile.id, aURL, aTitle, null)
+        suggestionIndex.addBookmark(guid, aURL, aTitle)
+        notifyListeners(PlacesChange.added(guid))
     }
 
     fun deleteBookmarkByURL(aURL: String) = GlobalScope.future {
         val bookmark = getBookmarkByUrl(aURL)
         if (bookmark != null) {
             storage.deleteNode(bookmark.guid)
+            suggestionIndex.removeBookmark(bookmark.guid)
+            notifyListeners(PlacesChange.removed(bookmark.guid))
         }
-        notifyListeners()
     }
 
     fun deleteBookmarkById(aId: String) = GlobalScope.future {
         storage.deleteNode(aId)
-        notifyListeners()
+        if (!suggestionIndex.removeBookmark(aId)) {
+            // Deleted a folder, drop its descendants too
+            rebuildSuggestionIndex()
+        }
+        notifyListeners(PlacesChange.removed(aId))
     }
 
     fun isBookmarked(aURL: String): CompletableFuture<Boolean> = GlobalScope.future {
-        getBookmarkByUrl(aURL) != null
+        measure("bookmarks.is_bookmarked") {
+            getBookmarkByUrl(aURL) != null
+        }
     }
 
     fun getTree(guid: String, recursive: Boolean): CompletableFuture<List<BookmarkNode>?> = GlobalScope.future {
-        storage.getTree(guid, recursive)?.children
-                ?.map { it.copy(title = titles[it.guid]) }
+        measure("bookmarks.tree") {
+            storage.getTree(guid, recursive)?.children
+                    ?.map { it.copy(title = titles[it.guid]) }
+        }
+    }
+
+    fun getBookmark(guid: String): CompletableFuture<BookmarkNode?> = GlobalScope.future {
+        measure("bookmarks.bookmark") {
+            storage.getBookmark(guid)
+        }
     }
 
     fun searchBookmarks(query: String, limit: Int): CompletableFuture<List<BookmarkNode>> = GlobalScope.future {
-        storage.searchBookmarks(query, limit)
+        measure("bookmarks.search") {
+            storage.searchBookmarks(query, limit)
+        }
+    }
+
+    private fun rebuildSuggestionIndex() = GlobalScope.future {
+        val bookmarks = ArrayList<LocalSuggestionIndex.Bookmark>()
+        fun collect(node: BookmarkNode) {
+            node.url?.let { bookmarks.add(LocalSuggestionIndex.Bookmark(node.guid, it, node.title)) }
+            node.children?.forEach { collect(it) }
+        }
+        storage.getTree(BookmarkRoot.Root.id, true)?.let { collect(it) }
+        suggestionIndex.replaceBookmarks(bookmarks)
     }
 
     private suspend fun getBookmarkByUrl(aURL: String): BookmarkNode? {
@@ -190,25 +266,7 @@ class BookmarksStore constructor(val context: Context) {
         return null
     }
 
-    private fun notifyListeners() {
-        if (listeners.size > 0) {
-            val listenersCopy = ArrayList(listeners)
-            Handler(Looper.getMainLooper()).post {
-                for (listener in listenersCopy) {
-                    listener.onBookmarksUpdated()
-                }
-            }
-        }
-    }
-
-    private fun notifyAddedListeners() {
-        if (listeners.size > 0) {
-            val listenersCopy = ArrayList(listeners)
-            Handler(Looper.getMainLooper()).post {
-                for (listener in listenersCopy) {
-                    listener.onBookmarkAdded()
-                }
-            }
-        }
+    private fun notifyListeners(change: PlacesChange) {
+        notifier.post(change)
     }
 }
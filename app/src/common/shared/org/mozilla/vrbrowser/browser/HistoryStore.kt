@@ -6,24 +6,54 @@
 package org.mozilla.vrbrowser.browser
 
 import android.content.Context
-import android.os.Handler
-import android.os.Looper
+import android.util.AtomicFile
 import androidx.lifecycle.ProcessLifecycleOwner
+import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.GlobalScope
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.launch
 import kotlinx.coroutines.future.future
+import mozilla.components.browser.domains.Domains
 import mozilla.components.concept.storage.*
 import mozilla.components.service.fxa.sync.SyncStatusObserver
 import mozilla.components.support.base.log.logger.Logger
 import org.mozilla.vrbrowser.VRBrowserApplication
+import org.mozilla.vrbrowser.search.suggestions.DomainAutocompleteIndex
+import org.mozilla.vrbrowser.search.suggestions.LocalSuggestionIndex
 import org.mozilla.vrbrowser.utils.SystemUtils
+import java.io.File
+import java.io.FileOutputStream
+import java.io.IOException
 import java.util.concurrent.CompletableFuture
 
-class HistoryStore constructor(val context: Context) {
+class HistoryStore constructor(
+        val context: Context,
+        private val suggestionIndex: LocalSuggestionIndex,
+        private val domainIndex: DomainAutocompleteIndex) {
 
     private val LOGTAG = SystemUtils.createLogtag(HistoryStore::class.java)
 
-    private var listeners = ArrayList<HistoryListener>()
+    companion object {
+        private const val DOMAINS_FILE = "visited_domains.bin"
+        private const val DOMAINS_SAVE_DELAY_MS = 5000L
+    }
+
+    private val domainsFile = AtomicFile(File(context.filesDir, DOMAINS_FILE))
+    private var domainsSaveJob: Job? = null
+
+    private val notifier = PlacesChangeNotifier<HistoryListener> { listener, change ->
+        listener.onHistoryUpdated(change)
+    }
     private var storage = (context.applicationContext as VRBrowserApplication).places.history
+    private val excludedVisitTypes = listOf(
+            VisitType.NOT_A_VISIT,
+            VisitType.DOWNLOAD,
+            VisitType.REDIRECT_TEMPORARY,
+            VisitType.RELOAD,
+            VisitType.EMBED,
+            VisitType.FRAMED_LINK,
+            VisitType.REDIRECT_PERMANENT)
 
     // Bookmarks might have changed during sync, so notify our listeners.
     private val syncStatusObserver = object : SyncStatusObserver {
@@ -31,7 +61,8 @@ class HistoryStore constructor(val context: Context) {
 
         override fun onIdle() {
             Logger(LOGTAG).debug("Detected that sync is finished, notifying listeners")
-            notifyListeners()
+            rebuildSuggestionIndex()
+            notifyListeners(PlacesChange.reset())
         }
 
         override fun onError(error: Exception?) {}
@@ -41,114 +72,208 @@ class HistoryStore constructor(val context: Context) {
         (context.applicationContext as VRBrowserApplication).services.accountManager.registerForSyncEvents(
                 syncStatusObserver, ProcessLifecycleOwner.get(), false
         )
+        loadDomainIndex()
+        rebuildSuggestionIndex()
     }
 
     interface HistoryListener {
-        fun onHistoryUpdated()
+        fun onHistoryUpdated(change: PlacesChange)
     }
 
     fun addListener(aListener: HistoryListener) {
-        if (!listeners.contains(aListener)) {
-            listeners.add(aListener)
-        }
+        notifier.addListener(aListener)
     }
 
     fun removeListener(aListener: HistoryListener) {
-        listeners.remove(aListener)
+        notifier.removeListener(aListener)
     }
 
     fun removeAllListeners() {
-        listeners.clear()
+        notifier.removeAllListeners()
     }
 
     internal fun updateStorage() {
         storage = (context.applicationContext as VRBrowserApplication).places.history
-        notifyListeners()
+        rebuildSuggestionIndex()
+        notifyListeners(PlacesChange.reset())
     }
 
     fun getHistory(): CompletableFuture<List<String>?> = GlobalScope.future {
-        storage.getVisited()
+        measure("history.history") {
+            storage.getVisited()
+        }
     }
 
-    fun getDetailedHistory(): CompletableFuture<List<VisitInfo>?> = GlobalScope.future {
-        storage.getDetailedVisits(0, excludeTypes = listOf(
-                VisitType.NOT_A_VISIT,
-                VisitType.DOWNLOAD,
-                VisitType.REDIRECT_TEMPORARY,
-                VisitType.RELOAD,
-                VisitType.EMBED,
-                VisitType.FRAMED_LINK,
-                VisitType.REDIRECT_PERMANENT))
+    fun getDetailedHistory(): CompletableFuture<List<VisitInfo>?> = getDetailedHistory(0)
+
+    fun getDetailedHistory(since: Long): CompletableFuture<List<VisitInfo>?> = GlobalScope.future {
+        measure("history.detailed_history") {
+            storage.getDetailedVisits(since, excludeTypes = excludedVisitTypes)
+        }
     }
 
     fun getVisitsPaginated(offset: Long, count: Long): CompletableFuture<List<VisitInfo>?> = GlobalScope.future {
-        storage.getVisitsPaginated(offset, count, excludeTypes = listOf(
-                VisitType.NOT_A_VISIT,
-                VisitType.DOWNLOAD,
-                VisitType.REDIRECT_TEMPORARY,
-                VisitType.RELOAD,
-                VisitType.EMBED,
-                VisitType.FRAMED_LINK,
-                VisitType.REDIRECT_PERMANENT))
+        measure("history.visits_paginated") {
+            storage.getVisitsPaginated(offset, count, excludeTypes = excludedVisitTypes)
+        }
     }
 
     fun recordVisit(aURL: String, pageVisit: PageVisit) = GlobalScope.future {
         storage.recordVisit(aURL, pageVisit)
-        notifyListeners()
+        if (!excludedVisitTypes.contains(pageVisit.visitType)) {
+            suggestionIndex.recordVisit(aURL, System.currentTimeMillis())
+            domainIndex.recordVisit(aURL, System.currentTimeMillis())
+            scheduleDomainIndexSave()
+        }
+        notifyListeners(PlacesChange.added(aURL))
     }
 
     fun recordObservation(aURL: String, observation: PageObservation) = GlobalScope.future {
         storage.recordObservation(aURL, observation)
-        notifyListeners()
+        suggestionIndex.setTitle(aURL, observation.title)
+        notifyListeners(PlacesChange.changed(aURL))
     }
 
     fun deleteHistory(aUrl: String, timestamp: Long) = GlobalScope.future {
         storage.deleteVisit(aUrl, timestamp)
-        notifyListeners()
+        rebuildSuggestionIndex()
+        notifyListeners(PlacesChange.removedVisit(aUrl, timestamp))
     }
 
     fun deleteVisitsFor(aUrl: String) = GlobalScope.future {
         storage.deleteVisitsFor(aUrl)
-        notifyListeners()
+        suggestionIndex.removeHistory(aUrl)
+        rebuildDomainIndex()
+        notifyListeners(PlacesChange.removed(aUrl))
     }
 
     fun deleteEverything() = GlobalScope.future {
         storage.deleteEverything()
-        notifyListeners()
+        suggestionIndex.clearHistory()
+        domainIndex.clearVisits()
+        deleteDomainIndex()
+        notifyListeners(PlacesChange.removedRange(0, Long.MAX_VALUE))
     }
 
     fun deleteVisitsSince(since: Long) = GlobalScope.future {
         storage.deleteVisitsSince(since)
-        notifyListeners()
+        rebuildSuggestionIndex(true)
+        notifyListeners(PlacesChange.removedRange(since, Long.MAX_VALUE))
     }
 
     fun deleteVisitsBetween(startTime: Long, endTime: Long) = GlobalScope.future {
         storage.deleteVisitsBetween(startTime, endTime)
-        notifyListeners()
+        rebuildSuggestionIndex(true)
+        notifyListeners(PlacesChange.removedRange(startTime, endTime))
     }
 
     fun getVisited(uris: List<String>) = GlobalScope.future {
-        storage.getVisited(uris)
+        measure("history.visited") {
+            storage.getVisited(uris)
+        }
     }
 
     fun isInHistory(aURL: String): CompletableFuture<Boolean> = GlobalScope.future {
-        var result = storage.getVisited(listOf(aURL))
-        result.isNotEmpty() && result[0]
+        measure("history.is_in_history") {
+            var result = storage.getVisited(listOf(aURL))
+            result.isNotEmpty() && result[0]
+        }
     }
 
     fun getSuggestions(query: String, limit: Int): CompletableFuture<List<SearchResult>> = GlobalScope.future {
-        storage.getSuggestions(query, limit)
+        measure("history.suggestions") {
+            storage.getSuggestions(query, limit)
+        }
     }
 
-    private fun notifyListeners() {
-        if (listeners.size > 0) {
-            val listenersCopy = ArrayList(listeners)
-            Handler(Looper.getMainLooper()).post {
-                for (listener in listenersCopy) {
-                    listener.onHistoryUpdated()
-                }
+    /**
+     * The suggestion index only keeps aggregated visits, so changes that remove individual visits
+     * are applied by reloading the recent history into it. When the history was cleared the saved
+     * domains are written right away, so the cleared hosts can't come back after a restart.
+     */
+    private fun rebuildSuggestionIndex(saveImmediately: Boolean = false) = GlobalScope.future {
+        val since = System.currentTimeMillis() - LocalSuggestionIndex.MAX_HISTORY_AGE_MILLIS
+        suggestionIndex.beginHistoryRebuild()
+        val visits = try {
+            storage.getDetailedVisits(since, excludeTypes = excludedVisitTypes)
+                    .map { LocalSuggestionIndex.Visit(it.url, it.title, it.visitTime) }
+        } catch (e: Exception) {
+            suggestionIndex.cancelHistoryRebuild()
+            throw e
+        }
+        suggestionIndex.finishHistoryRebuild(visits)
+        domainIndex.replaceVisits(visits)
+        if (saveImmediately) {
+            cancelDomainIndexSave()
+            writeDomainIndex()
+        } else {
+            scheduleDomainIndexSave()
+        }
+    }
+
+    private fun rebuildDomainIndex() {
+        val since = System.currentTimeMillis() - LocalSuggestionIndex.MAX_HISTORY_AGE_MILLIS
+        GlobalScope.launch {
+            val visits = storage.getDetailedVisits(since, excludeTypes = excludedVisitTypes)
+            domainIndex.replaceVisits(visits.map { LocalSuggestionIndex.Visit(it.url, it.title, it.visitTime) })
+            scheduleDomainIndexSave()
+        }
+    }
+
+    /**
+     * The saved visited domains make the autocomplete ready before the history is read.
+     */
+    private fun loadDomainIndex() = GlobalScope.launch(Dispatchers.IO) {
+        domainIndex.setShippedDomains(Domains.load(context))
+        if (!domainsFile.baseFile.exists()) {
+            return@launch
+        }
+        try {
+            domainsFile.openRead().use { domainIndex.readFrom(it.buffered()) }
+        } catch (e: IOException) {
+            Logger(LOGTAG).error("Error reading the visited domains", e)
+        }
+    }
+
+    @Synchronized
+    private fun scheduleDomainIndexSave() {
+        domainsSaveJob?.cancel()
+        domainsSaveJob = GlobalScope.launch(Dispatchers.IO) {
+            delay(DOMAINS_SAVE_DELAY_MS)
+            writeDomainIndex()
+        }
+    }
+
+    @Synchronized
+    private fun cancelDomainIndexSave() {
+        domainsSaveJob?.cancel()
+        domainsSaveJob = null
+    }
+
+    private fun deleteDomainIndex() {
+        cancelDomainIndexSave()
+        synchronized(domainsFile) {
+            domainsFile.delete()
+        }
+    }
+
+    private fun writeDomainIndex() {
+        synchronized(domainsFile) {
+            var stream: FileOutputStream? = null
+            try {
+                stream = domainsFile.startWrite()
+                val output = stream.buffered()
+                domainIndex.writeTo(output)
+                output.flush()
+                domainsFile.finishWrite(stream)
+            } catch (e: IOException) {
+                stream?.let { domainsFile.failWrite(it) }
+                Logger(LOGTAG).error("Error writing the visited domains", e)
             }
         }
     }
-}
 
+    private fun notifyListeners(change: PlacesChange) {
+        notifier.post(change)
+    }
+}
@@ -0,0 +1,383 @@
+package org.mozilla.vrbrowser.browser;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.mozilla.vrbrowser.telemetry.FrameTimingAggregator;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Scores the rendering performance of each origin from the frame timings and decides how to
+ * respond when it's poor.
+ *
+ * The score is a moving average of the ratio of frames missing a vsync. After
+ * {@link #ESCALATION_BATCHES} poor batches in a row, or when the native performance monitor fires,
+ * the origin moves to the next {@link Action}, from the least to the most visible one. Origins
+ * that perform well for {@link #RECOVERY_BATCHES} go back one action. Leaving the page is never
+ * decided for origins the user allowed, and origins already there offer leaving again at most
+ * every {@link #LEAVE_PAGE_INTERVAL_MS} while they keep performing poorly. The scores and actions are persisted, so a page that was
+ * slow in a previous run starts with the actions it needed.
+ */
+public class PerformanceScorer implements FrameTimingAggregator.Listener {
+
+    public enum Action {
+        NONE,
+        THROTTLE_BACKGROUND_TABS,
+        REDUCE_TEXTURE_SCALE,
+        PAUSE_INACTIVE_WINDOWS,
+        LEAVE_PAGE
+    }
+
+    public interface Delegate {
+        /**
+         * Called when the action for an origin changes.
+         */
+        void onPerformanceAction(@NonNull String aOrigin, @NonNull Action aAction);
+    }
+
+    public interface Storage {
+        @NonNull
+        Map<String, String> load();
+
+        /**
+         * Stores the serialized state of an origin, or removes it when the value is null.
+         */
+        void store(@NonNull String aOrigin, @Nullable String aValue);
+    }
+
+    public static class Decision {
+        private final String mOrigin;
+        private final Action mAction;
+        private final int mScore;
+
+        Decision(@NonNull String aOrigin, @NonNull Action aAction, int aScore) {
+            mOrigin = aOrigin;
+            mAction = aAction;
+            mScore = aScore;
+        }
+
+        @NonNull
+        public String getOrigin() {
+            return mOrigin;
+        }
+
+        @NonNull
+        public Action getAction() {
+            return mAction;
+        }
+
+        /**
+         * Returns the score of the origin when the decision was made.
+         */
+        public int getScore() {
+            return mScore;
+        }
+    }
+
+    // Ratios of frames missing a vsync in a batch
+    static final double POOR_JANK_RATIO = 0.2;
+    static final double GOOD_JANK_RATIO = 0.05;
+    static final int ESCALATION_BATCHES = 3;
+    // Around two minutes of frames
+    static final int RECOVERY_BATCHES = 120;
+    // Batches shorter than this are too noisy to be scored
+    static final int MIN_BATCH_FRAMES = 30;
+    static final int MAX_ORIGINS = 200;
+    static final int MAX_DECISIONS = 50;
+    static final long LEAVE_PAGE_INTERVAL_MS = 60 * 1000;
+    private static final double SMOOTHING = 0.2;
+
+    private static class Entry {
+        double jankRatio = -1;
+        Action action = Action.NONE;
+        boolean allowed;
+        long lastSeen;
+        // Not persisted
+        boolean dirty;
+        int poorBatches;
+        int goodBatches;
+        long frames;
+        long jankFrames;
+        long leavePageTime;
+
+        int score() {
+            return jankRatio < 0 ? 100 : (int) Math.round(100 * (1 - jankRatio));
+        }
+
+        String serialize() {
+            return action.ordinal() + "," + jankRatio + "," + (allowed ? 1 : 0) + "," + lastSeen;
+        }
+
+        @Nullable
+        static Entry parse(@Nullable String aValue) {
+            if (aValue == null) {
+                return null;
+            }
+            String[] fields = aValue.split(",");
+            if (fields.length != 4) {
+                return null;
+            }
+            try {
+                Entry entry = new Entry();
+                int action = Integer.parseInt(fields[0]);
+                if (action < 0 || action >= Action.values().length) {
+                    return null;
+                }
+                entry.action = Action.values()[action];
+                entry.jankRatio = Double.parseDouble(fields[1]);
+                entry.allowed = "1".equals(fields[2]);
+                entry.lastSeen = Long.parseLong(fields[3]);
+                return entry;
+
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+    }
+
+    private final Storage mStorage;
+    private final Map<String, Entry> mEntries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            if (size() > MAX_ORIGINS) {
+                mStorage.store(eldest.getKey(), null);
+                return true;
+            }
+            return false;
+        }
+    };
+    private final List<Decision> mDecisions = new ArrayList<>();
+    private Delegate mDelegate;
+
+    public PerformanceScorer(@NonNull Storage aStorage) {
+        mStorage = aStorage;
+        List<Map.Entry<String, Entry>> loaded = new ArrayList<>();
+        for (Map.Entry<String, String> stored : aStorage.load().entrySet()) {
+            Entry entry = Entry.parse(stored.getValue());
+            if (entry != null) {
+                loaded.add(new AbstractMap.SimpleEntry<>(stored.getKey(), entry));
+            } else {
+                aStorage.store(stored.getKey(), null);
+            }
+        }
+        // Keep the least recently seen origins first, they are the first ones to be forgotten
+        loaded.sort((a, b) -> Long.compare(a.getValue().lastSeen, b.getValue().lastSeen));
+        for (Map.Entry<String, Entry> entry : loaded) {
+            mEntries.put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Creates a scorer persisted in its own shared preferences.
+     */
+    public static PerformanceScorer create(@NonNull Context aContext) {
+        final SharedPreferences prefs = aContext.getSharedPreferences("performance_scores", Context.MODE_PRIVATE);
+        return new PerformanceScorer(new Storage() {
+            @NonNull
+            @Override
+            public Map<String, String> load() {
+                Map<String, String> values = new HashMap<>();
+                for (Map.Entry<String, ?> entry : prefs.getAll().entrySet()) {
+                    if (entry.getValue() instanceof String) {
+                        values.put(entry.getKey(), (String) entry.getValue());
+                    }
+                }
+                return values;
+            }
+
+            @Override
+            public void store(@NonNull String aOrigin, @Nullable String aValue) {
+                if (aValue != null) {
+                    prefs.edit().putString(aOrigin, aValue).apply();
+                } else {
+                    prefs.edit().remove(aOrigin).apply();
+                }
+            }
+        });
+    }
+
+    public void setDelegate(@Nullable Delegate aDelegate) {
+        mDelegate = aDelegate;
+    }
+
+    @Override
+    public void onFrameTimings(@NonNull String aPage, @NonNull FrameTimingAggregator.Report aReport) {
+        Entry entry = getEntry(aPage);
+        // Reports are cumulative, they restart if the aggregator forgot the page
+        long frames = aReport.getFrameCount() - entry.frames;
+        long jankFrames = aReport.getJankFrames() - entry.jankFrames;
+        if (frames < 0 || jankFrames < 0) {
+            frames = aReport.getFrameCount();
+            jankFrames = aReport.getJankFrames();
+        }
+        if (frames < MIN_BATCH_FRAMES) {
+            return;
+        }
+        entry.frames = aReport.getFrameCount();
+        entry.jankFrames = aReport.getJankFrames();
+        addBatch(aPage, entry, frames, jankFrames);
+    }
+
+    /**
+     * Records a batch of frames of an origin.
+     */
+    public void addBatch(@NonNull String aOrigin, long aFrames, long aJankFrames) {
+        if (aFrames < MIN_BATCH_FRAMES) {
+            return;
+        }
+        addBatch(aOrigin, getEntry(aOrigin), aFrames, aJankFrames);
+    }
+
+    /**
+     * Called when the native performance monitor detects a frame rate under its target. Escalates
+     * the origin to the next action without waiting for more batches.
+     */
+    public void onPoorPerformance(@NonNull String aOrigin) {
+        Entry entry = getEntry(aOrigin);
+        entry.poorBatches = 0;
+        entry.goodBatches = 0;
+        escalate(aOrigin, entry);
+    }
+
+    /**
+     * Never decides to leave the pages of an origin the user chose to keep.
+     */
+    public void allow(@NonNull String aOrigin) {
+        Entry entry = getEntry(aOrigin);
+        entry.allowed = true;
+        if (entry.action == Action.LEAVE_PAGE) {
+            setAction(aOrigin, entry, Action.PAUSE_INACTIVE_WINDOWS);
+        } else {
+            entry.dirty = false;
+            mStorage.store(aOrigin, entry.serialize());
+        }
+    }
+
+    public boolean isAllowed(@NonNull String aOrigin) {
+        Entry entry = mEntries.get(aOrigin);
+        return entry != null && entry.allowed;
+    }
+
+    @NonNull
+    public Action getAction(@Nullable String aOrigin) {
+        Entry entry = aOrigin != null ? mEntries.get(aOrigin) : null;
+        return entry != null ? entry.action : Action.NONE;
+    }
+
+    /**
+     * Returns the score of an origin, from 0 when no frame is on time to 100 when all of them are.
+     */
+    public int getScore(@NonNull String aOrigin) {
+        Entry entry = mEntries.get(aOrigin);
+        return entry != null ? entry.score() : 100;
+    }
+
+    /**
+     * Returns the last decisions, oldest first.
+     */
+    @NonNull
+    public List<Decision> getDecisions() {
+        return new ArrayList<>(mDecisions);
+    }
+
+    /**
+     * Persists the scores of the origins seen since they were last stored.
+     */
+    public void flush() {
+        for (Map.Entry<String, Entry> entry : mEntries.entrySet()) {
+            if (entry.getValue().dirty) {
+                entry.getValue().dirty = false;
+                mStorage.store(entry.getKey(), entry.getValue().serialize());
+            }
+        }
+    }
+
+    /**
+     * Forgets the score and the decisions of an origin.
+     */
+    public void remove(@NonNull String aOrigin) {
+        if (mEntries.remove(aOrigin) != null) {
+            mStorage.store(aOrigin, null);
+        }
+        mDecisions.removeIf(decision -> decision.getOrigin().equals(aOrigin));
+    }
+
+    public void clear() {
+        for (String origin : mEntries.keySet()) {
+            mStorage.store(origin, null);
+        }
+        mEntries.clear();
+        mDecisions.clear();
+    }
+
+    private Entry getEntry(@NonNull String aOrigin) {
+        Entry entry = mEntries.get(aOrigin);
+        if (entry == null) {
+            entry = new Entry();
+            mEntries.put(aOrigin, entry);
+        }
+        entry.lastSeen = System.currentTimeMillis();
+        return entry;
+    }
+
+    private void addBatch(@NonNull String aOrigin, @NonNull Entry aEntry, long aFrames, long aJankFrames) {
+        double ratio = (double) aJankFrames / aFrames;
+        aEntry.dirty = true;
+        aEntry.jankRatio = aEntry.jankRatio < 0 ? ratio : aEntry.jankRatio + SMOOTHING * (ratio - aEntry.jankRatio);
+
+        if (ratio >= POOR_JANK_RATIO) {
+            aEntry.goodBatches = 0;
+            if (++aEntry.poorBatches >= ESCALATION_BATCHES) {
+                // The next action needs as many poor batches to show the last one wasn't enough
+                aEntry.poorBatches = 0;
+                escalate(aOrigin, aEntry);
+            }
+
+        } else if (ratio <= GOOD_JANK_RATIO) {
+            aEntry.poorBatches = 0;
+            if (aEntry.action != Action.NONE && ++aEntry.goodBatches >= RECOVERY_BATCHES) {
+                aEntry.goodBatches = 0;
+                setAction(aOrigin, aEntry, Action.values()[aEntry.action.ordinal() - 1]);
+            }
+        }
+    }
+
+    private void escalate(@NonNull String aOrigin, @NonNull Entry aEntry) {
+        if (aEntry.action == Action.LEAVE_PAGE) {
+            if (System.currentTimeMillis() - aEntry.leavePageTime >= LEAVE_PAGE_INTERVAL_MS) {
+                setAction(aOrigin, aEntry, Action.LEAVE_PAGE);
+            }
+            return;
+        }
+        Action next = Action.values()[aEntry.action.ordinal() + 1];
+        if (next == Action.LEAVE_PAGE && aEntry.allowed) {
+            return;
+        }
+        setAction(aOrigin, aEntry, next);
+    }
+
+    private void setAction(@NonNull String aOrigin, @NonNull Entry aEntry, @NonNull Action aAction) {
+        aEntry.action = aAction;
+        if (aAction == Action.LEAVE_PAGE) {
+            aEntry.leavePageTime = System.currentTimeMillis();
+        }
+        aEntry.dirty = false;
+        mStorage.store(aOrigin, aEntry.serialize());
+        mDecisions.add(new Decision(aOrigin, aAction, aEntry.score()));
+        if (mDecisions.size() > MAX_DECISIONS) {
+            mDecisions.remove(0);
+        }
+        if (mDelegate != null) {
+            mDelegate.onPerformanceAction(aOrigin, aAction);
+        }
+    }
+}
@@ -6,12 +6,26 @@
 package org.mozilla.vrbrowser.browser
 
 import android.content.Context
+import android.os.SystemClock
 import mozilla.components.browser.storage.sync.PlacesBookmarksStorage
 import mozilla.components.browser.storage.sync.PlacesHistoryStorage
 import mozilla.components.support.base.log.logger.Logger
 import org.mozilla.vrbrowser.browser.engine.SessionStore
+import org.mozilla.vrbrowser.telemetry.QueryLatencies
 import org.mozilla.vrbrowser.utils.SystemUtils
 
+/**
+ * Runs a Places query and records how long it took in [QueryLatencies].
+ */
+internal inline fun <T> measure(query: String, block: () -> T): T {
+    val start = SystemClock.elapsedRealtime()
+    try {
+        return block()
+    } finally {
+        QueryLatencies.record(query, SystemClock.elapsedRealtime() - start)
+    }
+}
+
 /**
  * Entry point for interacting with places-backed storage layers.
  */
@@ -0,0 +1,145 @@
+/* -*- Mode: Java; c-basic-offset: 4; tab-width: 4; indent-tabs-mode: nil; -*-
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.vrbrowser.browser
+
+import android.os.Handler
+import android.os.Looper
+import android.view.Choreographer
+import java.util.concurrent.CopyOnWriteArrayList
+
+/**
+ * A single history visit.
+ */
+data class PlacesVisit(val url: String, val visitTime: Long)
+
+/**
+ * Describes a batch of mutations applied to a places-backed store.
+ *
+ * Ids are URLs for history and GUIDs for bookmarks. [removedVisits] are history visits removed
+ * one by one, [removedRangeStart] and [removedRangeEnd] describe history visits removed by visit
+ * time, and [isReset] means the store may have changed
+ * in ways that are not described here (sync, storage swap) so listeners must reload everything.
+ */
+data class PlacesChange(
+        val added: Set<String> = emptySet(),
+        val removed: Set<String> = emptySet(),
+        val changed: Set<String> = emptySet(),
+        val removedVisits: Set<PlacesVisit> = emptySet(),
+        val removedRangeStart: Long = NO_RANGE,
+        val removedRangeEnd: Long = NO_RANGE,
+        val isReset: Boolean = false
+) {
+
+    companion object {
+        const val NO_RANGE = -1L
+
+        @JvmStatic
+        fun added(id: String) = PlacesChange(added = setOf(id))
+
+        @JvmStatic
+        fun removed(id: String) = PlacesChange(removed = setOf(id))
+
+        @JvmStatic
+        fun changed(id: String) = PlacesChange(changed = setOf(id))
+
+        @JvmStatic
+        fun removedVisit(url: String, visitTime: Long) = PlacesChange(removedVisits = setOf(PlacesVisit(url, visitTime)))
+
+        @JvmStatic
+        fun removedRange(start: Long, end: Long) = PlacesChange(removedRangeStart = start, removedRangeEnd = end)
+
+        @JvmStatic
+        fun reset() = PlacesChange(isReset = true)
+    }
+
+    fun hasRemovedRange() = removedRangeStart != NO_RANGE
+
+    /**
+     * Folds a later change into this one. An id added and then removed within the same batch
+     * is reported as removed, so listeners never show stale entries.
+     */
+    fun merge(other: PlacesChange): PlacesChange {
+        val start: Long
+        val end: Long
+        when {
+            !hasRemovedRange() -> { start = other.removedRangeStart; end = other.removedRangeEnd }
+            !other.hasRemovedRange() -> { start = removedRangeStart; end = removedRangeEnd }
+            else -> {
+                start = minOf(removedRangeStart, other.removedRangeStart)
+                end = maxOf(removedRangeEnd, other.removedRangeEnd)
+            }
+        }
+
+        return PlacesChange(
+                added = (added - other.removed) + other.added,
+                removed = (removed - other.added) + other.removed,
+                changed = (changed + other.changed) - other.removed,
+                removedVisits = removedVisits + other.removedVisits,
+                removedRangeStart = start,
+                removedRangeEnd = end,
+                isReset = isReset || other.isReset
+        )
+    }
+}
+
+/**
+ * Coalesces the [PlacesChange]s posted from any thread during a frame and dispatches them once
+ * on the UI thread, on the next Choreographer frame.
+ */
+class PlacesChangeNotifier<T>(private val dispatch: (T, PlacesChange) -> Unit) {
+
+    private val listeners = CopyOnWriteArrayList<T>()
+    private val mainHandler = Handler(Looper.getMainLooper())
+    private val lock = Any()
+    private var pending: PlacesChange? = null
+    private var isScheduled = false
+
+    private val frameCallback = Choreographer.FrameCallback { flush() }
+
+    fun addListener(aListener: T) {
+        listeners.addIfAbsent(aListener)
+    }
+
+    fun removeListener(aListener: T) {
+        listeners.remove(aListener)
+    }
+
+    fun removeAllListeners() {
+        listeners.clear()
+    }
+
+    fun post(change: PlacesChange) {
+        if (listeners.isEmpty()) {
+            return
+        }
+
+        synchronized(lock) {
+            pending = pending?.merge(change) ?: change
+            if (isScheduled) {
+                return
+            }
+            isScheduled = true
+        }
+
+        // The Choreographer is bound to the looper of the calling thread.
+        mainHandler.post {
+            Choreographer.getInstance().postFrameCallback(frameCallback)
+        }
+    }
+
+    private fun flush() {
+        val change = synchronized(lock) {
+            isScheduled = false
+            val result = pending
+            pending = null
+            result
+        } ?: return
+
+        for (listener in listeners) {
+            dispatch(listener, change)
+        }
+    }
+}
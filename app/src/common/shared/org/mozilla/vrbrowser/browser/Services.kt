@@ -114,7 +114,10 @@ class Services(val context: Context, places: Places): GeckoSession.NavigationDel
         it.registerForDeviceEvents(deviceEventObserver, ProcessLifecycleOwner.get(), true)
     }
 
-    init {
+    /**
+     * Restores the account and starts syncing, it's not needed to show the first frame.
+     */
+    fun start() {
         CoroutineScope(Dispatchers.Main).launch {
             accountManager.initAsync().await()
         }
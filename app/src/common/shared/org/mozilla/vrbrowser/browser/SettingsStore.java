@@ -18,7 +18,6 @@ import org.json.JSONArray;
 import org.json.JSONObject;
 import org.mozilla.geckoview.ContentBlocking;
 import org.mozilla.geckoview.GeckoSessionSettings;
-import org.mozilla.telemetry.TelemetryHolder;
 import org.mozilla.vrbrowser.R;
 import org.mozilla.vrbrowser.VRBrowserActivity;
 import org.mozilla.vrbrowser.telemetry.GleanMetricsService;
@@ -102,6 +101,7 @@ public class SettingsStore {
     public final static boolean MULTI_E10S = false;
     public final static int DOWNLOADS_STORAGE_DEFAULT = INTERNAL;
     public final static int DOWNLOADS_SORTING_ORDER_DEFAULT = SortingContextMenuWidget.SORT_FILENAME_AZ;
+    public final static boolean DOWNLOADS_SEGMENTED_DEFAULT = false;
 
     // Enable telemetry by default (opt-out).
     public final static boolean CRASH_REPORTING_DEFAULT = false;
@@ -155,7 +155,7 @@ public class SettingsStore {
 
         // We send before disabling in case of opting-out
         if (!isEnabled) {
-            TelemetryWrapper.telemetryStatus(false);
+            TelemetryWrapper.setTelemetryEnabled(false);
         }
 
         // If the state of Telemetry is not the same, we reinitialize it.
@@ -164,12 +164,9 @@ public class SettingsStore {
             TelemetryWrapper.init(mContext);
         }
 
-        TelemetryHolder.get().getConfiguration().setUploadEnabled(isEnabled);
-        TelemetryHolder.get().getConfiguration().setCollectionEnabled(isEnabled);
-
         // We send after enabling in case of opting-in
         if (isEnabled) {
-            TelemetryWrapper.telemetryStatus(true);
+            TelemetryWrapper.setTelemetryEnabled(true);
             GleanMetricsService.start();
         } else {
             GleanMetricsService.stop();
@@ -203,6 +200,16 @@ public class SettingsStore {
         return mPrefs.getString(mContext.getString(R.string.settings_key_geolocation_data), "");
     }
 
+    public void setSearchEnginesCache(String aSearchEnginesCache) {
+        SharedPreferences.Editor editor = mPrefs.edit();
+        editor.putString(mContext.getString(R.string.settings_key_search_engines_cache), aSearchEnginesCache);
+        editor.apply();
+    }
+
+    public String getSearchEnginesCache() {
+        return mPrefs.getString(mContext.getString(R.string.settings_key_search_engines_cache), "");
+    }
+
     public boolean isRemoteDebuggingEnabled() {
         return mPrefs.getBoolean(
                 mContext.getString(R.string.settings_key_remote_debugging), REMOTE_DEBUGGING_DEFAULT);
@@ -748,5 +755,15 @@ public class SettingsStore {
     public @Storage int getDownloadsSortingOrder() {
         return mPrefs.getInt(mContext.getString(R.string.settings_key_downloads_sorting_order), DOWNLOADS_SORTING_ORDER_DEFAULT);
     }
+
+    public void setSegmentedDownloadsEnabled(boolean isEnabled) {
+        SharedPreferences.Editor editor = mPrefs.edit();
+        editor.putBoolean(mContext.getString(R.string.settings_key_downloads_segmented), isEnabled);
+        editor.commit();
+    }
+
+    public boolean isSegmentedDownloadsEnabled() {
+        return mPrefs.getBoolean(mContext.getString(R.string.settings_key_downloads_segmented), DOWNLOADS_SEGMENTED_DEFAULT);
+    }
 }
 
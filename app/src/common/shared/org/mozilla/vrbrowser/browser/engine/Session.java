@@ -9,7 +9,9 @@ import android.app.Activity;
 import android.content.Context;
 import android.content.SharedPreferences;
 import android.graphics.Bitmap;
+import android.os.SystemClock;
 import android.preference.PreferenceManager;
+import android.util.Base64;
 import android.util.Log;
 import android.view.Surface;
 import android.view.inputmethod.CursorAnchorInfo;
@@ -31,7 +33,9 @@ import org.mozilla.geckoview.GeckoSessionSettings;
 import org.mozilla.geckoview.MediaElement;
 import org.mozilla.geckoview.SlowScriptResponse;
 import org.mozilla.geckoview.WebRequestError;
+import org.mozilla.vrbrowser.AppExecutors;
 import org.mozilla.vrbrowser.R;
+import org.mozilla.vrbrowser.VRBrowserApplication;
 import org.mozilla.vrbrowser.browser.Media;
 import org.mozilla.vrbrowser.browser.SessionChangeListener;
 import org.mozilla.vrbrowser.browser.SettingsStore;
@@ -41,6 +45,8 @@ import org.mozilla.vrbrowser.browser.content.TrackingProtectionPolicy;
 import org.mozilla.vrbrowser.browser.content.TrackingProtectionStore;
 import org.mozilla.vrbrowser.geolocation.GeolocationData;
 import org.mozilla.vrbrowser.telemetry.GleanMetricsService;
+import org.mozilla.vrbrowser.telemetry.PageLoadTimeline;
+import org.mozilla.vrbrowser.telemetry.PerformanceReport;
 import org.mozilla.vrbrowser.telemetry.TelemetryWrapper;
 import org.mozilla.vrbrowser.utils.BitmapCache;
 import org.mozilla.vrbrowser.utils.InternalPages;
@@ -92,8 +98,33 @@ public class Session implements ContentBlocking.Delegate, GeckoSession.Navigatio
     private transient GeckoRuntime mRuntime;
     private transient byte[] mPrivatePage;
     private transient boolean mFirstContentfulPaint;
+    private transient PageLoadTimeline mPageLoadTimeline;
+    private transient String mPerformancePageUri;
     private transient long mKeepAlive;
 
+    // Feeds the page load phase histograms, internal pages are not measured like in onPageStop
+    private static final PageLoadTimeline.Listener sPageLoadTelemetry = new PageLoadTimeline.Listener() {
+        @Override
+        public void onPageLoadFinished(@NonNull PageLoadTimeline.Navigation aNavigation) {
+            if (!SessionUtils.isLocalizedContent(aNavigation.getUri())) {
+                TelemetryWrapper.uploadPageLoadPhases(aNavigation,
+                        PageLoadTimeline.Phase.REQUEST,
+                        PageLoadTimeline.Phase.COMMIT,
+                        PageLoadTimeline.Phase.FIRST_COMPOSITE,
+                        PageLoadTimeline.Phase.FIRST_CONTENTFUL_PAINT,
+                        PageLoadTimeline.Phase.LOAD,
+                        PageLoadTimeline.Phase.TOTAL);
+            }
+        }
+
+        @Override
+        public void onPageSnapshotCaptured(@NonNull PageLoadTimeline.Navigation aNavigation) {
+            if (!SessionUtils.isLocalizedContent(aNavigation.getUri())) {
+                TelemetryWrapper.uploadPageLoadPhases(aNavigation, PageLoadTimeline.Phase.SNAPSHOT);
+            }
+        }
+    };
+
     public interface BitmapChangedListener {
         void onBitmapChanged(Session aSession, Bitmap aBitmap);
     }
@@ -143,6 +174,8 @@ public class Session implements ContentBlocking.Delegate, GeckoSession.Navigatio
         mWebXRStateListeners = new CopyOnWriteArrayList<>();
         mPopUpStateStateListeners = new CopyOnWriteArrayList<>();
         mDrmStateStateListeners = new CopyOnWriteArrayList<>();
+        mPageLoadTimeline = new PageLoadTimeline();
+        mPageLoadTimeline.addListener(sPageLoadTelemetry);
 
         if (mPrefs != null) {
             mPrefs.registerOnSharedPreferenceChangeListener(this);
@@ -190,6 +223,7 @@ public class Session implements ContentBlocking.Delegate, GeckoSession.Navigatio
         mWebXRStateListeners.clear();
         mPopUpStateStateListeners.clear();
         mDrmStateStateListeners.clear();
+        mPageLoadTimeline.clearListeners();
 
         if (mPrefs != null) {
             mPrefs.unregisterOnSharedPreferenceChangeListener(this);
@@ -353,6 +387,22 @@ public class Session implements ContentBlocking.Delegate, GeckoSession.Navigatio
         mBitmapChangedListeners.remove(aListener);
     }
 
+    public void addPageLoadTimelineListener(PageLoadTimeline.Listener aListener) {
+        mPageLoadTimeline.addListener(aListener);
+    }
+
+    public void removePageLoadTimelineListener(PageLoadTimeline.Listener aListener) {
+        mPageLoadTimeline.removeListener(aListener);
+    }
+
+    /**
+     * Returns the timeline of the page load in progress, or of the last one.
+     */
+    @Nullable
+    public PageLoadTimeline.Navigation getPageLoadTimeline() {
+        return mPageLoadTimeline.getCurrentNavigation();
+    }
+
     public void addWebXRStateChangedListener(WebXRStateChangedListener aListener) {
         mWebXRStateListeners.add(aListener);
         dumpState(aListener);
@@ -576,6 +626,7 @@ public class Session implements ContentBlocking.Delegate, GeckoSession.Navigatio
         try {
             mState.mDisplay.screenshot().aspectPreservingSize(500).capture().then(bitmap -> {
                 if (bitmap != null) {
+                    mPageLoadTimeline.onSnapshotCaptured(SystemClock.elapsedRealtime());
                     BitmapCache.getInstance(mContext).addBitmap(getId(), bitmap);
                     for (BitmapChangedListener listener: mBitmapChangedListeners) {
                         listener.onBitmapChanged(Session.this, bitmap);
@@ -828,6 +879,41 @@ public class Session implements ContentBlocking.Delegate, GeckoSession.Navigatio
         }
     }
 
+    // The dashboard navigates back to about://performance to refresh, which replaces its own
+    // history entry instead of adding one per refresh.
+    // The report is built and rendered on the disk executor, only the load happens on the UI thread
+    private void loadPerformancePage(boolean aExport) {
+        AppExecutors executors = ((VRBrowserApplication) mContext.getApplicationContext()).getExecutors();
+        PerformanceReport.collect(mContext).thenApplyAsync(report -> {
+            if (aExport) {
+                report.export(mContext);
+                return "data:application/json;base64," +
+                        Base64.encodeToString(report.toJson().getBytes(), Base64.NO_WRAP);
+            }
+            return InternalPages.createPerformancePageDataURI(mContext, report);
+
+        }, executors.diskIO()).thenAcceptAsync(uri -> {
+            if (mState.mSession == null) {
+                return;
+            }
+            if (aExport) {
+                mState.mSession.loadUri(uri);
+                return;
+            }
+
+            int flags = GeckoSession.LOAD_FLAGS_NONE;
+            if (mPerformancePageUri != null && mPerformancePageUri.equals(mState.mUri)) {
+                flags = GeckoSession.LOAD_FLAGS_REPLACE_HISTORY;
+            }
+            mPerformancePageUri = uri;
+            mState.mSession.loadUri(mPerformancePageUri, flags);
+
+        }, executors.mainThread()).exceptionally(throwable -> {
+            Log.e(LOGTAG, "Error loading the performance page: " + throwable.getMessage());
+            return null;
+        });
+    }
+
     public void toggleServo() {
         if (mState.mSession == null) {
             return;
@@ -1011,6 +1097,7 @@ public class Session implements ContentBlocking.Delegate, GeckoSession.Navigatio
 
         mState.mPreviousUri = mState.mUri;
         mState.mUri = aUri;
+        mPageLoadTimeline.onLocationChange(aUri, SystemClock.elapsedRealtime());
 
         for (GeckoSession.NavigationDelegate listener : mNavigationListeners) {
             listener.onLocationChange(aSession, aUri);
@@ -1054,6 +1141,9 @@ public class Session implements ContentBlocking.Delegate, GeckoSession.Navigatio
 
         Log.d(LOGTAG, "onLoadRequest: " + uri);
 
+        // The request is only recorded once it's allowed, a denied one doesn't start a navigation
+        final long requestTime = SystemClock.elapsedRealtime();
+
         if (aSession == mState.mSession) {
             Log.d(LOGTAG, "Testing for UA override");
 
@@ -1068,7 +1158,15 @@ public class Session implements ContentBlocking.Delegate, GeckoSession.Navigatio
             return GeckoResult.DENY;
         }
 
+        if (UrlUtils.isPerformanceUrl(uri) || UrlUtils.isPerformanceExportUrl(uri)) {
+            if (aSession == mState.mSession) {
+                loadPerformancePage(UrlUtils.isPerformanceExportUrl(uri));
+            }
+            return GeckoResult.DENY;
+        }
+
         if (mNavigationListeners.size() == 0) {
+            onLoadAllowed(aSession, uri, requestTime);
             return GeckoResult.ALLOW;
         }
 
@@ -1102,7 +1200,18 @@ public class Session implements ContentBlocking.Delegate, GeckoSession.Navigatio
             return GeckoResult.DENY;
         }
 
-        return result;
+        return result.then(value -> {
+            if (AllowOrDeny.ALLOW.equals(value)) {
+                onLoadAllowed(aSession, uri, requestTime);
+            }
+            return GeckoResult.fromValue(value);
+        });
+    }
+
+    private void onLoadAllowed(@NonNull GeckoSession aSession, @NonNull String aUri, long aTime) {
+        if (aSession == mState.mSession) {
+            mPageLoadTimeline.onLoadRequest(aUri, aTime);
+        }
     }
 
     @Override
@@ -1136,6 +1245,7 @@ public class Session implements ContentBlocking.Delegate, GeckoSession.Navigatio
         }
         Log.d(LOGTAG, "Session onPageStart");
         mState.mIsLoading = true;
+        mPageLoadTimeline.onPageStart(aUri, SystemClock.elapsedRealtime());
         TelemetryWrapper.startPageLoadTime();
         GleanMetricsService.startPageLoadTime();
 
@@ -1152,6 +1262,7 @@ public class Session implements ContentBlocking.Delegate, GeckoSession.Navigatio
         }
         Log.d(LOGTAG, "Session onPageStop");
         mState.mIsLoading = false;
+        mPageLoadTimeline.onPageStop(SystemClock.elapsedRealtime());
         if (!SessionUtils.isLocalizedContent(mState.mUri)) {
             TelemetryWrapper.uploadPageLoadToHistogram(mState.mUri);
             GleanMetricsService.stopPageLoadTimeWithURI(mState.mUri);
@@ -1240,6 +1351,7 @@ public class Session implements ContentBlocking.Delegate, GeckoSession.Navigatio
     @Override
     public void onFirstComposite(@NonNull GeckoSession aSession) {
         if (mState.mSession == aSession) {
+            mPageLoadTimeline.onFirstComposite(SystemClock.elapsedRealtime());
             for (GeckoSession.ContentDelegate listener : mContentListeners) {
                 listener.onFirstComposite(aSession);
             }
@@ -1258,6 +1370,7 @@ public class Session implements ContentBlocking.Delegate, GeckoSession.Navigatio
     public void onFirstContentfulPaint(@NonNull GeckoSession aSession) {
         mFirstContentfulPaint = true;
         if (mState.mSession == aSession) {
+            mPageLoadTimeline.onFirstContentfulPaint(SystemClock.elapsedRealtime());
             for (GeckoSession.ContentDelegate listener : mContentListeners) {
                 listener.onFirstContentfulPaint(aSession);
             }
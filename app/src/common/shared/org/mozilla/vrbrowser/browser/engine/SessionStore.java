@@ -17,6 +17,8 @@ import org.mozilla.vrbrowser.browser.PermissionDelegate;
 import org.mozilla.vrbrowser.browser.Services;
 import org.mozilla.vrbrowser.browser.content.TrackingProtectionStore;
 import org.mozilla.vrbrowser.db.SitePermission;
+import org.mozilla.vrbrowser.search.suggestions.DomainAutocompleteIndex;
+import org.mozilla.vrbrowser.search.suggestions.LocalSuggestionIndex;
 import org.mozilla.vrbrowser.utils.SystemUtils;
 import org.mozilla.vrbrowser.utils.UrlUtils;
 
@@ -47,12 +49,16 @@ public class SessionStore implements GeckoSession.PermissionDelegate{
     private PermissionDelegate mPermissionDelegate;
     private BookmarksStore mBookmarksStore;
     private HistoryStore mHistoryStore;
+    private LocalSuggestionIndex mSuggestionIndex;
+    private DomainAutocompleteIndex mDomainAutocompleteIndex;
     private Services mServices;
     private boolean mSuspendPending;
     private TrackingProtectionStore mTrackingProtectionStore;
 
     private SessionStore() {
         mSessions = new ArrayList<>();
+        mSuggestionIndex = new LocalSuggestionIndex();
+        mDomainAutocompleteIndex = new DomainAutocompleteIndex();
     }
 
     public void setContext(Context context, Bundle aExtras) {
@@ -96,8 +102,8 @@ public class SessionStore implements GeckoSession.PermissionDelegate{
     }
 
     public void initializeStores(Context context) {
-        mBookmarksStore = new BookmarksStore(context);
-        mHistoryStore = new HistoryStore(context);
+        mBookmarksStore = new BookmarksStore(context, mSuggestionIndex);
+        mHistoryStore = new HistoryStore(context, mSuggestionIndex, mDomainAutocompleteIndex);
     }
 
     @NonNull
@@ -225,6 +231,10 @@ public class SessionStore implements GeckoSession.PermissionDelegate{
         return mActiveSession;
     }
 
+    public ArrayList<Session> getSessions() {
+        return new ArrayList<>(mSessions);
+    }
+
     public ArrayList<Session> getSortedSessions(boolean aPrivateMode) {
         ArrayList<Session> result = new ArrayList<>(mSessions);
         result.removeIf(session -> session.isPrivateMode() != aPrivateMode);
@@ -249,6 +259,14 @@ public class SessionStore implements GeckoSession.PermissionDelegate{
         return mHistoryStore;
     }
 
+    public LocalSuggestionIndex getSuggestionIndex() {
+        return mSuggestionIndex;
+    }
+
+    public DomainAutocompleteIndex getDomainAutocompleteIndex() {
+        return mDomainAutocompleteIndex;
+    }
+
     public TrackingProtectionStore getTrackingProtectionStore() {
         return mTrackingProtectionStore;
     }
@@ -13,8 +13,6 @@ import org.mozilla.vrbrowser.browser.SettingsStore;
 import org.mozilla.vrbrowser.utils.SystemUtils;
 
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
 
 class SessionUtils {
@@ -25,59 +23,66 @@ class SessionUtils {
         return url != null && (url.startsWith("about:") || url.startsWith("data:"));
     }
 
-    public static void vrPrefsWorkAround(Context aContext, Bundle aExtras) {
+    /**
+     * Writes the Gecko prefs FxR needs to the profile user.js, if they changed since the last launch.
+     */
+    public static UserPrefs.Update vrPrefsWorkAround(Context aContext, Bundle aExtras) {
         File path = GeckoProfile.initFromArgs(aContext, null).getDir();
-        String prefFileName = path.getAbsolutePath() + File.separator + "user.js";
-        Log.i(LOGTAG, "Creating file: " + prefFileName);
-        try (FileOutputStream out = new FileOutputStream(prefFileName)) {
-            out.write("pref(\"dom.vr.enabled\", true);\n".getBytes());
-            out.write("pref(\"dom.vr.external.enabled\", true);\n".getBytes());
-            out.write("pref(\"dom.vr.webxr.enabled\", true);\n".getBytes());
-            out.write("pref(\"webgl.enable-surface-texture\", true);\n".getBytes());
-            // Enable MultiView draft extension
-            out.write("pref(\"webgl.enable-draft-extensions\", true);\n".getBytes());
-            out.write("pref(\"apz.allow_double_tap_zooming\", false);\n".getBytes());
-            out.write("pref(\"dom.webcomponents.customelements.enabled\", true);\n".getBytes());
-            out.write("pref(\"javascript.options.ion\", true);\n".getBytes());
-            out.write("pref(\"media.webspeech.synth.enabled\", false);\n".getBytes());
-            // Prevent autozoom when giving a form field focus.
-            out.write("pref(\"formhelper.autozoom\", false);\n".getBytes());
-            // Disable WebRender until it works with FxR
-            out.write("pref(\"gfx.webrender.force-disabled\", true);\n".getBytes());
-            out.write("pref(\"signon.rememberSignons\", false);\n".getBytes());
-            // Disable web extension process until it is able to restart.
-            out.write("pref(\"extensions.webextensions.remote\", false);\n".getBytes());
-            if (BuildConfig.DEBUG) {
-                int processCount = SettingsStore.getInstance(aContext).isMultiE10s() ? 3 : 1;
-                out.write(("pref(\"dom.ipc.processCount\", " + processCount + ");\n").getBytes());
-            }
-            int msaa = SettingsStore.getInstance(aContext).getMSAALevel();
-            if (msaa > 0) {
-                int msaaLevel = msaa == 2 ? 4 : 2;
-                out.write(("pref(\"webgl.msaa-samples\"," + msaaLevel + ");\n").getBytes());
-                out.write("pref(\"webgl.msaa-force\", true);\n".getBytes());
-            } else {
-                out.write("pref(\"webgl.msaa-force\", false);\n".getBytes());
-            }
-            addOptionalPref(out, "dom.vr.require-gesture", aExtras);
-            addOptionalPref(out, "privacy.reduceTimerPrecision", aExtras);
-            if (aExtras != null && aExtras.getBoolean("media.autoplay.enabled", false)) {
-                // Enable playing audios without gesture (used for gfx automated testing)
-                out.write("pref(\"media.autoplay.enabled.user-gestures-needed\", false);\n".getBytes());
-                out.write("pref(\"media.autoplay.enabled.ask-permission\", false);\n".getBytes());
-                out.write("pref(\"media.autoplay.default\", 0);\n".getBytes());
-            }
-        } catch (FileNotFoundException e) {
-            Log.e(LOGTAG, "Unable to create file: '" + prefFileName + "' got exception: " + e.toString());
+        File prefFile = new File(path, "user.js");
+        try {
+            UserPrefs.Update update = getVRPrefs(aContext, aExtras).writeIfChanged(prefFile);
+            Log.i(LOGTAG, "Prefs file " + prefFile.getAbsolutePath() + ": " + update);
+            return update;
+
         } catch (IOException e) {
-            Log.e(LOGTAG, "Unable to write file: '" + prefFileName + "' got exception: " + e.toString());
+            Log.e(LOGTAG, "Unable to write file: '" + prefFile.getAbsolutePath() + "' got exception: " + e.toString());
+            return UserPrefs.Update.FAILED;
+        }
+    }
+
+    static UserPrefs getVRPrefs(Context aContext, Bundle aExtras) {
+        UserPrefs prefs = new UserPrefs()
+                .set("dom.vr.enabled", true)
+                .set("dom.vr.external.enabled", true)
+                .set("dom.vr.webxr.enabled", true)
+                .set("webgl.enable-surface-texture", true)
+                // Enable MultiView draft extension
+                .set("webgl.enable-draft-extensions", true)
+                .set("apz.allow_double_tap_zooming", false)
+                .set("dom.webcomponents.customelements.enabled", true)
+                .set("javascript.options.ion", true)
+                .set("media.webspeech.synth.enabled", false)
+                // Prevent autozoom when giving a form field focus.
+                .set("formhelper.autozoom", false)
+                // Disable WebRender until it works with FxR
+                .set("gfx.webrender.force-disabled", true)
+                .set("signon.rememberSignons", false)
+                // Disable web extension process until it is able to restart.
+                .set("extensions.webextensions.remote", false);
+        if (BuildConfig.DEBUG) {
+            prefs.set("dom.ipc.processCount", SettingsStore.getInstance(aContext).isMultiE10s() ? 3 : 1);
+        }
+        int msaa = SettingsStore.getInstance(aContext).getMSAALevel();
+        if (msaa > 0) {
+            prefs.set("webgl.msaa-samples", msaa == 2 ? 4 : 2);
+            prefs.set("webgl.msaa-force", true);
+        } else {
+            prefs.set("webgl.msaa-force", false);
+        }
+        addOptionalPref(prefs, "dom.vr.require-gesture", aExtras);
+        addOptionalPref(prefs, "privacy.reduceTimerPrecision", aExtras);
+        if (aExtras != null && aExtras.getBoolean("media.autoplay.enabled", false)) {
+            // Enable playing audios without gesture (used for gfx automated testing)
+            prefs.set("media.autoplay.enabled.user-gestures-needed", false);
+            prefs.set("media.autoplay.enabled.ask-permission", false);
+            prefs.set("media.autoplay.default", 0);
         }
+        return prefs;
     }
 
-    private static void addOptionalPref(FileOutputStream out, String aKey, Bundle aExtras) throws IOException {
+    private static void addOptionalPref(UserPrefs aPrefs, String aKey, Bundle aExtras) {
         if (aExtras != null && aExtras.containsKey(aKey)) {
-            boolean value = aExtras.getBoolean(aKey);
-            out.write(String.format("pref(\"%s\", %s);\n", aKey, value ? "true" : "false").getBytes());
+            aPrefs.set(aKey, aExtras.getBoolean(aKey));
         }
     }
 }
@@ -0,0 +1,117 @@
+package org.mozilla.vrbrowser.browser.engine;
+
+import androidx.annotation.NonNull;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Set of Gecko prefs written to the profile user.js file.
+ *
+ * The prefs are built in memory and the file is only written when its content differs, as Gecko
+ * reads it on every launch but it rarely changes. The new content is written to a temporary file
+ * that replaces the old one, so a crash while writing never leaves a truncated user.js.
+ */
+public class UserPrefs {
+
+    public enum Update {
+        UNCHANGED,
+        WRITTEN,
+        FAILED
+    }
+
+    static final String TEMP_SUFFIX = ".tmp";
+
+    private final Map<String, String> mPrefs = new LinkedHashMap<>();
+
+    public UserPrefs set(@NonNull String aName, boolean aValue) {
+        mPrefs.put(aName, aValue ? "true" : "false");
+        return this;
+    }
+
+    public UserPrefs set(@NonNull String aName, int aValue) {
+        mPrefs.put(aName, String.valueOf(aValue));
+        return this;
+    }
+
+    public boolean contains(@NonNull String aName) {
+        return mPrefs.containsKey(aName);
+    }
+
+    /**
+     * Returns the user.js content, one pref per line in the order they were first set.
+     */
+    @NonNull
+    public String serialize() {
+        StringBuilder builder = new StringBuilder();
+        for (Map.Entry<String, String> pref : mPrefs.entrySet()) {
+            builder.append("pref(\"").append(pref.getKey()).append("\", ").append(pref.getValue()).append(");\n");
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Writes the prefs to a file unless it already has the same content.
+     */
+    @NonNull
+    public Update writeIfChanged(@NonNull File aFile) throws IOException {
+        byte[] content = serialize().getBytes(StandardCharsets.UTF_8);
+        if (aFile.exists() && aFile.length() == content.length && MessageDigest.isEqual(hash(content), hash(aFile))) {
+            return Update.UNCHANGED;
+        }
+
+        File temp = new File(aFile.getPath() + TEMP_SUFFIX);
+        try (FileOutputStream file = new FileOutputStream(temp);
+             OutputStream out = new BufferedOutputStream(file)) {
+            out.write(content);
+            out.flush();
+            file.getFD().sync();
+
+        } catch (IOException e) {
+            temp.delete();
+            throw e;
+        }
+        if (!temp.renameTo(aFile)) {
+            temp.delete();
+            throw new IOException("Unable to replace " + aFile.getName());
+        }
+        return Update.WRITTEN;
+    }
+
+    private static byte[] hash(@NonNull byte[] aContent) {
+        MessageDigest digest = newDigest();
+        return digest.digest(aContent);
+    }
+
+    private static byte[] hash(@NonNull File aFile) throws IOException {
+        MessageDigest digest = newDigest();
+        byte[] buffer = new byte[4096];
+        try (InputStream in = new FileInputStream(aFile)) {
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return digest.digest();
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform must support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+}
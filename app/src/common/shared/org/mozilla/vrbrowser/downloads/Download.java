@@ -3,6 +3,7 @@ package org.mozilla.vrbrowser.downloads;
 import android.app.DownloadManager;
 import android.content.Context;
 import android.database.Cursor;
+import android.text.format.DateUtils;
 
 import androidx.annotation.IntDef;
 import androidx.annotation.NonNull;
@@ -13,6 +14,7 @@ import org.mozilla.vrbrowser.utils.LocaleUtils;
 
 import java.io.File;
 import java.net.URL;
+import java.util.Objects;
 
 public class Download {
 
@@ -39,6 +41,9 @@ public class Download {
     private @Status int mStatus;
     private long mLastModified;
     private String mReason;
+    private long mBytesPerSecond;
+    private long mEtaMillis = -1;
+    private boolean mIsStalled;
 
     public static Download from(Cursor cursor) {
         Download download = new Download();
@@ -75,6 +80,66 @@ public class Download {
         return download;
     }
 
+    /**
+     * Creates a download for a task of the in-app engine. Engine downloads use negative ids so
+     * they don't collide with the DownloadManager ones.
+     */
+    public static Download from(@NonNull SegmentedDownloadEngine.Task task) {
+        Download download = new Download();
+        download.mId = -task.getId();
+        download.mUri = task.getUrl();
+        switch (task.getState()) {
+            case SegmentedDownloadEngine.RUNNING:
+                download.mStatus = RUNNING;
+                break;
+            case SegmentedDownloadEngine.FAILED:
+                download.mStatus = FAILED;
+                break;
+            case SegmentedDownloadEngine.PAUSED:
+                download.mStatus = PAUSED;
+                break;
+            case SegmentedDownloadEngine.QUEUED:
+                download.mStatus = PENDING;
+                break;
+            case SegmentedDownloadEngine.COMPLETED:
+                download.mStatus = SUCCESSFUL;
+                break;
+            default:
+                download.mStatus = UNAVAILABLE;
+        }
+        download.mMediaType = task.getContentType();
+        download.mTitle = task.getTitle();
+        download.mOutputFile = "file://" + task.getOutputFile().getAbsolutePath();
+        download.mSizeBytes = task.getTotalBytes();
+        download.mDownloadedBytes = task.getDownloadedBytes();
+        download.mLastModified = task.getLastModified();
+        download.mReason = task.getError();
+        return download;
+    }
+
+    /**
+     * Returns a copy with the given transfer rate, see {@link DownloadRateEstimator}.
+     */
+    @NonNull
+    Download withRate(long bytesPerSecond, long etaMillis, boolean isStalled) {
+        Download download = new Download();
+        download.mId = mId;
+        download.mUri = mUri;
+        download.mMediaType = mMediaType;
+        download.mSizeBytes = mSizeBytes;
+        download.mDownloadedBytes = mDownloadedBytes;
+        download.mOutputFile = mOutputFile;
+        download.mTitle = mTitle;
+        download.mDescription = mDescription;
+        download.mStatus = mStatus;
+        download.mLastModified = mLastModified;
+        download.mReason = mReason;
+        download.mBytesPerSecond = bytesPerSecond;
+        download.mEtaMillis = etaMillis;
+        download.mIsStalled = isStalled;
+        return download;
+    }
+
     public long getId() {
         return mId;
     }
@@ -135,7 +200,7 @@ public class Download {
     }
 
     public double getProgress() {
-        if (mSizeBytes != -1) {
+        if (mSizeBytes > 0) {
             return mDownloadedBytes*100.0/mSizeBytes;
         }
         return 0;
@@ -160,32 +225,102 @@ public class Download {
         return mReason;
     }
 
+    /**
+     * @return The smoothed transfer rate, 0 when the download isn't running.
+     */
+    public long getBytesPerSecond() {
+        return mBytesPerSecond;
+    }
+
+    /**
+     * @return The estimated time left in milliseconds, or -1 if it's unknown.
+     */
+    public long getEtaMillis() {
+        return mEtaMillis;
+    }
+
+    /**
+     * @return Whether the download is running but hasn't progressed for a while.
+     */
+    public boolean isStalled() {
+        return mIsStalled;
+    }
+
+    /**
+     * Whether both rows have the same values, so listeners don't need to be notified. The rate
+     * and ETA are left out, they change on every poll and are shown with the next progress.
+     */
+    boolean hasSameState(@NonNull Download other) {
+        return mId == other.mId &&
+                mStatus == other.mStatus &&
+                mSizeBytes == other.mSizeBytes &&
+                mDownloadedBytes == other.mDownloadedBytes &&
+                mLastModified == other.mLastModified &&
+                Objects.equals(mOutputFile, other.mOutputFile) &&
+                Objects.equals(mTitle, other.mTitle) &&
+                Objects.equals(mReason, other.mReason) &&
+                mIsStalled == other.mIsStalled;
+    }
+
+    @NonNull
+    private static String rateString(@NonNull Context context, @NonNull Language language, @NonNull Download download) {
+        if (download.mIsStalled) {
+            return " · " + context.getString(R.string.download_status_stalled);
+
+        } else if (download.mBytesPerSecond <= 0) {
+            return "";
+        }
+
+        String rate;
+        if (download.mBytesPerSecond < MEGABYTE) {
+            rate = String.format(language.getLocale(), "%.2fKb/s", ((double)download.mBytesPerSecond / (double)KILOBYTE));
+
+        } else {
+            rate = String.format(language.getLocale(), "%.2fMB/s", ((double)download.mBytesPerSecond / (double)MEGABYTE));
+        }
+        if (download.mEtaMillis >= 0) {
+            rate += " · " + DateUtils.formatElapsedTime(download.mEtaMillis / 1000);
+        }
+        return " · " + rate;
+    }
+
+    @NonNull
+    private static String sizeString(@NonNull Language language, long aBytes) {
+        if (aBytes < MEGABYTE) {
+            return String.format(language.getLocale(), "%.2fKb", ((double)aBytes / (double)KILOBYTE));
+
+        } else {
+            return String.format(language.getLocale(), "%.2fMB", ((double)aBytes / (double)MEGABYTE));
+        }
+    }
+
     @NonNull
     public static String progressString(@NonNull Context context, @NonNull Download download) {
 
         Language language = LocaleUtils.getDisplayLanguage(context);
         switch (download.mStatus) {
             case Download.RUNNING:
-                if (download.mSizeBytes < MEGABYTE) {
-                    return String.format(language.getLocale(), "%.2f/%.2fKb (%d%%)",
+                String progress;
+                if (download.mSizeBytes <= 0) {
+                    // Unknown length
+                    progress = sizeString(language, download.mDownloadedBytes);
+
+                } else if (download.mSizeBytes < MEGABYTE) {
+                    progress = String.format(language.getLocale(), "%.2f/%.2fKb (%d%%)",
                             ((double)download.mDownloadedBytes / (double)KILOBYTE),
                             ((double)download.mSizeBytes / (double)KILOBYTE),
                             (download.mDownloadedBytes*100)/download.mSizeBytes);
 
                 } else {
-                    return String.format(language.getLocale(), "%.2f/%.2fMB (%d%%)",
+                    progress = String.format(language.getLocale(), "%.2f/%.2fMB (%d%%)",
                             ((double)download.mDownloadedBytes / (double)MEGABYTE),
                             ((double)download.mSizeBytes / (double)MEGABYTE),
                             (download.mDownloadedBytes*100)/download.mSizeBytes);
                 }
+                return progress + rateString(context, language, download);
 
             case Download.SUCCESSFUL:
-                if (download.mSizeBytes < MEGABYTE) {
-                    return String.format(language.getLocale(), "%.2fKb", ((double)download.mSizeBytes / (double)KILOBYTE));
-
-                } else {
-                    return String.format(language.getLocale(), "%.2fMB", ((double)download.mSizeBytes / (double)MEGABYTE));
-                }
+                return sizeString(language, Math.max(download.mSizeBytes, download.mDownloadedBytes));
 
             case Download.FAILED:
                 return context.getString(R.string.download_status_failed);
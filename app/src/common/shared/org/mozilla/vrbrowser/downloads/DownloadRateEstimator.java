@@ -0,0 +1,86 @@
+package org.mozilla.vrbrowser.downloads;
+
+/**
+ * Estimates the transfer rate of a download from its progress samples.
+ *
+ * The rate is an exponential moving average weighted by the time between samples, so irregular
+ * sampling (table notifications, polling backoff, engine updates) doesn't bias it. A download is
+ * stalled when its downloaded bytes haven't changed for {@link #STALL_TIMEOUT} milliseconds.
+ */
+public class DownloadRateEstimator {
+
+    // Samples older than this weigh less than 1/e in the rate
+    static final long TIME_CONSTANT = 3000;
+    public static final long STALL_TIMEOUT = 10000;
+
+    private long mLastBytes = -1;
+    private long mLastTime;
+    private long mLastProgressTime;
+    private double mRate;
+    private boolean mHasRate;
+
+    /**
+     * Adds a sample of the downloaded bytes.
+     * @param downloadedBytes The bytes downloaded so far.
+     * @param time The sample time in milliseconds, from a monotonic clock.
+     * @return The bytes downloaded since the previous sample.
+     */
+    public long addSample(long downloadedBytes, long time) {
+        if (mLastBytes < 0 || downloadedBytes < mLastBytes) {
+            // First sample, or the download started over
+            mLastBytes = downloadedBytes;
+            mLastTime = time;
+            mLastProgressTime = time;
+            mRate = 0;
+            mHasRate = false;
+            return 0;
+        }
+
+        long elapsed = time - mLastTime;
+        if (elapsed <= 0) {
+            // The bytes are accounted in the next sample
+            return 0;
+        }
+
+        long delta = downloadedBytes - mLastBytes;
+        double rate = delta * 1000.0 / elapsed;
+        if (mHasRate) {
+            double alpha = 1 - Math.exp(-(double) elapsed / TIME_CONSTANT);
+            mRate += alpha * (rate - mRate);
+
+        } else {
+            mRate = rate;
+            mHasRate = true;
+        }
+        if (delta > 0) {
+            mLastProgressTime = time;
+        }
+        mLastBytes = downloadedBytes;
+        mLastTime = time;
+
+        return delta;
+    }
+
+    /**
+     * @return The smoothed rate, 0 until there are two samples.
+     */
+    public long getBytesPerSecond() {
+        return mHasRate ? Math.round(mRate) : 0;
+    }
+
+    /**
+     * @return The estimated time left in milliseconds, or -1 if it's unknown.
+     */
+    public long getEtaMillis(long totalBytes) {
+        long rate = getBytesPerSecond();
+        if (totalBytes <= 0 || rate <= 0) {
+            return -1;
+        }
+        long remaining = Math.max(0, totalBytes - mLastBytes);
+        return (long) Math.ceil(remaining * 1000.0 / rate);
+    }
+
+    public boolean isStalled(long time) {
+        return mLastBytes >= 0 && time - mLastProgressTime >= STALL_TIMEOUT;
+    }
+}
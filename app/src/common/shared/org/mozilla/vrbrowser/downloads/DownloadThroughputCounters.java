@@ -0,0 +1,80 @@
+package org.mozilla.vrbrowser.downloads;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Aggregate download counters since the app started. They are updated from the downloads
+ * background thread and can be read from any thread.
+ */
+public class DownloadThroughputCounters {
+
+    private final AtomicLong mBytesDownloaded = new AtomicLong();
+    private final AtomicLong mCurrentBytesPerSecond = new AtomicLong();
+    private final AtomicLong mPeakBytesPerSecond = new AtomicLong();
+    private final AtomicLong mActiveDownloads = new AtomicLong();
+    private final AtomicLong mStalledDownloads = new AtomicLong();
+    private final AtomicLong mStallEvents = new AtomicLong();
+    private final AtomicLong mCompletedDownloads = new AtomicLong();
+    private final AtomicLong mFailedDownloads = new AtomicLong();
+
+    public void addBytes(long bytes) {
+        if (bytes > 0) {
+            mBytesDownloaded.addAndGet(bytes);
+        }
+    }
+
+    /**
+     * Sets the state of the downloads in progress.
+     * @param bytesPerSecond The sum of the rates of the active downloads.
+     */
+    public void setActive(long bytesPerSecond, int activeDownloads, int stalledDownloads) {
+        mCurrentBytesPerSecond.set(bytesPerSecond);
+        mPeakBytesPerSecond.accumulateAndGet(bytesPerSecond, Math::max);
+        mActiveDownloads.set(activeDownloads);
+        mStalledDownloads.set(stalledDownloads);
+    }
+
+    public void onStalled() {
+        mStallEvents.incrementAndGet();
+    }
+
+    public void onCompleted() {
+        mCompletedDownloads.incrementAndGet();
+    }
+
+    public void onFailed() {
+        mFailedDownloads.incrementAndGet();
+    }
+
+    public long getBytesDownloaded() {
+        return mBytesDownloaded.get();
+    }
+
+    public long getCurrentBytesPerSecond() {
+        return mCurrentBytesPerSecond.get();
+    }
+
+    public long getPeakBytesPerSecond() {
+        return mPeakBytesPerSecond.get();
+    }
+
+    public long getActiveDownloads() {
+        return mActiveDownloads.get();
+    }
+
+    public long getStalledDownloads() {
+        return mStalledDownloads.get();
+    }
+
+    public long getStallEvents() {
+        return mStallEvents.get();
+    }
+
+    public long getCompletedDownloads() {
+        return mCompletedDownloads.get();
+    }
+
+    public long getFailedDownloads() {
+        return mFailedDownloads.get();
+    }
+}
@@ -5,94 +5,162 @@ import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
+import android.database.ContentObserver;
 import android.database.Cursor;
 import android.net.Uri;
 import android.os.Environment;
 import android.os.Handler;
 import android.os.Looper;
+import android.os.SystemClock;
 import android.util.Log;
 import android.webkit.URLUtil;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import org.mozilla.vrbrowser.VRBrowserApplication;
 import org.mozilla.vrbrowser.browser.SettingsStore;
 import org.mozilla.vrbrowser.utils.UrlUtils;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.ScheduledThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
-
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps an in-memory copy of the DownloadManager table that is updated when the table changes,
+ * instead of reading the whole table periodically. Listeners receive the changed rows.
+ *
+ * Downloads can also go through the in-app {@link SegmentedDownloadEngine} when it's enabled in
+ * the settings. Those downloads use negative ids and are pushed by the engine instead of read from
+ * the table.
+ *
+ * The table is only read from the background thread. The UI thread keeps its own copy, updated with
+ * the same changes the listeners receive, so it never has to read the table.
+ */
 public class DownloadsManager {
 
     private static final String LOGTAG = DownloadsManager.class.getSimpleName();
 
-    private static final int REFRESH_INTERVAL = 100;
+    // The DownloadProvider notifies the changes of our downloads with their id appended.
+    private static final Uri DOWNLOADS_CONTENT_URI = Uri.parse("content://downloads/my_downloads");
+
+    // The progress of the active downloads is polled while there are listeners, as the provider
+    // throttles its notifications. The interval backs off while the progress is slow.
+    private static final long MIN_REFRESH_INTERVAL = 250;
+    private static final long MAX_REFRESH_INTERVAL = 2000;
+
+    private static final String ENGINE_STATE_DIR = "downloads";
+
+    // Downloads whose files are checked at startup before yielding to other background tasks
+    private static final int RECONCILE_BATCH_SIZE = 50;
+
+    private static final int ACTIVE_STATUS = Download.RUNNING | Download.PAUSED | Download.PENDING;
 
     public interface DownloadsListener {
-        default void onDownloadsUpdate(@NonNull List<Download> downloads) {}
+        default void onDownloadsChanged(@NonNull List<Download> changed, @NonNull List<Long> removed) {}
         default void onDownloadCompleted(@NonNull Download download) {}
         default void onDownloadError(@NonNull String error, @NonNull String file) {}
+        default void onDownloadStalled(@NonNull Download download) {}
     }
 
     private Handler mMainHandler;
+    private Handler mBackgroundHandler;
     private Context mContext;
     private List<DownloadsListener> mListeners;
     private DownloadManager mDownloadManager;
-    private ScheduledThreadPoolExecutor mExecutor;
-    private ScheduledFuture<?> mFuture;
+    private ContentObserver mDownloadsObserver;
+    private volatile SegmentedDownloadEngine mEngine;
+    private volatile boolean mHasListeners;
+    // Copy of the downloads for the UI thread, empty until the table is loaded.
+    private Map<Long, Download> mSnapshot;
+    private boolean mIsSnapshotLoaded;
+    private DownloadThroughputCounters mCounters;
+
+    // Only accessed from the background thread
+    private Map<Long, Download> mDownloads;
+    private boolean mIsLoaded;
+    private boolean mFullRefreshPending;
+    private Set<Long> mPendingRefreshIds;
+    private boolean mIsPolling;
+    private long mRefreshInterval;
+    private boolean mIsEngineRestored;
+    private boolean mIsReconciling;
+    private Map<Long, DownloadRateEstimator> mEstimators;
 
     public DownloadsManager(@NonNull Context context) {
         mMainHandler = new Handler(Looper.getMainLooper());
+        mBackgroundHandler = ((VRBrowserApplication)context.getApplicationContext()).getExecutors().backgroundThread();
         mContext = context;
         mListeners = new ArrayList<>();
+        mSnapshot = new LinkedHashMap<>();
         mDownloadManager = (DownloadManager) mContext.getSystemService(Context.DOWNLOAD_SERVICE);
-        mExecutor = new ScheduledThreadPoolExecutor(1);
+        mDownloads = new LinkedHashMap<>();
+        mPendingRefreshIds = new HashSet<>();
+        mEstimators = new HashMap<>();
+        mCounters = new DownloadThroughputCounters();
+        mRefreshInterval = MIN_REFRESH_INTERVAL;
+        mDownloadsObserver = new ContentObserver(mBackgroundHandler) {
+            @Override
+            public void onChange(boolean selfChange) {
+                onChange(selfChange, null);
+            }
+
+            @Override
+            public void onChange(boolean selfChange, @Nullable Uri uri) {
+                long id = getDownloadId(uri);
+                if (id >= 0 && mIsLoaded && mDownloads.containsKey(id)) {
+                    scheduleRefresh(id);
+
+                } else {
+                    scheduleFullRefresh();
+                }
+            }
+        };
+        mEngine = createEngine();
+    }
+
+    private SegmentedDownloadEngine createEngine() {
+        return new SegmentedDownloadEngine(new File(mContext.getFilesDir(), ENGINE_STATE_DIR), mEngineListener);
     }
 
     public  void init() {
+        if (mEngine.isShutdown()) {
+            // The activity was recreated, the downloads resume from their saved state
+            mEngine = createEngine();
+            mIsEngineRestored = false;
+        }
         mContext.registerReceiver(mDownloadReceiver, new IntentFilter(DownloadManager.ACTION_DOWNLOAD_COMPLETE));
-        List<Download> downloads = getDownloads();
-        downloads.forEach(download -> {
-            if (!new File(UrlUtils.stripProtocol(download.getOutputFile())).exists()) {
-                mDownloadManager.remove(download.getId());
-            }
-        });
+        mBackgroundHandler.post(this::restoreEngineDownloads);
+        mContext.getContentResolver().registerContentObserver(DOWNLOADS_CONTENT_URI, true, mDownloadsObserver);
+        mBackgroundHandler.post(this::startReconciliation);
     }
 
     public void end() {
         mContext.unregisterReceiver(mDownloadReceiver);
+        mContext.getContentResolver().unregisterContentObserver(mDownloadsObserver);
+        mBackgroundHandler.post(this::stopPolling);
+        mEngine.shutdown();
     }
 
     public void addListener(@NonNull DownloadsListener listener) {
         mListeners.add(listener);
         if (mListeners.size() == 1) {
-            scheduleUpdates();
+            mHasListeners = true;
+            mBackgroundHandler.post(this::startPolling);
         }
     }
 
     public void removeListener(@NonNull DownloadsListener listener) {
         mListeners.remove(listener);
         if (mListeners.size() == 0) {
-            stopUpdates();
-        }
-    }
-
-    private void scheduleUpdates() {
-        if (mFuture != null) {
-            // Already scheduled
-            return;
-        }
-        mFuture = mExecutor.scheduleAtFixedRate(mDownloadUpdateTask, 0, REFRESH_INTERVAL, TimeUnit.MILLISECONDS);
-    }
-
-    private void stopUpdates() {
-        if (mFuture != null) {
-            mFuture.cancel(true);
-            mFuture = null;
+            mHasListeners = false;
+            mBackgroundHandler.post(this::stopPolling);
         }
     }
 
@@ -102,6 +170,11 @@ public class DownloadsManager {
             return;
         }
 
+        if (SettingsStore.getInstance(mContext).isSegmentedDownloadsEnabled()) {
+            startEngineDownload(job);
+            return;
+        }
+
         Uri url = Uri.parse(job.getUri());
         DownloadManager.Request request = new DownloadManager.Request(url);
         request.setTitle(job.getTitle());
@@ -121,8 +194,35 @@ public class DownloadsManager {
             request.setDestinationUri(Uri.parse(outputPath));
         }
 
-        mDownloadManager.enqueue(request);
-        scheduleUpdates();
+        long id = mDownloadManager.enqueue(request);
+        mBackgroundHandler.post(() -> {
+            scheduleRefresh(id);
+            startPolling();
+        });
+    }
+
+    private void startEngineDownload(@NonNull DownloadJob job) {
+        File outputFile;
+        if (SettingsStore.getInstance(mContext).getDownloadsStorage() == SettingsStore.EXTERNAL) {
+            File outputFolder = Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_DOWNLOADS);
+            outputFile = new File(outputFolder, job.getFilename());
+
+        } else {
+            String outputPath = getOutputPathForJob(job);
+            if (outputPath == null) {
+                notifyDownloadError("Cannot create output file", job.getFilename());
+                return;
+            }
+            outputFile = new File(UrlUtils.stripProtocol(outputPath));
+        }
+
+        mBackgroundHandler.post(() -> {
+            long id = mEngine.enqueue(job.getUri(), outputFile, job.getTitle(), job.getContentType());
+            SegmentedDownloadEngine.Task task = mEngine.getTask(id);
+            if (task != null) {
+                updateEngineDownload(Download.from(task));
+            }
+        });
     }
 
     @Nullable
@@ -137,33 +237,164 @@ public class DownloadsManager {
     }
 
     public void removeDownload(long downloadId, boolean deleteFiles) {
-        Download download = getDownload(downloadId);
-        if (download != null) {
-            if (!deleteFiles) {
-                File file = new File(UrlUtils.stripProtocol(download.getOutputFile()));
-                if (file.exists()) {
-                    File newFile = new File(UrlUtils.stripProtocol(download.getOutputFile().concat(".bak")));
-                    file.renameTo(newFile);
-                    mDownloadManager.remove(downloadId);
-                    newFile.renameTo(file);
+        mBackgroundHandler.post(() -> removeDownloads(new long[] { downloadId }, deleteFiles));
+    }
 
-                } else {
-                    mDownloadManager.remove(downloadId);
-                }
+    public void removeAllDownloads(boolean deleteFiles) {
+        mBackgroundHandler.post(() -> {
+            if (!mIsLoaded) {
+                refresh(null);
+            }
+            removeDownloads(mDownloads.keySet().stream().mapToLong(Long::longValue).toArray(), deleteFiles);
+        });
+    }
 
-            } else {
-                mDownloadManager.remove(downloadId);
+    /**
+     * Returns the aggregate download counters, which can be read from any thread.
+     */
+    @NonNull
+    public DownloadThroughputCounters getThroughputCounters() {
+        return mCounters;
+    }
+
+    /**
+     * Returns the download with the given id, or null if it doesn't exist or the table hasn't been
+     * loaded yet. Must be called from the UI thread.
+     */
+    @Nullable
+    public Download getDownload(long downloadId) {
+        if (downloadId < 0) {
+            SegmentedDownloadEngine.Task task = mEngine.getTask(-downloadId);
+            return task != null ? Download.from(task) : null;
+        }
+
+        return mSnapshot.get(downloadId);
+    }
+
+    /**
+     * Returns the known downloads, which are empty until the table is loaded. Listeners receive
+     * all the downloads once it's loaded. Must be called from the UI thread.
+     */
+    @NonNull
+    public List<Download> getDownloads() {
+        return new ArrayList<>(mSnapshot.values());
+    }
+
+    /**
+     * Whether the downloads have been loaded, must be called from the UI thread.
+     */
+    public boolean isLoaded() {
+        return mIsSnapshotLoaded;
+    }
+
+    private BroadcastReceiver mDownloadReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            String action = intent.getAction();
+            long downloadId = intent.getLongExtra(DownloadManager.EXTRA_DOWNLOAD_ID, 0);
+
+            if (DownloadManager.ACTION_DOWNLOAD_COMPLETE.equals(action)) {
+                mBackgroundHandler.post(() -> {
+                    refresh(new long[] { downloadId });
+                    Download download = mDownloads.get(downloadId);
+                    if (download != null) {
+                        mMainHandler.post(() -> notifyDownloadCompleted(download));
+                    }
+                });
             }
         }
-        notifyDownloadsUpdate();
+    };
+
+    private SegmentedDownloadEngine.Listener mEngineListener = new SegmentedDownloadEngine.Listener() {
+        @Override
+        public void onTaskUpdated(@NonNull SegmentedDownloadEngine.Task task) {
+            Download download = Download.from(task);
+            mBackgroundHandler.post(() -> updateEngineDownload(download));
+        }
+
+        @Override
+        public void onTaskCompleted(@NonNull SegmentedDownloadEngine.Task task) {
+            Download download = Download.from(task);
+            mBackgroundHandler.post(() -> {
+                updateEngineDownload(download);
+                mMainHandler.post(() -> notifyDownloadCompleted(download));
+            });
+        }
+    };
+
+    private static long getDownloadId(@Nullable Uri uri) {
+        if (uri == null) {
+            return -1;
+        }
+        String segment = uri.getLastPathSegment();
+        if (segment == null || segment.isEmpty() || !segment.chars().allMatch(Character::isDigit)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(segment);
+
+        } catch (NumberFormatException e) {
+            return -1;
+        }
     }
 
-    public void removeAllDownloads(boolean deleteFiles) {
-        getDownloads().forEach(download -> removeDownload(download.getId(), deleteFiles));
+    // Background thread
+
+    private Runnable mRefreshTask = this::refreshPending;
+
+    private Runnable mPollTask = this::poll;
+
+    private void restoreEngineDownloads() {
+        if (mIsEngineRestored) {
+            return;
+        }
+        mIsEngineRestored = true;
+        mEngine.restore();
+        mEngine.getTasks().forEach(task -> mDownloads.put(-task.getId(), Download.from(task)));
+    }
+
+    /**
+     * Removes the downloads whose files are gone. The files are checked in batches so other
+     * background tasks aren't delayed, and the downloads are notified once at the end.
+     */
+    private void startReconciliation() {
+        if (mIsReconciling) {
+            return;
+        }
+        mIsReconciling = true;
+
+        List<Download> downloads = new ArrayList<>();
+        Cursor c = mDownloadManager.query(new DownloadManager.Query());
+        if (c != null) {
+            while (c.moveToNext()) {
+                downloads.add(Download.from(c));
+            }
+            c.close();
+        }
+        reconcile(downloads, 0);
+    }
+
+    private void reconcile(@NonNull List<Download> downloads, int start) {
+        int end = Math.min(start + RECONCILE_BATCH_SIZE, downloads.size());
+        long[] missing = downloads.subList(start, end).stream()
+                .filter(download -> !new File(UrlUtils.stripProtocol(download.getOutputFile())).exists())
+                .mapToLong(Download::getId)
+                .toArray();
+        if (missing.length > 0) {
+            mDownloadManager.remove(missing);
+        }
+
+        if (end < downloads.size()) {
+            mBackgroundHandler.post(() -> reconcile(downloads, end));
+
+        } else {
+            mIsReconciling = false;
+            scheduleFullRefresh();
+        }
     }
 
     @Nullable
-    public Download getDownload(long downloadId) {
+    private Download queryDownload(long downloadId) {
         Download download = null;
 
         DownloadManager.Query query = new DownloadManager.Query();
@@ -177,58 +408,324 @@ public class DownloadsManager {
         return download;
     }
 
-    public List<Download> getDownloads() {
-        List<Download> downloads = new ArrayList<>();
+    /**
+     * Removes the given downloads, removing the DownloadManager ones with a single call.
+     */
+    private void removeDownloads(@NonNull long[] ids, boolean deleteFiles) {
+        List<Long> removed = new ArrayList<>();
+        List<Download> tableDownloads = new ArrayList<>();
+        for (long id : ids) {
+            if (id < 0) {
+                mEngine.remove(-id, deleteFiles);
+                if (mDownloads.remove(id) != null) {
+                    removed.add(id);
+                }
+                continue;
+            }
+            Download download = mDownloads.get(id);
+            if (download == null) {
+                // Not loaded yet
+                download = queryDownload(id);
+            }
+            if (download != null) {
+                tableDownloads.add(download);
+            }
+        }
+
+        if (!tableDownloads.isEmpty()) {
+            // DownloadManager deletes the files of the removed downloads, keep them aside if needed.
+            Map<File, File> keptFiles = new HashMap<>();
+            if (!deleteFiles) {
+                for (Download download : tableDownloads) {
+                    File file = new File(UrlUtils.stripProtocol(download.getOutputFile()));
+                    if (file.exists()) {
+                        File newFile = new File(UrlUtils.stripProtocol(download.getOutputFile().concat(".bak")));
+                        if (file.renameTo(newFile)) {
+                            keptFiles.put(newFile, file);
+                        }
+                    }
+                }
+            }
+            mDownloadManager.remove(tableDownloads.stream().mapToLong(Download::getId).toArray());
+            keptFiles.forEach(File::renameTo);
+
+            for (Download download : tableDownloads) {
+                if (mDownloads.remove(download.getId()) != null) {
+                    removed.add(download.getId());
+                }
+            }
+        }
+
+        if (!removed.isEmpty()) {
+            removed.forEach(mEstimators::remove);
+            updateActiveCounters();
+            publish(Collections.emptyList(), removed);
+        }
+    }
+
+    private void updateEngineDownload(@NonNull Download download) {
+        if (mEngine.getTask(-download.getId()) == null) {
+            // Removed while the update was queued
+            return;
+        }
+        Download previous = mDownloads.get(download.getId());
+        Download measured = measure(previous, download, SystemClock.elapsedRealtime());
+        mDownloads.put(measured.getId(), measured);
+        if (previous == null || !previous.hasSameState(measured)) {
+            publish(Collections.singletonList(measured), Collections.emptyList());
+        }
+        updateActiveCounters();
+    }
+
+    /**
+     * Feeds the progress of a download to its rate estimator and returns a copy with the estimated
+     * rate. The estimators only live while the downloads are running.
+     */
+    @NonNull
+    private Download measure(@Nullable Download previous, @NonNull Download download, long now) {
+        long id = download.getId();
+        if (download.getStatus() != Download.RUNNING) {
+            DownloadRateEstimator estimator = mEstimators.remove(id);
+            if (estimator != null) {
+                mCounters.addBytes(estimator.addSample(download.getDownloadedBytes(), now));
+            }
+            if (previous != null && previous.getStatus() != download.getStatus()) {
+                if (download.getStatus() == Download.SUCCESSFUL) {
+                    mCounters.onCompleted();
+
+                } else if (download.getStatus() == Download.FAILED) {
+                    mCounters.onFailed();
+                }
+            }
+            return download;
+        }
+
+        DownloadRateEstimator estimator = mEstimators.get(id);
+        if (estimator == null) {
+            estimator = new DownloadRateEstimator();
+            mEstimators.put(id, estimator);
+        }
+        mCounters.addBytes(estimator.addSample(download.getDownloadedBytes(), now));
+        boolean isStalled = estimator.isStalled(now);
+        Download measured = download.withRate(
+                estimator.getBytesPerSecond(),
+                estimator.getEtaMillis(download.getSizeBytes()),
+                isStalled);
+        if (isStalled && (previous == null || !previous.isStalled())) {
+            mCounters.onStalled();
+            mMainHandler.post(() -> notifyDownloadStalled(measured));
+        }
+        return measured;
+    }
+
+    /**
+     * Samples the running engine downloads, which only report when they progress, so their rate
+     * decays and they are detected as stalled when they stop receiving data.
+     */
+    private void measureEngineDownloads() {
+        long now = SystemClock.elapsedRealtime();
+        List<Download> changed = new ArrayList<>();
+        for (Download download : mDownloads.values()) {
+            if (download.getId() < 0 && download.getStatus() == Download.RUNNING) {
+                Download measured = measure(download, download, now);
+                if (!measured.hasSameState(download)) {
+                    changed.add(measured);
+                }
+            }
+        }
+        if (!changed.isEmpty()) {
+            changed.forEach(download -> mDownloads.put(download.getId(), download));
+            publish(changed, Collections.emptyList());
+        }
+    }
+
+    private void updateActiveCounters() {
+        long bytesPerSecond = 0;
+        int active = 0;
+        int stalled = 0;
+        for (Download download : mDownloads.values()) {
+            if (download.getStatus() == Download.RUNNING) {
+                bytesPerSecond += download.getBytesPerSecond();
+                active++;
+                stalled += download.isStalled() ? 1 : 0;
+            }
+        }
+        mCounters.setActive(bytesPerSecond, active, stalled);
+    }
+
+    private void scheduleRefresh(long downloadId) {
+        mPendingRefreshIds.add(downloadId);
+        mBackgroundHandler.removeCallbacks(mRefreshTask);
+        mBackgroundHandler.post(mRefreshTask);
+    }
+
+    private void scheduleFullRefresh() {
+        mFullRefreshPending = true;
+        mBackgroundHandler.removeCallbacks(mRefreshTask);
+        mBackgroundHandler.post(mRefreshTask);
+    }
+
+    private void refreshPending() {
+        if (mIsReconciling) {
+            // Refreshed once the reconciliation finishes
+            return;
+        }
+        if (mFullRefreshPending || !mIsLoaded) {
+            refresh(null);
 
+        } else if (!mPendingRefreshIds.isEmpty()) {
+            refresh(mPendingRefreshIds.stream().mapToLong(Long::longValue).toArray());
+        }
+        mFullRefreshPending = false;
+        mPendingRefreshIds.clear();
+
+        if (hasActiveDownloads()) {
+            startPolling();
+        }
+    }
+
+    /**
+     * Reads the given downloads, or all of them if ids is null, and notifies the rows that changed.
+     * @return Whether the downloaded bytes of any download changed.
+     */
+    private boolean refresh(@Nullable long[] ids) {
         DownloadManager.Query query = new DownloadManager.Query();
+        if (ids != null) {
+            if (ids.length == 0) {
+                return false;
+            }
+            query.setFilterById(ids);
+        }
+
+        Map<Long, Download> found = new LinkedHashMap<>();
         Cursor c = mDownloadManager.query(query);
+        if (c == null) {
+            return false;
+        }
         while (c.moveToNext()) {
-            downloads.add(Download.from(c));
+            Download download = Download.from(c);
+            found.put(download.getId(), download);
         }
         c.close();
 
-        return downloads;
+        List<Download> changed = new ArrayList<>();
+        List<Long> removed = new ArrayList<>();
+        boolean progressed = false;
+        long now = SystemClock.elapsedRealtime();
+        for (Download row : found.values()) {
+            Download previous = mDownloads.get(row.getId());
+            Download download = measure(previous, row, now);
+            mDownloads.put(download.getId(), download);
+            if (previous == null || !previous.hasSameState(download)) {
+                changed.add(download);
+                progressed |= previous == null || previous.getDownloadedBytes() != download.getDownloadedBytes();
+            }
+        }
+        if (ids == null) {
+            for (Long id : new ArrayList<>(mDownloads.keySet())) {
+                if (id > 0 && !found.containsKey(id)) {
+                    mDownloads.remove(id);
+                    mEstimators.remove(id);
+                    removed.add(id);
+                }
+            }
+        } else {
+            for (long id : ids) {
+                if (!found.containsKey(id) && mDownloads.remove(id) != null) {
+                    mEstimators.remove(id);
+                    removed.add(id);
+                }
+            }
+        }
+        updateActiveCounters();
+
+        boolean wasLoaded = mIsLoaded;
+        mIsLoaded |= ids == null;
+        if (mIsLoaded && !wasLoaded) {
+            // The engine downloads restored before the table was loaded haven't been notified
+            publish(new ArrayList<>(mDownloads.values()), removed);
+
+        } else if (!changed.isEmpty() || !removed.isEmpty()) {
+            publish(changed, removed);
+        }
+
+        return progressed;
     }
 
-    private BroadcastReceiver mDownloadReceiver = new BroadcastReceiver() {
-        @Override
-        public void onReceive(Context context, Intent intent) {
-            String action = intent.getAction();
-            long downloadId = intent.getLongExtra(DownloadManager.EXTRA_DOWNLOAD_ID, 0);
+    /**
+     * Notifies the changes to the UI thread. Nothing is notified until the table is loaded, the
+     * first load notifies all the downloads.
+     */
+    private void publish(@NonNull List<Download> changed, @NonNull List<Long> removed) {
+        if (!mIsLoaded) {
+            return;
+        }
+        mMainHandler.post(() -> notifyDownloadsChanged(changed, removed));
+    }
 
-            if (DownloadManager.ACTION_DOWNLOAD_COMPLETE.equals(action)) {
-                DownloadManager.Query query = new DownloadManager.Query();
-                query.setFilterById(downloadId);
-                Cursor c = mDownloadManager.query(query);
-                if (c.moveToFirst()) {
-                    notifyDownloadsUpdate();
-                    notifyDownloadCompleted(Download.from(c));
-                }
-                c.close();
-            }
+    /**
+     * Whether there are DownloadManager downloads in progress, or running engine downloads whose
+     * rate needs to be sampled.
+     */
+    private boolean hasActiveDownloads() {
+        return mDownloads.values().stream().anyMatch(download -> download.getId() > 0 ?
+                (download.getStatus() & ACTIVE_STATUS) != 0 :
+                download.getStatus() == Download.RUNNING);
+    }
+
+    private void startPolling() {
+        if (!mHasListeners || mIsPolling) {
+            return;
         }
-    };
+        mIsPolling = true;
+        mRefreshInterval = MIN_REFRESH_INTERVAL;
+        mBackgroundHandler.postDelayed(mPollTask, mRefreshInterval);
+    }
+
+    private void stopPolling() {
+        mIsPolling = false;
+        mBackgroundHandler.removeCallbacks(mPollTask);
+    }
 
-    private void notifyDownloadsUpdate() {
-        List<Download> downloads = getDownloads();
-        int filter = Download.RUNNING | Download.PAUSED | Download.PENDING;
-        boolean activeDownloads = downloads.stream().filter(d -> (d.getStatus() & filter) != 0).count()  > 0;
-        mListeners.forEach(listener -> listener.onDownloadsUpdate(downloads));
-        if (!activeDownloads) {
-            stopUpdates();
+    private void poll() {
+        long[] activeIds = mDownloads.values().stream()
+                .filter(download -> download.getId() > 0 && (download.getStatus() & ACTIVE_STATUS) != 0)
+                .mapToLong(Download::getId)
+                .toArray();
+        if (!mHasListeners || !hasActiveDownloads()) {
+            stopPolling();
+            return;
+        }
+
+        measureEngineDownloads();
+        if (refresh(activeIds)) {
+            mRefreshInterval = MIN_REFRESH_INTERVAL;
+
+        } else {
+            mRefreshInterval = Math.min(mRefreshInterval * 2, MAX_REFRESH_INTERVAL);
         }
+        mBackgroundHandler.postDelayed(mPollTask, mRefreshInterval);
+    }
+
+    // UI thread
+
+    private void notifyDownloadsChanged(@NonNull List<Download> changed, @NonNull List<Long> removed) {
+        removed.forEach(mSnapshot::remove);
+        changed.forEach(download -> mSnapshot.put(download.getId(), download));
+        mIsSnapshotLoaded = true;
+        mListeners.forEach(listener -> listener.onDownloadsChanged(changed, removed));
     }
 
     private void notifyDownloadCompleted(@NonNull Download download) {
         mListeners.forEach(listener -> listener.onDownloadCompleted(download));
     }
 
+    private void notifyDownloadStalled(@NonNull Download download) {
+        mListeners.forEach(listener -> listener.onDownloadStalled(download));
+    }
+
     private void notifyDownloadError(@NonNull String error, @NonNull String file) {
         mListeners.forEach(listener -> listener.onDownloadError(error, file));
     }
 
-    private Runnable mDownloadUpdateTask = () -> {
-        mMainHandler.post(this::notifyDownloadsUpdate);
-    };
-
 }
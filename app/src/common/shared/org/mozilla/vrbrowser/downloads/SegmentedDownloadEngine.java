@@ -0,0 +1,672 @@
+package org.mozilla.vrbrowser.downloads;
+
+import androidx.annotation.IntDef;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-app HTTP download engine. Files served with byte ranges are split in segments that are
+ * downloaded in parallel and written at their position in the output file. The segments progress
+ * is saved so downloads resume from where they were after a restart, and a fixed size pool limits
+ * the connections used by all the downloads.
+ *
+ * Every start or resume of a download is a new run, workers of a previous run stop at their next
+ * buffer and a segment is only downloaded by one worker at a time.
+ *
+ * The listener is called from the engine threads.
+ */
+public class SegmentedDownloadEngine {
+
+    public static final int DEFAULT_MAX_CONNECTIONS = 4;
+    public static final int DEFAULT_MAX_SEGMENTS = 4;
+    public static final long DEFAULT_MIN_SEGMENT_SIZE = 1024 * 1024;
+
+    private static final String STATE_EXTENSION = ".download";
+    private static final int STATE_VERSION = 1;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int TIMEOUT = 15000;
+    private static final int MAX_RETRIES = 3;
+    private static final long RETRY_DELAY = 1000;
+    // Segment progress is saved after this many bytes
+    private static final long SAVE_INTERVAL_BYTES = 1024 * 1024;
+    // Progress updates are sent at most this often for every download
+    private static final long PROGRESS_INTERVAL = 250;
+
+    @IntDef(value = { QUEUED, RUNNING, PAUSED, COMPLETED, FAILED })
+    @interface State {}
+    public static final int QUEUED = 0;
+    public static final int RUNNING = 1;
+    public static final int PAUSED = 2;
+    public static final int COMPLETED = 3;
+    public static final int FAILED = 4;
+
+    public interface Listener {
+        void onTaskUpdated(@NonNull Task task);
+        default void onTaskCompleted(@NonNull Task task) {}
+    }
+
+    private static class Segment {
+        final long start;
+        // Inclusive, -1 when the length is unknown
+        volatile long end;
+        volatile long downloaded;
+        // Set when the download starts over with new segments
+        volatile boolean discarded;
+        int retries;
+
+        Segment(long start, long end, long downloaded) {
+            this.start = start;
+            this.end = end;
+            this.downloaded = downloaded;
+        }
+
+        boolean isDone() {
+            return end >= 0 && start + downloaded > end;
+        }
+    }
+
+    public static class Task {
+        private final long mId;
+        private final String mUrl;
+        private final File mOutputFile;
+        private final String mTitle;
+        private final String mContentType;
+        private volatile long mTotalBytes = -1;
+        private volatile @State int mState = QUEUED;
+        private volatile int mRun;
+        private volatile String mError;
+        private volatile long mLastModified;
+        private boolean mRangesSupported;
+        private String mValidator;
+        private List<Segment> mSegments = Collections.emptyList();
+        private boolean mRestarted;
+        private long mLastProgress;
+        private final AtomicLong mUnsavedBytes = new AtomicLong();
+
+        Task(long id, @NonNull String url, @NonNull File outputFile, @Nullable String title, @Nullable String contentType) {
+            mId = id;
+            mUrl = url;
+            mOutputFile = outputFile;
+            mTitle = title;
+            mContentType = contentType;
+        }
+
+        public long getId() {
+            return mId;
+        }
+
+        public String getUrl() {
+            return mUrl;
+        }
+
+        public File getOutputFile() {
+            return mOutputFile;
+        }
+
+        public String getTitle() {
+            return mTitle;
+        }
+
+        public String getContentType() {
+            return mContentType;
+        }
+
+        public long getTotalBytes() {
+            return mTotalBytes;
+        }
+
+        public synchronized long getDownloadedBytes() {
+            long downloaded = 0;
+            for (Segment segment : mSegments) {
+                downloaded += segment.downloaded;
+            }
+            return downloaded;
+        }
+
+        public @State int getState() {
+            return mState;
+        }
+
+        public String getError() {
+            return mError;
+        }
+
+        public long getLastModified() {
+            return mLastModified;
+        }
+
+        public synchronized int getSegmentCount() {
+            return mSegments.size();
+        }
+    }
+
+    private final File mStateDir;
+    private final int mMaxSegments;
+    private final long mMinSegmentSize;
+    private final ThreadPoolExecutor mExecutor;
+    private final Map<Long, Task> mTasks = new ConcurrentHashMap<>();
+    private final AtomicLong mNextId = new AtomicLong(1);
+    private final Listener mListener;
+
+    public SegmentedDownloadEngine(@NonNull File stateDir, @NonNull Listener listener) {
+        this(stateDir, DEFAULT_MAX_CONNECTIONS, DEFAULT_MAX_SEGMENTS, DEFAULT_MIN_SEGMENT_SIZE, listener);
+    }
+
+    public SegmentedDownloadEngine(@NonNull File stateDir, int maxConnections, int maxSegments,
+                                   long minSegmentSize, @NonNull Listener listener) {
+        mStateDir = stateDir;
+        mMaxSegments = maxSegments;
+        mMinSegmentSize = minSegmentSize;
+        mListener = listener;
+        mExecutor = new ThreadPoolExecutor(maxConnections, maxConnections, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>());
+        mExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Loads the saved downloads and resumes the ones that didn't finish.
+     */
+    public void restore() {
+        File[] files = mStateDir.listFiles((dir, name) -> name.endsWith(STATE_EXTENSION));
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            try {
+                Task task = readState(file);
+                mTasks.put(task.mId, task);
+                mNextId.accumulateAndGet(task.mId + 1, Math::max);
+
+            } catch (IOException e) {
+                file.delete();
+            }
+        }
+        for (Task task : mTasks.values()) {
+            if (task.mState == QUEUED || task.mState == RUNNING) {
+                task.mState = QUEUED;
+                start(task);
+            }
+        }
+    }
+
+    public long enqueue(@NonNull String url, @NonNull File outputFile, @Nullable String title, @Nullable String contentType) {
+        Task task = new Task(mNextId.getAndIncrement(), url, outputFile, title, contentType);
+        task.mLastModified = System.currentTimeMillis();
+        mTasks.put(task.mId, task);
+        saveState(task);
+        start(task);
+        return task.mId;
+    }
+
+    @Nullable
+    public Task getTask(long id) {
+        return mTasks.get(id);
+    }
+
+    @NonNull
+    public List<Task> getTasks() {
+        return new ArrayList<>(mTasks.values());
+    }
+
+    public void pause(long id) {
+        Task task = mTasks.get(id);
+        if (task != null && (task.mState == QUEUED || task.mState == RUNNING)) {
+            setState(task, PAUSED, null);
+        }
+    }
+
+    public void resume(long id) {
+        Task task = mTasks.get(id);
+        if (task != null && (task.mState == PAUSED || task.mState == FAILED)) {
+            synchronized (task) {
+                task.mError = null;
+                for (Segment segment : task.mSegments) {
+                    segment.retries = 0;
+                }
+            }
+            task.mState = QUEUED;
+            start(task);
+        }
+    }
+
+    /**
+     * Stops and forgets a download.
+     * @param deleteFile Whether the downloaded file is deleted too.
+     */
+    public void remove(long id, boolean deleteFile) {
+        Task task = mTasks.remove(id);
+        if (task != null) {
+            task.mState = FAILED;
+            getStateFile(task.mId).delete();
+            if (deleteFile || task.getDownloadedBytes() == 0) {
+                task.mOutputFile.delete();
+            }
+        }
+    }
+
+    /**
+     * Stops all the downloads, keeping their state so they are resumed by {@link #restore()}.
+     */
+    public void shutdown() {
+        mExecutor.shutdownNow();
+        for (Task task : mTasks.values()) {
+            if (task.mState == QUEUED || task.mState == RUNNING) {
+                saveState(task);
+            }
+        }
+    }
+
+    public boolean isShutdown() {
+        return mExecutor.isShutdown();
+    }
+
+    public boolean awaitTermination(long timeout, @NonNull TimeUnit unit) throws InterruptedException {
+        return mExecutor.awaitTermination(timeout, unit);
+    }
+
+    private void start(@NonNull Task task) {
+        int run;
+        synchronized (task) {
+            run = ++task.mRun;
+        }
+        if (task.getSegmentCount() == 0) {
+            mExecutor.execute(() -> probe(task, run));
+
+        } else {
+            setState(task, RUNNING, null);
+            submitPendingSegments(task, run);
+        }
+    }
+
+    /**
+     * Reads the length and range support of the file to split it in segments.
+     */
+    private void probe(@NonNull Task task, int run) {
+        if (!isActive(task, run)) {
+            return;
+        }
+
+        long length = -1;
+        boolean ranges = false;
+        String validator = null;
+        HttpURLConnection connection = null;
+        try {
+            connection = openConnection(task.mUrl);
+            connection.setRequestMethod("HEAD");
+            if (connection.getResponseCode() / 100 == 2) {
+                length = connection.getContentLengthLong();
+                ranges = "bytes".equalsIgnoreCase(connection.getHeaderField("Accept-Ranges"));
+                validator = connection.getHeaderField("ETag");
+                if (validator == null) {
+                    validator = connection.getHeaderField("Last-Modified");
+                }
+            }
+
+        } catch (IOException e) {
+            // Some servers don't answer HEAD requests, download the file in a single request.
+
+        } finally {
+            if (connection != null) {
+                connection.disconnect();
+            }
+        }
+
+        List<Segment> segments = new ArrayList<>();
+        ranges &= length > 0;
+        if (ranges && length >= 2 * mMinSegmentSize) {
+            int count = (int) Math.min(mMaxSegments, length / mMinSegmentSize);
+            long size = length / count;
+            for (int i = 0; i < count; i++) {
+                long start = i * size;
+                long end = i == count - 1 ? length - 1 : start + size - 1;
+                segments.add(new Segment(start, end, 0));
+            }
+
+        } else {
+            segments.add(new Segment(0, length > 0 ? length - 1 : -1, 0));
+        }
+
+        synchronized (task) {
+            // A zero Content-Length is as unknown as a missing one until the file is read
+            task.mTotalBytes = length > 0 ? length : -1;
+            task.mRangesSupported = ranges;
+            task.mValidator = validator;
+            task.mSegments = segments;
+        }
+        saveState(task);
+
+        if (isActive(task, run)) {
+            setState(task, RUNNING, null);
+            submitPendingSegments(task, run);
+        }
+    }
+
+    private void submitPendingSegments(@NonNull Task task, int run) {
+        List<Segment> segments;
+        synchronized (task) {
+            segments = new ArrayList<>(task.mSegments);
+        }
+        boolean pending = false;
+        for (Segment segment : segments) {
+            if (!segment.isDone()) {
+                pending = true;
+                mExecutor.execute(() -> downloadSegment(task, segment, run));
+            }
+        }
+        if (!pending) {
+            complete(task);
+        }
+    }
+
+    private void downloadSegment(@NonNull Task task, @NonNull Segment segment, int run) {
+        // A worker of a previous run may still be reading this segment, it stops at its next buffer
+        synchronized (segment) {
+            downloadSegmentLocked(task, segment, run);
+        }
+    }
+
+    private void downloadSegmentLocked(@NonNull Task task, @NonNull Segment segment, int run) {
+        if (!isActive(task, segment, run) || segment.isDone()) {
+            return;
+        }
+
+        long position = segment.start + segment.downloaded;
+        if (!task.mRangesSupported && position > 0) {
+            // Without ranges the file can only be downloaded from the beginning
+            segment.downloaded = 0;
+            position = 0;
+        }
+
+        HttpURLConnection connection = null;
+        try {
+            connection = openConnection(task.mUrl);
+            if (task.mRangesSupported) {
+                connection.setRequestProperty("Range", "bytes=" + position + "-" + (segment.end >= 0 ? segment.end : ""));
+                if (task.mValidator != null) {
+                    connection.setRequestProperty("If-Range", task.mValidator);
+                }
+            }
+
+            int code = connection.getResponseCode();
+            if (task.mRangesSupported && code == HttpURLConnection.HTTP_OK) {
+                // The file changed since the download started
+                restart(task);
+                return;
+
+            } else if (code != HttpURLConnection.HTTP_PARTIAL && code != HttpURLConnection.HTTP_OK) {
+                setState(task, FAILED, "HTTP error " + code);
+                return;
+            }
+
+            try (InputStream input = connection.getInputStream();
+                 RandomAccessFile file = new RandomAccessFile(task.mOutputFile, "rw")) {
+                FileChannel channel = file.getChannel();
+                byte[] buffer = new byte[BUFFER_SIZE];
+                ByteBuffer byteBuffer = ByteBuffer.wrap(buffer);
+                while (isActive(task, segment, run)) {
+                    int toRead = BUFFER_SIZE;
+                    if (segment.end >= 0) {
+                        toRead = (int) Math.min(toRead, segment.end - position + 1);
+                        if (toRead <= 0) {
+                            break;
+                        }
+                    }
+                    int read = input.read(buffer, 0, toRead);
+                    if (read < 0) {
+                        break;
+                    }
+                    byteBuffer.clear();
+                    byteBuffer.limit(read);
+                    while (byteBuffer.hasRemaining()) {
+                        position += channel.write(byteBuffer, position);
+                    }
+                    segment.downloaded += read;
+                    onProgress(task, read);
+                }
+            }
+
+            if (!isActive(task, segment, run)) {
+                saveState(task);
+                return;
+            }
+            if (segment.end < 0) {
+                // Unknown length, the file ends here.
+                segment.end = position - 1;
+                task.mTotalBytes = position;
+            } else if (!segment.isDone()) {
+                throw new IOException("Connection closed before the end of the segment");
+            }
+
+        } catch (IOException e) {
+            saveState(task);
+            if (isActive(task, segment, run)) {
+                retry(task, segment, run, e);
+            }
+            return;
+
+        } finally {
+            if (connection != null) {
+                connection.disconnect();
+            }
+        }
+
+        boolean finished;
+        synchronized (task) {
+            finished = task.mSegments.stream().allMatch(Segment::isDone);
+        }
+        if (finished) {
+            complete(task);
+        }
+    }
+
+    private void retry(@NonNull Task task, @NonNull Segment segment, int run, @NonNull IOException error) {
+        if (mExecutor.isShutdown()) {
+            return;
+        }
+        if (++segment.retries > MAX_RETRIES) {
+            setState(task, FAILED, error.getMessage());
+            return;
+        }
+        mExecutor.execute(() -> {
+            try {
+                Thread.sleep(RETRY_DELAY * segment.retries);
+                downloadSegment(task, segment, run);
+
+            } catch (InterruptedException ignored) {}
+        });
+    }
+
+    /**
+     * Starts the download over when the file changed on the server.
+     */
+    private void restart(@NonNull Task task) {
+        synchronized (task) {
+            if (task.mRestarted) {
+                setState(task, FAILED, "The file changed during the download");
+                return;
+            }
+            task.mRestarted = true;
+            for (Segment segment : task.mSegments) {
+                segment.discarded = true;
+            }
+            task.mSegments = Collections.emptyList();
+        }
+        task.mOutputFile.delete();
+        start(task);
+    }
+
+    private void complete(@NonNull Task task) {
+        synchronized (task) {
+            if (task.mState == COMPLETED) {
+                return;
+            }
+            task.mState = COMPLETED;
+            task.mLastModified = System.currentTimeMillis();
+        }
+        saveState(task);
+        mListener.onTaskUpdated(task);
+        mListener.onTaskCompleted(task);
+    }
+
+    private void setState(@NonNull Task task, @State int state, @Nullable String error) {
+        synchronized (task) {
+            if (task.mState == state || task.mState == COMPLETED) {
+                return;
+            }
+            if (task.mState == FAILED && state != RUNNING) {
+                return;
+            }
+            task.mState = state;
+            task.mError = error;
+            task.mLastModified = System.currentTimeMillis();
+        }
+        if (mTasks.containsKey(task.mId)) {
+            saveState(task);
+            mListener.onTaskUpdated(task);
+        }
+    }
+
+    private void onProgress(@NonNull Task task, int read) {
+        if (task.mUnsavedBytes.addAndGet(read) >= SAVE_INTERVAL_BYTES) {
+            task.mUnsavedBytes.set(0);
+            saveState(task);
+        }
+
+        long now = System.currentTimeMillis();
+        boolean notify;
+        synchronized (task) {
+            notify = now - task.mLastProgress >= PROGRESS_INTERVAL;
+            if (notify) {
+                task.mLastProgress = now;
+            }
+        }
+        if (notify) {
+            mListener.onTaskUpdated(task);
+        }
+    }
+
+    private boolean isActive(@NonNull Task task) {
+        return (task.mState == QUEUED || task.mState == RUNNING) && mTasks.get(task.mId) == task &&
+                !mExecutor.isShutdown();
+    }
+
+    private boolean isActive(@NonNull Task task, int run) {
+        return task.mRun == run && isActive(task);
+    }
+
+    private boolean isActive(@NonNull Task task, @NonNull Segment segment, int run) {
+        return !segment.discarded && isActive(task, run);
+    }
+
+    @NonNull
+    private static HttpURLConnection openConnection(@NonNull String url) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setConnectTimeout(TIMEOUT);
+        connection.setReadTimeout(TIMEOUT);
+        connection.setInstanceFollowRedirects(true);
+        // Ranges don't work on compressed bodies
+        connection.setRequestProperty("Accept-Encoding", "identity");
+        return connection;
+    }
+
+    // Saved state
+
+    @NonNull
+    private File getStateFile(long id) {
+        return new File(mStateDir, id + STATE_EXTENSION);
+    }
+
+    private void saveState(@NonNull Task task) {
+        File file = getStateFile(task.mId);
+        File temp = new File(mStateDir, task.mId + STATE_EXTENSION + ".tmp");
+        synchronized (task) {
+            if (!mTasks.containsKey(task.mId)) {
+                return;
+            }
+            mStateDir.mkdirs();
+            try (DataOutputStream output = new DataOutputStream(new FileOutputStream(temp))) {
+                output.writeInt(STATE_VERSION);
+                output.writeLong(task.mId);
+                output.writeUTF(task.mUrl);
+                output.writeUTF(task.mOutputFile.getAbsolutePath());
+                writeNullableString(output, task.mTitle);
+                writeNullableString(output, task.mContentType);
+                output.writeLong(task.mTotalBytes);
+                output.writeInt(task.mState);
+                writeNullableString(output, task.mError);
+                output.writeLong(task.mLastModified);
+                output.writeBoolean(task.mRangesSupported);
+                writeNullableString(output, task.mValidator);
+                output.writeInt(task.mSegments.size());
+                for (Segment segment : task.mSegments) {
+                    output.writeLong(segment.start);
+                    output.writeLong(segment.end);
+                    output.writeLong(segment.downloaded);
+                }
+
+            } catch (IOException e) {
+                temp.delete();
+                return;
+            }
+            temp.renameTo(file);
+        }
+    }
+
+    @NonNull
+    private static Task readState(@NonNull File file) throws IOException {
+        try (DataInputStream input = new DataInputStream(new FileInputStream(file))) {
+            if (input.readInt() != STATE_VERSION) {
+                throw new IOException("Unknown download state version");
+            }
+            Task task = new Task(input.readLong(), input.readUTF(), new File(input.readUTF()),
+                    readNullableString(input), readNullableString(input));
+            task.mTotalBytes = input.readLong();
+            task.mState = input.readInt();
+            task.mError = readNullableString(input);
+            task.mLastModified = input.readLong();
+            task.mRangesSupported = input.readBoolean();
+            task.mValidator = readNullableString(input);
+            int count = input.readInt();
+            List<Segment> segments = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                segments.add(new Segment(input.readLong(), input.readLong(), input.readLong()));
+            }
+            task.mSegments = segments;
+            return task;
+        }
+    }
+
+    private static void writeNullableString(@NonNull DataOutputStream output, @Nullable String value) throws IOException {
+        output.writeBoolean(value != null);
+        if (value != null) {
+            output.writeUTF(value);
+        }
+    }
+
+    @Nullable
+    private static String readNullableString(@NonNull DataInputStream input) throws IOException {
+        return input.readBoolean() ? input.readUTF() : null;
+    }
+}
@@ -0,0 +1,191 @@
+package org.mozilla.vrbrowser.input;
+
+import android.util.SparseArray;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hands the controller samples from the render thread to the UI thread.
+ *
+ * The samples are delivered in order, but a move replaces the previous move of the same device
+ * while that device had no other sample in between, so the UI thread gets at most one move per
+ * device between two of its transitions. Press and release transitions, widget changes and focus
+ * changes are never coalesced. Scroll deltas on the same widget are added up.
+ *
+ * The samples are pooled, posting doesn't allocate once the pool is warm. The consumer asks for
+ * a drain when the mailbox stops being empty, which is meant to run on the next UI frame.
+ */
+public class InputMailbox {
+
+    public interface Consumer {
+        void onMotionEvent(int aHandle, int aDevice, boolean aFocused, boolean aPressed, float aX, float aY);
+        void onScrollEvent(int aHandle, int aDevice, float aX, float aY);
+        /**
+         * Called on the posting thread when a drain is needed.
+         */
+        void onDrainRequested();
+    }
+
+    private static class Sample {
+        int device;
+        boolean scroll;
+        int handle;
+        boolean focused;
+        boolean pressed;
+        float x;
+        float y;
+        // Whether it's a move that a later move can replace
+        boolean coalescable;
+    }
+
+    private static class Device {
+        // The last motion posted, drained or not
+        boolean hasMotion;
+        int handle;
+        boolean focused;
+        boolean pressed;
+        // The last pending sample of the device, null once drained
+        Sample last;
+    }
+
+    private final Consumer mConsumer;
+    private final SparseArray<Device> mDevices = new SparseArray<>();
+    private final List<Sample> mPool = new ArrayList<>();
+    private List<Sample> mPending = new ArrayList<>();
+    // Swapped with the pending samples, they are delivered outside the lock
+    private List<Sample> mDraining = new ArrayList<>();
+    private boolean mDrainRequested;
+    private long mPosted;
+    private long mDelivered;
+
+    public InputMailbox(@NonNull Consumer aConsumer) {
+        mConsumer = aConsumer;
+    }
+
+    public void postMotionEvent(int aHandle, int aDevice, boolean aFocused, boolean aPressed, float aX, float aY) {
+        boolean requestDrain;
+        synchronized (this) {
+            Device device = getDevice(aDevice);
+            boolean transition = !device.hasMotion || device.handle != aHandle ||
+                    device.focused != aFocused || device.pressed != aPressed;
+            device.hasMotion = true;
+            device.handle = aHandle;
+            device.focused = aFocused;
+            device.pressed = aPressed;
+
+            Sample sample = device.last;
+            if (transition || sample == null || !sample.coalescable) {
+                sample = obtain(aDevice, device);
+            }
+            sample.scroll = false;
+            sample.handle = aHandle;
+            sample.focused = aFocused;
+            sample.pressed = aPressed;
+            sample.x = aX;
+            sample.y = aY;
+            sample.coalescable = !transition;
+            requestDrain = markPosted();
+        }
+        if (requestDrain) {
+            mConsumer.onDrainRequested();
+        }
+    }
+
+    public void postScrollEvent(int aHandle, int aDevice, float aX, float aY) {
+        boolean requestDrain;
+        synchronized (this) {
+            Device device = getDevice(aDevice);
+            Sample sample = device.last;
+            if (sample != null && sample.scroll && sample.handle == aHandle) {
+                sample.x += aX;
+                sample.y += aY;
+            } else {
+                sample = obtain(aDevice, device);
+                sample.scroll = true;
+                sample.handle = aHandle;
+                sample.x = aX;
+                sample.y = aY;
+                sample.coalescable = false;
+            }
+            requestDrain = markPosted();
+        }
+        if (requestDrain) {
+            mConsumer.onDrainRequested();
+        }
+    }
+
+    /**
+     * Delivers the pending samples to the consumer in the order they were posted. Must be called
+     * on the thread the consumer expects.
+     */
+    public void drain() {
+        List<Sample> samples;
+        synchronized (this) {
+            mDrainRequested = false;
+            samples = mPending;
+            mPending = mDraining;
+            mDraining = samples;
+            for (int i = 0; i < mDevices.size(); i++) {
+                mDevices.valueAt(i).last = null;
+            }
+            mDelivered += samples.size();
+        }
+        for (int i = 0; i < samples.size(); i++) {
+            Sample sample = samples.get(i);
+            if (sample.scroll) {
+                mConsumer.onScrollEvent(sample.handle, sample.device, sample.x, sample.y);
+            } else {
+                mConsumer.onMotionEvent(sample.handle, sample.device, sample.focused, sample.pressed, sample.x, sample.y);
+            }
+        }
+        synchronized (this) {
+            mPool.addAll(samples);
+        }
+        samples.clear();
+    }
+
+    /**
+     * Returns the number of samples posted so far.
+     */
+    public synchronized long getPostedCount() {
+        return mPosted;
+    }
+
+    /**
+     * Returns the number of samples delivered so far, the others were coalesced.
+     */
+    public synchronized long getDeliveredCount() {
+        return mDelivered;
+    }
+
+    private Device getDevice(int aDevice) {
+        Device device = mDevices.get(aDevice);
+        if (device == null) {
+            device = new Device();
+            mDevices.put(aDevice, device);
+        }
+        return device;
+    }
+
+    // Appends a new sample for a device
+    private Sample obtain(int aId, @NonNull Device aDevice) {
+        Sample sample = mPool.isEmpty() ? new Sample() : mPool.remove(mPool.size() - 1);
+        sample.device = aId;
+        aDevice.last = sample;
+        mPending.add(sample);
+        return sample;
+    }
+
+    // Returns true if a drain needs to be requested
+    private boolean markPosted() {
+        mPosted++;
+        if (mDrainRequested) {
+            return false;
+        }
+        mDrainRequested = true;
+        return true;
+    }
+}
@@ -14,65 +14,92 @@ import android.view.MotionEvent;
 import org.mozilla.vrbrowser.ui.widgets.Widget;
 import org.mozilla.vrbrowser.utils.SystemUtils;
 
-import java.util.Arrays;
-
 public class MotionEventGenerator {
     static final String LOGTAG = SystemUtils.createLogtag(MotionEventGenerator.class);
+    // Devices with an id up to this one are tracked in the pressed bitmask
+    private static final int MAX_MASK_DEVICE = Integer.SIZE - 1;
+
     static class Device {
         int mDevice;
         Widget mPreviousWidget = null;
         Widget mTouchStartWidget = null;
         Widget mHoverStartWidget = null;
         boolean mWasPressed;
-        long mDownTime;
-        MotionEvent.PointerProperties mProperties[];
-        MotionEvent.PointerCoords mCoords[];
-        MotionEvent.PointerCoords mMouseOutCoords[];
+        final EventBuilder mBuilder;
 
         Device(final int aDevice) {
+            mDevice = aDevice;
+            mBuilder = new EventBuilder(aDevice);
+        }
+    }
+
+    /**
+     * Keeps the MotionEvent.obtain arguments of a device, so generating an event only sets its
+     * action and coordinates. The events come from the platform pool and are recycled as soon as
+     * they are delivered, every event generated for the same sample shares its time.
+     */
+    static class EventBuilder {
+        final int mDevice;
+        final MotionEvent.PointerProperties[] mProperties;
+        final MotionEvent.PointerCoords[] mCoords;
+        final MotionEvent.PointerCoords[] mMouseOutCoords;
+        long mDownTime;
+        long mEventTime;
+
+        EventBuilder(final int aDevice) {
             mDevice = aDevice;
             mProperties = new MotionEvent.PointerProperties[1];
             mProperties[0] = new MotionEvent.PointerProperties();
             mProperties[0].id = 0;
             mProperties[0].toolType = MotionEvent.TOOL_TYPE_FINGER;
-            mCoords = new MotionEvent.PointerCoords[1];
-            mCoords[0] = new MotionEvent.PointerCoords();
-            mMouseOutCoords = new MotionEvent.PointerCoords[1];
-            for (MotionEvent.PointerCoords[] coords : Arrays.asList(mCoords, mMouseOutCoords)) {
-                coords[0] = new MotionEvent.PointerCoords();
-                coords[0].toolMajor = 2;
-                coords[0].toolMinor = 2;
-                coords[0].touchMajor = 2;
-                coords[0].touchMinor = 2;
-            }
+            mCoords = createCoords();
+            mMouseOutCoords = createCoords();
             mMouseOutCoords[0].x = -10;
             mMouseOutCoords[0].y = -10;
         }
+
+        private static MotionEvent.PointerCoords[] createCoords() {
+            MotionEvent.PointerCoords[] coords = new MotionEvent.PointerCoords[1];
+            coords[0] = new MotionEvent.PointerCoords();
+            coords[0].toolMajor = 2;
+            coords[0].toolMinor = 2;
+            coords[0].touchMajor = 2;
+            coords[0].touchMinor = 2;
+            return coords;
+        }
+
+        MotionEvent build(int aAction, MotionEvent.PointerCoords[] aCoords) {
+            return MotionEvent.obtain(
+                    /*mDownTime*/ mDownTime,
+                    /*eventTime*/ mEventTime,
+                    /*action*/ aAction,
+                    /*pointerCount*/ 1,
+                    /*pointerProperties*/ mProperties,
+                    /*pointerCoords*/ aCoords,
+                    /*metaState*/ 0,
+                    /*buttonState*/ 0,
+                    /*xPrecision*/ 0,
+                    /*yPrecision*/ 0,
+                    /*deviceId*/ mDevice,
+                    /*edgeFlags*/ 0,
+                    /*source*/ InputDevice.SOURCE_TOUCHSCREEN,
+                    /*flags*/ 0);
+        }
     }
 
     private static SparseArray<Device> devices = new SparseArray<>();
+    // Devices with an ongoing touch, one bit per device id
+    private static int pressedDevices;
+    // Number of devices with an ongoing touch whose id doesn't fit in the bitmask
+    private static int pressedOverflow;
 
 
     private static void generateEvent(Widget aWidget, Device aDevice, boolean aFocused, int aAction, boolean aGeneric) {
-        generateEvent(aWidget, aDevice, aFocused, aAction, aGeneric, aDevice.mCoords);
+        generateEvent(aWidget, aDevice, aFocused, aAction, aGeneric, aDevice.mBuilder.mCoords);
     }
 
     private static void generateEvent(Widget aWidget, Device aDevice, boolean aFocused, int aAction, boolean aGeneric, MotionEvent.PointerCoords[] aCoords) {
-        MotionEvent event = MotionEvent.obtain(
-                /*mDownTime*/ aDevice.mDownTime,
-                /*eventTime*/ SystemClock.uptimeMillis(),
-                /*action*/ aAction,
-                /*pointerCount*/ 1,
-                /*pointerProperties*/ aDevice.mProperties,
-                /*pointerCoords*/ aCoords,
-                /*metaState*/ 0,
-                /*buttonState*/ 0,
-                /*xPrecision*/ 0,
-                /*yPrecision*/ 0,
-                /*deviceId*/ aDevice.mDevice,
-                /*edgeFlags*/ 0,
-                /*source*/ InputDevice.SOURCE_TOUCHSCREEN,
-                /*flags*/ 0);
+        MotionEvent event = aDevice.mBuilder.build(aAction, aCoords);
         if (aGeneric) {
             if (aWidget.supportsMultipleInputDevices()) {
                 aWidget.handleHoverEvent(event);
@@ -86,29 +113,36 @@ public class MotionEventGenerator {
         event.recycle();
     }
 
-    public static void dispatch(Widget aWidget, int aDevice, boolean aFocused, boolean aPressed, float aX, float aY) {
+    private static Device getDevice(int aDevice) {
         Device device = devices.get(aDevice);
         if (device == null) {
             device = new Device(aDevice);
             devices.put(aDevice, device);
         }
-        boolean moving = (device.mCoords[0].x != aX) || (device.mCoords[0].y != aY);
+        device.mBuilder.mEventTime = SystemClock.uptimeMillis();
+        return device;
+    }
+
+    public static void dispatch(Widget aWidget, int aDevice, boolean aFocused, boolean aPressed, float aX, float aY) {
+        Device device = getDevice(aDevice);
+        MotionEvent.PointerCoords coords = device.mBuilder.mCoords[0];
+        boolean moving = (coords.x != aX) || (coords.y != aY);
         if (aWidget != null) {
-            device.mCoords[0].x = aX;
-            device.mCoords[0].y = aY;
+            coords.x = aX;
+            coords.y = aY;
             if (aPressed) {
-                device.mCoords[0].pressure = 1.0f;
+                coords.pressure = 1.0f;
             } else {
-                device.mCoords[0].pressure = 0.0f;
+                coords.pressure = 0.0f;
             }
         }
         if (!aPressed && (device.mPreviousWidget != null) && (device.mPreviousWidget != aWidget)) {
             if (device.mWasPressed) {
                 generateEvent(device.mPreviousWidget, device, aFocused, MotionEvent.ACTION_CANCEL, false);
-                device.mTouchStartWidget = null;
+                setTouchStartWidget(device, null);
                 device.mWasPressed = false;
             }
-            generateEvent(device.mPreviousWidget, device, aFocused, MotionEvent.ACTION_HOVER_EXIT, true, device.mMouseOutCoords);
+            generateEvent(device.mPreviousWidget, device, aFocused, MotionEvent.ACTION_HOVER_EXIT, true, device.mBuilder.mMouseOutCoords);
             device.mPreviousWidget = null;
             device.mHoverStartWidget = null;
         }
@@ -122,7 +156,7 @@ public class MotionEventGenerator {
             device.mHoverStartWidget = aWidget;
         }
         if (aPressed && !device.mWasPressed) {
-            device.mDownTime = SystemClock.uptimeMillis();
+            device.mBuilder.mDownTime = device.mBuilder.mEventTime;
             device.mWasPressed = true;
             if (!isOtherDeviceDown(device.mDevice)) {
                 generateEvent(aWidget, device, aFocused, MotionEvent.ACTION_HOVER_EXIT, true);
@@ -130,11 +164,13 @@ public class MotionEventGenerator {
                 device.mHoverStartWidget = null;
             }
             for (int i=0; i<devices.size(); i++) {
-                if (devices.get(i) != null && devices.get(i) != device && devices.get(i).mHoverStartWidget != null) {
-                    generateEvent(devices.get(i).mHoverStartWidget, devices.get(i), aFocused, MotionEvent.ACTION_HOVER_EXIT, true);
+                Device other = devices.valueAt(i);
+                if (other != device && other.mHoverStartWidget != null) {
+                    other.mBuilder.mEventTime = device.mBuilder.mEventTime;
+                    generateEvent(other.mHoverStartWidget, other, aFocused, MotionEvent.ACTION_HOVER_EXIT, true);
                 }
             }
-            device.mTouchStartWidget = aWidget;
+            setTouchStartWidget(device, aWidget);
         } else if (!aPressed && device.mWasPressed) {
             device.mWasPressed = false;
             if (!isOtherDeviceDown(device.mDevice)) {
@@ -142,7 +178,7 @@ public class MotionEventGenerator {
                 generateEvent(aWidget, device, aFocused, MotionEvent.ACTION_HOVER_ENTER, true);
                 device.mHoverStartWidget = aWidget;
             }
-            device.mTouchStartWidget = null;
+            setTouchStartWidget(device, null);
         } else if (moving && aPressed) {
             generateEvent(aWidget, device, aFocused, MotionEvent.ACTION_MOVE, false);
         } else if (moving) {
@@ -154,6 +190,24 @@ public class MotionEventGenerator {
         device.mPreviousWidget = aWidget;
     }
 
+    private static void setTouchStartWidget(Device aDevice, Widget aWidget) {
+        boolean wasDown = aDevice.mTouchStartWidget != null;
+        boolean down = aWidget != null;
+        aDevice.mTouchStartWidget = aWidget;
+        if (wasDown == down) {
+            return;
+        }
+        if (aDevice.mDevice >= 0 && aDevice.mDevice <= MAX_MASK_DEVICE) {
+            if (down) {
+                pressedDevices |= 1 << aDevice.mDevice;
+            } else {
+                pressedDevices &= ~(1 << aDevice.mDevice);
+            }
+        } else {
+            pressedOverflow += down ? 1 : -1;
+        }
+    }
+
     /**
      * Checks if any other device has an ongoing touch down event.
      * Android throw away all previous state when starting a new touch gesture
@@ -163,34 +217,32 @@ public class MotionEventGenerator {
      * @param deviceId Device Id to filter
      * @return true if any other device has a button down, false otherwise
      */
-    private static boolean isOtherDeviceDown(int deviceId) {
-        boolean result = false;
-        for (int i=0; i<devices.size(); i++) {
-            if (i != deviceId) {
-                if (devices.get(i) != null) {
-                    result |= devices.get(i).mTouchStartWidget != null;
-                }
-            }
+    static boolean isOtherDeviceDown(int deviceId) {
+        if (deviceId >= 0 && deviceId <= MAX_MASK_DEVICE) {
+            return (pressedDevices & ~(1 << deviceId)) != 0 || pressedOverflow > 0;
         }
-
-        return result;
+        Device device = devices.get(deviceId);
+        int overflow = pressedOverflow;
+        if (device != null && device.mTouchStartWidget != null) {
+            overflow--;
+        }
+        return pressedDevices != 0 || overflow > 0;
     }
 
     public static void dispatchScroll(Widget aWidget, int aDevice, boolean aFocused, float aX, float aY) {
-        Device device = devices.get(aDevice);
-        if (device == null) {
-            device = new Device(aDevice);
-            devices.put(aDevice, device);
-        }
+        Device device = getDevice(aDevice);
         device.mPreviousWidget = aWidget;
-        device.mCoords[0].setAxisValue(MotionEvent.AXIS_VSCROLL, aY);
-        device.mCoords[0].setAxisValue(MotionEvent.AXIS_HSCROLL, aX);
+        MotionEvent.PointerCoords coords = device.mBuilder.mCoords[0];
+        coords.setAxisValue(MotionEvent.AXIS_VSCROLL, aY);
+        coords.setAxisValue(MotionEvent.AXIS_HSCROLL, aX);
         generateEvent(aWidget, device, aFocused, MotionEvent.ACTION_SCROLL, true);
-        device.mCoords[0].setAxisValue(MotionEvent.AXIS_VSCROLL, 0.0f);
-        device.mCoords[0].setAxisValue(MotionEvent.AXIS_HSCROLL, 0.0f);
+        coords.setAxisValue(MotionEvent.AXIS_VSCROLL, 0.0f);
+        coords.setAxisValue(MotionEvent.AXIS_HSCROLL, 0.0f);
     }
 
     public static void clearDevices() {
         devices.clear();
+        pressedDevices = 0;
+        pressedOverflow = 0;
     }
 }
@@ -5,17 +5,24 @@ import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
 import android.content.SharedPreferences;
+import android.content.res.AssetManager;
 import android.net.Uri;
 import android.preference.PreferenceManager;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.mozilla.vrbrowser.BuildConfig;
 import org.mozilla.vrbrowser.R;
 import org.mozilla.vrbrowser.VRBrowserApplication;
 import org.mozilla.vrbrowser.browser.SettingsStore;
 import org.mozilla.vrbrowser.browser.engine.EngineProvider;
 import org.mozilla.vrbrowser.geolocation.GeolocationData;
+import org.mozilla.vrbrowser.search.suggestions.SuggestionsCache;
 import org.mozilla.vrbrowser.search.suggestions.SuggestionsClient;
 import org.mozilla.vrbrowser.utils.SystemUtils;
 
@@ -24,13 +31,17 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import kotlinx.coroutines.Dispatchers;
 import mozilla.components.browser.search.SearchEngine;
 import mozilla.components.browser.search.SearchEngineManager;
+import mozilla.components.browser.search.SearchEngineParser;
 import mozilla.components.browser.search.provider.AssetsSearchEngineProvider;
 import mozilla.components.browser.search.provider.filter.SearchEngineFilter;
 import mozilla.components.browser.search.provider.localization.LocaleSearchLocalizationProvider;
@@ -53,6 +64,11 @@ public class SearchEngineWrapper implements SharedPreferences.OnSharedPreference
 
     private static String EMPTY = "";
 
+    private static final String CACHE_VERSION = "version";
+    private static final String CACHE_ENTRIES = "entries";
+    private static final String CACHE_DEFAULT = "default";
+    private static final String CACHE_ENGINES = "engines";
+
     private static SearchEngineWrapper mSearchEngineWrapperInstance;
 
     public static synchronized @NonNull
@@ -68,20 +84,43 @@ public class SearchEngineWrapper implements SharedPreferences.OnSharedPreference
         void OnSuggestions(List<String> aSuggestionsList);
     }
 
+    /**
+     * Engines resolved for a (locale, region) pair.
+     */
+    private static class Resolution {
+        final SearchEngine defaultEngine;
+        final List<SearchEngine> engines;
+
+        Resolution(@NonNull SearchEngine defaultEngine, @NonNull List<SearchEngine> engines) {
+            this.defaultEngine = defaultEngine;
+            this.engines = engines;
+        }
+    }
+
     private Context mContext;
-    private SearchEngine mSearchEngine;
-    private SearchLocalizationProvider mLocalizationProvider;
-    private SearchEngineManager mSearchEngineManager;
-    private SearchSuggestionClient mSuggestionsClient;
+    private volatile SearchEngine mSearchEngine;
+    private volatile SearchSuggestionClient mSuggestionsClient;
     private SharedPreferences mPrefs;
     private Executor mUIThreadExecutor;
+    private Executor mBackgroundExecutor;
+    private Executor mNetworkExecutor;
+    private SuggestionsCache mSuggestionsCache;
+    // Resolved engines by (locale, region) key
+    private Map<String, Resolution> mResolutions;
+    private AtomicInteger mSetupGeneration;
 
     private SearchEngineWrapper(@NonNull Context aContext) {
         mContext = aContext;
         mPrefs = PreferenceManager.getDefaultSharedPreferences(mContext);
-        mUIThreadExecutor = ((VRBrowserApplication)aContext.getApplicationContext()).getExecutors().mainThread();
-
-        setupSearchEngine(aContext, EMPTY);
+        VRBrowserApplication application = (VRBrowserApplication)aContext.getApplicationContext();
+        mUIThreadExecutor = application.getExecutors().mainThread();
+        mBackgroundExecutor = application.getExecutors().diskIO();
+        mNetworkExecutor = application.getExecutors().networkIO();
+        mSuggestionsCache = new SuggestionsCache();
+        mResolutions = new ConcurrentHashMap<>();
+        mSetupGeneration = new AtomicInteger();
+
+        initSearchEngine(aContext);
     }
 
     public void registerForUpdates() {
@@ -115,19 +154,54 @@ public class SearchEngineWrapper implements SharedPreferences.OnSharedPreference
         return mSearchEngine.buildSuggestionsURL(aQuery);
     }
 
+    /**
+     * Cancelling the returned future also cancels the underlying network request.
+     */
     public CompletableFuture<List<String>> getSuggestions(String aQuery) {
         CompletableFuture<List<String>> future = new CompletableFuture<>();
         // TODO: Use mSuggestionsClient.getSuggestions when fixed in browser-search.
+        String engine = getIdentifier();
         String query = getSuggestionURL(aQuery);
-        mUIThreadExecutor.execute(() ->
-                SuggestionsClient.getSuggestions(
-                        EngineProvider.INSTANCE.getDefaultGeckoWebExecutor(mContext),
-                        mSearchEngine,
-                        query).thenAcceptAsync(future::complete));
+        mUIThreadExecutor.execute(() -> {
+            if (future.isDone()) {
+                return;
+            }
+            CompletableFuture<List<String>> request = SuggestionsClient.getSuggestions(
+                    EngineProvider.INSTANCE.getDefaultGeckoWebExecutor(mContext),
+                    mNetworkExecutor,
+                    mSearchEngine,
+                    query);
+            request.whenComplete((suggestions, throwable) -> {
+                if (throwable != null) {
+                    future.completeExceptionally(throwable);
+                } else {
+                    mSuggestionsCache.put(engine, aQuery, suggestions);
+                    future.complete(suggestions);
+                }
+            });
+            future.whenComplete((suggestions, throwable) -> {
+                if (future.isCancelled()) {
+                    request.cancel(true);
+                }
+            });
+        });
 
         return future;
     }
 
+    /**
+     * Returns the cached suggestions for the current engine and query, if any.
+     * @see SuggestionsCache#get(String, String)
+     */
+    @Nullable
+    public SuggestionsCache.Lookup getCachedSuggestions(String aQuery) {
+        return mSuggestionsCache.get(getIdentifier(), aQuery);
+    }
+
+    public SuggestionsCache getSuggestionsCache() {
+        return mSuggestionsCache;
+    }
+
     public String getResourceURL() {
         Uri uri = Uri.parse(mSearchEngine.buildSearchUrl("")) ;
         return uri.getScheme() + "://" + uri.getHost();
@@ -137,6 +211,15 @@ public class SearchEngineWrapper implements SharedPreferences.OnSharedPreference
         return mSearchEngine.getIdentifier();
     }
 
+    /**
+     * Returns the engines available for the current locale and region, empty until they are resolved.
+     */
+    @NonNull
+    public List<SearchEngine> getSearchEngines() {
+        Resolution resolution = mResolutions.get(getCacheKey(mContext));
+        return resolution != null ? resolution.engines : Collections.emptyList();
+    }
+
     // Receiver for locale updates
     private BroadcastReceiver mLocaleChangedReceiver = new BroadcastReceiver() {
         @Override
@@ -147,26 +230,81 @@ public class SearchEngineWrapper implements SharedPreferences.OnSharedPreference
         }
     };
 
+    /**
+     * Sets the engine for the current locale and region without going through the
+     * SearchEngineManager when it was already resolved in a previous session. The rest of the cached
+     * engines are then loaded in the background.
+     * @param aContext Activity context
+     */
+    private void initSearchEngine(@NonNull Context aContext) {
+        String key = getCacheKey(aContext);
+        JSONObject entry = loadCacheEntry(aContext, key);
+        SearchEngine cached = entry != null ? loadEngine(aContext, entry.optString(CACHE_DEFAULT)) : null;
+        if (cached != null) {
+            setSearchEngine(cached);
+            setupSearchEngine(aContext, EMPTY);
+
+        } else {
+            // First run for this locale and region, we need an engine before returning.
+            setResolution(aContext, key, resolveSearchEngine(aContext, EMPTY));
+        }
+    }
+
+    /**
+     * Sets the engines for the current locale and region, loading them from the cache or resolving
+     * them in the background. The current engine is kept until they are ready, and stale
+     * resolutions are discarded.
+     * @param aContext Activity context
+     * @param userPref User preferred engine (among the available ones)
+     */
+    private void setupSearchEngine(@NonNull Context aContext, String userPref) {
+        final int generation = mSetupGeneration.incrementAndGet();
+        final String key = getCacheKey(aContext);
+        Resolution resolution = mResolutions.get(key);
+        if (resolution != null && userPref.isEmpty()) {
+            setSearchEngine(resolution.defaultEngine);
+            return;
+        }
+
+        mBackgroundExecutor.execute(() -> {
+            if (generation != mSetupGeneration.get()) {
+                return;
+            }
+            Resolution resolved = userPref.isEmpty() ? loadCachedResolution(aContext, key) : null;
+            if (resolved == null) {
+                resolved = resolveSearchEngine(aContext, userPref);
+            }
+            final Resolution result = resolved;
+            mUIThreadExecutor.execute(() -> {
+                if (generation == mSetupGeneration.get()) {
+                    setResolution(aContext, key, result);
+                }
+            });
+        });
+    }
+
     /**
      * We cannot send system ACTION_LOCALE_CHANGED so the component refreshes the engines
      * with the updated SearchLocalizationProvider information so we have to update the whole manager.
      * @param aContext Activity context
      * @param userPref User preferred engine (among the available ones)
      */
-    private void setupSearchEngine(@NonNull Context aContext, String userPref) {
+    @NonNull
+    private Resolution resolveSearchEngine(@NonNull Context aContext, String userPref) {
         List<SearchEngineFilter> engineFilterList = new ArrayList<>();
+        SearchLocalizationProvider localizationProvider;
 
         GeolocationData data = GeolocationData.parse(SettingsStore.getInstance(aContext).getGeolocationData());
         if (data == null) {
             Log.d(LOGTAG, "Using Locale based search localization provider");
             // If we don't have geolocation data we default to the Locale search localization provider
-            mLocalizationProvider = new LocaleSearchLocalizationProvider();
+            localizationProvider = new LocaleSearchLocalizationProvider();
 
         } else {
             Log.d(LOGTAG, "Using Geolocation based search localization provider: " + data.toString());
             // If we have geolocation data we initialize the provider with the received data
             // and setup a filter to filter the engines that we need to override for FxR.
-            mLocalizationProvider = new GeolocationLocalizationProvider(data);
+            localizationProvider = new GeolocationLocalizationProvider(data);
             if (getEngine(data.getCountryCode()) != null) {
                 SearchEngineFilter engineFilter = (ctx, searchEngine) ->
                         searchEngine.getIdentifier().equalsIgnoreCase(getEngine(data.getCountryCode()));
@@ -177,20 +315,137 @@ public class SearchEngineWrapper implements SharedPreferences.OnSharedPreference
         // Configure the assets search with the localization provider and the engines that we want
         // to filter.
         AssetsSearchEngineProvider engineProvider = new AssetsSearchEngineProvider(
-                mLocalizationProvider,
+                localizationProvider,
                 engineFilterList,
                 Collections.emptyList());
 
-        mSearchEngineManager = new SearchEngineManager(Arrays.asList(engineProvider), Dispatchers.getDefault());
+        SearchEngineManager searchEngineManager = new SearchEngineManager(Arrays.asList(engineProvider), Dispatchers.getDefault());
+        List<SearchEngine> engines = searchEngineManager.getSearchEngines(aContext);
 
         // If we don't get any result we use the default configuration.
-        if (mSearchEngineManager.getSearchEngines(aContext).size() == 0) {
-            mSearchEngineManager = new SearchEngineManager();
+        if (engines.size() == 0) {
+            searchEngineManager = new SearchEngineManager();
+            engines = searchEngineManager.getSearchEngines(aContext);
         }
 
         // A name can be used if the user get's to choose among the available engines
-        mSearchEngine = mSearchEngineManager.getDefaultSearchEngine(aContext, userPref);
-        mSuggestionsClient = new SearchSuggestionClient(mSearchEngine, (s, continuation) -> null);
+        return new Resolution(searchEngineManager.getDefaultSearchEngine(aContext, userPref), engines);
+    }
+
+    private void setResolution(@NonNull Context aContext, @NonNull String aKey, @NonNull Resolution aResolution) {
+        mResolutions.put(aKey, aResolution);
+        setSearchEngine(aResolution.defaultEngine);
+        saveCachedResolution(aContext, aKey, aResolution);
+    }
+
+    private void setSearchEngine(@NonNull SearchEngine aSearchEngine) {
+        mSuggestionsClient = new SearchSuggestionClient(aSearchEngine, (s, continuation) -> null);
+        mSearchEngine = aSearchEngine;
+    }
+
+    /**
+     * The engines depend on the locale and, when we have geolocation data, on the region. The whole
+     * cache is dropped when the app is updated, as the bundled engines might have changed.
+     */
+    @NonNull
+    private String getCacheKey(@NonNull Context aContext) {
+        Locale locale = Locale.getDefault();
+        GeolocationData data = GeolocationData.parse(SettingsStore.getInstance(aContext).getGeolocationData());
+        String region = data != null ? data.getCountryCode() : locale.getCountry();
+        return locale.toLanguageTag() + "|" + region;
+    }
+
+    @Nullable
+    private JSONObject loadCacheEntry(@NonNull Context aContext, @NonNull String aKey) {
+        try {
+            String json = SettingsStore.getInstance(aContext).getSearchEnginesCache();
+            if (json.isEmpty()) {
+                return null;
+            }
+            JSONObject cache = new JSONObject(json);
+            if (cache.optInt(CACHE_VERSION) != BuildConfig.VERSION_CODE) {
+                return null;
+            }
+            return cache.getJSONObject(CACHE_ENTRIES).optJSONObject(aKey);
+
+        } catch (JSONException e) {
+            Log.w(LOGTAG, "Error loading the search engines cache: " + e.getLocalizedMessage());
+            return null;
+        }
+    }
+
+    @Nullable
+    private SearchEngine loadEngine(@NonNull Context aContext, @NonNull String aIdentifier) {
+        if (aIdentifier.isEmpty()) {
+            return null;
+        }
+        try {
+            AssetManager assets = aContext.getAssets();
+            return new SearchEngineParser().load(assets, aIdentifier, "searchplugins/" + aIdentifier + ".xml");
+
+        } catch (Exception e) {
+            // The engine is no longer bundled, the engines will be resolved again.
+            Log.w(LOGTAG, "Error loading the cached search engine: " + e.getLocalizedMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Loads the cached engines for the given key, or returns null if any of them can't be loaded.
+     */
+    @Nullable
+    private Resolution loadCachedResolution(@NonNull Context aContext, @NonNull String aKey) {
+        JSONObject entry = loadCacheEntry(aContext, aKey);
+        if (entry == null) {
+            return null;
+        }
+        SearchEngine defaultEngine = loadEngine(aContext, entry.optString(CACHE_DEFAULT));
+        JSONArray identifiers = entry.optJSONArray(CACHE_ENGINES);
+        if (defaultEngine == null || identifiers == null) {
+            return null;
+        }
+        List<SearchEngine> engines = new ArrayList<>(identifiers.length());
+        for (int i = 0; i < identifiers.length(); i++) {
+            SearchEngine engine = loadEngine(aContext, identifiers.optString(i));
+            if (engine == null) {
+                return null;
+            }
+            engines.add(engine);
+        }
+
+        return new Resolution(defaultEngine, engines);
+    }
+
+    private void saveCachedResolution(@NonNull Context aContext, @NonNull String aKey, @NonNull Resolution aResolution) {
+        SettingsStore settings = SettingsStore.getInstance(aContext);
+        try {
+            String json = settings.getSearchEnginesCache();
+            JSONObject cache = json.isEmpty() ? new JSONObject() : new JSONObject(json);
+            if (cache.optInt(CACHE_VERSION) != BuildConfig.VERSION_CODE) {
+                cache = new JSONObject();
+                cache.put(CACHE_VERSION, BuildConfig.VERSION_CODE);
+                cache.put(CACHE_ENTRIES, new JSONObject());
+            }
+            JSONArray engines = new JSONArray();
+            for (SearchEngine engine : aResolution.engines) {
+                engines.put(engine.getIdentifier());
+            }
+            JSONObject entry = new JSONObject();
+            entry.put(CACHE_DEFAULT, aResolution.defaultEngine.getIdentifier());
+            entry.put(CACHE_ENGINES, engines);
+
+            JSONObject entries = cache.getJSONObject(CACHE_ENTRIES);
+            JSONObject previous = entries.optJSONObject(aKey);
+            if (previous != null && previous.toString().equals(entry.toString())) {
+                return;
+            }
+            entries.put(aKey, entry);
+            settings.setSearchEnginesCache(cache.toString());
+
+        } catch (JSONException e) {
+            Log.e(LOGTAG, "Error saving the search engines cache: " + e.getLocalizedMessage());
+            settings.setSearchEnginesCache(EMPTY);
+        }
     }
 
     private String getEngine(String aCountryCode) {
@@ -0,0 +1,399 @@
+/* -*- Mode: Java; c-basic-offset: 4; tab-width: 4; indent-tabs-mode: nil; -*-
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.vrbrowser.search.suggestions;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Domain autocomplete for the URL bar, merging the shipped domains list with the hosts the user
+ * actually visits.
+ *
+ * Hosts are stored in a character trie where every node keeps a pointer to the best host below it,
+ * so a suggestion costs a walk over the typed text and doesn't depend on the number of domains.
+ * Visited hosts always rank above shipped ones and are ranked by an exponentially decayed visit
+ * count. The decayed count is stored as a logarithm relative to a fixed time, which keeps the
+ * ranking stable as time passes and only increases on new visits, so the node pointers can be
+ * updated along the host path without looking at siblings.
+ *
+ * All the methods are thread safe, the index is fed from the Places threads and queried from the UI thread.
+ */
+public class DomainAutocompleteIndex {
+
+    public static final String SOURCE_HISTORY = "history";
+    public static final String SOURCE_SHIPPED = "default";
+
+    // A visit weighs half as much after this time
+    static final long HALF_LIFE_MILLIS = 14L * 24 * 60 * 60 * 1000;
+
+    private static final int FORMAT_VERSION = 1;
+    private static final String WWW = "www.";
+    private static final String[] COMMON_SUBDOMAINS = { "www.", "mobile.", "m." };
+    private static final int NOT_SHIPPED = Integer.MAX_VALUE;
+
+    public static class Result {
+        public final String text;
+        public final String url;
+        public final String source;
+        public final int totalItems;
+
+        Result(@NonNull String text, @NonNull String url, @NonNull String source, int totalItems) {
+            this.text = text;
+            this.url = url;
+            this.source = source;
+            this.totalItems = totalItems;
+        }
+    }
+
+    private static class Host {
+        final String name;
+        int shippedRank = NOT_SHIPPED;
+        int visitCount;
+        long lastVisit;
+        // log2 of the sum of 2^(visitTime / HALF_LIFE_MILLIS) for all the visits
+        double score = Double.NEGATIVE_INFINITY;
+
+        Host(@NonNull String name) {
+            this.name = name;
+        }
+
+        boolean isVisited() {
+            return visitCount > 0;
+        }
+
+        void addVisit(long aTime) {
+            double visit = (double) aTime / HALF_LIFE_MILLIS;
+            if (score == Double.NEGATIVE_INFINITY) {
+                score = visit;
+            } else {
+                double max = Math.max(score, visit);
+                score = max + Math.log1p(Math.pow(2, -Math.abs(score - visit))) / Math.log(2);
+            }
+            visitCount++;
+            lastVisit = Math.max(lastVisit, aTime);
+        }
+
+        boolean isBetterThan(@Nullable Host aOther) {
+            if (aOther == null) {
+                return true;
+            }
+            if (isVisited() != aOther.isVisited()) {
+                return isVisited();
+            }
+            if (isVisited() && score != aOther.score) {
+                return score > aOther.score;
+            }
+            if (shippedRank != aOther.shippedRank) {
+                return shippedRank < aOther.shippedRank;
+            }
+            return name.length() < aOther.name.length();
+        }
+    }
+
+    private static class Node {
+        private static final char[] NO_KEYS = new char[0];
+        private static final Node[] NO_CHILDREN = new Node[0];
+
+        // Sorted keys, sized to the number of children
+        char[] keys = NO_KEYS;
+        Node[] children = NO_CHILDREN;
+        Host best;
+
+        @Nullable
+        Node getChild(char c) {
+            int index = Arrays.binarySearch(keys, c);
+            return index >= 0 ? children[index] : null;
+        }
+
+        @NonNull
+        Node getOrAddChild(char c) {
+            int index = Arrays.binarySearch(keys, c);
+            if (index >= 0) {
+                return children[index];
+            }
+            index = -index - 1;
+            char[] newKeys = new char[keys.length + 1];
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(keys, 0, newKeys, 0, index);
+            System.arraycopy(children, 0, newChildren, 0, index);
+            System.arraycopy(keys, index, newKeys, index + 1, keys.length - index);
+            System.arraycopy(children, index, newChildren, index + 1, children.length - index);
+            Node child = new Node();
+            newKeys[index] = c;
+            newChildren[index] = child;
+            keys = newKeys;
+            children = newChildren;
+            return child;
+        }
+    }
+
+    private Node mRoot = new Node();
+    private Map<String, Host> mHosts = new HashMap<>();
+    private List<String> mShippedDomains = Collections.emptyList();
+    private boolean mHasVisits;
+
+    /**
+     * Sets the shipped domains, ordered by popularity.
+     */
+    public synchronized void setShippedDomains(@NonNull List<String> aDomains) {
+        mShippedDomains = new ArrayList<>(aDomains);
+        rebuild(collectVisited());
+    }
+
+    /**
+     * Replaces all the visited hosts with the ones in the given visits.
+     */
+    public synchronized void replaceVisits(@NonNull Collection<LocalSuggestionIndex.Visit> aVisits) {
+        List<Host> visited = new ArrayList<>();
+        Map<String, Host> hosts = new HashMap<>();
+        for (LocalSuggestionIndex.Visit visit : aVisits) {
+            String name = getHostKey(visit.url);
+            if (name == null) {
+                continue;
+            }
+            Host host = hosts.get(name);
+            if (host == null) {
+                host = new Host(name);
+                hosts.put(name, host);
+                visited.add(host);
+            }
+            host.addVisit(visit.time);
+        }
+        mHasVisits = true;
+        rebuild(visited);
+    }
+
+    public synchronized void clearVisits() {
+        mHasVisits = true;
+        rebuild(Collections.emptyList());
+    }
+
+    public synchronized void recordVisit(@NonNull String aUrl, long aTime) {
+        String name = getHostKey(aUrl);
+        if (name == null) {
+            return;
+        }
+
+        Host host = mHosts.get(name);
+        if (host == null) {
+            host = new Host(name);
+            mHosts.put(name, host);
+        }
+        host.addVisit(aTime);
+        insert(host);
+    }
+
+    /**
+     * Returns the best domain starting with the given text, or null if there is none. The result
+     * text keeps the typed text as it is and appends the rest of the domain.
+     */
+    @Nullable
+    public synchronized Result getAutocompleteSuggestion(@NonNull String aText) {
+        if (aText.isEmpty()) {
+            return null;
+        }
+
+        boolean hasWWW = aText.regionMatches(true, 0, WWW, 0, WWW.length());
+        Node node = find(aText, hasWWW ? WWW.length() : 0);
+        String prefix = hasWWW ? WWW : "";
+        if ((node == null || node.best == null) && !hasWWW &&
+                WWW.regionMatches(true, 0, aText, 0, aText.length())) {
+            // The shipped provider also completes the www. forms of the domains
+            node = mRoot;
+            prefix = WWW;
+        }
+        if (node == null || node.best == null) {
+            return null;
+        }
+
+        Host best = node.best;
+        String domain = prefix + best.name;
+        return new Result(
+                aText + domain.substring(aText.length()),
+                "http://" + domain,
+                best.isVisited() ? SOURCE_HISTORY : SOURCE_SHIPPED,
+                mHosts.size());
+    }
+
+    public synchronized int size() {
+        return mHosts.size();
+    }
+
+    /**
+     * Writes the visited hosts. Hosts are sorted and front coded, and the shipped domains are not
+     * written as they are loaded from the assets.
+     */
+    public synchronized void writeTo(@NonNull OutputStream aStream) throws IOException {
+        List<Host> visited = collectVisited();
+        Collections.sort(visited, (a, b) -> a.name.compareTo(b.name));
+
+        DataOutputStream output = new DataOutputStream(aStream);
+        output.writeInt(FORMAT_VERSION);
+        output.writeInt(visited.size());
+        String previous = "";
+        for (Host host : visited) {
+            int shared = 0;
+            int max = Math.min(Math.min(previous.length(), host.name.length()), 255);
+            while (shared < max && previous.charAt(shared) == host.name.charAt(shared)) {
+                shared++;
+            }
+            output.writeByte(shared);
+            output.writeUTF(host.name.substring(shared));
+            output.writeInt(host.visitCount);
+            output.writeLong(host.lastVisit);
+            output.writeDouble(host.score);
+            previous = host.name;
+        }
+        output.flush();
+    }
+
+    /**
+     * Restores the visited hosts written by {@link #writeTo(OutputStream)}. The saved state is
+     * ignored if the visits were already set from the history, as those are more recent.
+     * @return Whether the state was restored.
+     */
+    public synchronized boolean readFrom(@NonNull InputStream aStream) throws IOException {
+        DataInputStream input = new DataInputStream(aStream);
+        if (input.readInt() != FORMAT_VERSION) {
+            return false;
+        }
+        int count = input.readInt();
+        List<Host> visited = new ArrayList<>(count);
+        String previous = "";
+        for (int i = 0; i < count; i++) {
+            int shared = input.readUnsignedByte();
+            if (shared > previous.length()) {
+                throw new IOException("Invalid domain prefix length");
+            }
+            Host host = new Host(previous.substring(0, shared) + input.readUTF());
+            host.visitCount = input.readInt();
+            host.lastVisit = input.readLong();
+            host.score = input.readDouble();
+            visited.add(host);
+            previous = host.name;
+        }
+
+        if (mHasVisits) {
+            return false;
+        }
+        rebuild(visited);
+        return true;
+    }
+
+    /**
+     * Returns the host of an http(s) URL without common subdomains, which is what gets
+     * autocompleted.
+     */
+    @Nullable
+    static String getHostKey(@NonNull String aUrl) {
+        int start = aUrl.indexOf("://");
+        if (start < 0) {
+            return null;
+        }
+        String scheme = aUrl.substring(0, start);
+        if (!scheme.equalsIgnoreCase("http") && !scheme.equalsIgnoreCase("https")) {
+            return null;
+        }
+        start += 3;
+        int end = start;
+        while (end < aUrl.length() && "/?#".indexOf(aUrl.charAt(end)) < 0) {
+            end++;
+        }
+        int userInfo = aUrl.lastIndexOf('@', end - 1);
+        if (userInfo >= start) {
+            start = userInfo + 1;
+        }
+        int port = aUrl.indexOf(':', start);
+        if (port >= 0 && port < end) {
+            end = port;
+        }
+        if (start >= end) {
+            return null;
+        }
+
+        String host = aUrl.substring(start, end).toLowerCase(Locale.ROOT);
+        for (String subdomain : COMMON_SUBDOMAINS) {
+            if (host.startsWith(subdomain) && host.length() > subdomain.length()) {
+                return host.substring(subdomain.length());
+            }
+        }
+        return host;
+    }
+
+    @Nullable
+    private Node find(@NonNull String aText, int aStart) {
+        Node node = mRoot;
+        for (int i = aStart; i < aText.length() && node != null; i++) {
+            node = node.getChild(Character.toLowerCase(aText.charAt(i)));
+        }
+        return node;
+    }
+
+    @NonNull
+    private List<Host> collectVisited() {
+        List<Host> visited = new ArrayList<>();
+        for (Host host : mHosts.values()) {
+            if (host.isVisited()) {
+                visited.add(host);
+            }
+        }
+        return visited;
+    }
+
+    private void rebuild(@NonNull List<Host> aVisited) {
+        mRoot = new Node();
+        mHosts = new HashMap<>();
+        for (Host host : aVisited) {
+            host.shippedRank = NOT_SHIPPED;
+            mHosts.put(host.name, host);
+            insert(host);
+        }
+        for (int rank = 0; rank < mShippedDomains.size(); rank++) {
+            String name = mShippedDomains.get(rank).toLowerCase(Locale.ROOT);
+            Host host = mHosts.get(name);
+            if (host == null) {
+                host = new Host(name);
+                mHosts.put(name, host);
+            } else if (host.shippedRank != NOT_SHIPPED) {
+                continue;
+            }
+            host.shippedRank = rank;
+            insert(host);
+        }
+    }
+
+    /**
+     * Inserts or re-ranks a host whose ranking only improved.
+     */
+    private void insert(@NonNull Host aHost) {
+        Node node = mRoot;
+        updateBest(node, aHost);
+        for (int i = 0; i < aHost.name.length(); i++) {
+            node = node.getOrAddChild(aHost.name.charAt(i));
+            updateBest(node, aHost);
+        }
+    }
+
+    private static void updateBest(@NonNull Node aNode, @NonNull Host aHost) {
+        if (aNode.best != aHost && aHost.isBetterThan(aNode.best)) {
+            aNode.best = aHost;
+        }
+    }
+}
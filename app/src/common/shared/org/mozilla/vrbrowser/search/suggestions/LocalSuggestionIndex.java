@@ -0,0 +1,519 @@
+/* -*- Mode: Java; c-basic-offset: 4; tab-width: 4; indent-tabs-mode: nil; -*-
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.vrbrowser.search.suggestions;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * In-memory prefix index over the titles, URLs and hosts of recently visited pages and bookmarks,
+ * used to answer URL bar queries without hitting the Places storage on every keystroke.
+ *
+ * Entries are ranked by frecency: the visit count (plus a bonus for bookmarks) weighted by the
+ * age of the last visit, using the same age buckets as Firefox desktop. Bookmarks never weigh
+ * less than BOOKMARK_MIN_WEIGHT, as Places doesn't give us when they were added and a bookmark
+ * that was never visited has no last visit.
+ *
+ * History rebuilds read the storage without holding the index, so the visits and removals applied
+ * between {@link #beginHistoryRebuild()} and {@link #finishHistoryRebuild(Collection)} are
+ * replayed on top of the visits that were read.
+ *
+ * All the methods are thread safe, the index is fed from the Places threads and queried from the UI thread.
+ */
+public class LocalSuggestionIndex {
+
+    public static final long MAX_HISTORY_AGE_MILLIS = 90L * 24 * 60 * 60 * 1000;
+    static final int MAX_HISTORY_ENTRIES = 2000;
+
+    private static final long DAY_MILLIS = 24 * 60 * 60 * 1000;
+    private static final int BOOKMARK_BONUS = 10;
+    private static final double BOOKMARK_MIN_WEIGHT = 0.5;
+
+    public static class Visit {
+        final String url;
+        final String title;
+        final long time;
+
+        public Visit(@NonNull String url, @Nullable String title, long time) {
+            this.url = url;
+            this.title = title;
+            this.time = time;
+        }
+    }
+
+    public static class Bookmark {
+        final String guid;
+        final String url;
+        final String title;
+
+        public Bookmark(@NonNull String guid, @NonNull String url, @Nullable String title) {
+            this.guid = guid;
+            this.url = url;
+            this.title = title;
+        }
+    }
+
+    public static class Result {
+        public final String url;
+        public final String title;
+        public final boolean isBookmark;
+        public final double frecency;
+
+        Result(@NonNull Entry entry, long now) {
+            url = entry.url;
+            title = entry.title;
+            isBookmark = entry.bookmarkGuids.size() > 0;
+            frecency = entry.frecency(now);
+        }
+    }
+
+    private static class Entry {
+        final String url;
+        String title;
+        int visitCount;
+        long lastVisit;
+        Set<String> bookmarkGuids = Collections.emptySet();
+        String[] tokens = new String[0];
+        // Last query that visited this entry, an entry can be reached through several tokens
+        int queryStamp;
+
+        Entry(@NonNull String url) {
+            this.url = url;
+        }
+
+        boolean isEmpty() {
+            return visitCount == 0 && bookmarkGuids.isEmpty();
+        }
+
+        double frecency(long now) {
+            double weight = visitCount > 0 ? recencyWeight(now - lastVisit) : 0;
+            if (bookmarkGuids.isEmpty()) {
+                return visitCount * weight;
+            }
+            return (visitCount + BOOKMARK_BONUS) * Math.max(weight, BOOKMARK_MIN_WEIGHT);
+        }
+    }
+
+    private final Object mLock = new Object();
+    private final Map<String, Entry> mEntries = new HashMap<>();
+    private final Map<String, Entry> mBookmarks = new HashMap<>();
+    private final TreeMap<String, Set<Entry>> mTokens = new TreeMap<>();
+    // Changes applied during the ongoing history rebuilds
+    private final List<Runnable> mRebuildJournal = new ArrayList<>();
+    private int mRebuilds;
+    private long mRebuildStart;
+    private int mHistoryCount;
+    private int mQueryStamp;
+    private boolean mHistoryLoaded;
+    private boolean mBookmarksLoaded;
+
+    /**
+     * The index is ready to replace storage queries once both history and bookmarks have been loaded.
+     */
+    public boolean isReady() {
+        synchronized (mLock) {
+            return mHistoryLoaded && mBookmarksLoaded;
+        }
+    }
+
+    public int size() {
+        synchronized (mLock) {
+            return mEntries.size();
+        }
+    }
+
+    public void replaceHistory(@NonNull Collection<Visit> aVisits) {
+        synchronized (mLock) {
+            // Whatever happened before doesn't apply to the new history
+            mRebuildJournal.clear();
+            replaceHistoryLocked(aVisits);
+        }
+    }
+
+    /**
+     * Call before reading the visits of a rebuild from storage.
+     */
+    public void beginHistoryRebuild() {
+        synchronized (mLock) {
+            if (mRebuilds++ == 0) {
+                mRebuildStart = System.currentTimeMillis();
+            }
+        }
+    }
+
+    /**
+     * Replaces the history with the visits read since {@link #beginHistoryRebuild()} and replays
+     * the changes applied meanwhile.
+     */
+    public void finishHistoryRebuild(@NonNull Collection<Visit> aVisits) {
+        synchronized (mLock) {
+            replaceHistoryLocked(aVisits);
+            for (Runnable change : mRebuildJournal) {
+                change.run();
+            }
+            endHistoryRebuild();
+        }
+    }
+
+    /**
+     * Call when reading the visits of a rebuild failed.
+     */
+    public void cancelHistoryRebuild() {
+        synchronized (mLock) {
+            endHistoryRebuild();
+        }
+    }
+
+    public void replaceBookmarks(@NonNull Collection<Bookmark> aBookmarks) {
+        synchronized (mLock) {
+            for (String guid : new ArrayList<>(mBookmarks.keySet())) {
+                removeBookmarkLocked(guid);
+            }
+            for (Bookmark bookmark : aBookmarks) {
+                addBookmarkLocked(bookmark.guid, bookmark.url, bookmark.title);
+            }
+            mBookmarksLoaded = true;
+        }
+    }
+
+    public void recordVisit(@NonNull String aUrl, long aTime) {
+        synchronized (mLock) {
+            recordVisitLocked(aUrl, aTime);
+            journal(() -> {
+                // The storage may have been read after the visit was stored
+                Entry entry = mEntries.get(aUrl);
+                if (entry == null || entry.lastVisit < mRebuildStart) {
+                    recordVisitLocked(aUrl, aTime);
+                }
+            });
+        }
+    }
+
+    public void setTitle(@NonNull String aUrl, @Nullable String aTitle) {
+        synchronized (mLock) {
+            setTitleLocked(aUrl, aTitle);
+            journal(() -> setTitleLocked(aUrl, aTitle));
+        }
+    }
+
+    public void removeHistory(@NonNull String aUrl) {
+        synchronized (mLock) {
+            removeHistoryLocked(aUrl);
+            journal(() -> removeHistoryLocked(aUrl));
+        }
+    }
+
+    public void clearHistory() {
+        replaceHistory(Collections.emptyList());
+    }
+
+    public void addBookmark(@NonNull String aGuid, @NonNull String aUrl, @Nullable String aTitle) {
+        synchronized (mLock) {
+            addBookmarkLocked(aGuid, aUrl, aTitle);
+        }
+    }
+
+    /**
+     * Returns false when the GUID is not an indexed bookmark, for example a folder.
+     */
+    public boolean removeBookmark(@NonNull String aGuid) {
+        synchronized (mLock) {
+            return removeBookmarkLocked(aGuid);
+        }
+    }
+
+    /**
+     * Returns the entries matching every word of the query, best frecency first. Each word must be
+     * the prefix of a title word, of the host or one of its labels, or of the URL without scheme
+     * and "www.".
+     */
+    @NonNull
+    public List<Result> query(@NonNull String aQuery, int aLimit) {
+        String[] words = tokenizeQuery(aQuery);
+        if (words.length == 0 || aLimit <= 0) {
+            return Collections.emptyList();
+        }
+
+        // Walk the range of the most selective (longest) word and check the remaining ones per entry.
+        String lookup = words[0];
+        for (String word : words) {
+            if (word.length() > lookup.length()) {
+                lookup = word;
+            }
+        }
+
+        long now = System.currentTimeMillis();
+        PriorityQueue<Result> best = new PriorityQueue<>(aLimit + 1, Comparator.comparingDouble(result -> result.frecency));
+        synchronized (mLock) {
+            int stamp = ++mQueryStamp;
+            NavigableMap<String, Set<Entry>> range = mTokens.subMap(lookup, true, lookup + Character.MAX_VALUE, false);
+            for (Set<Entry> entries : range.values()) {
+                for (Entry entry : entries) {
+                    if (entry.queryStamp == stamp) {
+                        continue;
+                    }
+                    entry.queryStamp = stamp;
+                    if (words.length > 1 && !matchesAll(entry, words)) {
+                        continue;
+                    }
+                    if (best.size() == aLimit && entry.frecency(now) <= best.peek().frecency) {
+                        continue;
+                    }
+                    best.add(new Result(entry, now));
+                    if (best.size() > aLimit) {
+                        best.poll();
+                    }
+                }
+            }
+        }
+
+        List<Result> results = new ArrayList<>(best);
+        results.sort((r1, r2) -> Double.compare(r2.frecency, r1.frecency));
+        return results;
+    }
+
+    static double recencyWeight(long aAgeMillis) {
+        long days = aAgeMillis / DAY_MILLIS;
+        if (days < 4) {
+            return 1.0;
+        } else if (days < 14) {
+            return 0.7;
+        } else if (days < 31) {
+            return 0.5;
+        } else if (days < 90) {
+            return 0.3;
+        }
+        return 0.1;
+    }
+
+    @NonNull
+    static String stripUrl(@NonNull String aUrl) {
+        String url = aUrl.toLowerCase(Locale.ROOT);
+        int scheme = url.indexOf("://");
+        if (scheme >= 0) {
+            url = url.substring(scheme + 3);
+        }
+        if (url.startsWith("www.")) {
+            url = url.substring(4);
+        }
+        return url;
+    }
+
+    @NonNull
+    private static String[] tokenizeQuery(@NonNull String aQuery) {
+        String query = aQuery.trim().toLowerCase(Locale.ROOT);
+        if (query.contains("://") || query.startsWith("www.")) {
+            return new String[] { stripUrl(query) };
+        }
+        return query.isEmpty() ? new String[0] : query.split("\\s+");
+    }
+
+    @NonNull
+    private static String[] tokenize(@NonNull Entry aEntry) {
+        Set<String> tokens = new HashSet<>();
+        String url = stripUrl(aEntry.url);
+        tokens.add(url);
+        int hostEnd = url.indexOf('/');
+        String host = hostEnd >= 0 ? url.substring(0, hostEnd) : url;
+        tokens.add(host);
+        // "example" matches old.example.com, as the Places substring search did
+        for (String label : host.split("\\.")) {
+            if (!label.isEmpty()) {
+                tokens.add(label);
+            }
+        }
+        if (aEntry.title != null) {
+            for (String word : aEntry.title.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+                if (!word.isEmpty()) {
+                    tokens.add(word);
+                }
+            }
+        }
+        return tokens.toArray(new String[0]);
+    }
+
+    private static boolean matchesAll(@NonNull Entry aEntry, @NonNull String[] aWords) {
+        for (String word : aWords) {
+            boolean matches = false;
+            for (String token : aEntry.tokens) {
+                if (token.startsWith(word)) {
+                    matches = true;
+                    break;
+                }
+            }
+            if (!matches) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void replaceHistoryLocked(@NonNull Collection<Visit> aVisits) {
+        for (Entry entry : new ArrayList<>(mEntries.values())) {
+            entry.visitCount = 0;
+            entry.lastVisit = 0;
+            removeIfEmpty(entry);
+        }
+        mHistoryCount = 0;
+        for (Visit visit : aVisits) {
+            addVisit(visit.url, visit.title, visit.time);
+        }
+        trimHistory(System.currentTimeMillis());
+        mHistoryLoaded = true;
+    }
+
+    private void endHistoryRebuild() {
+        if (mRebuilds > 0 && --mRebuilds == 0) {
+            mRebuildJournal.clear();
+        }
+    }
+
+    private void journal(@NonNull Runnable aChange) {
+        if (mRebuilds > 0) {
+            mRebuildJournal.add(aChange);
+        }
+    }
+
+    private void recordVisitLocked(@NonNull String aUrl, long aTime) {
+        addVisit(aUrl, null, aTime);
+        trimHistory(aTime);
+    }
+
+    private void setTitleLocked(@NonNull String aUrl, @Nullable String aTitle) {
+        Entry entry = mEntries.get(aUrl);
+        if (entry != null && aTitle != null && !aTitle.equals(entry.title)) {
+            unindex(entry);
+            entry.title = aTitle;
+            index(entry);
+        }
+    }
+
+    private void removeHistoryLocked(@NonNull String aUrl) {
+        Entry entry = mEntries.get(aUrl);
+        if (entry != null && entry.visitCount > 0) {
+            entry.visitCount = 0;
+            entry.lastVisit = 0;
+            mHistoryCount--;
+            removeIfEmpty(entry);
+        }
+    }
+
+    private void addVisit(@NonNull String aUrl, @Nullable String aTitle, long aTime) {
+        if (aTime < System.currentTimeMillis() - MAX_HISTORY_AGE_MILLIS) {
+            return;
+        }
+        Entry entry = getOrCreate(aUrl, aTitle);
+        if (entry.visitCount == 0) {
+            mHistoryCount++;
+        }
+        entry.visitCount++;
+        entry.lastVisit = Math.max(entry.lastVisit, aTime);
+    }
+
+    private void addBookmarkLocked(@NonNull String aGuid, @NonNull String aUrl, @Nullable String aTitle) {
+        if (aUrl.startsWith("place:")) {
+            return;
+        }
+        Entry entry = getOrCreate(aUrl, aTitle);
+        if (entry.bookmarkGuids.isEmpty()) {
+            entry.bookmarkGuids = new HashSet<>();
+        }
+        entry.bookmarkGuids.add(aGuid);
+        mBookmarks.put(aGuid, entry);
+    }
+
+    private boolean removeBookmarkLocked(@NonNull String aGuid) {
+        Entry entry = mBookmarks.remove(aGuid);
+        if (entry != null) {
+            entry.bookmarkGuids.remove(aGuid);
+            removeIfEmpty(entry);
+            return true;
+        }
+        return false;
+    }
+
+    @NonNull
+    private Entry getOrCreate(@NonNull String aUrl, @Nullable String aTitle) {
+        Entry entry = mEntries.get(aUrl);
+        if (entry == null) {
+            entry = new Entry(aUrl);
+            entry.title = aTitle;
+            mEntries.put(aUrl, entry);
+            index(entry);
+
+        } else if (aTitle != null && !aTitle.equals(entry.title)) {
+            unindex(entry);
+            entry.title = aTitle;
+            index(entry);
+        }
+        return entry;
+    }
+
+    private void removeIfEmpty(@NonNull Entry aEntry) {
+        if (aEntry.isEmpty()) {
+            unindex(aEntry);
+            mEntries.remove(aEntry.url);
+        }
+    }
+
+    /**
+     * Drops the history-only entries with the lowest frecency once the index grows past its bound.
+     * Trimming to 90% of the bound keeps this from running on every visit.
+     */
+    private void trimHistory(long aNow) {
+        if (mHistoryCount <= MAX_HISTORY_ENTRIES) {
+            return;
+        }
+        List<Entry> candidates = new ArrayList<>();
+        for (Entry entry : mEntries.values()) {
+            if (entry.visitCount > 0 && entry.bookmarkGuids.isEmpty()) {
+                candidates.add(entry);
+            }
+        }
+        candidates.sort(Comparator.comparingDouble(entry -> entry.frecency(aNow)));
+        int toRemove = mHistoryCount - (MAX_HISTORY_ENTRIES * 9 / 10);
+        for (int i = 0; i < toRemove && i < candidates.size(); i++) {
+            Entry entry = candidates.get(i);
+            entry.visitCount = 0;
+            mHistoryCount--;
+            removeIfEmpty(entry);
+        }
+    }
+
+    private void index(@NonNull Entry aEntry) {
+        aEntry.tokens = tokenize(aEntry);
+        for (String token : aEntry.tokens) {
+            mTokens.computeIfAbsent(token, key -> new HashSet<>(2)).add(aEntry);
+        }
+    }
+
+    private void unindex(@NonNull Entry aEntry) {
+        for (String token : aEntry.tokens) {
+            Set<Entry> entries = mTokens.get(token);
+            if (entries != null) {
+                entries.remove(aEntry);
+                if (entries.isEmpty()) {
+                    mTokens.remove(token);
+                }
+            }
+        }
+        aEntry.tokens = new String[0];
+    }
+}
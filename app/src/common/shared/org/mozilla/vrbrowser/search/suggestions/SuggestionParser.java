@@ -1,54 +1,75 @@
 package org.mozilla.vrbrowser.search.suggestions;
 
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
+import androidx.annotation.NonNull;
 
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.function.Function;
 
 import mozilla.components.browser.search.SearchEngine;
 
+/**
+ * Streaming parsers for the search engines suggestion responses. They read straight from the
+ * response body and stop as soon as the results limit is reached, so the rest of the body is
+ * never read.
+ */
 public class SuggestionParser {
 
     private static final String AZERDICT = "Azerdict";
     private static final String DAUM = "다음지도";
     private static final String QWANT = "Qwant";
 
-    public static Function<String, List<String>> selectResponseParser(SearchEngine mEngine) {
-        if (mEngine.getName().equals(AZERDICT)) {
+    public interface ResponseParser {
+        @NonNull
+        List<String> parse(@NonNull InputStream aBody, int aLimit) throws IOException;
+    }
+
+    public static ResponseParser selectResponseParser(SearchEngine mEngine) {
+        return selectResponseParser(mEngine.getName());
+    }
+
+    public static ResponseParser selectResponseParser(@NonNull String aEngineName) {
+        if (aEngineName.equals(AZERDICT)) {
             return azerdictResponseParser;
 
-        } else if (mEngine.getName().equals(DAUM)) {
+        } else if (aEngineName.equals(DAUM)) {
             return daumResponseParser;
 
-        } else if (mEngine.getName().equals(QWANT)) {
+        } else if (aEngineName.equals(QWANT)) {
             return qwantResponseParser;
         }
 
         return defaultResponseParser;
     }
 
-    private static Function<String, List<String>> defaultResponseParser = buildJSONArrayParser(1);
-    private static Function<String, List<String>> azerdictResponseParser = buildJSONObjectParser("suggestions");
-    private static Function<String, List<String>> daumResponseParser = buildJSONObjectParser("items");
-    private static Function<String, List<String>> qwantResponseParser = buildQwantParser();
-
-    private static Function<String, List<String>> buildJSONArrayParser(int ressultsIndex) {
-        return input -> {
+    // ["query", ["suggestion1", "suggestion2", ...], ...]
+    private static ResponseParser defaultResponseParser = buildJSONArrayParser(1);
+    // {"suggestions": ["suggestion1", ...], ...}
+    private static ResponseParser azerdictResponseParser = buildJSONObjectParser("suggestions");
+    // {"items": ["suggestion1", ...], ...}
+    private static ResponseParser daumResponseParser = buildJSONObjectParser("items");
+    // {"data": {"items": [{"value": "suggestion1", ...}, ...]}, ...}
+    private static ResponseParser qwantResponseParser = buildJSONObjectParser("data", "items");
+
+    private static ResponseParser buildJSONArrayParser(int resultsIndex) {
+        return (body, limit) -> {
             List<String> list = new ArrayList<>();
-            try {
-                JSONArray root = new JSONArray(input);
-                JSONArray array = root.getJSONArray(ressultsIndex);
-                if (array != null) {
-                    int len = array.length();
-                    for (int i=0; i<len; i++){
-                        list.add(array.get(i).toString());
-                    }
+            try (JsonReader reader = createReader(body)) {
+                reader.beginArray();
+                for (int i = 0; i < resultsIndex && reader.hasNext(); i++) {
+                    reader.skipValue();
+                }
+                if (reader.hasNext() && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                    readResults(reader, list, limit);
                 }
 
-            } catch (JSONException e) {
+            } catch (IllegalStateException e) {
                 e.printStackTrace();
             }
 
@@ -56,20 +77,23 @@ public class SuggestionParser {
         };
     }
 
-    private static Function<String, List<String>> buildJSONObjectParser(String resultsKey) {
-        return input -> {
+    /**
+     * Builds a parser for a results array nested in objects following the given keys.
+     */
+    private static ResponseParser buildJSONObjectParser(String... resultsPath) {
+        return (body, limit) -> {
             List<String> list = new ArrayList<>();
-            try {
-                JSONObject root = new JSONObject(input);
-                JSONArray array = root.getJSONArray(resultsKey);
-                if (array != null) {
-                    int len = array.length();
-                    for (int i=0; i<len; i++){
-                        list.add(array.get(i).toString());
+            try (JsonReader reader = createReader(body)) {
+                for (String key : resultsPath) {
+                    if (!findKey(reader, key)) {
+                        return list;
                     }
                 }
+                if (reader.peek() == JsonToken.BEGIN_ARRAY) {
+                    readResults(reader, list, limit);
+                }
 
-            } catch (JSONException e) {
+            } catch (IllegalStateException e) {
                 e.printStackTrace();
             }
 
@@ -77,26 +101,64 @@ public class SuggestionParser {
         };
     }
 
-    private static Function<String, List<String>> buildQwantParser() {
-        return input -> {
-            List<String> list = new ArrayList<>();
-            try {
-                JSONObject root = new JSONObject(input);
-                JSONObject data = root.getJSONObject("data");
-                JSONArray items = data.getJSONArray("items");
-                if (items != null) {
-                    int len = items.length();
-                    for (int i=0; i<len; i++){
-                        list.add(items.get(i).toString());
-                    }
-                }
+    private static JsonReader createReader(@NonNull InputStream aBody) {
+        JsonReader reader = new JsonReader(new InputStreamReader(aBody, StandardCharsets.UTF_8));
+        reader.setLenient(true);
+        return reader;
+    }
 
-            } catch (JSONException e) {
-                e.printStackTrace();
+    /**
+     * Enters the object at the reader position and moves to the value of the given key.
+     */
+    private static boolean findKey(@NonNull JsonReader aReader, @NonNull String aKey) throws IOException {
+        if (aReader.peek() != JsonToken.BEGIN_OBJECT) {
+            return false;
+        }
+        aReader.beginObject();
+        while (aReader.hasNext()) {
+            if (aReader.nextName().equals(aKey)) {
+                return true;
             }
+            aReader.skipValue();
+        }
+        return false;
+    }
 
-            return list;
-        };
+    /**
+     * Reads the results array at the reader position, stopping once the limit is reached.
+     * Object items use their "value" field.
+     */
+    private static void readResults(@NonNull JsonReader aReader, @NonNull List<String> aResults, int aLimit) throws IOException {
+        aReader.beginArray();
+        while (aResults.size() < aLimit && aReader.hasNext()) {
+            switch (aReader.peek()) {
+                case STRING:
+                case NUMBER:
+                    aResults.add(aReader.nextString());
+                    break;
+                case BOOLEAN:
+                    aResults.add(String.valueOf(aReader.nextBoolean()));
+                    break;
+                case BEGIN_OBJECT:
+                    if (findKey(aReader, "value") && aReader.peek() == JsonToken.STRING) {
+                        aResults.add(aReader.nextString());
+                    }
+                    skipToEndOfObject(aReader);
+                    break;
+                default:
+                    aReader.skipValue();
+            }
+        }
     }
 
+    private static void skipToEndOfObject(@NonNull JsonReader aReader) throws IOException {
+        while (aReader.hasNext()) {
+            if (aReader.peek() == JsonToken.NAME) {
+                aReader.nextName();
+            } else {
+                aReader.skipValue();
+            }
+        }
+        aReader.endObject();
+    }
 }
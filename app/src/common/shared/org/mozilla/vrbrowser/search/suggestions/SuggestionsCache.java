@@ -0,0 +1,139 @@
+package org.mozilla.vrbrowser.search.suggestions;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * Bounded, time limited LRU cache of remote search suggestions keyed by engine and normalized query.
+ *
+ * Besides exact lookups it can answer a query from the results of its longest cached prefix, so
+ * the list can be narrowed down while the request for the extended query is in flight.
+ */
+public class SuggestionsCache {
+
+    public static final int DEFAULT_MAX_ENTRIES = 64;
+    public static final long DEFAULT_TTL_MILLIS = 5 * 60 * 1000;
+
+    public static class Lookup {
+        public final List<String> suggestions;
+        // False when the suggestions were filtered from a prefix of the query
+        public final boolean isExact;
+
+        Lookup(@NonNull List<String> suggestions, boolean isExact) {
+            this.suggestions = suggestions;
+            this.isExact = isExact;
+        }
+    }
+
+    private static class Entry {
+        final List<String> suggestions;
+        final long timestamp;
+
+        Entry(@NonNull List<String> suggestions, long timestamp) {
+            this.suggestions = suggestions;
+            this.timestamp = timestamp;
+        }
+    }
+
+    private final int mMaxEntries;
+    private final long mTTLMillis;
+    private final LongSupplier mClock;
+    private final LinkedHashMap<String, Entry> mEntries;
+    private int mHits;
+    private int mPrefixHits;
+    private int mMisses;
+
+    public SuggestionsCache() {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_TTL_MILLIS, System::currentTimeMillis);
+    }
+
+    public SuggestionsCache(int aMaxEntries, long aTTLMillis, @NonNull LongSupplier aClock) {
+        mMaxEntries = aMaxEntries;
+        mTTLMillis = aTTLMillis;
+        mClock = aClock;
+        mEntries = new LinkedHashMap<String, Entry>(aMaxEntries, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > mMaxEntries;
+            }
+        };
+    }
+
+    @NonNull
+    public static String normalize(@NonNull String aQuery) {
+        return aQuery.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    public synchronized void put(@NonNull String aEngine, @NonNull String aQuery, @NonNull List<String> aSuggestions) {
+        mEntries.put(key(aEngine, normalize(aQuery)), new Entry(new ArrayList<>(aSuggestions), mClock.getAsLong()));
+    }
+
+    /**
+     * Returns the cached suggestions for the query, or the suggestions of its longest cached prefix
+     * that still match the query, or null if there are none.
+     */
+    @Nullable
+    public synchronized Lookup get(@NonNull String aEngine, @NonNull String aQuery) {
+        String query = normalize(aQuery);
+        Entry entry = getValid(key(aEngine, query));
+        if (entry != null) {
+            mHits++;
+            return new Lookup(entry.suggestions, true);
+        }
+
+        for (int length = query.length() - 1; length > 0; length--) {
+            entry = getValid(key(aEngine, query.substring(0, length)));
+            if (entry != null) {
+                List<String> filtered = new ArrayList<>();
+                for (String suggestion : entry.suggestions) {
+                    if (suggestion.toLowerCase(Locale.ROOT).startsWith(query)) {
+                        filtered.add(suggestion);
+                    }
+                }
+                mPrefixHits++;
+                return new Lookup(filtered, false);
+            }
+        }
+
+        mMisses++;
+        return null;
+    }
+
+    public synchronized void clear() {
+        mEntries.clear();
+    }
+
+    public synchronized int getHits() {
+        return mHits;
+    }
+
+    public synchronized int getPrefixHits() {
+        return mPrefixHits;
+    }
+
+    public synchronized int getMisses() {
+        return mMisses;
+    }
+
+    @Nullable
+    private Entry getValid(@NonNull String aKey) {
+        Entry entry = mEntries.get(aKey);
+        if (entry != null && mClock.getAsLong() - entry.timestamp > mTTLMillis) {
+            mEntries.remove(aKey);
+            return null;
+        }
+        return entry;
+    }
+
+    @NonNull
+    private static String key(@NonNull String aEngine, @NonNull String aNormalizedQuery) {
+        return aEngine + '\n' + aNormalizedQuery;
+    }
+}
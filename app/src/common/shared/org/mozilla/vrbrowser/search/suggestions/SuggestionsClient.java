@@ -5,44 +5,69 @@ import android.os.Looper;
 
 import androidx.annotation.NonNull;
 
+import org.mozilla.geckoview.GeckoResult;
 import org.mozilla.geckoview.GeckoWebExecutor;
 import org.mozilla.geckoview.WebRequest;
+import org.mozilla.geckoview.WebResponse;
 
-import java.io.ByteArrayOutputStream;
-import java.nio.charset.StandardCharsets;
+import java.io.IOException;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 import mozilla.components.browser.search.SearchEngine;
 
 public class SuggestionsClient {
 
+    private static final int MAX_SUGGESTIONS = 10;
 
-    public static CompletableFuture<List<String>> getSuggestions(@NonNull GeckoWebExecutor executor, SearchEngine mEngine, String aQuery) {
+    /**
+     * The response is parsed on the given executor and the future is completed on the main looper.
+     */
+    public static CompletableFuture<List<String>> getSuggestions(@NonNull GeckoWebExecutor executor, @NonNull Executor aParserExecutor, SearchEngine mEngine, String aQuery) {
         final CompletableFuture<List<String>> future = new CompletableFuture<>();
+        final Handler handler = new Handler(Looper.getMainLooper());
+
+        handler.post(() -> {
+            if (future.isDone()) {
+                // Cancelled before the request was sent
+                return;
+            }
 
-        new Handler(Looper.getMainLooper()).post(() -> {
             WebRequest request = new WebRequest.Builder(aQuery)
                     .method("GET")
                     .build();
 
-            executor.fetch(request).then(webResponse -> {
-                String body;
-                if (webResponse != null) {
-                    if (webResponse.body != null) {
-                        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
-                        int nRead;
-                        byte[] data = new byte[1024];
-                        while ((nRead = webResponse.body.read(data, 0, data.length)) != -1) {
-                            buffer.write(data, 0, nRead);
-                        }
-                        body = new String(buffer.toByteArray(), StandardCharsets.UTF_8);
+            GeckoResult<WebResponse> result = executor.fetch(request);
+            future.whenComplete((suggestions, throwable) -> {
+                if (future.isCancelled()) {
+                    result.cancel();
+                }
+            });
+            result.then(webResponse -> {
+                if (future.isDone()) {
+                    // The request is outdated, don't bother reading the response
+                    if (webResponse != null && webResponse.body != null) {
+                        webResponse.body.close();
+                    }
 
+                } else if (webResponse != null) {
+                    if (webResponse.body != null) {
                         if (webResponse.statusCode == 200) {
-                            future.complete(SuggestionParser.selectResponseParser(mEngine).apply(body));
+                            // The parser reads from the body stream and closes it
+                            aParserExecutor.execute(() -> {
+                                try {
+                                    List<String> suggestions = SuggestionParser.selectResponseParser(mEngine).parse(webResponse.body, MAX_SUGGESTIONS);
+                                    handler.post(() -> future.complete(suggestions));
+
+                                } catch (IOException e) {
+                                    handler.post(() -> future.completeExceptionally(new Throwable(String.format("Error parsing the response: %s", e.getMessage()))));
+                                }
+                            });
 
                         } else {
                             // called when response HTTP status is not "200"
+                            webResponse.body.close();
                             future.completeExceptionally(new Throwable(String.format("Network Error: %s", webResponse.statusCode)));
                         }
 
@@ -1,9 +1,12 @@
 package org.mozilla.vrbrowser.search.suggestions;
 
 import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 import org.mozilla.vrbrowser.VRBrowserApplication;
 import org.mozilla.vrbrowser.browser.engine.SessionStore;
@@ -13,15 +16,36 @@ import org.mozilla.vrbrowser.ui.widgets.SuggestionsWidget.SuggestionItem.Type;
 import org.mozilla.vrbrowser.utils.UrlUtils;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
 
+import mozilla.components.concept.storage.BookmarkNode;
+import mozilla.components.concept.storage.SearchResult;
+
 public class SuggestionsProvider {
 
     private static final String LOGTAG = SuggestionsProvider.class.getSimpleName();
 
+    private static final int MAX_LOCAL_SUGGESTIONS = 100;
+
+    // Time after which the suggestions list is finalized with whatever sources have answered.
+    private static final long SUGGESTIONS_DEADLINE_MS = 1500;
+    // Network suggestions wait for the user to stop typing, local ones are shown right away.
+    private static final long NETWORK_DEBOUNCE_MS = 250;
+
+    // Sources, in the order used to break ranking ties when merging.
+    private static final int SOURCE_SEARCH_ENGINE = 0;
+    private static final int SOURCE_BOOKMARKS = 1;
+    private static final int SOURCE_HISTORY = 2;
+    private static final int SOURCES_COUNT = 3;
+
+    public interface PartialResultsListener {
+        void onPartialResults(@NonNull List<SuggestionItem> aItems);
+    }
+
     public class DefaultSuggestionsComparator implements Comparator {
 
         public int compare(Object obj1, Object obj2) {
@@ -31,7 +55,7 @@ public class SuggestionsProvider {
                 return 0;
 
             } else if (suggestion1.type == suggestion2.type) {
-                if (suggestion1.type == Type.HISTORY) {
+                if (suggestion1.type == Type.HISTORY || suggestion1.type == Type.BOOKMARK) {
                     if (suggestion1.score != suggestion2.score) {
                         return suggestion1.score - suggestion2.score;
                     }
@@ -50,12 +74,16 @@ public class SuggestionsProvider {
     private String mFilterText;
     private Comparator mComparator;
     private Executor mUIThreadExecutor;
+    private Handler mHandler;
+    private SuggestionsRequest mCurrentRequest;
+    private int mGeneration;
 
     public SuggestionsProvider(Context context) {
         mSearchEngineWrapper = SearchEngineWrapper.get(context);
         mFilterText = "";
         mComparator = new DefaultSuggestionsComparator();
         mUIThreadExecutor = ((VRBrowserApplication)context.getApplicationContext()).getExecutors().mainThread();
+        mHandler = new Handler(Looper.getMainLooper());
     }
 
     private String getSearchURLOrDomain(String text) {
@@ -78,9 +106,11 @@ public class SuggestionsProvider {
         mComparator = comparator;
     }
 
-    private CompletableFuture<List<SuggestionItem>> getBookmarkSuggestions(@NonNull List<SuggestionItem> items) {
-        CompletableFuture future = new CompletableFuture();
-        SessionStore.get().getBookmarkStore().searchBookmarks(mFilterText, 100).thenAcceptAsync((bookmarks) -> {
+    private CompletableFuture<List<SuggestionItem>> getBookmarkSuggestions(@NonNull String aFilterText, @NonNull List<CompletableFuture<?>> aSources) {
+        CompletableFuture<List<BookmarkNode>> source = SessionStore.get().getBookmarkStore().searchBookmarks(aFilterText, MAX_LOCAL_SUGGESTIONS);
+        aSources.add(source);
+        return source.thenApply((bookmarks) -> {
+            List<SuggestionItem> items = new ArrayList<>();
             bookmarks.stream()
                     .filter((b) -> !b.getUrl().startsWith("place:") &&
                             !b.getUrl().startsWith("about:reader"))
@@ -91,54 +121,59 @@ public class SuggestionsProvider {
                             Type.BOOKMARK,
                             0
                     )));
-            if (mComparator != null) {
-                items.sort(mComparator);
-            }
-            future.complete(items);
-
-        }, mUIThreadExecutor).exceptionally(throwable -> {
-            Log.d(LOGTAG, "Error getting bookmarks suggestions: " + throwable.getLocalizedMessage());
-            throwable.printStackTrace();
-            future.complete(items);
-            return null;
+            return items;
         });
-
-        return future;
     }
 
-    private CompletableFuture<List<SuggestionItem>> getHistorySuggestions(@NonNull final List<SuggestionItem> items) {
-        CompletableFuture future = new CompletableFuture();
-        SessionStore.get().getHistoryStore().getSuggestions(mFilterText, 100).thenAcceptAsync((history) -> {
+    private CompletableFuture<List<SuggestionItem>> getHistorySuggestions(@NonNull String aFilterText, @NonNull List<CompletableFuture<?>> aSources) {
+        CompletableFuture<List<SearchResult>> source = SessionStore.get().getHistoryStore().getSuggestions(aFilterText, MAX_LOCAL_SUGGESTIONS);
+        aSources.add(source);
+        return source.thenApply((history) -> {
+            List<SuggestionItem> items = new ArrayList<>();
             history.forEach(h -> items.add(SuggestionItem.create(
-                            h.getTitle(),
-                            h.getUrl(),
-                            null,
-                            Type.HISTORY,
-                            h.getScore()
-                    )));
-            if (mComparator != null) {
-                items.sort(mComparator);
-            }
-            future.complete(items);
-
-        }, mUIThreadExecutor).exceptionally(throwable -> {
-            Log.d(LOGTAG, "Error getting history suggestions: " + throwable.getLocalizedMessage());
-            throwable.printStackTrace();
-            future.complete(items);
-            return null;
+                    h.getTitle(),
+                    h.getUrl(),
+                    null,
+                    Type.HISTORY,
+                    h.getScore()
+            )));
+            return items;
         });
+    }
 
-        return future;
+    // Queries the index once and splits the results into bookmarks and history
+    private void getLocalIndexSuggestions(@NonNull String aFilterText, @NonNull List<SuggestionItem> aBookmarks, @NonNull List<SuggestionItem> aHistory) {
+        List<LocalSuggestionIndex.Result> results = SessionStore.get().getSuggestionIndex().query(aFilterText, MAX_LOCAL_SUGGESTIONS);
+        for (int i = 0; i < results.size(); i++) {
+            LocalSuggestionIndex.Result result = results.get(i);
+            if (result.url.startsWith("about:reader")) {
+                continue;
+            }
+            // Items are sorted by ascending score so use the frecency rank
+            Type type = result.isBookmark ? Type.BOOKMARK : Type.HISTORY;
+            SuggestionItem item = SuggestionItem.create(
+                    result.title != null ? result.title : result.url,
+                    result.url,
+                    null,
+                    type,
+                    i
+            );
+            if (type == Type.BOOKMARK) {
+                aBookmarks.add(item);
+            } else {
+                aHistory.add(item);
+            }
+        }
     }
 
-    private CompletableFuture<List<SuggestionItem>> getSearchEngineSuggestions(@NonNull final List<SuggestionItem> items) {
-        CompletableFuture future = new CompletableFuture();
+    private List<SuggestionItem> getSearchEngineDefaultItems(@NonNull String aText, @NonNull String aFilterText) {
+        List<SuggestionItem> items = new ArrayList<>();
 
         // Completion from browser-domains
-        if (!mText.equals(mFilterText)) {
+        if (!aText.equals(aFilterText)) {
             items.add(SuggestionItem.create(
-                    mText,
-                    getSearchURLOrDomain(mText),
+                    aText,
+                    getSearchURLOrDomain(aText),
                     null,
                     Type.COMPLETION,
                     0
@@ -147,45 +182,235 @@ public class SuggestionsProvider {
 
         // Original text
         items.add(SuggestionItem.create(
-                mFilterText,
-                getSearchURLOrDomain(mFilterText),
+                aFilterText,
+                getSearchURLOrDomain(aFilterText),
                 null,
                 Type.SUGGESTION,
                 0
         ));
 
-        // Suggestions
-        mSearchEngineWrapper.getSuggestions(mFilterText).thenAcceptAsync((suggestions) -> {
-            suggestions.forEach(s -> {
-                String url = mSearchEngineWrapper.getSearchURL(s);
-                items.add(SuggestionItem.create(
-                        s,
-                        url,
-                        null,
-                        Type.SUGGESTION,
-                        0
-                ));
-            });
-            if (mComparator != null) {
-                items.sort(mComparator);
-            }
-            future.complete(items);
+        return items;
+    }
 
-        }, mUIThreadExecutor).exceptionally(throwable -> {
-            Log.d(LOGTAG, "Error getting search engine suggestions: " + throwable.getLocalizedMessage());
-            throwable.printStackTrace();
-            future.complete(items);
-            return null;
-        });
+    private CompletableFuture<List<SuggestionItem>> getSearchEngineSuggestions(@NonNull String aFilterText, @NonNull List<CompletableFuture<?>> aSources) {
+        CompletableFuture<List<String>> source = mSearchEngineWrapper.getSuggestions(aFilterText);
+        aSources.add(source);
+        return source.thenApply(this::getSearchEngineItems);
+    }
 
-        return future;
+    private List<SuggestionItem> getSearchEngineItems(@NonNull List<String> aSuggestions) {
+        List<SuggestionItem> items = new ArrayList<>();
+        aSuggestions.forEach(s -> {
+            String url = mSearchEngineWrapper.getSearchURL(s);
+            items.add(SuggestionItem.create(
+                    s,
+                    url,
+                    null,
+                    Type.SUGGESTION,
+                    0
+            ));
+        });
+        return items;
     }
 
     public CompletableFuture<List<SuggestionItem>> getSuggestions() {
-        return CompletableFuture.supplyAsync(() -> new ArrayList<SuggestionItem>())
-                .thenComposeAsync(this::getSearchEngineSuggestions)
-                .thenComposeAsync(this::getBookmarkSuggestions)
-                .thenComposeAsync(this::getHistorySuggestions);
+        return getSuggestions(null);
     }
 
+    /**
+     * Queries the search engine, bookmarks and history sources concurrently. Every time a source
+     * answers, the merged list is delivered to the listener on the UI thread. The returned future
+     * completes with the final list once all the sources have answered or the deadline has passed.
+     * Must be called from the UI thread.
+     */
+    public CompletableFuture<List<SuggestionItem>> getSuggestions(@Nullable PartialResultsListener aListener) {
+        cancelSuggestions();
+        mCurrentRequest = new SuggestionsRequest(++mGeneration, mText, mFilterText, aListener);
+        mCurrentRequest.start();
+        return mCurrentRequest.mResult;
+    }
+
+    /**
+     * Cancels the pending sources of the current request, if any. Its result future is cancelled
+     * and no more partial results are delivered for it.
+     */
+    public void cancelSuggestions() {
+        if (mCurrentRequest != null) {
+            mCurrentRequest.cancel();
+            mCurrentRequest = null;
+        }
+    }
+
+    private class SuggestionsRequest {
+        private final int mRequestGeneration;
+        private final String mRequestText;
+        private final String mRequestFilterText;
+        private final PartialResultsListener mListener;
+        private final List<List<SuggestionItem>> mSourceItems = new ArrayList<>(SOURCES_COUNT);
+        private final boolean[] mSourceCompleted = new boolean[SOURCES_COUNT];
+        private final CompletableFuture<List<SuggestionItem>> mResult = new CompletableFuture<>();
+        private final Runnable mDeadline = this::finish;
+        private final Runnable mNetworkRequest = this::requestSearchEngineSuggestions;
+        // Storage and network futures, cancelled when the request becomes outdated
+        private final List<CompletableFuture<?>> mPendingSources = new ArrayList<>();
+        private List<SuggestionItem> mDefaultItems;
+        // Partial results are held back while start() fills in the synchronous sources
+        private boolean mStarting;
+
+        SuggestionsRequest(int aGeneration, @NonNull String aText, @NonNull String aFilterText, @Nullable PartialResultsListener aListener) {
+            mRequestGeneration = aGeneration;
+            mRequestText = aText;
+            mRequestFilterText = aFilterText;
+            mListener = aListener;
+            for (int i = 0; i < SOURCES_COUNT; i++) {
+                mSourceItems.add(Collections.emptyList());
+            }
+        }
+
+        void start() {
+            mStarting = true;
+            mHandler.postDelayed(mDeadline, SUGGESTIONS_DEADLINE_MS);
+
+            // The typed text and completion are shown right away, before any source answers
+            mDefaultItems = getSearchEngineDefaultItems(mRequestText, mRequestFilterText);
+            SuggestionsCache.Lookup cached = mSearchEngineWrapper.getCachedSuggestions(mRequestFilterText);
+            if (cached != null && cached.isExact) {
+                // No need to hit the network again, i.e. when the user deletes characters
+                List<SuggestionItem> allItems = new ArrayList<>(mDefaultItems);
+                allItems.addAll(getSearchEngineItems(cached.suggestions));
+                setSourceItems(SOURCE_SEARCH_ENGINE, allItems, true);
+
+            } else {
+                // Show the results of a cached prefix, filtered, until the new ones arrive
+                List<SuggestionItem> allItems = new ArrayList<>(mDefaultItems);
+                if (cached != null) {
+                    allItems.addAll(getSearchEngineItems(cached.suggestions));
+                }
+                setSourceItems(SOURCE_SEARCH_ENGINE, allItems, false);
+                mHandler.postDelayed(mNetworkRequest, NETWORK_DEBOUNCE_MS);
+            }
+
+            if (SessionStore.get().getSuggestionIndex().isReady()) {
+                List<SuggestionItem> bookmarks = new ArrayList<>();
+                List<SuggestionItem> history = new ArrayList<>();
+                getLocalIndexSuggestions(mRequestFilterText, bookmarks, history);
+                setSourceItems(SOURCE_BOOKMARKS, bookmarks, true);
+                setSourceItems(SOURCE_HISTORY, history, true);
+
+            } else {
+                // The index is still loading, query the storage instead.
+                getBookmarkSuggestions(mRequestFilterText, mPendingSources).whenCompleteAsync((items, throwable) -> {
+                    if (throwable != null && isCurrent()) {
+                        Log.d(LOGTAG, "Error getting bookmarks suggestions: " + throwable.getLocalizedMessage());
+                    }
+                    setSourceItems(SOURCE_BOOKMARKS, items, true);
+                }, mUIThreadExecutor);
+
+                getHistorySuggestions(mRequestFilterText, mPendingSources).whenCompleteAsync((items, throwable) -> {
+                    if (throwable != null && isCurrent()) {
+                        Log.d(LOGTAG, "Error getting history suggestions: " + throwable.getLocalizedMessage());
+                    }
+                    setSourceItems(SOURCE_HISTORY, items, true);
+                }, mUIThreadExecutor);
+            }
+
+            // The first pass is delivered once, by the result future if every source already answered
+            mStarting = false;
+            if (isCurrent() && mListener != null) {
+                mListener.onPartialResults(merge());
+            }
+        }
+
+        private void requestSearchEngineSuggestions() {
+            getSearchEngineSuggestions(mRequestFilterText, mPendingSources).whenCompleteAsync((items, throwable) -> {
+                List<SuggestionItem> allItems = new ArrayList<>(mDefaultItems);
+                if (throwable != null) {
+                    if (isCurrent()) {
+                        Log.d(LOGTAG, "Error getting search engine suggestions: " + throwable.getLocalizedMessage());
+                    }
+                } else {
+                    allItems.addAll(items);
+                }
+                setSourceItems(SOURCE_SEARCH_ENGINE, allItems, true);
+            }, mUIThreadExecutor);
+        }
+
+        private boolean isCurrent() {
+            return mRequestGeneration == mGeneration && !mResult.isDone();
+        }
+
+        void cancel() {
+            mHandler.removeCallbacks(mDeadline);
+            mHandler.removeCallbacks(mNetworkRequest);
+            mResult.cancel(false);
+            for (CompletableFuture<?> source : mPendingSources) {
+                source.cancel(true);
+            }
+            mPendingSources.clear();
+        }
+
+        private void setSourceItems(int aSource, @Nullable List<SuggestionItem> aItems, boolean aCompleted) {
+            // Results from outdated requests are ignored
+            if (!isCurrent()) {
+                return;
+            }
+
+            List<SuggestionItem> items = aItems != null ? new ArrayList<>(aItems) : new ArrayList<>();
+            if (mComparator != null) {
+                items.sort(mComparator);
+            }
+            mSourceItems.set(aSource, items);
+            mSourceCompleted[aSource] = aCompleted;
+
+            for (boolean completed : mSourceCompleted) {
+                if (!completed) {
+                    if (mListener != null && !mStarting) {
+                        mListener.onPartialResults(merge());
+                    }
+                    return;
+                }
+            }
+
+            finish();
+        }
+
+        private void finish() {
+            mHandler.removeCallbacks(mDeadline);
+            mHandler.removeCallbacks(mNetworkRequest);
+            if (!mResult.isDone()) {
+                mResult.complete(merge());
+            }
+        }
+
+        /**
+         * Merges the already sorted source lists. Ties are resolved by source order so items
+         * never move around as later sources arrive.
+         */
+        @SuppressWarnings("unchecked")
+        private List<SuggestionItem> merge() {
+            int total = 0;
+            for (List<SuggestionItem> items : mSourceItems) {
+                total += items.size();
+            }
+
+            List<SuggestionItem> merged = new ArrayList<>(total);
+            int[] positions = new int[SOURCES_COUNT];
+            while (merged.size() < total) {
+                int next = -1;
+                for (int source = 0; source < SOURCES_COUNT; source++) {
+                    if (positions[source] >= mSourceItems.get(source).size()) {
+                        continue;
+                    }
+                    if (next < 0 || (mComparator != null && mComparator.compare(
+                            mSourceItems.get(source).get(positions[source]),
+                            mSourceItems.get(next).get(positions[next])) < 0)) {
+                        next = source;
+                    }
+                }
+                merged.add(mSourceItems.get(next).get(positions[next]++));
+            }
+
+            return merged;
+        }
+    }
 }
@@ -0,0 +1,217 @@
+package org.mozilla.vrbrowser.telemetry;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Aggregates the frame timings exported by the native render loop per page and per window layout.
+ *
+ * Frames arrive in batches of {@link #FIELDS_PER_FRAME} ints per frame, in the order written by
+ * FrameTimings.cpp: frame time in microseconds, missed vsyncs, visible widgets and visible widgets
+ * with a layer. Frames are attributed to the page and layout set with {@link #setContext}. The
+ * pages with the oldest frames are forgotten after {@link #MAX_PAGES}.
+ */
+public class FrameTimingAggregator {
+
+    public static final int FIELDS_PER_FRAME = 4;
+    static final int MAX_PAGES = 50;
+    // Frames over a second long are counted as overflow
+    private static final long MAX_FRAME_TIME_US = 1000 * 1000;
+
+    public interface Listener {
+        /**
+         * Called after every batch with the stats of the page the frames were attributed to.
+         */
+        void onFrameTimings(@NonNull String aPage, @NonNull Report aReport);
+    }
+
+    public static class Report {
+        private final LatencyHistogram.Snapshot mFrameTimes;
+        private final long mMissedVsyncs;
+        private final long mJankFrames;
+        private final int mMaxWidgets;
+        private final int mMaxLayers;
+
+        Report(@NonNull LatencyHistogram.Snapshot aFrameTimes, long aMissedVsyncs, long aJankFrames,
+               int aMaxWidgets, int aMaxLayers) {
+            mFrameTimes = aFrameTimes;
+            mMissedVsyncs = aMissedVsyncs;
+            mJankFrames = aJankFrames;
+            mMaxWidgets = aMaxWidgets;
+            mMaxLayers = aMaxLayers;
+        }
+
+        /**
+         * Returns the frame times in microseconds.
+         */
+        @NonNull
+        public LatencyHistogram.Snapshot getFrameTimes() {
+            return mFrameTimes;
+        }
+
+        public long getFrameCount() {
+            return mFrameTimes.getCount();
+        }
+
+        public long getMissedVsyncs() {
+            return mMissedVsyncs;
+        }
+
+        /**
+         * Returns the number of frames that missed at least one vsync.
+         */
+        public long getJankFrames() {
+            return mJankFrames;
+        }
+
+        public double getJankRatio() {
+            return getFrameCount() > 0 ? (double) mJankFrames / getFrameCount() : 0;
+        }
+
+        public int getMaxWidgets() {
+            return mMaxWidgets;
+        }
+
+        public int getMaxLayers() {
+            return mMaxLayers;
+        }
+    }
+
+    private static class Stats {
+        final LatencyHistogram frameTimes = new LatencyHistogram(MAX_FRAME_TIME_US);
+        long missedVsyncs;
+        long jankFrames;
+        int maxWidgets;
+        int maxLayers;
+
+        void add(int aFrameTime, int aMissedVsyncs, int aWidgets, int aLayers) {
+            frameTimes.record(aFrameTime);
+            if (aMissedVsyncs > 0) {
+                missedVsyncs += aMissedVsyncs;
+                jankFrames++;
+            }
+            maxWidgets = Math.max(maxWidgets, aWidgets);
+            maxLayers = Math.max(maxLayers, aLayers);
+        }
+
+        Report toReport() {
+            return new Report(frameTimes.snapshot(), missedVsyncs, jankFrames, maxWidgets, maxLayers);
+        }
+    }
+
+    private final Map<String, Stats> mPages = new LinkedHashMap<String, Stats>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Stats> eldest) {
+            return size() > MAX_PAGES;
+        }
+    };
+    private final Map<String, Stats> mLayouts = new LinkedHashMap<>();
+    private Stats mTotal = new Stats();
+    private final CopyOnWriteArrayList<Listener> mListeners = new CopyOnWriteArrayList<>();
+    private String mPage;
+    private String mLayout;
+
+    public void addListener(@NonNull Listener aListener) {
+        mListeners.add(aListener);
+    }
+
+    public void removeListener(@NonNull Listener aListener) {
+        mListeners.remove(aListener);
+    }
+
+    /**
+     * Sets the page and window layout the next frames are attributed to.
+     * @param aPage Page key, usually the origin of the focused window. Null when no page is shown.
+     * @param aLayout Window layout key, e.g. the number of windows.
+     */
+    public synchronized void setContext(@Nullable String aPage, @Nullable String aLayout) {
+        mPage = aPage;
+        mLayout = aLayout;
+    }
+
+    /**
+     * Adds a batch of frames.
+     * @param aFrames {@link #FIELDS_PER_FRAME} ints per frame, only read during the call.
+     * @param aCount Number of frames in the batch.
+     */
+    public void addFrames(@NonNull int[] aFrames, int aCount) {
+        String page;
+        Report report = null;
+        synchronized (this) {
+            page = mPage;
+            Stats pageStats = page != null ? getStats(mPages, page) : null;
+            Stats layoutStats = mLayout != null ? getStats(mLayouts, mLayout) : null;
+            int count = Math.min(aCount, aFrames.length / FIELDS_PER_FRAME);
+            for (int i = 0; i < count; i++) {
+                int offset = i * FIELDS_PER_FRAME;
+                int frameTime = aFrames[offset];
+                int missedVsyncs = aFrames[offset + 1];
+                int widgets = aFrames[offset + 2];
+                int layers = aFrames[offset + 3];
+                mTotal.add(frameTime, missedVsyncs, widgets, layers);
+                if (pageStats != null) {
+                    pageStats.add(frameTime, missedVsyncs, widgets, layers);
+                }
+                if (layoutStats != null) {
+                    layoutStats.add(frameTime, missedVsyncs, widgets, layers);
+                }
+            }
+            if (pageStats != null && !mListeners.isEmpty()) {
+                report = pageStats.toReport();
+            }
+        }
+        if (report != null) {
+            for (Listener listener : mListeners) {
+                listener.onFrameTimings(page, report);
+            }
+        }
+    }
+
+    @Nullable
+    public synchronized Report getPageReport(@NonNull String aPage) {
+        Stats stats = mPages.get(aPage);
+        return stats != null ? stats.toReport() : null;
+    }
+
+    @Nullable
+    public synchronized Report getLayoutReport(@NonNull String aLayout) {
+        Stats stats = mLayouts.get(aLayout);
+        return stats != null ? stats.toReport() : null;
+    }
+
+    @NonNull
+    public synchronized Report getTotalReport() {
+        return mTotal.toReport();
+    }
+
+    @NonNull
+    public synchronized List<String> getPages() {
+        return new ArrayList<>(mPages.keySet());
+    }
+
+    @NonNull
+    public synchronized List<String> getLayouts() {
+        return new ArrayList<>(mLayouts.keySet());
+    }
+
+    public synchronized void clear() {
+        mPages.clear();
+        mLayouts.clear();
+        mTotal = new Stats();
+    }
+
+    private static Stats getStats(@NonNull Map<String, Stats> aMap, @NonNull String aKey) {
+        Stats stats = aMap.get(aKey);
+        if (stats == null) {
+            stats = new Stats();
+            aMap.put(aKey, stats);
+        }
+        return stats;
+    }
+}
@@ -1,6 +1,7 @@
 package org.mozilla.vrbrowser.telemetry;
 
 import android.content.Context;
+import android.os.SystemClock;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
@@ -22,7 +23,6 @@ import org.mozilla.vrbrowser.utils.UrlUtils;
 
 import java.net.URI;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Map;
 
 import mozilla.components.service.glean.Glean;
@@ -35,7 +35,18 @@ public class GleanMetricsService {
     private final static String LOGTAG = SystemUtils.createLogtag(GleanMetricsService.class);
     private static boolean initialized = false;
     private static Context context = null;
-    private static HashSet<String> domainMap = new HashSet<String>();
+    private static HyperLogLog uniqueDomains = new HyperLogLog();
+    // Estimate already added to the domains counter, the counter can only be incremented
+    private static long reportedDomains = 0;
+    // Kept locally until the Glean timing distributions can be used, see Bug 1595914.
+    private final static long MAX_LOAD_TIME = 10 * 60 * 1000;
+    private final static long MAX_DURATION = 24 * 60 * 60 * 1000;
+    private static LatencyHistogram pageLoadHistogram = new LatencyHistogram(MAX_LOAD_TIME);
+    private static LatencyHistogram immersiveHistogram = new LatencyHistogram(MAX_DURATION);
+    private static long pageLoadStartTime = 0;
+    private static long immersiveStartTime = 0;
+    // The recording state is only accessed from the telemetry queue, Glean has its own dispatcher
+    private static TelemetryQueue queue = TelemetryQueue.get();
 
     // We should call this at the application initial stage.
     public static void init(Context aContext) {
@@ -71,11 +82,22 @@ public class GleanMetricsService {
     public static void startPageLoadTime() {
        // TODO: Blocked by Bug 1595914.
        // pageLoadingTimerId = Pages.INSTANCE.getPageLoad().start();
+       final long now = SystemClock.elapsedRealtime();
+       queue.post(() -> pageLoadStartTime = now);
     }
 
     public static void stopPageLoadTimeWithURI(String uri) {
+        final long now = SystemClock.elapsedRealtime();
+        queue.post(() -> recordPageLoad(uri, now));
+    }
+
+    private static void recordPageLoad(String uri, long now) {
         // TODO: Blocked by Bug 1595914.
         // Pages.INSTANCE.getPageLoad().stopAndAccumulate(pageLoadingTimerId);
+        if (pageLoadStartTime != 0) {
+            pageLoadHistogram.record(now - pageLoadStartTime);
+            pageLoadStartTime = 0;
+        }
 
         try {
             URI uriLink = URI.create(uri);
@@ -83,8 +105,12 @@ public class GleanMetricsService {
                 return;
             }
 
-            if (domainMap.add(UrlUtils.stripCommonSubdomains(uriLink.getHost()))) {
-                Url.INSTANCE.getDomains().add();
+            if (uniqueDomains.add(UrlUtils.stripCommonSubdomains(uriLink.getHost()))) {
+                long estimate = uniqueDomains.estimate();
+                if (estimate > reportedDomains) {
+                    Url.INSTANCE.getDomains().add((int) (estimate - reportedDomains));
+                    reportedDomains = estimate;
+                }
             }
             Url.INSTANCE.getVisits().add();
 
@@ -95,39 +121,73 @@ public class GleanMetricsService {
     }
 
     public static void sessionStop() {
-        domainMap.clear();
-        Pings.INSTANCE.getSessionEnd().send();
+        queue.execute(() -> {
+            uniqueDomains.clear();
+            reportedDomains = 0;
+            pageLoadHistogram.snapshotAndReset();
+            immersiveHistogram.snapshotAndReset();
+            Pings.INSTANCE.getSessionEnd().send();
+        });
     }
 
     @UiThread
     public static void urlBarEvent(boolean aIsUrl) {
-        if (aIsUrl) {
-            Url.INSTANCE.getQueryType().get("type_link").add();
-        } else {
-            Url.INSTANCE.getQueryType().get("type_query").add();
-            // Record search engines.
-            String searchEngine = getDefaultSearchEngineIdentifierForTelemetry();
-            Searches.INSTANCE.getCounts().get(searchEngine).add();
-        }
+        queue.post(() -> {
+            if (aIsUrl) {
+                Url.INSTANCE.getQueryType().get("type_link").add();
+            } else {
+                Url.INSTANCE.getQueryType().get("type_query").add();
+                // Record search engines.
+                String searchEngine = getDefaultSearchEngineIdentifierForTelemetry();
+                Searches.INSTANCE.getCounts().get(searchEngine).add();
+            }
+        });
     }
 
     @UiThread
     public static void voiceInputEvent() {
-        Url.INSTANCE.getQueryType().get("voice_query").add();
+        queue.post(() -> {
+            Url.INSTANCE.getQueryType().get("voice_query").add();
 
-        // Record search engines.
-        String searchEngine = getDefaultSearchEngineIdentifierForTelemetry();
-        Searches.INSTANCE.getCounts().get(searchEngine).add();
+            // Record search engines.
+            String searchEngine = getDefaultSearchEngineIdentifierForTelemetry();
+            Searches.INSTANCE.getCounts().get(searchEngine).add();
+        });
     }
 
     public static void startImmersive() {
         // TODO: Blocked by Bug 1595914 and 1595723.
         // immersiveTimerId = Durarion.INSTANCE.getImmersiveMode().start();
+        final long now = SystemClock.elapsedRealtime();
+        queue.post(() -> immersiveStartTime = now);
     }
 
     public static void stopImmersive() {
         // TODO: Blocked by Bug 1595914 and 1595723.
         // Durarion.INSTANCE.getImmersiveMode().stopAndAccumulate(immersiveTimerId);
+        final long now = SystemClock.elapsedRealtime();
+        queue.post(() -> {
+            if (immersiveStartTime != 0) {
+                immersiveHistogram.record(now - immersiveStartTime);
+                immersiveStartTime = 0;
+            }
+        });
+    }
+
+    /**
+     * Returns the page load times of the session, in milliseconds.
+     */
+    @NonNull
+    public static LatencyHistogram.Snapshot getPageLoadHistogram() {
+        return pageLoadHistogram.snapshot();
+    }
+
+    /**
+     * Returns the time spent in immersive mode of the session, in milliseconds.
+     */
+    @NonNull
+    public static LatencyHistogram.Snapshot getImmersiveHistogram() {
+        return immersiveHistogram.snapshot();
     }
 
     // TODO: Confirm if we don't need multiple metrics for tracking window open duration.
@@ -153,7 +213,7 @@ public class GleanMetricsService {
     }
 
     public static void newWindowOpenEvent() {
-        Control.INSTANCE.getOpenNewWindow().add();
+        queue.post(() -> Control.INSTANCE.getOpenNewWindow().add());
     }
 
     private static void setStartupMetrics() {
@@ -168,33 +228,35 @@ public class GleanMetricsService {
     public static class FxA {
 
         public static void signIn() {
-            FirefoxAccount.INSTANCE.getSignIn().record();
+            queue.post(() -> FirefoxAccount.INSTANCE.getSignIn().record());
         }
 
         public static void signInResult(boolean status) {
-            Map<FirefoxAccount.signInResultKeys, String> map = new HashMap<>();
-            map.put(FirefoxAccount.signInResultKeys.state, String.valueOf(status));
-            FirefoxAccount.INSTANCE.getSignInResult().record(map);
+            queue.post(() -> {
+                Map<FirefoxAccount.signInResultKeys, String> map = new HashMap<>();
+                map.put(FirefoxAccount.signInResultKeys.state, String.valueOf(status));
+                FirefoxAccount.INSTANCE.getSignInResult().record(map);
+            });
         }
 
         public static void signOut() {
-            FirefoxAccount.INSTANCE.getSignOut().record();
+            queue.post(() -> FirefoxAccount.INSTANCE.getSignOut().record());
         }
 
         public static void bookmarksSyncStatus(boolean status) {
-            FirefoxAccount.INSTANCE.getBookmarksSyncStatus().set(status);
+            queue.post(() -> FirefoxAccount.INSTANCE.getBookmarksSyncStatus().set(status));
         }
 
         public static void historySyncStatus(boolean status) {
-            FirefoxAccount.INSTANCE.getHistorySyncStatus().set(status);
+            queue.post(() -> FirefoxAccount.INSTANCE.getHistorySyncStatus().set(status));
         }
 
         public static void sentTab() {
-            FirefoxAccount.INSTANCE.getTabSent().add();
+            queue.post(() -> FirefoxAccount.INSTANCE.getTabSent().add());
         }
 
         public static void receivedTab(@NonNull mozilla.components.concept.sync.DeviceType source) {
-            FirefoxAccount.INSTANCE.getReceivedTab().get(source.name()).add();
+            queue.post(() -> FirefoxAccount.INSTANCE.getReceivedTab().get(source.name()).add());
         }
     }
 
@@ -213,11 +275,11 @@ public class GleanMetricsService {
         }
 
         public static void openedCounter(@NonNull TabSource source) {
-            org.mozilla.vrbrowser.GleanMetrics.Tabs.INSTANCE.getOpened().get(source.name()).add();
+            queue.post(() -> org.mozilla.vrbrowser.GleanMetrics.Tabs.INSTANCE.getOpened().get(source.name()).add());
         }
 
         public static void activatedEvent() {
-            org.mozilla.vrbrowser.GleanMetrics.Tabs.INSTANCE.getActivated().add();
+            queue.post(() -> org.mozilla.vrbrowser.GleanMetrics.Tabs.INSTANCE.getActivated().add());
         }
     }
 }
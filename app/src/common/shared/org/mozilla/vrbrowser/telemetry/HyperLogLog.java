@@ -0,0 +1,128 @@
+package org.mozilla.vrbrowser.telemetry;
+
+import androidx.annotation.NonNull;
+
+import java.util.Arrays;
+
+/**
+ * Fixed size HyperLogLog sketch estimating the number of distinct strings added to it.
+ *
+ * Each string is hashed to 64 bits: the first bits choose one of {@code 2^precision} registers
+ * and the register keeps the longest run of leading zeros seen in the rest of the hash. The
+ * standard error of the estimate is {@code 1.04 / sqrt(2^precision)}, e.g. ~3.3% for the default
+ * precision of 10 which uses 1KB, whatever the number of strings added. Small cardinalities use
+ * linear counting and are close to exact. Sketches with the same precision can be merged and the
+ * result is the sketch of the union of both.
+ *
+ * Not thread safe.
+ */
+public class HyperLogLog {
+
+    public static final int DEFAULT_PRECISION = 10;
+    private static final int MIN_PRECISION = 4;
+    private static final int MAX_PRECISION = 16;
+
+    private final int mPrecision;
+    private final byte[] mRegisters;
+    private final double mAlpha;
+
+    public HyperLogLog() {
+        this(DEFAULT_PRECISION);
+    }
+
+    /**
+     * @param precision Number of hash bits used to choose a register, between 4 and 16.
+     */
+    public HyperLogLog(int precision) {
+        if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException("Invalid precision: " + precision);
+        }
+        mPrecision = precision;
+        mRegisters = new byte[1 << precision];
+        int m = mRegisters.length;
+        if (m == 16) {
+            mAlpha = 0.673;
+        } else if (m == 32) {
+            mAlpha = 0.697;
+        } else if (m == 64) {
+            mAlpha = 0.709;
+        } else {
+            mAlpha = 0.7213 / (1 + 1.079 / m);
+        }
+    }
+
+    public int getPrecision() {
+        return mPrecision;
+    }
+
+    /**
+     * Adds a string to the sketch.
+     * @return true if the sketch changed, adding a string already seen never changes it.
+     */
+    public boolean add(@NonNull String value) {
+        long hash = hash(value);
+        int index = (int) (hash >>> (64 - mPrecision));
+        // Keep a sentinel bit so the rank is bounded when the remaining bits are all zero
+        long rest = (hash << mPrecision) | (1L << (mPrecision - 1));
+        byte rank = (byte) (Long.numberOfLeadingZeros(rest) + 1);
+        if (rank > mRegisters[index]) {
+            mRegisters[index] = rank;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Adds the strings of another sketch to this one.
+     */
+    public void merge(@NonNull HyperLogLog other) {
+        if (other.mPrecision != mPrecision) {
+            throw new IllegalArgumentException("Sketches have different precisions");
+        }
+        for (int i = 0; i < mRegisters.length; i++) {
+            if (other.mRegisters[i] > mRegisters[i]) {
+                mRegisters[i] = other.mRegisters[i];
+            }
+        }
+    }
+
+    public void clear() {
+        Arrays.fill(mRegisters, (byte) 0);
+    }
+
+    /**
+     * Returns the estimated number of distinct strings added.
+     */
+    public long estimate() {
+        int m = mRegisters.length;
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : mRegisters) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+        double estimate = mAlpha * m * m / sum;
+        if (estimate <= 2.5 * m && zeros > 0) {
+            // Linear counting is more accurate while there are empty registers
+            estimate = m * Math.log((double) m / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    // FNV-1a followed by the MurmurHash3 finalizer to spread the bits of short strings
+    private static long hash(@NonNull String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
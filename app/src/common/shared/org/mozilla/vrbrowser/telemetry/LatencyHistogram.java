@@ -0,0 +1,227 @@
+package org.mozilla.vrbrowser.telemetry;
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock free histogram with log-linear buckets, meant for latencies in milliseconds.
+ *
+ * Values below {@link #SUB_BUCKETS} get a bucket each, and every power of two above is split in
+ * {@link #SUB_BUCKETS} linear buckets, so a bucket is never wider than 1/16 of its values. This
+ * keeps the percentiles within ~6% of the exact values with a few hundred buckets for any range.
+ * Values above the maximum are counted in the last bucket and reported as overflow.
+ *
+ * Recording only uses atomic increments and can be done from any thread. Snapshots are immutable
+ * and can be merged, e.g. to combine the histograms of several windows.
+ */
+public class LatencyHistogram {
+
+    static final int SUB_BUCKET_BITS = 4;
+    static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private final long mMaxValue;
+    private final AtomicLongArray mCounts;
+    private final AtomicLong mSum = new AtomicLong();
+    private final AtomicLong mMin = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong mMax = new AtomicLong(Long.MIN_VALUE);
+    private final AtomicLong mOverflow = new AtomicLong();
+
+    /**
+     * @param maxValue The highest value that gets its own bucket.
+     */
+    public LatencyHistogram(long maxValue) {
+        if (maxValue < 1) {
+            throw new IllegalArgumentException("Invalid maximum value: " + maxValue);
+        }
+        mMaxValue = maxValue;
+        mCounts = new AtomicLongArray(getBucketIndex(maxValue) + 1);
+    }
+
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        if (value > mMaxValue) {
+            mOverflow.incrementAndGet();
+        }
+        mCounts.incrementAndGet(getBucketIndex(Math.min(value, mMaxValue)));
+        mSum.addAndGet(value);
+        mMin.accumulateAndGet(value, Math::min);
+        mMax.accumulateAndGet(value, Math::max);
+    }
+
+    @NonNull
+    public Snapshot snapshot() {
+        long[] counts = new long[mCounts.length()];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = mCounts.get(i);
+        }
+        return new Snapshot(mMaxValue, counts, mSum.get(), mMin.get(), mMax.get(), mOverflow.get());
+    }
+
+    /**
+     * Takes a snapshot and clears the histogram. Values recorded concurrently end up either in the
+     * returned snapshot or in the next one.
+     */
+    @NonNull
+    public Snapshot snapshotAndReset() {
+        long[] counts = new long[mCounts.length()];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = mCounts.getAndSet(i, 0);
+        }
+        return new Snapshot(mMaxValue, counts, mSum.getAndSet(0), mMin.getAndSet(Long.MAX_VALUE),
+                mMax.getAndSet(Long.MIN_VALUE), mOverflow.getAndSet(0));
+    }
+
+    static int getBucketIndex(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return shift * SUB_BUCKETS + (int) (value >>> shift);
+    }
+
+    static long getBucketStart(int index) {
+        if (index < 2 * SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        return (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+    }
+
+    static long getBucketEnd(int index) {
+        return getBucketStart(index + 1) - 1;
+    }
+
+    public static class Snapshot {
+        private final long mMaxValue;
+        private final long[] mCounts;
+        private final long mCount;
+        private final long mSum;
+        private final long mMin;
+        private final long mMax;
+        private final long mOverflow;
+
+        Snapshot(long maxValue, @NonNull long[] counts, long sum, long min, long max, long overflow) {
+            mMaxValue = maxValue;
+            mCounts = counts;
+            long count = 0;
+            int first = -1;
+            int last = -1;
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] > 0) {
+                    count += counts[i];
+                    first = first < 0 ? i : first;
+                    last = i;
+                }
+            }
+            mCount = count;
+            mSum = sum;
+            mOverflow = overflow;
+            if (count == 0) {
+                mMin = 0;
+                mMax = 0;
+
+            } else {
+                // A concurrent reset can leave the bounds of the other snapshot
+                mMin = min <= getBucketEnd(first) ? min : getBucketStart(first);
+                mMax = max >= getBucketStart(last) ? max : getBucketEnd(last);
+            }
+        }
+
+        /**
+         * Returns a snapshot with the values of both snapshots. Both must come from histograms
+         * with the same maximum value.
+         */
+        @NonNull
+        public Snapshot merge(@NonNull Snapshot other) {
+            if (other.mMaxValue != mMaxValue) {
+                throw new IllegalArgumentException("Histograms have different ranges");
+            }
+            if (other.mCount == 0) {
+                return this;
+            } else if (mCount == 0) {
+                return other;
+            }
+            long[] counts = new long[mCounts.length];
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = mCounts[i] + other.mCounts[i];
+            }
+            return new Snapshot(mMaxValue, counts, mSum + other.mSum, Math.min(mMin, other.mMin),
+                    Math.max(mMax, other.mMax), mOverflow + other.mOverflow);
+        }
+
+        public long getCount() {
+            return mCount;
+        }
+
+        public long getSum() {
+            return mSum;
+        }
+
+        public long getMin() {
+            return mMin;
+        }
+
+        public long getMax() {
+            return mMax;
+        }
+
+        public long getOverflow() {
+            return mOverflow;
+        }
+
+        public double getMean() {
+            return mCount > 0 ? (double) mSum / mCount : 0;
+        }
+
+        /**
+         * Returns the value below which the given percentage of the values are, rounded up to the
+         * end of its bucket.
+         * @param percentile A value between 0 and 100.
+         */
+        public long getPercentile(double percentile) {
+            if (mCount == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * mCount));
+            long seen = 0;
+            for (int i = 0; i < mCounts.length; i++) {
+                seen += mCounts[i];
+                if (seen >= rank) {
+                    if (i == mCounts.length - 1 && mOverflow > 0) {
+                        return mMax;
+                    }
+                    return Math.max(mMin, Math.min(getBucketEnd(i), mMax));
+                }
+            }
+            return mMax;
+        }
+
+        public long getP50() {
+            return getPercentile(50);
+        }
+
+        public long getP90() {
+            return getPercentile(90);
+        }
+
+        public long getP99() {
+            return getPercentile(99);
+        }
+
+        public int getBucketCount() {
+            return mCounts.length;
+        }
+
+        public long getBucketStartValue(int index) {
+            return getBucketStart(index);
+        }
+
+        public long getBucketValueCount(int index) {
+            return mCounts[index];
+        }
+    }
+}
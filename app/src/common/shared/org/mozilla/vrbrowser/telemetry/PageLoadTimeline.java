@@ -0,0 +1,202 @@
+package org.mozilla.vrbrowser.telemetry;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.Arrays;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Records when the steps of a page load happen and computes the duration of its phases.
+ *
+ * A navigation begins with a load request, or with a page start when the load wasn't requested
+ * (e.g. history navigation). Redirects before the page start are part of the same navigation and
+ * only the first time of every step is kept. Listeners are notified when the page stops and again
+ * when the first snapshot after the page stop is captured.
+ *
+ * Times are provided by the caller, usually {@link android.os.SystemClock#elapsedRealtime()}.
+ */
+public class PageLoadTimeline {
+
+    public enum Step {
+        LOAD_REQUEST,
+        PAGE_START,
+        LOCATION_CHANGE,
+        FIRST_COMPOSITE,
+        FIRST_CONTENTFUL_PAINT,
+        PAGE_STOP,
+        SNAPSHOT
+    }
+
+    public enum Phase {
+        // Load request to page start: redirects and the network request
+        REQUEST(Step.LOAD_REQUEST, Step.PAGE_START),
+        // Page start to location change: waiting for the response to be committed
+        COMMIT(Step.PAGE_START, Step.LOCATION_CHANGE),
+        // Location change to first composite: parsing, layout and the first frame
+        FIRST_COMPOSITE(Step.LOCATION_CHANGE, Step.FIRST_COMPOSITE),
+        // Page start to first contentful paint
+        FIRST_CONTENTFUL_PAINT(Step.PAGE_START, Step.FIRST_CONTENTFUL_PAINT),
+        // Page start to page stop, the span measured by the page load histogram
+        LOAD(Step.PAGE_START, Step.PAGE_STOP),
+        // Page stop to the first snapshot capture
+        SNAPSHOT(Step.PAGE_STOP, Step.SNAPSHOT),
+        // Load request, or page start when there wasn't any, to page stop
+        TOTAL(null, Step.PAGE_STOP);
+
+        private final Step mStart;
+        private final Step mEnd;
+
+        Phase(@Nullable Step aStart, @NonNull Step aEnd) {
+            mStart = aStart;
+            mEnd = aEnd;
+        }
+    }
+
+    public interface Listener {
+        void onPageLoadFinished(@NonNull Navigation aNavigation);
+        default void onPageSnapshotCaptured(@NonNull Navigation aNavigation) {}
+    }
+
+    public static class Navigation {
+        private final long[] mTimes;
+        private String mUri;
+
+        Navigation() {
+            mTimes = new long[Step.values().length];
+            Arrays.fill(mTimes, -1);
+        }
+
+        Navigation(@NonNull Navigation aOther) {
+            mTimes = aOther.mTimes.clone();
+            mUri = aOther.mUri;
+        }
+
+        @Nullable
+        public String getUri() {
+            return mUri;
+        }
+
+        public boolean hasStep(@NonNull Step aStep) {
+            return mTimes[aStep.ordinal()] >= 0;
+        }
+
+        /**
+         * Returns the time of the step, or -1 if it didn't happen.
+         */
+        public long getTime(@NonNull Step aStep) {
+            return mTimes[aStep.ordinal()];
+        }
+
+        public long getStartTime() {
+            return hasStep(Step.LOAD_REQUEST) ? getTime(Step.LOAD_REQUEST) : getTime(Step.PAGE_START);
+        }
+
+        /**
+         * Returns the duration of the phase in milliseconds, or -1 if one of its steps didn't happen.
+         */
+        public long getDuration(@NonNull Phase aPhase) {
+            long start = aPhase.mStart != null ? getTime(aPhase.mStart) : getStartTime();
+            long end = getTime(aPhase.mEnd);
+            if (start < 0 || end < 0) {
+                return -1;
+            }
+            return Math.max(0, end - start);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder("Navigation{");
+            for (Phase phase : Phase.values()) {
+                builder.append(phase.name().toLowerCase()).append('=').append(getDuration(phase)).append(' ');
+            }
+            return builder.append(mUri).append('}').toString();
+        }
+    }
+
+    private Navigation mCurrent;
+    private final CopyOnWriteArrayList<Listener> mListeners = new CopyOnWriteArrayList<>();
+
+    public void addListener(@NonNull Listener aListener) {
+        mListeners.add(aListener);
+    }
+
+    public void removeListener(@NonNull Listener aListener) {
+        mListeners.remove(aListener);
+    }
+
+    public void clearListeners() {
+        mListeners.clear();
+    }
+
+    /**
+     * Returns a copy of the navigation in progress, or of the last one.
+     */
+    @Nullable
+    public Navigation getCurrentNavigation() {
+        return mCurrent != null ? new Navigation(mCurrent) : null;
+    }
+
+    public void onLoadRequest(@Nullable String aUri, long aTime) {
+        if (mCurrent == null || mCurrent.hasStep(Step.PAGE_START)) {
+            mCurrent = new Navigation();
+        }
+        if (!mCurrent.hasStep(Step.LOAD_REQUEST)) {
+            mCurrent.mTimes[Step.LOAD_REQUEST.ordinal()] = aTime;
+        }
+        // Keep the last redirect target
+        mCurrent.mUri = aUri;
+    }
+
+    public void onPageStart(@Nullable String aUri, long aTime) {
+        if (mCurrent == null || mCurrent.hasStep(Step.PAGE_START)) {
+            mCurrent = new Navigation();
+        }
+        mCurrent.mTimes[Step.PAGE_START.ordinal()] = aTime;
+        mCurrent.mUri = aUri;
+    }
+
+    public void onLocationChange(@Nullable String aUri, long aTime) {
+        if (mark(Step.LOCATION_CHANGE, aTime)) {
+            mCurrent.mUri = aUri;
+        }
+    }
+
+    public void onFirstComposite(long aTime) {
+        mark(Step.FIRST_COMPOSITE, aTime);
+    }
+
+    public void onFirstContentfulPaint(long aTime) {
+        mark(Step.FIRST_CONTENTFUL_PAINT, aTime);
+    }
+
+    public void onPageStop(long aTime) {
+        if (mark(Step.PAGE_STOP, aTime)) {
+            Navigation navigation = new Navigation(mCurrent);
+            for (Listener listener : mListeners) {
+                listener.onPageLoadFinished(navigation);
+            }
+        }
+    }
+
+    public void onSnapshotCaptured(long aTime) {
+        if (mCurrent != null && mCurrent.hasStep(Step.PAGE_STOP) && mark(Step.SNAPSHOT, aTime)) {
+            Navigation navigation = new Navigation(mCurrent);
+            for (Listener listener : mListeners) {
+                listener.onPageSnapshotCaptured(navigation);
+            }
+        }
+    }
+
+    private boolean mark(@NonNull Step aStep, long aTime) {
+        // Steps outside of a load (e.g. pushState or a composite after a tab switch) are ignored
+        if (mCurrent == null || !mCurrent.hasStep(Step.PAGE_START) || mCurrent.hasStep(aStep)) {
+            return false;
+        }
+        if (aStep != Step.SNAPSHOT && mCurrent.hasStep(Step.PAGE_STOP)) {
+            return false;
+        }
+        mCurrent.mTimes[aStep.ordinal()] = aTime;
+        return true;
+    }
+}
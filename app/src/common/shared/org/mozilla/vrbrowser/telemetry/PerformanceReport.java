@@ -0,0 +1,232 @@
+package org.mozilla.vrbrowser.telemetry;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.UiThread;
+import androidx.annotation.VisibleForTesting;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.mozilla.vrbrowser.AppExecutors;
+import org.mozilla.vrbrowser.VRBrowserApplication;
+import org.mozilla.vrbrowser.browser.engine.Session;
+import org.mozilla.vrbrowser.browser.engine.SessionStore;
+import org.mozilla.vrbrowser.utils.BitmapCache;
+import org.mozilla.vrbrowser.utils.SystemUtils;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Point in time view of the app performance counters, shown in about://performance and
+ * exported as JSON for offline analysis.
+ */
+public class PerformanceReport {
+
+    private static final String LOGTAG = SystemUtils.createLogtag(PerformanceReport.class);
+    private static final String EXPORT_DIR = "performance";
+
+    private final long mTime;
+    private final Map<String, Long> mSessions;
+    private final Map<String, Long> mSnapshotCache;
+    private final Map<String, Long> mExecutors;
+    private final Map<String, LatencyHistogram.Snapshot> mPageLoadPhases;
+    private final Map<String, LatencyHistogram.Snapshot> mQueries;
+    private final FrameTimingAggregator.Report mFrames;
+
+    @VisibleForTesting
+    public PerformanceReport(long aTime,
+                             @NonNull Map<String, Long> aSessions,
+                             @NonNull Map<String, Long> aSnapshotCache,
+                             @NonNull Map<String, Long> aExecutors,
+                             @NonNull Map<String, LatencyHistogram.Snapshot> aPageLoadPhases,
+                             @NonNull Map<String, LatencyHistogram.Snapshot> aQueries,
+                             @NonNull FrameTimingAggregator.Report aFrames) {
+        mTime = aTime;
+        mSessions = aSessions;
+        mSnapshotCache = aSnapshotCache;
+        mExecutors = aExecutors;
+        mPageLoadPhases = aPageLoadPhases;
+        mQueries = aQueries;
+        mFrames = aFrames;
+    }
+
+    /**
+     * Collects the current counters. The sessions, which are only accessed from the UI thread, and
+     * the executor queues are read right away, the rest of the counters on the disk executor.
+     */
+    @UiThread
+    @NonNull
+    public static CompletableFuture<PerformanceReport> collect(@NonNull Context aContext) {
+        VRBrowserApplication application = (VRBrowserApplication) aContext.getApplicationContext();
+        final long time = System.currentTimeMillis();
+
+        long active = 0;
+        long privateMode = 0;
+        long suspended = 0;
+        SessionStore store = SessionStore.get();
+        for (Session session : store.getSessions()) {
+            if (session.isActive()) {
+                active++;
+            }
+            if (session.isPrivateMode()) {
+                privateMode++;
+            }
+            if (session.getGeckoSession() == null) {
+                suspended++;
+            }
+        }
+        final Map<String, Long> sessions = new LinkedHashMap<>();
+        sessions.put("total", (long) store.getSessions().size());
+        sessions.put("active", active);
+        sessions.put("private", privateMode);
+        sessions.put("suspended", suspended);
+
+        AppExecutors executors = application.getExecutors();
+        final Map<String, Long> queues = new LinkedHashMap<>();
+        queues.put("disk_io_queue", (long) executors.getDiskIOQueueSize());
+        queues.put("network_io_queue", (long) executors.getNetworkIOQueueSize());
+        queues.put("main_thread_queue", (long) executors.getMainThreadQueueSize());
+        queues.put("background_thread_delay_ms", executors.probeBackgroundThreadDelay());
+        queues.put("telemetry_queue", (long) TelemetryQueue.get().getSize());
+        queues.put("telemetry_dropped", TelemetryQueue.get().getDroppedCount());
+
+        return CompletableFuture.supplyAsync(() -> {
+            BitmapCache cache = application.getBitmapCache();
+            Map<String, Long> snapshotCache = new LinkedHashMap<>();
+            snapshotCache.put("memory_count", (long) cache.getMemoryCacheCount());
+            snapshotCache.put("memory_kb", (long) cache.getMemoryCacheSize());
+            snapshotCache.put("memory_max_kb", (long) cache.getMemoryCacheMaxSize());
+            snapshotCache.put("disk_kb", cache.getDiskCacheSize() / 1024);
+            snapshotCache.put("disk_max_kb", cache.getDiskCacheMaxSize() / 1024);
+
+            Map<String, LatencyHistogram.Snapshot> pageLoadPhases = new LinkedHashMap<>();
+            for (PageLoadTimeline.Phase phase : PageLoadTimeline.Phase.values()) {
+                pageLoadPhases.put(phase.name().toLowerCase(Locale.ROOT), TelemetryWrapper.getPageLoadPhaseHistogram(phase));
+            }
+
+            return new PerformanceReport(time, sessions, snapshotCache, queues, pageLoadPhases,
+                    QueryLatencies.getSnapshots(), application.getFrameTimingAggregator().getTotalReport());
+        }, executors.diskIO());
+    }
+
+    public long getTime() {
+        return mTime;
+    }
+
+    @NonNull
+    public Map<String, Long> getSessions() {
+        return mSessions;
+    }
+
+    /**
+     * Returns the tab snapshot cache usage, in KB.
+     */
+    @NonNull
+    public Map<String, Long> getSnapshotCache() {
+        return mSnapshotCache;
+    }
+
+    @NonNull
+    public Map<String, Long> getExecutors() {
+        return mExecutors;
+    }
+
+    /**
+     * Returns the page load phase durations since the last telemetry upload, in milliseconds.
+     */
+    @NonNull
+    public Map<String, LatencyHistogram.Snapshot> getPageLoadPhases() {
+        return mPageLoadPhases;
+    }
+
+    /**
+     * Returns the history and bookmarks query latencies, in milliseconds.
+     */
+    @NonNull
+    public Map<String, LatencyHistogram.Snapshot> getQueries() {
+        return mQueries;
+    }
+
+    @NonNull
+    public FrameTimingAggregator.Report getFrames() {
+        return mFrames;
+    }
+
+    @NonNull
+    public String toJson() {
+        JSONObject json = new JSONObject();
+        try {
+            json.put("time", mTime);
+            json.put("sessions", new JSONObject(mSessions));
+            json.put("snapshot_cache", new JSONObject(mSnapshotCache));
+            json.put("executors", new JSONObject(mExecutors));
+            json.put("page_load_phases_ms", toJson(mPageLoadPhases));
+            json.put("queries_ms", toJson(mQueries));
+            JSONObject frames = toJson(mFrames.getFrameTimes());
+            frames.put("missed_vsyncs", mFrames.getMissedVsyncs());
+            frames.put("jank_frames", mFrames.getJankFrames());
+            frames.put("max_widgets", mFrames.getMaxWidgets());
+            frames.put("max_layers", mFrames.getMaxLayers());
+            json.put("frames_us", frames);
+            return json.toString(2);
+
+        } catch (JSONException e) {
+            Log.e(LOGTAG, "Error creating the performance report: " + e.getMessage());
+            return json.toString();
+        }
+    }
+
+    /**
+     * Writes the JSON report to the app external files, on the disk executor.
+     */
+    public void export(@NonNull Context aContext) {
+        ((VRBrowserApplication) aContext.getApplicationContext()).getExecutors().diskIO().execute(() -> {
+            File dir = aContext.getExternalFilesDir(EXPORT_DIR);
+            if (dir == null) {
+                Log.e(LOGTAG, "External storage not available, the performance report was not exported");
+                return;
+            }
+            String json = toJson();
+            File file = new File(dir, "performance-" + mTime + ".json");
+            try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+                writer.write(json);
+                Log.d(LOGTAG, "Performance report exported to " + file.getAbsolutePath());
+
+            } catch (IOException e) {
+                Log.e(LOGTAG, "Error exporting the performance report: " + e.getMessage());
+            }
+        });
+    }
+
+    private static JSONObject toJson(@NonNull Map<String, LatencyHistogram.Snapshot> aSnapshots) throws JSONException {
+        JSONObject json = new JSONObject();
+        for (Map.Entry<String, LatencyHistogram.Snapshot> entry : aSnapshots.entrySet()) {
+            json.put(entry.getKey(), toJson(entry.getValue()));
+        }
+        return json;
+    }
+
+    private static JSONObject toJson(@NonNull LatencyHistogram.Snapshot aSnapshot) throws JSONException {
+        JSONObject json = new JSONObject();
+        json.put("count", aSnapshot.getCount());
+        json.put("mean", aSnapshot.getMean());
+        json.put("min", aSnapshot.getMin());
+        json.put("p50", aSnapshot.getP50());
+        json.put("p90", aSnapshot.getP90());
+        json.put("p99", aSnapshot.getP99());
+        json.put("max", aSnapshot.getMax());
+        json.put("overflow", aSnapshot.getOverflow());
+        return json;
+    }
+}
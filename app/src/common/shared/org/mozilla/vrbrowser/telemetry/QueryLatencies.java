@@ -0,0 +1,34 @@
+package org.mozilla.vrbrowser.telemetry;
+
+import androidx.annotation.NonNull;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Latencies of the history and bookmarks queries, by query name, in milliseconds.
+ */
+public class QueryLatencies {
+
+    private static final long MAX_QUERY_TIME = 60 * 1000;
+    private static final ConcurrentHashMap<String, LatencyHistogram> sHistograms = new ConcurrentHashMap<>();
+
+    public static void record(@NonNull String aQuery, long aMillis) {
+        LatencyHistogram histogram = sHistograms.get(aQuery);
+        if (histogram == null) {
+            sHistograms.putIfAbsent(aQuery, new LatencyHistogram(MAX_QUERY_TIME));
+            histogram = sHistograms.get(aQuery);
+        }
+        histogram.record(aMillis);
+    }
+
+    @NonNull
+    public static Map<String, LatencyHistogram.Snapshot> getSnapshots() {
+        Map<String, LatencyHistogram.Snapshot> snapshots = new TreeMap<>();
+        for (Map.Entry<String, LatencyHistogram> entry : sHistograms.entrySet()) {
+            snapshots.put(entry.getKey(), entry.getValue().snapshot());
+        }
+        return snapshots;
+    }
+}
@@ -0,0 +1,337 @@
+package org.mozilla.vrbrowser.telemetry;
+
+import android.content.Context;
+import android.os.Debug;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.mozilla.vrbrowser.VRBrowserApplication;
+import org.mozilla.vrbrowser.utils.SystemUtils;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Records named spans of the startup work, with the thread they run on and the bytes allocated
+ * while they are open.
+ *
+ * Spans can be nested and opened from any thread until {@link #finish()} is called, later spans
+ * aren't recorded. The trace can be written in the Chrome trace event format, to be opened in
+ * chrome://tracing or Perfetto, along with a text summary.
+ */
+public class StartupTracer {
+
+    private static final String LOGTAG = SystemUtils.createLogtag(StartupTracer.class);
+    private static final String EXPORT_DIR = "performance";
+    static final String TRACE_FILE = "startup-trace.json";
+    static final String SUMMARY_FILE = "startup-summary.txt";
+
+    public interface Clock {
+        long nanoTime();
+    }
+
+    public interface AllocationCounter {
+        /**
+         * Returns the bytes allocated by the process so far.
+         */
+        long getAllocatedBytes();
+    }
+
+    public class Span implements AutoCloseable {
+        private final String mName;
+        private final String mThreadName;
+        private final long mThreadId;
+        private final int mDepth;
+        // Open spans of the thread that opened this one, finish() may close it from another thread
+        private final AtomicInteger mThreadDepth;
+        private final long mStart;
+        private final long mStartAllocated;
+        private volatile long mEnd = -1;
+        private long mAllocated;
+
+        private Span(@NonNull String aName, @NonNull AtomicInteger aThreadDepth) {
+            Thread thread = Thread.currentThread();
+            mName = aName;
+            mThreadName = thread.getName();
+            mThreadId = thread.getId();
+            mThreadDepth = aThreadDepth;
+            mDepth = aThreadDepth.get();
+            mStartAllocated = mAllocationCounter.getAllocatedBytes();
+            mStart = mClock.nanoTime();
+        }
+
+        @NonNull
+        public String getName() {
+            return mName;
+        }
+
+        @NonNull
+        public String getThreadName() {
+            return mThreadName;
+        }
+
+        /**
+         * Returns the number of spans open on the same thread when this one was opened.
+         */
+        public int getDepth() {
+            return mDepth;
+        }
+
+        /**
+         * Returns the start time, in nanoseconds since the first span.
+         */
+        public long getStartNanos() {
+            return mStart - mOrigin;
+        }
+
+        public long getDurationNanos() {
+            return (mEnd >= 0 ? mEnd : mClock.nanoTime()) - mStart;
+        }
+
+        public long getAllocatedBytes() {
+            return mAllocated;
+        }
+
+        public boolean isClosed() {
+            return mEnd >= 0;
+        }
+
+        @Override
+        public synchronized void close() {
+            if (mEnd >= 0) {
+                return;
+            }
+            mAllocated = mAllocationCounter.getAllocatedBytes() - mStartAllocated;
+            mEnd = mClock.nanoTime();
+            mThreadDepth.updateAndGet(depth -> depth > 0 ? depth - 1 : 0);
+        }
+    }
+
+    private static final StartupTracer sInstance = new StartupTracer(System::nanoTime, StartupTracer::getRuntimeAllocatedBytes);
+
+    private final Clock mClock;
+    private final AllocationCounter mAllocationCounter;
+    private final List<Span> mSpans = new ArrayList<>();
+    private final ThreadLocal<AtomicInteger> mDepths = ThreadLocal.withInitial(AtomicInteger::new);
+    private long mOrigin = -1;
+    private long mEnd = -1;
+    // Returned once the startup is finished, it is never added to the trace
+    private final Span mDisabledSpan;
+
+    public static StartupTracer get() {
+        return sInstance;
+    }
+
+    public StartupTracer(@NonNull Clock aClock, @NonNull AllocationCounter aAllocationCounter) {
+        mClock = aClock;
+        mAllocationCounter = aAllocationCounter;
+        mDisabledSpan = new Span("disabled", new AtomicInteger());
+        mDisabledSpan.mEnd = mDisabledSpan.mStart;
+    }
+
+    /**
+     * Opens a span on the current thread, it should be closed on the same thread.
+     */
+    @NonNull
+    public Span begin(@NonNull String aName) {
+        synchronized (this) {
+            if (mEnd >= 0) {
+                return mDisabledSpan;
+            }
+        }
+        AtomicInteger depth = mDepths.get();
+        Span span = new Span(aName, depth);
+        depth.incrementAndGet();
+        synchronized (this) {
+            if (mOrigin < 0) {
+                mOrigin = span.mStart;
+            }
+            mSpans.add(span);
+        }
+        return span;
+    }
+
+    public void trace(@NonNull String aName, @NonNull Runnable aRunnable) {
+        try (Span ignored = begin(aName)) {
+            aRunnable.run();
+        }
+    }
+
+    /**
+     * Ends the startup, the spans still open are closed.
+     */
+    public void finish() {
+        List<Span> open = new ArrayList<>();
+        synchronized (this) {
+            if (mEnd >= 0) {
+                return;
+            }
+            mEnd = mClock.nanoTime();
+            for (Span span : mSpans) {
+                if (!span.isClosed()) {
+                    open.add(span);
+                }
+            }
+        }
+        for (Span span : open) {
+            span.close();
+        }
+    }
+
+    public synchronized boolean isFinished() {
+        return mEnd >= 0;
+    }
+
+    /**
+     * Returns the recorded spans in the order they were opened.
+     */
+    @NonNull
+    public synchronized List<Span> getSpans() {
+        return new ArrayList<>(mSpans);
+    }
+
+    /**
+     * Returns the first span with the given name, or null if it wasn't recorded.
+     */
+    @Nullable
+    public synchronized Span getSpan(@NonNull String aName) {
+        for (Span span : mSpans) {
+            if (span.mName.equals(aName)) {
+                return span;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the time from the first span to the end of the startup, or to now if it didn't end.
+     */
+    public synchronized long getTotalNanos() {
+        if (mOrigin < 0) {
+            return 0;
+        }
+        return (mEnd >= 0 ? mEnd : mClock.nanoTime()) - mOrigin;
+    }
+
+    @NonNull
+    public String toChromeTrace() {
+        List<Span> spans = getSpans();
+        StringBuilder json = new StringBuilder("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[");
+        List<Long> threads = new ArrayList<>();
+        for (Span span : spans) {
+            if (!threads.contains(span.mThreadId)) {
+                threads.add(span.mThreadId);
+                json.append("{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":").append(span.mThreadId)
+                        .append(",\"args\":{\"name\":");
+                appendString(json, span.mThreadName);
+                json.append("}},");
+            }
+        }
+        for (Span span : spans) {
+            json.append("{\"name\":");
+            appendString(json, span.mName);
+            json.append(",\"cat\":\"startup\",\"ph\":\"X\",\"pid\":1,\"tid\":").append(span.mThreadId)
+                    .append(",\"ts\":").append(span.getStartNanos() / 1000)
+                    .append(",\"dur\":").append(span.getDurationNanos() / 1000)
+                    .append(",\"args\":{\"allocated_bytes\":").append(span.mAllocated).append("}},");
+        }
+        if (json.charAt(json.length() - 1) == ',') {
+            json.setLength(json.length() - 1);
+        }
+        return json.append("]}").toString();
+    }
+
+    /**
+     * Returns one line per span, indented by depth, with its duration, share of the startup,
+     * allocations and thread.
+     */
+    @NonNull
+    public String getSummary() {
+        List<Span> spans = getSpans();
+        long total = getTotalNanos();
+        StringBuilder summary = new StringBuilder(String.format(Locale.ROOT, "Startup: %.1f ms, %d spans%n",
+                total / 1e6, spans.size()));
+        for (Span span : spans) {
+            StringBuilder name = new StringBuilder();
+            for (int i = 0; i < span.mDepth; i++) {
+                name.append("  ");
+            }
+            name.append(span.mName);
+            summary.append(String.format(Locale.ROOT, "%-40s %9.1f ms %5.1f%% %9d KB  %s%n",
+                    name, span.getDurationNanos() / 1e6,
+                    total > 0 ? 100.0 * span.getDurationNanos() / total : 0,
+                    span.mAllocated / 1024, span.mThreadName));
+        }
+        return summary.toString();
+    }
+
+    /**
+     * Writes the trace and the summary to a directory.
+     * @return false if any of the files couldn't be written.
+     */
+    public boolean write(@NonNull File aDir) {
+        return write(new File(aDir, TRACE_FILE), toChromeTrace()) &&
+                write(new File(aDir, SUMMARY_FILE), getSummary());
+    }
+
+    /**
+     * Writes the trace and the summary to the app external files, off the UI thread.
+     */
+    public void export(@NonNull Context aContext) {
+        final File dir = aContext.getExternalFilesDir(EXPORT_DIR);
+        if (dir == null) {
+            Log.e(LOGTAG, "External storage not available, the startup trace was not exported");
+            return;
+        }
+        ((VRBrowserApplication) aContext.getApplicationContext()).getExecutors().diskIO().execute(() -> {
+            if (write(dir)) {
+                Log.d(LOGTAG, "Startup trace exported to " + dir.getAbsolutePath());
+            }
+        });
+    }
+
+    private static boolean write(@NonNull File aFile, @NonNull String aContent) {
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(aFile), StandardCharsets.UTF_8)) {
+            writer.write(aContent);
+            return true;
+
+        } catch (IOException e) {
+            Log.e(LOGTAG, "Error writing " + aFile.getName() + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    private static void appendString(@NonNull StringBuilder aJson, @NonNull String aValue) {
+        aJson.append('"');
+        for (int i = 0; i < aValue.length(); i++) {
+            char c = aValue.charAt(i);
+            if (c == '"' || c == '\\') {
+                aJson.append('\\').append(c);
+            } else if (c < 0x20) {
+                aJson.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+            } else {
+                aJson.append(c);
+            }
+        }
+        aJson.append('"');
+    }
+
+    private static long getRuntimeAllocatedBytes() {
+        try {
+            return Long.parseLong(Debug.getRuntimeStat("art.gc.bytes-allocated"));
+
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
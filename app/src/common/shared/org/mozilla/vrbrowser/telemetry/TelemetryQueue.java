@@ -0,0 +1,128 @@
+package org.mozilla.vrbrowser.telemetry;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
+
+import org.mozilla.vrbrowser.utils.SystemUtils;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs the telemetry recording in order on a single background worker.
+ *
+ * Callers only append to a lock free queue, so recording never blocks them. Events posted while
+ * the queue is full are dropped and counted, tasks that must not be lost, like initialization
+ * or sending a ping, are always queued.
+ */
+public class TelemetryQueue implements Executor {
+
+    private static final String LOGTAG = SystemUtils.createLogtag(TelemetryQueue.class);
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private static final TelemetryQueue sInstance = new TelemetryQueue(
+            Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "Telemetry");
+                thread.setPriority(Thread.MIN_PRIORITY);
+                thread.setDaemon(true);
+                return thread;
+            }), DEFAULT_CAPACITY);
+
+    private final ConcurrentLinkedQueue<Runnable> mQueue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger mSize = new AtomicInteger();
+    private final AtomicBoolean mScheduled = new AtomicBoolean();
+    private final AtomicLong mDropped = new AtomicLong();
+    private final Executor mWorker;
+    private final int mCapacity;
+    private volatile boolean mTestingMode;
+
+    public static TelemetryQueue get() {
+        return sInstance;
+    }
+
+    public TelemetryQueue(@NonNull Executor aWorker, int aCapacity) {
+        mWorker = aWorker;
+        mCapacity = aCapacity;
+    }
+
+    /**
+     * Queues an event.
+     * @return false if the queue was full and the event was dropped.
+     */
+    public boolean post(@NonNull Runnable aEvent) {
+        if (mTestingMode) {
+            aEvent.run();
+            return true;
+        }
+        if (mSize.incrementAndGet() > mCapacity) {
+            mSize.decrementAndGet();
+            mDropped.incrementAndGet();
+            return false;
+        }
+        mQueue.offer(aEvent);
+        schedule();
+        return true;
+    }
+
+    /**
+     * Queues a task that is never dropped.
+     */
+    @Override
+    public void execute(@NonNull Runnable aTask) {
+        if (mTestingMode) {
+            aTask.run();
+            return;
+        }
+        mSize.incrementAndGet();
+        mQueue.offer(aTask);
+        schedule();
+    }
+
+    public int getSize() {
+        return mSize.get();
+    }
+
+    /**
+     * Returns the number of events dropped because the queue was full.
+     */
+    public long getDroppedCount() {
+        return mDropped.get();
+    }
+
+    /**
+     * Runs the queued tasks on the calling thread as they are queued, like Glean does in tests.
+     */
+    @VisibleForTesting
+    public void setTestingMode(boolean aEnabled) {
+        mTestingMode = aEnabled;
+    }
+
+    private void schedule() {
+        if (mScheduled.compareAndSet(false, true)) {
+            mWorker.execute(this::drain);
+        }
+    }
+
+    private void drain() {
+        do {
+            Runnable task;
+            while ((task = mQueue.poll()) != null) {
+                mSize.decrementAndGet();
+                try {
+                    task.run();
+
+                } catch (RuntimeException e) {
+                    Log.e(LOGTAG, "Error recording telemetry: " + e.getMessage());
+                }
+            }
+            mScheduled.set(false);
+            // A task queued after the last poll but before the flag was cleared wasn't scheduled
+        } while (!mQueue.isEmpty() && mScheduled.compareAndSet(false, true));
+    }
+}
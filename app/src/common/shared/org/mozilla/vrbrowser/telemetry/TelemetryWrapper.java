@@ -2,7 +2,6 @@ package org.mozilla.vrbrowser.telemetry;
 
 import android.content.Context;
 import android.content.res.Resources;
-import android.os.StrictMode;
 import android.os.SystemClock;
 import android.util.Log;
 
@@ -30,13 +29,13 @@ import org.mozilla.vrbrowser.utils.SystemUtils;
 import org.mozilla.vrbrowser.utils.UrlUtils;
 
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Map;
 
 import mozilla.components.lib.fetch.httpurlconnection.HttpURLConnectionClient;
 
-import static java.lang.Math.toIntExact;
 import static org.mozilla.vrbrowser.ui.widgets.Windows.MAX_WINDOWS;
 import static org.mozilla.vrbrowser.ui.widgets.Windows.WindowPlacement;
 
@@ -45,22 +44,31 @@ public class TelemetryWrapper {
     private final static String APP_NAME = "FirefoxReality";
     private final static String LOGTAG = SystemUtils.createLogtag(TelemetryWrapper.class);
     private final static int MIN_LOAD_TIME = 40;
-    private final static int LOADING_BUCKET_SIZE_MS = 100;
     private final static int MIN_IMMERSIVE_TIME = 1000;
-    private final static int IMMERSIVE_BUCKET_SIZE_MS = 10000;
-    private final static int HISTOGRAM_MIN_INDEX = 0;
-    private final static int HISTOGRAM_SIZE = 200;
-
-    private static HashSet<String> domainMap = new HashSet<String>();
-    private static int[] loadingTimeHistogram = new int[HISTOGRAM_SIZE];
-    private static int[] immersiveHistogram = new int[HISTOGRAM_SIZE];
+    // Longest durations with their own histogram buckets, longer ones are counted as overflow
+    private final static long MAX_LOAD_TIME = 10 * 60 * 1000;
+    private final static long MAX_DURATION = 24 * 60 * 60 * 1000;
+    // Events are written to the telemetry storage in batches
+    private final static int EVENT_BATCH_SIZE = 16;
+
+    // All the recording state below is only accessed from the telemetry queue
+    private static TelemetryQueue queue = TelemetryQueue.get();
+    private static ArrayList<TelemetryEvent> pendingEvents = new ArrayList<>();
+
+    private static HyperLogLog uniqueDomains = new HyperLogLog();
+    private static LatencyHistogram loadingTimeHistogram = new LatencyHistogram(MAX_LOAD_TIME);
+    private static LatencyHistogram immersiveHistogram = new LatencyHistogram(MAX_DURATION);
+    private static EnumMap<PageLoadTimeline.Phase, LatencyHistogram> pageLoadPhaseHistograms = new EnumMap<>(PageLoadTimeline.Phase.class);
+    static {
+        for (PageLoadTimeline.Phase phase : PageLoadTimeline.Phase.values()) {
+            pageLoadPhaseHistograms.put(phase, new LatencyHistogram(MAX_LOAD_TIME));
+        }
+    }
     private static int numUri = 0;
     private static long startLoadPageTime = 0;
     private static long startImmersiveTime = 0;
-    private static long sessionStartTime = 0;
 
     // Multi-window events
-    private final static int MULTI_WINDOW_BIN_SIZE_MS = 10000;
     private static HashMap<Integer, Long> windowLifetime = new HashMap<>();
     private static int windowsMovesCount = 0;
     private static int windowsResizesCount = 0;
@@ -72,12 +80,12 @@ public class TelemetryWrapper {
     private static long[] openPrivateWindowsTime = new long[MAX_WINDOWS];
     private static int[] openWindows = new int[MAX_WINDOWS];
     private static int[] openPrivateWindows = new int[MAX_WINDOWS];
-    private static TelemetryHistogram windowsLifetimeHistogram =
-            new TelemetryHistogram(HISTOGRAM_SIZE, MULTI_WINDOW_BIN_SIZE_MS, 0);
+    private static LatencyHistogram windowsLifetimeHistogram = new LatencyHistogram(MAX_DURATION);
 
     private class Category {
         private static final String ACTION = "action";
-        private static final String HISTOGRAM = "histogram";
+        // Log-linear buckets and percentiles, the former "histogram" events had linear buckets
+        private static final String LATENCY_HISTOGRAM = "latency_histogram";
     }
 
     private class Method {
@@ -89,6 +97,8 @@ public class TelemetryWrapper {
         // TODO: Support "select_query" after providing search suggestion.
         private static final String VOICE_QUERY = "voice_query";
         private static final String IMMERSIVE_MODE = "immersive_mode";
+        // Followed by the page load phase name, e.g. "page_load_request"
+        private static final String PAGE_LOAD_PHASE = "page_load_";
         private static final String TELEMETRY_STATUS = "status";
 
         // How long is a window open for / window life
@@ -131,6 +141,9 @@ public class TelemetryWrapper {
         private static final String TWO_PRIVATE_WINDOWS_OPENED = "two_pri_w_open";
         private static final String THREE_PRIVATE_WINDOWS_OPENED = "thr_pri_w_open";
         private static final String TELEMETRY_STATUS = "telemetry_status";
+        private static final String P50 = "p50";
+        private static final String P90 = "p90";
+        private static final String P99 = "p99";
     }
 
     // We should call this at the application initial stage. Instead,
@@ -138,9 +151,8 @@ public class TelemetryWrapper {
     // e.g., SettingsStore.getInstance(context).setTelemetryEnabled();
     public static void init(Context aContext) {
         // When initializing the telemetry library it will make sure that all directories exist and
-        // are readable/writable.
-        final StrictMode.ThreadPolicy threadPolicy = StrictMode.allowThreadDiskWrites();
-        try {
+        // are readable/writable, so it's done in the telemetry queue.
+        queue.execute(() -> {
             final Resources resources = aContext.getResources();
             final boolean telemetryEnabled = SettingsStore.getInstance(aContext).isTelemetryEnabled();
             final TelemetryConfiguration configuration = new TelemetryConfiguration(aContext)
@@ -179,57 +191,69 @@ public class TelemetryWrapper {
                 telemetryStatus(false);
                 SettingsStore.getInstance(aContext).setTelemetryPingUpdateSent(true);
             }
-
-        } finally {
-            StrictMode.setThreadPolicy(threadPolicy);
-        }
-
-        sessionStartTime = SystemClock.elapsedRealtime();
+        });
     }
 
     @UiThread
     public static void start() {
-        // Call Telemetry.scheduleUpload() early.
-        // See https://github.com/MozillaReality/FirefoxReality/issues/1353
-        TelemetryHolder.get()
-                .queuePing(TelemetryCorePingBuilder.TYPE)
-                .queuePing(TelemetryMobileEventPingBuilder.TYPE)
-                .scheduleUpload();
+        queue.execute(() -> {
+            // Call Telemetry.scheduleUpload() early.
+            // See https://github.com/MozillaReality/FirefoxReality/issues/1353
+            flushEvents();
+            TelemetryHolder.get()
+                    .queuePing(TelemetryCorePingBuilder.TYPE)
+                    .queuePing(TelemetryMobileEventPingBuilder.TYPE)
+                    .scheduleUpload();
 
-        TelemetryHolder.get().recordSessionStart();
-        TelemetryEvent.create(Category.ACTION, Method.FOREGROUND, Object.APP).queue();
+            TelemetryHolder.get().recordSessionStart();
+            queueEvent(TelemetryEvent.create(Category.ACTION, Method.FOREGROUND, Object.APP));
+        });
     }
 
     @UiThread
     public static void stop() {
-        queueHistogram();
-        queueMultiWindowEvents();
+        queue.execute(() -> {
+            queueHistogram();
+            queueMultiWindowEvents();
 
-        TelemetryEvent.create(Category.ACTION, Method.BACKGROUND, Object.APP).queue();
-        TelemetryHolder.get().recordSessionEnd();
+            queueEvent(TelemetryEvent.create(Category.ACTION, Method.BACKGROUND, Object.APP));
+            flushEvents();
+            TelemetryHolder.get().recordSessionEnd();
 
-        TelemetryHolder.get()
-                .queuePing(TelemetryCorePingBuilder.TYPE)
-                .queuePing(TelemetryMobileEventPingBuilder.TYPE)
-                .scheduleUpload();
+            TelemetryHolder.get()
+                    .queuePing(TelemetryCorePingBuilder.TYPE)
+                    .queuePing(TelemetryMobileEventPingBuilder.TYPE)
+                    .scheduleUpload();
+        });
+    }
+
+    /**
+     * Returns the number of events dropped because the telemetry queue was full.
+     */
+    public static long getDroppedEventCount() {
+        return queue.getDroppedCount();
     }
 
     @UiThread
     public static void urlBarEvent(boolean aIsUrl) {
-        if (aIsUrl) {
-            TelemetryWrapper.browseEvent();
-        } else {
-            TelemetryWrapper.searchEnterEvent();
-        }
+        queue.post(() -> {
+            if (aIsUrl) {
+                TelemetryWrapper.browseEvent();
+            } else {
+                TelemetryWrapper.searchEnterEvent();
+            }
+        });
     }
 
     @UiThread
     public static void voiceInputEvent() {
-        Telemetry telemetry = TelemetryHolder.get();
-        TelemetryEvent.create(Category.ACTION, Method.VOICE_QUERY, Object.VOICE_INPUT).queue();
+        queue.post(() -> {
+            Telemetry telemetry = TelemetryHolder.get();
+            queueEvent(TelemetryEvent.create(Category.ACTION, Method.VOICE_QUERY, Object.VOICE_INPUT));
 
-        String searchEngine = getDefaultSearchEngineIdentifierForTelemetry(telemetry.getConfiguration().getContext());
-        telemetry.recordSearch(SearchesMeasurement.LOCATION_ACTIONBAR, searchEngine);
+            String searchEngine = getDefaultSearchEngineIdentifierForTelemetry(telemetry.getConfiguration().getContext());
+            telemetry.recordSearch(SearchesMeasurement.LOCATION_ACTIONBAR, searchEngine);
+        });
     }
 
     private static String getDefaultSearchEngineIdentifierForTelemetry(Context aContext) {
@@ -237,47 +261,39 @@ public class TelemetryWrapper {
     }
 
     private static void queueHistogram() {
-        // Upload loading time histogram
-        TelemetryEvent loadingHistogramEvent = TelemetryEvent.create(Category.HISTOGRAM, Method.FOREGROUND, Object.BROWSER);
-        for (int bucketIndex = 0; bucketIndex < loadingTimeHistogram.length; ++bucketIndex) {
-            loadingHistogramEvent.extra(Integer.toString(bucketIndex * LOADING_BUCKET_SIZE_MS),
-                    Integer.toString(loadingTimeHistogram[bucketIndex]));
-        }
-        loadingHistogramEvent.queue();
-
-        // Clear loading histogram array after queueing it
-        loadingTimeHistogram = new int[HISTOGRAM_SIZE];
-
-        // Upload immersive time histogram
-        TelemetryEvent immersiveHistogramEvent = TelemetryEvent.create(Category.HISTOGRAM, Method.IMMERSIVE_MODE, Object.BROWSER);
-        for (int bucketIndex = 0; bucketIndex < immersiveHistogram.length; ++bucketIndex) {
-            immersiveHistogramEvent.extra(Integer.toString(bucketIndex * IMMERSIVE_BUCKET_SIZE_MS),
-                    Integer.toString(immersiveHistogram[bucketIndex]));
+        // Upload and clear the loading time histogram
+        queueHistogram(loadingTimeHistogram.snapshotAndReset(), Method.FOREGROUND, Object.BROWSER);
+
+        // Upload and clear the page load phase histograms
+        for (PageLoadTimeline.Phase phase : PageLoadTimeline.Phase.values()) {
+            LatencyHistogram.Snapshot snapshot = pageLoadPhaseHistograms.get(phase).snapshotAndReset();
+            if (snapshot.getCount() > 0) {
+                queueHistogram(snapshot, Method.PAGE_LOAD_PHASE + phase.name().toLowerCase(), Object.BROWSER);
+            }
         }
-        immersiveHistogramEvent.queue();
 
-        // Clear loading histogram array after queueing it
-        immersiveHistogram = new int[HISTOGRAM_SIZE];
+        // Upload and clear the immersive time histogram
+        queueHistogram(immersiveHistogram.snapshotAndReset(), Method.IMMERSIVE_MODE, Object.BROWSER);
 
         // We only upload the domain and URI counts to the probes without including
         // users' URI info.
-        TelemetryEvent.create(Category.ACTION, Method.OPEN, Object.BROWSER).extra(
+        queueEvent(TelemetryEvent.create(Category.ACTION, Method.OPEN, Object.BROWSER).extra(
                 Extra.UNIQUE_DOMAINS_COUNT,
-                Integer.toString(domainMap.size())
-        ).queue();
-        domainMap.clear();
+                Long.toString(uniqueDomains.estimate())
+        ));
+        uniqueDomains.clear();
 
-        TelemetryEvent.create(Category.ACTION, Method.OPEN, Object.BROWSER).extra(
+        queueEvent(TelemetryEvent.create(Category.ACTION, Method.OPEN, Object.BROWSER).extra(
                 Extra.TOTAL_URI_COUNT,
                 Integer.toString(numUri)
-        ).queue();
+        ));
         numUri = 0;
 
     }
 
     private static void searchEnterEvent() {
         Telemetry telemetry = TelemetryHolder.get();
-        TelemetryEvent.create(Category.ACTION, Method.TYPE_QUERY, Object.SEARCH_BAR).queue();
+        queueEvent(TelemetryEvent.create(Category.ACTION, Method.TYPE_QUERY, Object.SEARCH_BAR));
 
         String searchEngine = getDefaultSearchEngineIdentifierForTelemetry(telemetry.getConfiguration().getContext());
         telemetry.recordSearch(SearchesMeasurement.LOCATION_ACTIONBAR, searchEngine);
@@ -287,16 +303,22 @@ public class TelemetryWrapper {
         TelemetryEvent event = TelemetryEvent.create(Category.ACTION, Method.TYPE_URL, Object.SEARCH_BAR);
 
         // TODO: Working on autocomplete result.
-        event.queue();
+        queueEvent(event);
     }
 
     @UiThread
     public static void startPageLoadTime() {
-        startLoadPageTime = SystemClock.elapsedRealtime();
+        final long now = SystemClock.elapsedRealtime();
+        queue.post(() -> startLoadPageTime = now);
     }
 
     @UiThread
     public static void uploadPageLoadToHistogram(String uri) {
+        final long now = SystemClock.elapsedRealtime();
+        queue.post(() -> recordPageLoad(uri, now));
+    }
+
+    private static void recordPageLoad(String uri, long now) {
         if (startLoadPageTime == 0) {
             return;
         }
@@ -311,84 +333,127 @@ public class TelemetryWrapper {
                 return;
             }
 
-            domainMap.add(UrlUtils.stripCommonSubdomains(uriLink.getHost()));
+            uniqueDomains.add(UrlUtils.stripCommonSubdomains(uriLink.getHost()));
             numUri++;
 
-            long elapsedLoad = SystemClock.elapsedRealtime() - startLoadPageTime;
+            long elapsedLoad = now - startLoadPageTime;
             if (elapsedLoad < MIN_LOAD_TIME) {
                 return;
             }
 
-            int histogramLoadIndex = toIntExact(elapsedLoad / LOADING_BUCKET_SIZE_MS);
             Log.d(LOGTAG, "Sent load to histogram");
-
-            if (histogramLoadIndex > (HISTOGRAM_SIZE - 2)) {
-                histogramLoadIndex = HISTOGRAM_SIZE - 1;
-                Log.e(LOGTAG, "the loading histogram size is overflow.");
-            } else if (histogramLoadIndex < HISTOGRAM_MIN_INDEX) {
-                histogramLoadIndex = HISTOGRAM_MIN_INDEX;
-            }
-
-            loadingTimeHistogram[histogramLoadIndex]++;
+            loadingTimeHistogram.record(elapsedLoad);
 
         } catch (IllegalArgumentException e) {
             Log.e(LOGTAG, "Invalid URL", e);
         }
     }
 
+    /**
+     * Records the phases of a page load, see {@link PageLoadTimeline}. Phases that didn't happen
+     * are skipped.
+     */
+    public static void uploadPageLoadPhases(@NonNull PageLoadTimeline.Navigation aNavigation,
+                                            @NonNull PageLoadTimeline.Phase... aPhases) {
+        final long[] durations = new long[aPhases.length];
+        for (int i = 0; i < aPhases.length; i++) {
+            durations[i] = aNavigation.getDuration(aPhases[i]);
+        }
+        queue.post(() -> {
+            for (int i = 0; i < aPhases.length; i++) {
+                if (durations[i] >= 0) {
+                    pageLoadPhaseHistograms.get(aPhases[i]).record(durations[i]);
+                }
+            }
+        });
+    }
+
+    /**
+     * Returns the durations of a page load phase recorded since the last upload, in milliseconds.
+     */
+    @NonNull
+    public static LatencyHistogram.Snapshot getPageLoadPhaseHistogram(@NonNull PageLoadTimeline.Phase aPhase) {
+        return pageLoadPhaseHistograms.get(aPhase).snapshot();
+    }
+
+    /**
+     * Returns the page load times recorded since the last upload, in milliseconds.
+     */
+    @NonNull
+    public static LatencyHistogram.Snapshot getLoadingTimeHistogram() {
+        return loadingTimeHistogram.snapshot();
+    }
+
     @UiThread
     public static void startImmersive() {
-        startImmersiveTime = SystemClock.elapsedRealtime();
+        final long now = SystemClock.elapsedRealtime();
+        queue.post(() -> startImmersiveTime = now);
     }
 
     @UiThread
     public static void uploadImmersiveToHistogram() {
-        if (startImmersiveTime == 0) {
-            return;
-        }
+        final long now = SystemClock.elapsedRealtime();
+        queue.post(() -> {
+            if (startImmersiveTime == 0) {
+                return;
+            }
 
-        long elapsedImmersive = SystemClock.elapsedRealtime() - startImmersiveTime;
-        if (elapsedImmersive < MIN_IMMERSIVE_TIME) {
-            return;
-        }
+            long elapsedImmersive = now - startImmersiveTime;
+            if (elapsedImmersive < MIN_IMMERSIVE_TIME) {
+                return;
+            }
 
-        int histogramImmersiveIndex = toIntExact(elapsedImmersive / IMMERSIVE_BUCKET_SIZE_MS);
-        Log.i(LOGTAG, "Send immersive time spent to histogram.");
+            Log.i(LOGTAG, "Send immersive time spent to histogram.");
+            immersiveHistogram.record(elapsedImmersive);
+        });
+    }
 
-        if (histogramImmersiveIndex > (HISTOGRAM_SIZE - 2)) {
-            histogramImmersiveIndex = HISTOGRAM_SIZE - 1;
-            Log.e(LOGTAG, "the immersive histogram size is overflow.");
-        } else if (histogramImmersiveIndex < HISTOGRAM_MIN_INDEX) {
-            histogramImmersiveIndex = HISTOGRAM_MIN_INDEX;
+    // Events are written to storage in batches, flushEvents writes the pending ones
+    private static void queueEvent(@NonNull TelemetryEvent event) {
+        pendingEvents.add(event);
+        if (pendingEvents.size() >= EVENT_BATCH_SIZE) {
+            flushEvents();
         }
+    }
 
-        immersiveHistogram[histogramImmersiveIndex]++;
+    private static void flushEvents() {
+        for (TelemetryEvent event : pendingEvents) {
+            event.queue();
+        }
+        pendingEvents.clear();
     }
 
     /**
-     * Helper method for queuing histograms. This will transform the raw histogram into
-     * a Telemetry historam event and queue it for future delivery.
-     * @param histogram The histogram to be queued
+     * Helper method for queuing histograms. This will transform the histogram snapshot into
+     * a Telemetry historam event and queue it for future delivery. The event has the count of the
+     * non empty buckets keyed by their start value, and the p50, p90 and p99 values.
+     * @param histogram The histogram snapshot to be queued
      * @param method The TelemetryEvent method String
      * @param object The TelemetryEvent object String
      */
-    private static void queueHistogram(@NonNull TelemetryHistogram histogram, @NonNull String method, @NonNull String object) {
-        TelemetryEvent event = TelemetryEvent.create(Category.HISTOGRAM, method, object);
-        int[] hist = histogram.getHistogram();
-        for (int bucketIndex = 0; bucketIndex < hist.length; ++bucketIndex) {
+    private static void queueHistogram(@NonNull LatencyHistogram.Snapshot histogram, @NonNull String method, @NonNull String object) {
+        TelemetryEvent event = TelemetryEvent.create(Category.LATENCY_HISTOGRAM, method, object);
+        for (int bucketIndex = 0; bucketIndex < histogram.getBucketCount(); ++bucketIndex) {
+            long count = histogram.getBucketValueCount(bucketIndex);
+            if (count == 0) {
+                continue;
+            }
             event.extra(
-                    Integer.toString(bucketIndex * histogram.getBinSize()),
-                    Integer.toString(hist[bucketIndex]));
+                    Long.toString(histogram.getBucketStartValue(bucketIndex)),
+                    Long.toString(count));
             Log.d(LOGTAG, "\tHistogram bucket: [" +
-                    "" + bucketIndex * histogram.getBinSize() +
-                    ", " + hist[bucketIndex] + "]");
+                    "" + histogram.getBucketStartValue(bucketIndex) +
+                    ", " + count + "]");
         }
-        event.queue();
+        event.extra(Extra.P50, Long.toString(histogram.getP50()));
+        event.extra(Extra.P90, Long.toString(histogram.getP90()));
+        event.extra(Extra.P99, Long.toString(histogram.getP99()));
+        queueEvent(event);
     }
 
     // Multi-window related events
 
-    public static void queueMultiWindowEvents() {
+    private static void queueMultiWindowEvents() {
         // Queue windows lifetime histogram
         queueWindowsLifetimeHistogram();
 
@@ -408,96 +473,112 @@ public class TelemetryWrapper {
         queueOpenWindowsTimeEvent();
     }
 
+    // Paired events are never dropped, a close needs its open
     public static void openWindowEvent(int windowId) {
-        windowLifetime.put(windowId, SystemClock.elapsedRealtime());
+        final long now = SystemClock.elapsedRealtime();
+        queue.execute(() -> windowLifetime.put(windowId, now));
     }
 
     public static void closeWindowEvent(int windowId) {
-        windowsLifetimeHistogram.addData(SystemClock.elapsedRealtime() - windowLifetime.get(windowId));
-        windowLifetime.remove(windowId);
+        final long now = SystemClock.elapsedRealtime();
+        queue.execute(() -> {
+            Long openTime = windowLifetime.remove(windowId);
+            if (openTime != null) {
+                windowsLifetimeHistogram.record(now - openTime);
+            }
+        });
     }
 
     public static void windowsMoveEvent() {
-        windowsMovesCount++;
+        queue.post(() -> {
+            windowsMovesCount++;
 
-        Log.d(LOGTAG, "Windows moves: " + windowsMovesCount);
+            Log.d(LOGTAG, "Windows moves: " + windowsMovesCount);
+        });
     }
 
     public static void windowsResizeEvent() {
-        windowsResizesCount++;
+        queue.post(() -> {
+            windowsResizesCount++;
 
-        Log.d(LOGTAG, "Windows resizes: " + windowsResizesCount);
+            Log.d(LOGTAG, "Windows resizes: " + windowsResizesCount);
+        });
     }
 
     public static void activePlacementEvent(int from, boolean active) {
-        if (active) {
-            activePlacementStartTime[from] = SystemClock.elapsedRealtime();
-        } else {
-            if (activePlacementStartTime[from] != 0) {
-                activePlacementTime[from] += SystemClock.elapsedRealtime() - activePlacementStartTime[from];
-                activePlacementStartTime[from] = 0;
+        final long now = SystemClock.elapsedRealtime();
+        queue.post(() -> {
+            if (active) {
+                activePlacementStartTime[from] = now;
+            } else {
+                if (activePlacementStartTime[from] != 0) {
+                    activePlacementTime[from] += now - activePlacementStartTime[from];
+                    activePlacementStartTime[from] = 0;
+                }
             }
-        }
 
-        Log.d(LOGTAG, "Placements times:");
-        Log.d(LOGTAG, "\tFRONT: " + activePlacementTime[WindowPlacement.FRONT.getValue()]);
-        Log.d(LOGTAG, "\tLEFT: " + activePlacementTime[WindowPlacement.LEFT.getValue()]);
-        Log.d(LOGTAG, "\tRIGHT: " + activePlacementTime[WindowPlacement.RIGHT.getValue()]);
+            Log.d(LOGTAG, "Placements times:");
+            Log.d(LOGTAG, "\tFRONT: " + activePlacementTime[WindowPlacement.FRONT.getValue()]);
+            Log.d(LOGTAG, "\tLEFT: " + activePlacementTime[WindowPlacement.LEFT.getValue()]);
+            Log.d(LOGTAG, "\tRIGHT: " + activePlacementTime[WindowPlacement.RIGHT.getValue()]);
+        });
     }
 
     public static void openWindowsEvent(int from, int to, boolean isPrivate) {
-        if (isPrivate) {
-            if (from > 0) {
-                openPrivateWindowsTime[from-1] += SystemClock.elapsedRealtime() - openPrivateWindowsStartTime[from-1];
-                openPrivateWindowsStartTime[from-1] = 0;
-            }
-
-            if (to > 0) {
-                openPrivateWindows[to-1]++;
-                openPrivateWindowsStartTime[to-1] = SystemClock.elapsedRealtime();
-            }
-
-            Log.d(LOGTAG, "Placements times (private):");
-            Log.d(LOGTAG, "\tONE: " + openPrivateWindowsTime[WindowPlacement.FRONT.getValue()]);
-            Log.d(LOGTAG, "\tTWO: " + openPrivateWindowsTime[WindowPlacement.LEFT.getValue()]);
-            Log.d(LOGTAG, "\tTHREE: " + openPrivateWindowsTime[WindowPlacement.RIGHT.getValue()]);
-
-            Log.d(LOGTAG, "Open Windows Count (private):");
-            Log.d(LOGTAG, "\tFRONT: " + openPrivateWindows[WindowPlacement.FRONT.getValue()]);
-            Log.d(LOGTAG, "\tLEFT: " + openPrivateWindows[WindowPlacement.LEFT.getValue()]);
-            Log.d(LOGTAG, "\tRIGHT: " + openPrivateWindows[WindowPlacement.RIGHT.getValue()]);
+        final long now = SystemClock.elapsedRealtime();
+        queue.post(() -> {
+            if (isPrivate) {
+                if (from > 0) {
+                    openPrivateWindowsTime[from-1] += now - openPrivateWindowsStartTime[from-1];
+                    openPrivateWindowsStartTime[from-1] = 0;
+                }
+
+                if (to > 0) {
+                    openPrivateWindows[to-1]++;
+                    openPrivateWindowsStartTime[to-1] = now;
+                }
+
+                Log.d(LOGTAG, "Placements times (private):");
+                Log.d(LOGTAG, "\tONE: " + openPrivateWindowsTime[WindowPlacement.FRONT.getValue()]);
+                Log.d(LOGTAG, "\tTWO: " + openPrivateWindowsTime[WindowPlacement.LEFT.getValue()]);
+                Log.d(LOGTAG, "\tTHREE: " + openPrivateWindowsTime[WindowPlacement.RIGHT.getValue()]);
+
+                Log.d(LOGTAG, "Open Windows Count (private):");
+                Log.d(LOGTAG, "\tFRONT: " + openPrivateWindows[WindowPlacement.FRONT.getValue()]);
+                Log.d(LOGTAG, "\tLEFT: " + openPrivateWindows[WindowPlacement.LEFT.getValue()]);
+                Log.d(LOGTAG, "\tRIGHT: " + openPrivateWindows[WindowPlacement.RIGHT.getValue()]);
 
-        } else {
-            if (from > 0) {
-                openWindowsTime[from-1] += SystemClock.elapsedRealtime() - openWindowsStartTime[from-1];
-                openWindowsStartTime[from-1] = 0;
-            }
-
-            if (to > 0) {
-                openWindows[to-1]++;
-                openWindowsStartTime[to-1] = SystemClock.elapsedRealtime();
+            } else {
+                if (from > 0) {
+                    openWindowsTime[from-1] += now - openWindowsStartTime[from-1];
+                    openWindowsStartTime[from-1] = 0;
+                }
+
+                if (to > 0) {
+                    openWindows[to-1]++;
+                    openWindowsStartTime[to-1] = now;
+                }
+
+                Log.d(LOGTAG, "Placements times:");
+                Log.d(LOGTAG, "\tONE: " + openWindowsTime[WindowPlacement.FRONT.getValue()]);
+                Log.d(LOGTAG, "\tTWO: " + openWindowsTime[WindowPlacement.LEFT.getValue()]);
+                Log.d(LOGTAG, "\tTHREE: " + openWindowsTime[WindowPlacement.RIGHT.getValue()]);
+
+                Log.d(LOGTAG, "Open Windows Count:");
+                Log.d(LOGTAG, "\tFRONT: " + openWindows[WindowPlacement.FRONT.getValue()]);
+                Log.d(LOGTAG, "\tLEFT: " + openWindows[WindowPlacement.LEFT.getValue()]);
+                Log.d(LOGTAG, "\tRIGHT: " + openWindows[WindowPlacement.RIGHT.getValue()]);
             }
-
-            Log.d(LOGTAG, "Placements times:");
-            Log.d(LOGTAG, "\tONE: " + openWindowsTime[WindowPlacement.FRONT.getValue()]);
-            Log.d(LOGTAG, "\tTWO: " + openWindowsTime[WindowPlacement.LEFT.getValue()]);
-            Log.d(LOGTAG, "\tTHREE: " + openWindowsTime[WindowPlacement.RIGHT.getValue()]);
-
-            Log.d(LOGTAG, "Open Windows Count:");
-            Log.d(LOGTAG, "\tFRONT: " + openWindows[WindowPlacement.FRONT.getValue()]);
-            Log.d(LOGTAG, "\tLEFT: " + openWindows[WindowPlacement.LEFT.getValue()]);
-            Log.d(LOGTAG, "\tRIGHT: " + openWindows[WindowPlacement.RIGHT.getValue()]);
-        }
+        });
     }
 
     private static void queueWindowsLifetimeHistogram() {
         for (Map.Entry<Integer, Long> entry : windowLifetime.entrySet()) {
-            windowsLifetimeHistogram.addData(SystemClock.elapsedRealtime() - entry.getValue());
+            windowsLifetimeHistogram.record(SystemClock.elapsedRealtime() - entry.getValue());
         }
 
         Log.d(LOGTAG, "[Queue] Windows Lifetime Histogram:");
-        queueHistogram(windowsLifetimeHistogram, Method.WINDOW_LIFETIME, Object.WINDOW);
-        windowsLifetimeHistogram = new TelemetryHistogram(HISTOGRAM_SIZE, MULTI_WINDOW_BIN_SIZE_MS, 0);
+        queueHistogram(windowsLifetimeHistogram.snapshotAndReset(), Method.WINDOW_LIFETIME, Object.WINDOW);
 
         for(Map.Entry<Integer, Long> entry : windowLifetime.entrySet()) {
             windowLifetime.put(entry.getKey(), SystemClock.elapsedRealtime());
@@ -507,7 +588,7 @@ public class TelemetryWrapper {
     private static void queueWindowsMovesCountEvent() {
         TelemetryEvent event = TelemetryEvent.create(Category.ACTION, Method.WINDOWS_MOVES_FREQ, Object.WINDOW);
         event.extra(Extra.WINDOW_MOVES_COUNT, Integer.toString(windowsMovesCount));
-        event.queue();
+        queueEvent(event);
 
         Log.d(LOGTAG, "[Queue] Windows Moves per session: " + windowsMovesCount);
 
@@ -517,7 +598,7 @@ public class TelemetryWrapper {
     private static void queueWindowsResizesCountEvent() {
         TelemetryEvent event = TelemetryEvent.create(Category.ACTION, Method.WINDOWS_RESIZE_FREQ, Object.WINDOW);
         event.extra(Extra.WINDOW_RESIZE_COUNT, Integer.toString(windowsResizesCount));
-        event.queue();
+        queueEvent(event);
 
         Log.d(LOGTAG, "[Queue] Windows Resizes per session: " + windowsResizesCount);
 
@@ -536,7 +617,7 @@ public class TelemetryWrapper {
         event.extra(Extra.LEFT_WINDOW_ACTIVE_TIME, String.valueOf(activePlacementTime[WindowPlacement.LEFT.getValue()]));
         event.extra(Extra.FRONT_WINDOW_ACTIVE_TIME, String.valueOf(activePlacementTime[WindowPlacement.FRONT.getValue()]));
         event.extra(Extra.RIGHT_WINDOW_ACTIVE_TIME, String.valueOf(activePlacementTime[WindowPlacement.RIGHT.getValue()]));
-        event.queue();
+        queueEvent(event);
 
         Log.d(LOGTAG, "[Queue] Placements Active time total:");
         Log.d(LOGTAG, "\tFRONT: " + activePlacementTime[WindowPlacement.FRONT.getValue()]);
@@ -549,23 +630,25 @@ public class TelemetryWrapper {
     }
 
     public static void resetOpenedWindowsCount(int number, boolean isPrivate) {
-        if (isPrivate) {
-            for (int i=0; i<openPrivateWindows.length; i++) {
-                openPrivateWindows[i] = 0;
-            }
-            if (number > 0) {
-                openPrivateWindows[number-1] = 1;
-            }
+        queue.post(() -> {
+            if (isPrivate) {
+                for (int i=0; i<openPrivateWindows.length; i++) {
+                    openPrivateWindows[i] = 0;
+                }
+                if (number > 0) {
+                    openPrivateWindows[number-1] = 1;
+                }
 
-        } else {
-            for (int i=0; i<openWindows.length; i++) {
-                openWindows[i] = 0;
-            }
+            } else {
+                for (int i=0; i<openWindows.length; i++) {
+                    openWindows[i] = 0;
+                }
 
-            if (number > 0) {
-                openWindows[number-1] = 1;
+                if (number > 0) {
+                    openWindows[number-1] = 1;
+                }
             }
-        }
+        });
     }
 
     private static void queueOpenWindowsWeightEvent() {
@@ -577,7 +660,7 @@ public class TelemetryWrapper {
         event.extra(Extra.TWO_PRIVATE_WINDOWS_OPENED, String.valueOf(openPrivateWindows[1]));
         event.extra(Extra.THREE_PRIVATE_WINDOWS_OPENED, String.valueOf(openPrivateWindows[2]));
 
-        event.queue();
+        queueEvent(event);
 
         Log.d(LOGTAG, "[Queue] Open Windows Number:");
         Log.d(LOGTAG, "\tRegular 1: " + openWindows[0]);
@@ -615,7 +698,7 @@ public class TelemetryWrapper {
         event.extra(Extra.ONE_OPEN_WINDOWS_TIME, String.valueOf(openWindowsTime[0]+openPrivateWindowsTime[0]));
         event.extra(Extra.TWO_OPEN_WINDOWS_TIME, String.valueOf(openWindowsTime[1]+openPrivateWindowsTime[1]));
         event.extra(Extra.THREE_OPEN_WINDOWS_TIME, String.valueOf(openWindowsTime[2]+openPrivateWindowsTime[2]));
-        event.queue();
+        queueEvent(event);
 
         Log.d(LOGTAG, "[Queue] Open Windows time:");
         Log.d(LOGTAG, "\tONE: " + String.valueOf(openWindowsTime[0] + openPrivateWindowsTime[0]));
@@ -628,13 +711,33 @@ public class TelemetryWrapper {
         }
     }
 
-    public static void telemetryStatus(boolean status) {
+    /**
+     * Turns the collection and the upload on or off. The status ping is sent in the same task,
+     * before disabling in case of opting-out and after enabling in case of opting-in.
+     */
+    public static void setTelemetryEnabled(boolean aEnabled) {
+        queue.execute(() -> {
+            if (!aEnabled) {
+                telemetryStatus(false);
+            }
+
+            TelemetryHolder.get().getConfiguration().setUploadEnabled(aEnabled);
+            TelemetryHolder.get().getConfiguration().setCollectionEnabled(aEnabled);
+
+            if (aEnabled) {
+                telemetryStatus(true);
+            }
+        });
+    }
+
+    private static void telemetryStatus(boolean status) {
         TelemetryEvent event = TelemetryEvent.create(Category.ACTION, Method.TELEMETRY_STATUS, Object.APP);
         event.extra(Extra.TELEMETRY_STATUS, String.valueOf(status));
-        event.queue();
+        queueEvent(event);
 
         // We flush immediately as the Telemetry is going to be turned off in case of opting-out
         // and we want to make sure that this ping is delivered.
+        flushEvents();
         TelemetryHolder.get()
                 .queuePing(TelemetryCorePingBuilder.TYPE)
                 .queuePing(TelemetryMobileEventPingBuilder.TYPE)
@@ -22,6 +22,9 @@ import org.mozilla.vrbrowser.ui.widgets.WidgetPlacement;
 import org.mozilla.vrbrowser.utils.AnimationHelper;
 import org.mozilla.vrbrowser.utils.SystemUtils;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Objects;
 
@@ -86,6 +89,9 @@ public class DownloadsAdapter extends RecyclerView.Adapter<RecyclerView.ViewHold
                     Download oldDownloadItem = mDownloadsList.get(oldItemPosition);
                     return newDownloadItem.getProgress() == oldDownloadItem.getProgress()
                             && newDownloadItem.getStatus() == oldDownloadItem.getStatus()
+                            && newDownloadItem.getBytesPerSecond() == oldDownloadItem.getBytesPerSecond()
+                            && newDownloadItem.getEtaMillis() == oldDownloadItem.getEtaMillis()
+                            && newDownloadItem.isStalled() == oldDownloadItem.isStalled()
                             && newDownloadItem.getFilename().equals(oldDownloadItem.getFilename());
                 }
             });
@@ -95,6 +101,53 @@ public class DownloadsAdapter extends RecyclerView.Adapter<RecyclerView.ViewHold
         }
     }
 
+    /**
+     * Applies the changed and removed downloads to the sorted list, so only their rows are updated.
+     */
+    public void updateDownloads(@NonNull List<Download> changed, @NonNull List<Long> removed, @NonNull Comparator<Download> comparator) {
+        if (mDownloadsList == null) {
+            mDownloadsList = new ArrayList<>();
+        }
+
+        for (long id : removed) {
+            int position = indexOf(id);
+            if (position >= 0) {
+                mDownloadsList.remove(position);
+                notifyItemRemoved(position);
+            }
+        }
+
+        for (Download download : changed) {
+            int oldPosition = indexOf(download.getId());
+            if (oldPosition >= 0) {
+                mDownloadsList.remove(oldPosition);
+            }
+            int position = Collections.binarySearch(mDownloadsList, download, comparator);
+            if (position < 0) {
+                position = -position - 1;
+            }
+            mDownloadsList.add(position, download);
+            if (oldPosition < 0) {
+                notifyItemInserted(position);
+
+            } else {
+                if (oldPosition != position) {
+                    notifyItemMoved(oldPosition, position);
+                }
+                notifyItemChanged(position);
+            }
+        }
+    }
+
+    private int indexOf(long id) {
+        for (int position = 0; position < mDownloadsList.size(); position++) {
+            if (mDownloadsList.get(position).getId() == id) {
+                return position;
+            }
+        }
+        return -1;
+    }
+
     public void removeItem(Download downloadItem) {
         int position = mDownloadsList.indexOf(downloadItem);
         if (position >= 0) {
@@ -38,6 +38,7 @@ import org.mozilla.vrbrowser.browser.engine.Session;
 import org.mozilla.vrbrowser.browser.engine.SessionStore;
 import org.mozilla.vrbrowser.databinding.NavigationUrlBinding;
 import org.mozilla.vrbrowser.search.SearchEngineWrapper;
+import org.mozilla.vrbrowser.search.suggestions.DomainAutocompleteIndex;
 import org.mozilla.vrbrowser.telemetry.GleanMetricsService;
 import org.mozilla.vrbrowser.telemetry.TelemetryWrapper;
 import org.mozilla.vrbrowser.ui.viewmodel.SettingsViewModel;
@@ -55,8 +56,6 @@ import java.util.HashSet;
 import java.util.concurrent.Executor;
 
 import kotlin.Unit;
-import mozilla.components.browser.domains.autocomplete.DomainAutocompleteResult;
-import mozilla.components.browser.domains.autocomplete.ShippedDomainsProvider;
 import mozilla.components.ui.autocomplete.InlineAutocompleteEditText;
 
 public class NavigationURLBar extends FrameLayout {
@@ -68,7 +67,7 @@ public class NavigationURLBar extends FrameLayout {
     private NavigationUrlBinding mBinding;
     private Animation mLoadingAnimation;
     private NavigationURLBarDelegate mDelegate;
-    private ShippedDomainsProvider mAutocompleteProvider;
+    private DomainAutocompleteIndex mAutocompleteIndex;
     private AudioEngine mAudio;
     private Executor mUIThreadExecutor;
     private Session mSession;
@@ -78,12 +77,12 @@ public class NavigationURLBar extends FrameLayout {
     private int lastTouchDownOffset = 0;
 
     private Unit domainAutocompleteFilter(String text) {
-        DomainAutocompleteResult result = mAutocompleteProvider.getAutocompleteSuggestion(text);
+        DomainAutocompleteIndex.Result result = mAutocompleteIndex.getAutocompleteSuggestion(text);
         if (result != null) {
             mBinding.urlEditText.applyAutocompleteResult(new InlineAutocompleteEditText.AutocompleteResult(
-                    result.getText(),
-                    result.getSource(),
-                    result.getTotalItems(),
+                    result.text,
+                    result.source,
+                    result.totalItems,
                     null));
         } else {
             mBinding.urlEditText.noAutocompleteResult();
@@ -121,9 +120,8 @@ public class NavigationURLBar extends FrameLayout {
         mBinding = DataBindingUtil.inflate(LayoutInflater.from(getContext()), R.layout.navigation_url, this, true);
         mBinding.setLifecycleOwner((VRBrowserActivity)getContext());
 
-        // Use Domain autocomplete provider from components
-        mAutocompleteProvider = new ShippedDomainsProvider();
-        mAutocompleteProvider.initialize(getContext());
+        // Shipped domains merged with the visited ones, kept up to date by the HistoryStore
+        mAutocompleteIndex = SessionStore.get().getDomainAutocompleteIndex();
 
         mBinding.urlEditText.clearFocus();
         mBinding.urlEditText.setShowSoftInputOnFocus(false);
@@ -25,6 +25,7 @@ import org.mozilla.vrbrowser.VRBrowserActivity;
 import org.mozilla.vrbrowser.VRBrowserApplication;
 import org.mozilla.vrbrowser.browser.Accounts;
 import org.mozilla.vrbrowser.browser.BookmarksStore;
+import org.mozilla.vrbrowser.browser.PlacesChange;
 import org.mozilla.vrbrowser.browser.SettingsStore;
 import org.mozilla.vrbrowser.browser.engine.Session;
 import org.mozilla.vrbrowser.browser.engine.SessionStore;
@@ -46,6 +47,7 @@ import org.mozilla.vrbrowser.utils.SystemUtils;
 
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
 
 import mozilla.appservices.places.BookmarkRoot;
 import mozilla.components.concept.storage.BookmarkNode;
@@ -70,6 +72,7 @@ public class BookmarksView extends LibraryView implements BookmarksStore.Bookmar
     private BookmarkAdapter mBookmarkAdapter;
     private CustomLinearLayoutManager mLayoutManager;
     private BookmarksViewModel mViewModel;
+    private List<BookmarkNode> mBookmarks;
 
     public BookmarksView(Context aContext) {
         super(aContext);
@@ -350,6 +353,7 @@ public class BookmarksView extends LibraryView implements BookmarksStore.Bookmar
     }
 
     private void showBookmarks(List<BookmarkNode> aBookmarks) {
+        mBookmarks = aBookmarks;
         if (aBookmarks == null || aBookmarks.size() == 0) {
             mViewModel.setIsEmpty(true);
             mViewModel.setIsLoading(false);
@@ -408,12 +412,48 @@ public class BookmarksView extends LibraryView implements BookmarksStore.Bookmar
     // BookmarksStore.BookmarksViewListener
 
     @Override
-    public void onBookmarksUpdated() {
-        updateBookmarks();
+    public void onBookmarksUpdated(@NonNull PlacesChange change) {
+        if (mBookmarks == null || change.isReset() || !change.getChanged().isEmpty()) {
+            updateBookmarks();
+            return;
+        }
+
+        if (!change.getRemoved().isEmpty()) {
+            showBookmarks(BookmarksStore.removeFromTree(mBookmarks, change.getRemoved()));
+        }
+        if (change.getAdded().isEmpty()) {
+            return;
+        }
+
+        BookmarksStore store = SessionStore.get().getBookmarkStore();
+        List<CompletableFuture<BookmarkNode>> added = change.getAdded().stream()
+                .map(store::getBookmark)
+                .collect(Collectors.toList());
+        CompletableFuture.allOf(added.toArray(new CompletableFuture[0])).thenAcceptAsync(unused -> {
+            List<BookmarkNode> bookmarks = mBookmarks;
+            for (CompletableFuture<BookmarkNode> node : added) {
+                // Bookmarks deleted in the meantime are already out of the tree
+                if (bookmarks != null && node.join() != null) {
+                    bookmarks = BookmarksStore.insertIntoTree(bookmarks, node.join());
+                }
+            }
+            if (bookmarks != null) {
+                showBookmarks(bookmarks);
+
+            } else {
+                // The parent folder isn't loaded
+                updateBookmarks();
+            }
+
+        }, mUIThreadExecutor).exceptionally(throwable -> {
+            Log.d(LOGTAG, "Error getting the added bookmarks: " + throwable.getLocalizedMessage());
+            throwable.printStackTrace();
+            return null;
+        });
     }
 
     @Override
     public void onBookmarkAdded() {
-        updateBookmarks();
+        // Already handled by onBookmarksUpdated
     }
 }
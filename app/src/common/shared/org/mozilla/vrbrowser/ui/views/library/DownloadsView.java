@@ -114,7 +114,7 @@ public class DownloadsView extends LibraryView implements DownloadsManager.Downl
         mViewModel.setIsLoading(true);
         mViewModel.setIsNarrow(false);
 
-        onDownloadsUpdate(mDownloadsManager.getDownloads());
+        showDownloads(mDownloadsManager.getDownloads());
 
         setOnTouchListener((v, event) -> {
             v.requestFocusFromTouch();
@@ -130,7 +130,7 @@ public class DownloadsView extends LibraryView implements DownloadsManager.Downl
     @Override
     public void onShow() {
         mDownloadsManager.addListener(this);
-        onDownloadsUpdate(mDownloadsManager.getDownloads());
+        showDownloads(mDownloadsManager.getDownloads());
         updateLayout();
     }
 
@@ -339,7 +339,7 @@ public class DownloadsView extends LibraryView implements DownloadsManager.Downl
                     mSortingComparator = mDownloadSizeDescComparator;
                     break;
             }
-            onDownloadsUpdate(mDownloadsManager.getDownloads());
+            showDownloads(mDownloadsManager.getDownloads());
         });
         menu.getPlacement().parentHandle = window.getHandle();
 
@@ -361,20 +361,28 @@ public class DownloadsView extends LibraryView implements DownloadsManager.Downl
     private Comparator<Download> mDownloadSizeAscComparator = (o1, o2) -> (int)(o1.getSizeBytes() - o2.getSizeBytes());
     private Comparator<Download> mDownloadSizeDescComparator = (o1, o2) -> (int)(o2.getSizeBytes() - o1.getSizeBytes());
 
+    private void showDownloads(@NonNull List<Download> downloads) {
+        List<Download> sorted = downloads.stream().sorted(mSortingComparator).collect(Collectors.toList());
+        mDownloadsAdapter.setDownloadsList(sorted);
+        updateState();
+    }
+
+    private void updateState() {
+        mViewModel.setIsEmpty(mDownloadsAdapter.itemCount() == 0);
+        mViewModel.setIsLoading(!mDownloadsManager.isLoaded());
+        mBinding.executePendingBindings();
+    }
+
     @Override
-    public void onDownloadsUpdate(@NonNull List<Download> downloads) {
-        if (downloads.size() == 0) {
-            mViewModel.setIsEmpty(true);
-            mViewModel.setIsLoading(false);
+    public void onDownloadsChanged(@NonNull List<Download> changed, @NonNull List<Long> removed) {
+        if (mDownloadsAdapter.itemCount() == 0) {
+            // The first load notifies all the downloads
+            showDownloads(mDownloadsManager.getDownloads());
 
         } else {
-            mViewModel.setIsEmpty(false);
-            mViewModel.setIsLoading(false);
-            List<Download> sorted = downloads.stream().sorted(mSortingComparator).collect(Collectors.toList());
-            mDownloadsAdapter.setDownloadsList(sorted);
+            mDownloadsAdapter.updateDownloads(changed, removed, mSortingComparator);
+            updateState();
         }
-
-        mBinding.executePendingBindings();
     }
 
     @Override
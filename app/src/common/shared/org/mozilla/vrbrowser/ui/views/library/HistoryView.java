@@ -25,6 +25,8 @@ import org.mozilla.vrbrowser.VRBrowserActivity;
 import org.mozilla.vrbrowser.VRBrowserApplication;
 import org.mozilla.vrbrowser.browser.Accounts;
 import org.mozilla.vrbrowser.browser.HistoryStore;
+import org.mozilla.vrbrowser.browser.PlacesChange;
+import org.mozilla.vrbrowser.browser.PlacesVisit;
 import org.mozilla.vrbrowser.browser.SettingsStore;
 import org.mozilla.vrbrowser.browser.engine.Session;
 import org.mozilla.vrbrowser.browser.engine.SessionStore;
@@ -43,7 +45,9 @@ import org.mozilla.vrbrowser.ui.widgets.menus.library.HistoryContextMenuWidget;
 import org.mozilla.vrbrowser.ui.widgets.menus.library.LibraryContextMenuWidget;
 import org.mozilla.vrbrowser.utils.SystemUtils;
 
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.GregorianCalendar;
 import java.util.List;
@@ -53,6 +57,7 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import mozilla.components.concept.storage.VisitInfo;
 import mozilla.components.concept.storage.VisitType;
@@ -77,6 +82,7 @@ public class HistoryView extends LibraryView implements HistoryStore.HistoryList
     private HistoryAdapter mHistoryAdapter;
     private ClearHistoryDialogWidget mClearHistoryDialog;
     private HistoryViewModel mViewModel;
+    private List<VisitInfo> mHistoryItems;
 
     public HistoryView(Context aContext) {
         super(aContext);
@@ -359,16 +365,6 @@ public class HistoryView extends LibraryView implements HistoryStore.HistoryList
     }
 
     private void updateHistory() {
-        Calendar date = new GregorianCalendar();
-        date.set(Calendar.HOUR_OF_DAY, 0);
-        date.set(Calendar.MINUTE, 0);
-        date.set(Calendar.SECOND, 0);
-        date.set(Calendar.MILLISECOND, 0);
-
-        long todayLimit = date.getTimeInMillis();
-        long yesterdayLimit = todayLimit - SystemUtils.ONE_DAY_MILLIS;
-        long oneWeekLimit = todayLimit - SystemUtils.ONE_WEEK_MILLIS;
-
         SessionStore.get().getHistoryStore().getDetailedHistory().thenAcceptAsync((items) -> {
             List<VisitInfo> orderedItems = items.stream()
                     .sorted(Comparator.comparing(VisitInfo::getVisitTime)
@@ -376,11 +372,7 @@ public class HistoryView extends LibraryView implements HistoryStore.HistoryList
                     .filter(distinctByUrl(VisitInfo::getUrl))
                     .collect(Collectors.toList());
 
-            addSection(orderedItems, getResources().getString(R.string.history_section_today), Long.MAX_VALUE, todayLimit);
-            addSection(orderedItems, getResources().getString(R.string.history_section_yesterday), todayLimit, yesterdayLimit);
-            addSection(orderedItems, getResources().getString(R.string.history_section_last_week), yesterdayLimit, oneWeekLimit);
-            addSection(orderedItems, getResources().getString(R.string.history_section_older), oneWeekLimit, 0);
-
+            addSections(orderedItems);
             showHistory(orderedItems);
 
         }, mUIThreadExecutor).exceptionally(throwable -> {
@@ -390,6 +382,23 @@ public class HistoryView extends LibraryView implements HistoryStore.HistoryList
         });
     }
 
+    private void addSections(final @NonNull List<VisitInfo> items) {
+        Calendar date = new GregorianCalendar();
+        date.set(Calendar.HOUR_OF_DAY, 0);
+        date.set(Calendar.MINUTE, 0);
+        date.set(Calendar.SECOND, 0);
+        date.set(Calendar.MILLISECOND, 0);
+
+        long todayLimit = date.getTimeInMillis();
+        long yesterdayLimit = todayLimit - SystemUtils.ONE_DAY_MILLIS;
+        long oneWeekLimit = todayLimit - SystemUtils.ONE_WEEK_MILLIS;
+
+        addSection(items, getResources().getString(R.string.history_section_today), Long.MAX_VALUE, todayLimit);
+        addSection(items, getResources().getString(R.string.history_section_yesterday), todayLimit, yesterdayLimit);
+        addSection(items, getResources().getString(R.string.history_section_last_week), yesterdayLimit, oneWeekLimit);
+        addSection(items, getResources().getString(R.string.history_section_older), oneWeekLimit, 0);
+    }
+
     private void addSection(final @NonNull List<VisitInfo> items, @NonNull String section, long rangeStart, long rangeEnd) {
         for (int i=0; i< items.size(); i++) {
             if (items.get(i).getVisitTime() == rangeStart && items.get(i).getVisitType() == VisitType.NOT_A_VISIT)
@@ -408,6 +417,7 @@ public class HistoryView extends LibraryView implements HistoryStore.HistoryList
     }
 
     private void showHistory(List<VisitInfo> historyItems) {
+        mHistoryItems = historyItems;
         if (historyItems == null || historyItems.size() == 0) {
             mViewModel.setIsEmpty(true);
             mViewModel.setIsLoading(false);
@@ -478,7 +488,80 @@ public class HistoryView extends LibraryView implements HistoryStore.HistoryList
     // HistoryStore.HistoryListener
 
     @Override
-    public void onHistoryUpdated() {
-        updateHistory();
+    public void onHistoryUpdated(@NonNull PlacesChange change) {
+        if (mHistoryItems == null || change.isReset()) {
+            updateHistory();
+            return;
+        }
+
+        HistoryStore store = SessionStore.get().getHistoryStore();
+
+        // Removing single visits or a visit range may uncover older visits of the same URLs
+        List<String> removedUrls = change.getRemovedRangeStart() > 0 || !change.getRemovedVisits().isEmpty() ?
+                mHistoryItems.stream()
+                        .filter(item -> isRemovedVisit(change, item))
+                        .map(VisitInfo::getUrl)
+                        .collect(Collectors.toList()) :
+                Collections.emptyList();
+        CompletableFuture<Boolean> olderVisits = removedUrls.isEmpty() ?
+                CompletableFuture.completedFuture(false) :
+                store.getVisited(removedUrls).thenApply(visited -> visited.contains(true));
+
+        // Added and changed URLs only have visits newer than the loaded ones
+        long since = Long.MAX_VALUE;
+        for (VisitInfo item : mHistoryItems) {
+            if (item.getVisitType() != VisitType.NOT_A_VISIT &&
+                    (since == Long.MAX_VALUE || change.getChanged().contains(item.getUrl()))) {
+                since = Math.min(since, item.getVisitTime());
+            }
+        }
+        CompletableFuture<List<VisitInfo>> newVisits = change.getAdded().isEmpty() && change.getChanged().isEmpty() ?
+                CompletableFuture.completedFuture(Collections.emptyList()) :
+                store.getDetailedHistory(since == Long.MAX_VALUE ? 0 : since);
+
+        olderVisits.thenCombineAsync(newVisits, (hasOlderVisits, visits) -> {
+            if (hasOlderVisits) {
+                updateHistory();
+
+            } else {
+                showHistory(applyChange(change, visits != null ? visits : Collections.emptyList()));
+            }
+            return null;
+
+        }, mUIThreadExecutor).exceptionally(throwable -> {
+            Log.d(LOGTAG, "Error updating history: " + throwable.getLocalizedMessage());
+            throwable.printStackTrace();
+            return null;
+        });
+    }
+
+    private List<VisitInfo> applyChange(@NonNull PlacesChange change, @NonNull List<VisitInfo> newVisits) {
+        // Items are distinct by URL so removing every visit of an URL doesn't uncover older ones
+        Stream<VisitInfo> items = mHistoryItems.stream()
+                .filter(item -> item.getVisitType() != VisitType.NOT_A_VISIT)
+                .filter(item -> !change.getRemoved().contains(item.getUrl()))
+                .filter(item -> !isRemovedVisit(change, item));
+
+        // The sort is stable so the fetched visits win over the loaded ones with the same time
+        List<VisitInfo> orderedItems = Stream.concat(newVisits.stream(), items)
+                .sorted(Comparator.comparing(VisitInfo::getVisitTime)
+                .reversed())
+                .filter(distinctByUrl(VisitInfo::getUrl))
+                .collect(Collectors.toList());
+
+        addSections(orderedItems);
+        return orderedItems;
+    }
+
+    private static boolean isRemovedVisit(@NonNull PlacesChange change, @NonNull VisitInfo item) {
+        if (item.getVisitType() == VisitType.NOT_A_VISIT) {
+            return false;
+        }
+        if (change.hasRemovedRange() &&
+                item.getVisitTime() >= change.getRemovedRangeStart() &&
+                item.getVisitTime() <= change.getRemovedRangeEnd()) {
+            return true;
+        }
+        return change.getRemovedVisits().contains(new PlacesVisit(item.getUrl(), item.getVisitTime()));
     }
 }
@@ -7,6 +7,7 @@ import org.mozilla.vrbrowser.browser.Services;
 import org.mozilla.vrbrowser.db.AppDatabase;
 import org.mozilla.vrbrowser.db.DataRepository;
 import org.mozilla.vrbrowser.downloads.DownloadsManager;
+import org.mozilla.vrbrowser.telemetry.FrameTimingAggregator;
 import org.mozilla.vrbrowser.utils.BitmapCache;
 
 public interface AppServicesProvider {
@@ -19,5 +20,6 @@ public interface AppServicesProvider {
     BitmapCache getBitmapCache();
     Accounts getAccounts();
     DownloadsManager getDownloadsManager();
+    FrameTimingAggregator getFrameTimingAggregator();
 
 }
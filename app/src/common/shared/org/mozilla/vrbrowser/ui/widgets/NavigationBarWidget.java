@@ -61,6 +61,8 @@ import org.mozilla.vrbrowser.utils.ConnectivityReceiver;
 import org.mozilla.vrbrowser.utils.UrlUtils;
 
 import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -938,33 +940,40 @@ public class NavigationBarWidget extends UIWidget implements GeckoSession.Naviga
         final String text = mBinding.navigationBarNavigation.urlBar.getText().trim();
         final String originalText = mBinding.navigationBarNavigation.urlBar.getOriginalText().trim();
         if (originalText.length() <= 0) {
+            mSuggestionsProvider.cancelSuggestions();
             mAwesomeBar.hide(UIWidget.KEEP_WIDGET);
             return;
         }
 
+        // Starting a new request cancels the previous one, so stale results never override newer ones
         mSuggestionsProvider.setText(text);
         mSuggestionsProvider.setFilterText(originalText);
-        mSuggestionsProvider.getSuggestions()
-                .whenCompleteAsync((items, ex) -> {
-                    if (mBinding.navigationBarNavigation.urlBar.hasFocus()) {
-                        mAwesomeBar.updateItems(items);
-                        mAwesomeBar.setHighlightedText(originalText);
-
-                        if (!mAwesomeBar.isVisible()) {
-                            mAwesomeBar.updatePlacement((int) WidgetPlacement.convertPixelsToDp(getContext(), mBinding.navigationBarNavigation.urlBar.getWidth()));
-                            mAwesomeBar.show(CLEAR_FOCUS);
-                        }
+        mSuggestionsProvider.getSuggestions(items -> showSuggestions(items, originalText))
+                .thenAcceptAsync(items -> showSuggestions(items, originalText), mUIThreadExecutor)
+                .exceptionally(throwable -> {
+                    if (!(throwable instanceof CancellationException) && !(throwable.getCause() instanceof CancellationException)) {
+                        Log.d(LOGTAG, "Error getting suggestions: " + throwable.getLocalizedMessage());
+                        throwable.printStackTrace();
                     }
-
-                }, mUIThreadExecutor).exceptionally(throwable -> {
-                    Log.d(LOGTAG, "Error getting suggestions: " + throwable.getLocalizedMessage());
-                    throwable.printStackTrace();
                     return null;
         });
     }
 
+    private void showSuggestions(@NonNull List<SuggestionsWidget.SuggestionItem> items, @NonNull String originalText) {
+        if (mBinding.navigationBarNavigation.urlBar.hasFocus()) {
+            mAwesomeBar.updateItems(items);
+            mAwesomeBar.setHighlightedText(originalText);
+
+            if (!mAwesomeBar.isVisible()) {
+                mAwesomeBar.updatePlacement((int) WidgetPlacement.convertPixelsToDp(getContext(), mBinding.navigationBarNavigation.urlBar.getWidth()));
+                mAwesomeBar.show(CLEAR_FOCUS);
+            }
+        }
+    }
+
     @Override
     public void onHideAwesomeBar() {
+        mSuggestionsProvider.cancelSuggestions();
         if (mAwesomeBar != null) {
             mAwesomeBar.hide(UIWidget.KEEP_WIDGET);
         }
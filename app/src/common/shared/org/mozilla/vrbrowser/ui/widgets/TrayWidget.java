@@ -26,6 +26,7 @@ import org.mozilla.vrbrowser.R;
 import org.mozilla.vrbrowser.VRBrowserActivity;
 import org.mozilla.vrbrowser.audio.AudioEngine;
 import org.mozilla.vrbrowser.browser.BookmarksStore;
+import org.mozilla.vrbrowser.browser.PlacesChange;
 import org.mozilla.vrbrowser.browser.engine.Session;
 import org.mozilla.vrbrowser.browser.engine.SessionStore;
 import org.mozilla.vrbrowser.databinding.TrayBinding;
@@ -40,7 +41,11 @@ import org.mozilla.vrbrowser.utils.ViewUtils;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class TrayWidget extends UIWidget implements WidgetManagerDelegate.UpdateListener, DownloadsManager.DownloadsListener {
 
@@ -61,6 +66,7 @@ public class TrayWidget extends UIWidget implements WidgetManagerDelegate.Update
     private int mMaxPadding;
     private Session mSession;
     private WindowWidget mAttachedWindow;
+    private Map<Long, Download> mActiveDownloads;
 
     public TrayWidget(Context aContext) {
         super(aContext);
@@ -90,6 +96,7 @@ public class TrayWidget extends UIWidget implements WidgetManagerDelegate.Update
         updateUI();
 
         mTrayListeners = new ArrayList<>();
+        mActiveDownloads = new HashMap<>();
 
         mMinPadding = WidgetPlacement.pixelDimension(getContext(), R.dimen.tray_icon_padding_min);
         mMaxPadding = WidgetPlacement.pixelDimension(getContext(), R.dimen.tray_icon_padding_max);
@@ -97,7 +104,9 @@ public class TrayWidget extends UIWidget implements WidgetManagerDelegate.Update
         mAudio = AudioEngine.fromContext(aContext);
 
         mWidgetManager.addUpdateListener(this);
-        mWidgetManager.getServicesProvider().getDownloadsManager().addListener(this);
+        DownloadsManager downloadsManager = mWidgetManager.getServicesProvider().getDownloadsManager();
+        downloadsManager.addListener(this);
+        onDownloadsChanged(downloadsManager.getDownloads(), Collections.emptyList());
     }
 
     public void updateUI() {
@@ -516,7 +525,7 @@ public class TrayWidget extends UIWidget implements WidgetManagerDelegate.Update
 
     private BookmarksStore.BookmarkListener mBookmarksListener = new BookmarksStore.BookmarkListener() {
         @Override
-        public void onBookmarksUpdated() {
+        public void onBookmarksUpdated(@NonNull PlacesChange change) {
             // Nothing to do
         }
 
@@ -529,12 +538,22 @@ public class TrayWidget extends UIWidget implements WidgetManagerDelegate.Update
     // DownloadsManager.DownloadsListener
 
     @Override
-    public void onDownloadsUpdate(@NonNull List<Download> downloads) {
-        long inProgressNum = downloads.stream().filter(item ->
-                item.getStatus() == Download.RUNNING ||
-                        item.getStatus() == Download.PAUSED ||
-                        item.getStatus() == Download.PENDING).count();
-        mTrayViewModel.setDownloadsNumber((int)inProgressNum);
+    public void onDownloadsChanged(@NonNull List<Download> changed, @NonNull List<Long> removed) {
+        removed.forEach(mActiveDownloads::remove);
+        for (Download download : changed) {
+            if (download.getStatus() == Download.RUNNING ||
+                    download.getStatus() == Download.PAUSED ||
+                    download.getStatus() == Download.PENDING) {
+                mActiveDownloads.put(download.getId(), download);
+
+            } else {
+                mActiveDownloads.remove(download.getId());
+            }
+        }
+
+        Collection<Download> downloads = mActiveDownloads.values();
+        int inProgressNum = downloads.size();
+        mTrayViewModel.setDownloadsNumber(inProgressNum);
         if (inProgressNum == 0) {
             mBinding.downloadsButton.setLevel(0);
 
@@ -45,6 +45,7 @@ import org.mozilla.vrbrowser.VRBrowserActivity;
 import org.mozilla.vrbrowser.VRBrowserApplication;
 import org.mozilla.vrbrowser.browser.BookmarksStore;
 import org.mozilla.vrbrowser.browser.Media;
+import org.mozilla.vrbrowser.browser.PlacesChange;
 import org.mozilla.vrbrowser.browser.PromptDelegate;
 import org.mozilla.vrbrowser.browser.SessionChangeListener;
 import org.mozilla.vrbrowser.browser.SettingsStore;
@@ -962,6 +963,18 @@ public class WindowWidget extends UIWidget implements SessionChangeListener,
         return mViewModel.getIsFullscreen().getValue().get();
     }
 
+    /**
+     * Renders the window content at a fraction of its size, the texture is stretched to the window.
+     */
+    public void setTextureScale(float aScale) {
+        if (mWidgetPlacement.textureScale == aScale) {
+            return;
+        }
+        mWidgetPlacement.textureScale = aScale;
+        mWidgetManager.updateWidget(this);
+        resizeSurface(mWidgetPlacement.textureWidth(), mWidgetPlacement.textureHeight());
+    }
+
     public void addWindowListener(WindowListener aListener) {
        if (!mListeners.contains(aListener)) {
            mListeners.add(aListener);
@@ -1478,13 +1491,13 @@ public class WindowWidget extends UIWidget implements SessionChangeListener,
 
     private BookmarksStore.BookmarkListener mBookmarksListener = new BookmarksStore.BookmarkListener() {
         @Override
-        public void onBookmarksUpdated() {
+        public void onBookmarksUpdated(@NonNull PlacesChange change) {
             updateBookmarked();
         }
 
         @Override
         public void onBookmarkAdded() {
-            updateBookmarked();
+            // Already handled by onBookmarksUpdated
         }
     };
 
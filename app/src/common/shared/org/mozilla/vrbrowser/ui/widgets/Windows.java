@@ -21,6 +21,7 @@ import org.mozilla.vrbrowser.browser.engine.Session;
 import org.mozilla.vrbrowser.browser.engine.SessionState;
 import org.mozilla.vrbrowser.browser.engine.SessionStore;
 import org.mozilla.vrbrowser.telemetry.GleanMetricsService;
+import org.mozilla.vrbrowser.telemetry.StartupTracer;
 import org.mozilla.vrbrowser.telemetry.TelemetryWrapper;
 import org.mozilla.vrbrowser.ui.widgets.dialogs.PromptDialogWidget;
 import org.mozilla.vrbrowser.ui.widgets.dialogs.UIDialog;
@@ -182,7 +183,7 @@ public class Windows implements TrayListener, TopBarWidget.Delegate, TitleBarWid
 
         mWidgetManager.addConnectivityListener(mConnectivityDelegate);
 
-        restoreWindows();
+        StartupTracer.get().trace("windows.restore", this::restoreWindows);
     }
 
     public void saveState() {
@@ -150,6 +150,33 @@ public class BitmapCache {
         return mMemoryCache.get(aKey) != null;
     }
 
+    /**
+     * Returns the size of the snapshots kept in memory, in KB.
+     */
+    public int getMemoryCacheSize() {
+        return mMemoryCache != null ? mMemoryCache.size() : 0;
+    }
+
+    public int getMemoryCacheMaxSize() {
+        return mMemoryCache != null ? mMemoryCache.maxSize() : 0;
+    }
+
+    public int getMemoryCacheCount() {
+        return mMemoryCache != null ? mMemoryCache.snapshot().size() : 0;
+    }
+
+    /**
+     * Returns the size of the snapshots stored on disk, in bytes.
+     */
+    public long getDiskCacheSize() {
+        DiskLruCache diskCache = mDiskCache;
+        return diskCache != null ? diskCache.size() : 0;
+    }
+
+    public long getDiskCacheMaxSize() {
+        return DISK_CACHE_SIZE;
+    }
+
     private void runIO(Runnable aRunnable) {
         mIOExecutor.execute(() -> {
             if (mDiskCache != null) {
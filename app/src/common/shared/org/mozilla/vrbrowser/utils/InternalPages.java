@@ -3,15 +3,24 @@ package org.mozilla.vrbrowser.utils;
 import android.content.Context;
 import android.util.Base64;
 
+import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
 import org.mozilla.vrbrowser.R;
+import org.mozilla.vrbrowser.telemetry.FrameTimingAggregator;
+import org.mozilla.vrbrowser.telemetry.LatencyHistogram;
+import org.mozilla.vrbrowser.telemetry.PerformanceReport;
 
 import org.mozilla.geckoview.WebRequestError;
 
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.text.DateFormat;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import mozilla.components.browser.errorpages.ErrorPages;
 import mozilla.components.browser.errorpages.ErrorType;
@@ -159,6 +168,66 @@ public class InternalPages {
         return html.getBytes();
     }
 
+    public static final int PERFORMANCE_REFRESH_SECONDS = 2;
+
+    /**
+     * Renders about://performance. The page reloads itself every
+     * {@link #PERFORMANCE_REFRESH_SECONDS} by navigating back to {@link UrlUtils#ABOUT_PERFORMANCE}.
+     */
+    public static String createPerformancePageDataURI(@NonNull Context context,
+                                                      @NonNull PerformanceReport report) {
+        StringBuilder content = new StringBuilder();
+        appendCounters(content, "Sessions", report.getSessions());
+        appendSnapshots(content, "Page load phases (ms)", report.getPageLoadPhases());
+        appendSnapshots(content, "History and bookmarks queries (ms)", report.getQueries());
+        appendCounters(content, "Tab snapshot cache", report.getSnapshotCache());
+        appendCounters(content, "Executor queues", report.getExecutors());
+
+        FrameTimingAggregator.Report frames = report.getFrames();
+        appendSnapshots(content, "Frame times (&micro;s)", Collections.singletonMap("frames", frames.getFrameTimes()));
+        Map<String, Long> jank = new LinkedHashMap<>();
+        jank.put("missed_vsyncs", frames.getMissedVsyncs());
+        jank.put("jank_frames", frames.getJankFrames());
+        jank.put("max_widgets", (long) frames.getMaxWidgets());
+        jank.put("max_layers", (long) frames.getMaxLayers());
+        appendCounters(content, "Frames", jank);
+
+        String html = readRawResourceString(context, R.raw.performance)
+                .replace("%pageTitle%", "about:performance")
+                .replace("%refreshSeconds%", String.valueOf(PERFORMANCE_REFRESH_SECONDS))
+                .replace("%refreshUrl%", UrlUtils.ABOUT_PERFORMANCE)
+                .replace("%exportUrl%", UrlUtils.ABOUT_PERFORMANCE_EXPORT)
+                .replace("%updated%", DateFormat.getTimeInstance().format(new Date(report.getTime())))
+                .replace("%css%", readRawResourceString(context, R.raw.performance_style))
+                .replace("%content%", content.toString());
+
+        return "data:text/html;base64," + Base64.encodeToString(html.getBytes(), Base64.NO_WRAP);
+    }
+
+    private static void appendCounters(@NonNull StringBuilder aHtml, @NonNull String aTitle, @NonNull Map<String, Long> aCounters) {
+        aHtml.append("<h2>").append(aTitle).append("</h2><table>");
+        for (Map.Entry<String, Long> entry : aCounters.entrySet()) {
+            aHtml.append("<tr><td>").append(entry.getKey()).append("</td><td>").append(entry.getValue()).append("</td></tr>");
+        }
+        aHtml.append("</table>");
+    }
+
+    private static void appendSnapshots(@NonNull StringBuilder aHtml, @NonNull String aTitle, @NonNull Map<String, LatencyHistogram.Snapshot> aSnapshots) {
+        aHtml.append("<h2>").append(aTitle).append("</h2><table>")
+                .append("<tr><th></th><th>count</th><th>p50</th><th>p90</th><th>p99</th><th>max</th></tr>");
+        for (Map.Entry<String, LatencyHistogram.Snapshot> entry : aSnapshots.entrySet()) {
+            LatencyHistogram.Snapshot snapshot = entry.getValue();
+            aHtml.append("<tr><td>").append(entry.getKey())
+                    .append("</td><td>").append(snapshot.getCount())
+                    .append("</td><td>").append(snapshot.getP50())
+                    .append("</td><td>").append(snapshot.getP90())
+                    .append("</td><td>").append(snapshot.getP99())
+                    .append("</td><td>").append(snapshot.getMax())
+                    .append("</td></tr>");
+        }
+        aHtml.append("</table>");
+    }
+
     private static String readRawResourceString(Context context, int resource) {
         StringBuilder total = new StringBuilder();
         try {
@@ -0,0 +1,311 @@
+/* -*- Mode: Java; c-basic-offset: 4; tab-width: 4; indent-tabs-mode: nil; -*-
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+package org.mozilla.vrbrowser.utils;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+
+/**
+ * Single pass scanners for the URL checks that run on every keystroke and navigation. The checks
+ * don't allocate, {@link #getHost(String)} only allocates the returned host. They match exactly
+ * what the regular expressions previously used in {@link UrlUtils} matched:
+ *
+ * domain: ^(http://www\.|https://www\.|http://|https://)?[a-zA-Z0-9]+([-.]{1}[a-zA-Z0-9]+)*\.[a-zA-Z]{2,5}(:[0-9]{1,5})?(/[^ ]*)?$
+ * ip: ^(([0-9]|[1-9][0-9]|1[0-9]{2}|2[0-4][0-9]|25[0-5])\.){3}([0-9]|[1-9][0-9]|1[0-9]{2}|2[0-4][0-9]|25[0-5])(:[0-9]+)?(/[^ ]*)?
+ * localhost: ^(localhost)(:[0-9]+)?(/[^ ]*)? (case insensitive)
+ */
+public class UrlClassifier {
+
+    private static final String HTTP = "http://";
+    private static final String HTTPS = "https://";
+    private static final String WWW = "www.";
+    private static final String LOCALHOST = "localhost";
+    private static final String DATA = "data:";
+    private static final String PROTOCOL_SEPARATOR = "://";
+
+    public static boolean isDomain(@NonNull String aText) {
+        int length = aText.length();
+        if (aText.startsWith(HTTPS)) {
+            return (aText.startsWith(WWW, HTTPS.length()) && isDomainAt(aText, HTTPS.length() + WWW.length(), length)) ||
+                    isDomainAt(aText, HTTPS.length(), length);
+
+        } else if (aText.startsWith(HTTP)) {
+            return (aText.startsWith(WWW, HTTP.length()) && isDomainAt(aText, HTTP.length() + WWW.length(), length)) ||
+                    isDomainAt(aText, HTTP.length(), length);
+        }
+
+        return isDomainAt(aText, 0, length);
+    }
+
+    public static boolean isIPUri(@Nullable String aUri) {
+        if (aUri == null) {
+            return false;
+        }
+        int start = getAddressStart(aUri);
+        return start >= 0 && (isLocalhostAt(aUri, start) || isIPv4At(aUri, start));
+    }
+
+    public static boolean isLocalIP(@Nullable String aUri) {
+        if (aUri == null) {
+            return false;
+        }
+        int start = getAddressStart(aUri);
+        if (start < 0) {
+            return false;
+        }
+        if (isLocalhostAt(aUri, start)) {
+            return true;
+        }
+
+        return isIPv4At(aUri, start) &&
+                (aUri.startsWith("10.", start) ||
+                 aUri.startsWith("172.", start) ||
+                 aUri.startsWith("192.168.", start));
+    }
+
+    /**
+     * Same as {@code new URL(aUri).getHost()}, returning the uri itself if it can't be parsed.
+     * Plain http(s) URLs with a simple host are scanned directly and only the host substring is
+     * allocated, anything else goes through {@link URL}.
+     */
+    public static String getHost(String aUri) {
+        if (aUri != null) {
+            int start = -1;
+            if (startsWithIgnoreAsciiCase(aUri, HTTPS, 0)) {
+                start = HTTPS.length();
+            } else if (startsWithIgnoreAsciiCase(aUri, HTTP, 0)) {
+                start = HTTP.length();
+            }
+
+            if (start > 0) {
+                int end = scanSimpleHost(aUri, start);
+                if (end > start) {
+                    return aUri.substring(start, end);
+                }
+
+            } else if (aUri.indexOf(':') < 0) {
+                // Without a protocol URL throws, skip the exception.
+                return aUri;
+            }
+        }
+
+        try {
+            URL url = new URL(aUri);
+            return url.getHost();
+        } catch (MalformedURLException e) {
+            return aUri;
+        }
+    }
+
+    /**
+     * Matches {@code [a-zA-Z0-9]+([-.][a-zA-Z0-9]+)*\.[a-zA-Z]{2,5}(:[0-9]{1,5})?(/[^ ]*)?$}
+     * starting at the given index.
+     */
+    private static boolean isDomainAt(@NonNull String aText, int aStart, int aLength) {
+        // The host can only end where its characters end, as none of the following
+        // tokens (':', '/' or the end of the input) are host characters.
+        int index = aStart;
+        int runs = 0;
+        int runStart = aStart;
+        boolean runIsAlpha = true;
+        char lastSeparator = 0;
+        while (index < aLength) {
+            char c = aText.charAt(index);
+            if (isAsciiAlphanumeric(c)) {
+                runIsAlpha &= isAsciiLetter(c);
+
+            } else if (c == '.' || c == '-') {
+                if (index == runStart) {
+                    // Leading or consecutive separators
+                    return false;
+                }
+                runs++;
+                lastSeparator = c;
+                runStart = index + 1;
+                runIsAlpha = true;
+
+            } else {
+                break;
+            }
+            index++;
+        }
+
+        int lastRunLength = index - runStart;
+        if (lastRunLength == 0 || runs == 0) {
+            return false;
+        }
+        if (lastSeparator != '.' || !runIsAlpha || lastRunLength < 2 || lastRunLength > 5) {
+            return false;
+        }
+
+        if (index < aLength && aText.charAt(index) == ':') {
+            int portStart = ++index;
+            while (index < aLength && isAsciiDigit(aText.charAt(index))) {
+                index++;
+            }
+            int portLength = index - portStart;
+            if (portLength < 1 || portLength > 5) {
+                return false;
+            }
+        }
+
+        if (index < aLength && aText.charAt(index) == '/') {
+            return aText.indexOf(' ', index) < 0;
+        }
+
+        return isEndOfInput(aText, index, aLength);
+    }
+
+    /**
+     * Whether the index is at the end of the input, or before a final line terminator, which is
+     * where a regular expression {@code $} matches.
+     */
+    private static boolean isEndOfInput(@NonNull String aText, int aIndex, int aLength) {
+        int remaining = aLength - aIndex;
+        if (remaining == 0) {
+            return true;
+        }
+        char c = aText.charAt(aIndex);
+        if (remaining == 1) {
+            return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+        }
+        return remaining == 2 && c == '\r' && aText.charAt(aIndex + 1) == '\n';
+    }
+
+    /**
+     * Returns the index where the address starts once the protocol and the leading whitespace
+     * are skipped, or -1 for data uris. Stripping the trailing slash and whitespace doesn't change
+     * the result of prefix checks, so the end is left untouched.
+     */
+    private static int getAddressStart(@NonNull String aUri) {
+        if (aUri.startsWith(DATA)) {
+            return -1;
+        }
+        int start = aUri.indexOf(PROTOCOL_SEPARATOR);
+        start = start >= 0 ? start + PROTOCOL_SEPARATOR.length() : 0;
+        int length = aUri.length();
+        while (start < length && aUri.charAt(start) <= ' ') {
+            start++;
+        }
+        return start;
+    }
+
+    private static boolean isLocalhostAt(@NonNull String aUri, int aStart) {
+        return startsWithIgnoreAsciiCase(aUri, LOCALHOST, aStart);
+    }
+
+    /**
+     * Case insensitive prefix check for a lower case prefix. Unlike
+     * {@link String#regionMatches(boolean, int, String, int, int)} it only folds ASCII letters,
+     * like regular expressions and URL schemes do.
+     */
+    private static boolean startsWithIgnoreAsciiCase(@NonNull String aText, @NonNull String aPrefix, int aStart) {
+        if (aText.length() - aStart < aPrefix.length()) {
+            return false;
+        }
+        for (int i = 0; i < aPrefix.length(); i++) {
+            char c = aText.charAt(aStart + i);
+            char expected = aPrefix.charAt(i);
+            if (c != expected && !(isAsciiLetter(expected) && c == expected - ('a' - 'A'))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Matches three dot terminated octets followed by at least a digit, the regex doesn't anchor
+     * the end so the last octet only needs a valid first digit.
+     */
+    private static boolean isIPv4At(@NonNull String aUri, int aStart) {
+        int length = aUri.length();
+        int index = aStart;
+        for (int octet = 0; octet < 3; octet++) {
+            int octetStart = index;
+            while (index < length && isAsciiDigit(aUri.charAt(index))) {
+                index++;
+            }
+            if (index >= length || aUri.charAt(index) != '.' || !isValidOctet(aUri, octetStart, index)) {
+                return false;
+            }
+            index++;
+        }
+
+        return index < length && isAsciiDigit(aUri.charAt(index));
+    }
+
+    private static boolean isValidOctet(@NonNull String aUri, int aStart, int aEnd) {
+        switch (aEnd - aStart) {
+            case 1:
+                return true;
+            case 2:
+                return aUri.charAt(aStart) != '0';
+            case 3:
+                char first = aUri.charAt(aStart);
+                char second = aUri.charAt(aStart + 1);
+                char third = aUri.charAt(aStart + 2);
+                return first == '1' ||
+                        (first == '2' && (second < '5' || (second == '5' && third <= '5')));
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Returns the end of a host made of letters, digits, dots and dashes, with an optional port,
+     * that is followed by a path or the end of the uri. Returns -1 when the uri needs a full parse.
+     */
+    private static int scanSimpleHost(@NonNull String aUri, int aStart) {
+        int length = aUri.length();
+        if (length == 0 || aUri.charAt(length - 1) <= ' ') {
+            // URL trims the spec
+            return -1;
+        }
+
+        int index = aStart;
+        while (index < length) {
+            char c = aUri.charAt(index);
+            if (!isAsciiAlphanumeric(c) && c != '.' && c != '-') {
+                break;
+            }
+            index++;
+        }
+        int hostEnd = index;
+
+        if (index < length && aUri.charAt(index) == ':') {
+            int portStart = ++index;
+            while (index < length && isAsciiDigit(aUri.charAt(index))) {
+                index++;
+            }
+            int portLength = index - portStart;
+            if (portLength < 1 || portLength > 5) {
+                return -1;
+            }
+        }
+
+        if (index < length && aUri.charAt(index) != '/') {
+            // Queries, fragments, user info or anything else right after the host
+            return -1;
+        }
+
+        return hostEnd;
+    }
+
+    private static boolean isAsciiDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isAsciiLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static boolean isAsciiAlphanumeric(char c) {
+        return isAsciiDigit(c) || isAsciiLetter(c);
+    }
+}
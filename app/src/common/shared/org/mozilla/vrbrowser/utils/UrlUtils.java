@@ -19,7 +19,6 @@ import java.io.File;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URL;
-import java.util.regex.Pattern;
 
 
 // This class refers from mozilla-mobile/focus-android
@@ -69,30 +68,16 @@ public class UrlUtils {
         return result;
     }
 
-    private static Pattern domainPattern = Pattern.compile("^(http:\\/\\/www\\.|https:\\/\\/www\\.|http:\\/\\/|https:\\/\\/)?[a-zA-Z0-9]+([\\-\\.]{1}[a-zA-Z0-9]+)*\\.[a-zA-Z]{2,5}(:[0-9]{1,5})?(\\/[^ ]*)?$");
     public static boolean isDomain(String text) {
-        return domainPattern.matcher(text).find();
+        return UrlClassifier.isDomain(text);
     }
 
-    private static Pattern ipPattern = Pattern.compile("^(([0-9]|[1-9][0-9]|1[0-9]{2}|2[0-4][0-9]|25[0-5])\\.){3}([0-9]|[1-9][0-9]|1[0-9]{2}|2[0-4][0-9]|25[0-5])(:[0-9]+)?(/[^ ]*)?");
-    private static Pattern localhostPattern = Pattern.compile("^(localhost)(:[0-9]+)?(/[^ ]*)?", Pattern.CASE_INSENSITIVE);
     public static boolean isIPUri(@Nullable String aUri) {
-        if (aUri == null) {
-            return false;
-        }
-        String uri = stripProtocol(aUri).trim();
-        return localhostPattern.matcher(uri).find() || ipPattern.matcher(uri).find();
+        return UrlClassifier.isIPUri(aUri);
     }
 
     public static boolean isLocalIP(@Nullable String aUri) {
-        if (!isIPUri(aUri)) {
-            return false;
-        }
-        String uri = stripProtocol(aUri).trim();
-        return uri.startsWith("10.") ||
-               uri.startsWith("172.") ||
-               uri.startsWith("192.168.") || //
-               localhostPattern.matcher(uri).find();
+        return UrlClassifier.isLocalIP(aUri);
     }
 
     public static boolean isPrivateAboutPage(@Nullable Context context,  @Nullable String uri) {
@@ -180,8 +165,21 @@ public class UrlUtils {
         return url != null && url.equalsIgnoreCase(ABOUT_PRIVATE);
     }
 
+    public static final String ABOUT_PERFORMANCE = "about://performance";
+
+    public static boolean isPerformanceUrl(@Nullable String url) {
+        return url != null && url.equalsIgnoreCase(ABOUT_PERFORMANCE);
+    }
+
+    public static final String ABOUT_PERFORMANCE_EXPORT = "about://performance/export";
+
+    public static boolean isPerformanceExportUrl(@Nullable String url) {
+        return url != null && url.equalsIgnoreCase(ABOUT_PERFORMANCE_EXPORT);
+    }
+
     public static boolean isAboutPage(@Nullable String url) {
-        return isHistoryUrl(url) || isBookmarksUrl(url) || isDownloadsUrl(url) || isPrivateUrl(url);
+        return isHistoryUrl(url) || isBookmarksUrl(url) || isDownloadsUrl(url) || isPrivateUrl(url) ||
+                isPerformanceUrl(url) || isPerformanceExportUrl(url);
     }
 
     public static boolean isContentFeed(Context aContext, @Nullable String url) {
@@ -190,11 +188,6 @@ public class UrlUtils {
     }
 
     public static String getHost(String uri) {
-        try {
-            URL url = new URL(uri);
-            return url.getHost();
-        } catch (MalformedURLException e) {
-            return uri;
-        }
+        return UrlClassifier.getHost(uri);
     }
 }
@@ -7,6 +7,7 @@
 #include "Controller.h"
 #include "ControllerContainer.h"
 #include "FadeAnimation.h"
+#include "FrameTimings.h"
 #include "Device.h"
 #include "DeviceDelegate.h"
 #include "ExternalBlitter.h"
@@ -182,6 +183,7 @@ struct BrowserWorld::State {
   SplashAnimationPtr splashAnimation;
   VRVideoPtr vrVideo;
   PerformanceMonitorPtr monitor;
+  FrameTimingsPtr frameTimings;
   WidgetMoverPtr movingWidget;
   WidgetResizerPtr widgetResizer;
   std::unordered_map<vrb::Node*, std::pair<Widget*, float>> depthSorting;
@@ -215,6 +217,7 @@ struct BrowserWorld::State {
     splashAnimation = SplashAnimation::Create(create);
     monitor = PerformanceMonitor::Create(create);
     monitor->AddPerformanceMonitorObserver(std::make_shared<PerformanceObserver>());
+    frameTimings = FrameTimings::Create();
     wasInGazeMode = false;
     webXRInterstialState = WebXRInterstialState::FORCED;
 #if defined(WAVEVR)
@@ -235,6 +238,7 @@ struct BrowserWorld::State {
   int ParentCount(const WidgetPtr& aWidget) const;
   float ComputeNormalizedZ(const Widget& aWidget) const;
   void SortWidgets();
+  void RecordFrameTiming();
   void UpdateWidgetCylinder(const WidgetPtr& aWidget, const float aDensity);
 };
 
@@ -729,6 +733,21 @@ BrowserWorld::State::SortWidgets() {
   });
 }
 
+void
+BrowserWorld::State::RecordFrameTiming() {
+  int32_t visibleWidgets = 0;
+  int32_t layers = 0;
+  for (const WidgetPtr& widget: widgets) {
+    if (widget->IsVisible()) {
+      visibleWidgets++;
+      if (widget->GetLayer()) {
+        layers++;
+      }
+    }
+  }
+  frameTimings->Record(visibleWidgets, layers);
+}
+
 void
 BrowserWorld::State::UpdateWidgetCylinder(const WidgetPtr& aWidget, const float aDensity) {
   const bool useCylinder = aDensity > 0 && aWidget->GetPlacement()->cylinder;
@@ -799,6 +818,7 @@ BrowserWorld::Pause() {
   m.paused = true;
   m.externalVR->OnPause();
   m.monitor->Pause();
+  m.frameTimings->Reset();
 }
 
 void
@@ -955,6 +975,7 @@ BrowserWorld::StartFrame() {
     }
   }
 
+  m.RecordFrameTiming();
   m.device->ProcessEvents();
   m.context->Update();
   m.externalVR->PullBrowserState();
@@ -998,6 +1019,10 @@ BrowserWorld::EndFrame() {
   const vrb::Vector p = head.GetTranslation();
   const vrb::Quaternion q(head);
   VRBrowser::HandleAudioPose(q.x(), q.y(), q.z(), q.w(), p.x(), p.y(), p.z());
+
+  if (m.frameTimings->IsBatchReady()) {
+    m.frameTimings->Flush();
+  }
 }
 
 void
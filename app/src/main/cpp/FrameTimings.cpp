@@ -0,0 +1,112 @@
+/* -*- Mode: C++; tab-width: 20; indent-tabs-mode: nil; c-basic-offset: 2 -*-
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+#include "FrameTimings.h"
+#include "VRBrowser.h"
+#include "vrb/ConcreteClass.h"
+
+#include <algorithm>
+#include <cmath>
+#include <time.h>
+
+namespace crow {
+
+// Around one second of frames per JNI call
+static const int32_t kBatchSize = 72;
+// Frames kept while Java can't receive them, older ones are overwritten
+static const int32_t kCapacity = 256;
+// Bounds of the vsync period estimate, from 120Hz to 60Hz
+static const double kMinVsyncPeriod = 1.0 / 120.0;
+static const double kMaxVsyncPeriod = 1.0 / 60.0;
+static const double kDefaultVsyncPeriod = 1.0 / 72.0;
+
+static double
+GetTime() {
+  timespec spec = {};
+  clock_gettime(CLOCK_MONOTONIC, &spec);
+  return (double)spec.tv_sec + (spec.tv_nsec / 1.0e9);
+}
+
+struct FrameTimings::State {
+  int32_t frames[kCapacity * kFrameTimingFields];
+  int32_t first;
+  int32_t count;
+  double lastFrameTime;
+  double vsyncPeriod;
+  double shortestInterval;
+  int32_t estimatedFrames;
+  State()
+      : first(0)
+      , count(0)
+      , lastFrameTime(0.0)
+      , vsyncPeriod(kDefaultVsyncPeriod)
+      , shortestInterval(kMaxVsyncPeriod)
+      , estimatedFrames(0)
+  {}
+};
+
+FrameTimingsPtr
+FrameTimings::Create() {
+  return std::make_shared<vrb::ConcreteClass<FrameTimings, FrameTimings::State> >();
+}
+
+void
+FrameTimings::Record(const int32_t aWidgetCount, const int32_t aLayerCount) {
+  const double now = GetTime();
+  const double interval = now - m.lastFrameTime;
+  const bool hasPreviousFrame = m.lastFrameTime > 0.0;
+  m.lastFrameTime = now;
+  if (!hasPreviousFrame) {
+    return;
+  }
+
+  // Frames are paced by the vsync, the shortest intervals are one vsync long
+  m.shortestInterval = std::min(m.shortestInterval, std::max(interval, kMinVsyncPeriod));
+  const int32_t missedVsyncs = std::max(0, (int32_t)std::lround(interval / m.vsyncPeriod) - 1);
+  if (++m.estimatedFrames == kBatchSize) {
+    m.vsyncPeriod = m.shortestInterval;
+    m.shortestInterval = kMaxVsyncPeriod;
+    m.estimatedFrames = 0;
+  }
+
+  if (m.count == kCapacity) {
+    m.first = (m.first + 1) % kCapacity;
+    m.count--;
+  }
+  int32_t* frame = &m.frames[((m.first + m.count) % kCapacity) * kFrameTimingFields];
+  frame[0] = (int32_t)std::min(interval * 1.0e6, (double)INT32_MAX);
+  frame[1] = missedVsyncs;
+  frame[2] = aWidgetCount;
+  frame[3] = aLayerCount;
+  m.count++;
+}
+
+void
+FrameTimings::Reset() {
+  m.lastFrameTime = 0.0;
+}
+
+bool
+FrameTimings::IsBatchReady() const {
+  return m.count >= kBatchSize;
+}
+
+void
+FrameTimings::Flush() {
+  if (m.count == 0) {
+    return;
+  }
+  // The frames may wrap around the end of the ring buffer
+  const int32_t head = std::min(m.count, kCapacity - m.first);
+  const int32_t* tail = head < m.count ? m.frames : nullptr;
+  if (VRBrowser::HandleFrameTimings(&m.frames[m.first * kFrameTimingFields], head, tail, m.count - head)) {
+    m.first = 0;
+    m.count = 0;
+  }
+}
+
+FrameTimings::FrameTimings(State& aState) : m(aState) {}
+
+} // namespace crow
@@ -0,0 +1,45 @@
+/* -*- Mode: C++; tab-width: 20; indent-tabs-mode: nil; c-basic-offset: 2 -*-
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
+
+#ifndef VRBROWSER_FRAME_TIMINGS_H
+#define VRBROWSER_FRAME_TIMINGS_H
+
+#include "vrb/MacroUtils.h"
+#include <cstdint>
+#include <memory>
+
+namespace crow {
+
+class FrameTimings;
+typedef std::shared_ptr<FrameTimings> FrameTimingsPtr;
+
+// Records the timing of every rendered frame in a ring buffer and sends them to Java in batches,
+// so the render loop does a single JNI call per batch instead of one per frame.
+// Each frame is exported as kFrameTimingFields ints: frame time in microseconds, missed vsyncs,
+// visible widgets and visible widgets rendered with a layer. Must be used from the render thread.
+class FrameTimings {
+public:
+  static const int32_t kFrameTimingFields = 4;
+  static FrameTimingsPtr Create();
+  // Called at the start of every frame, the frame time is the interval since the previous call.
+  void Record(const int32_t aWidgetCount, const int32_t aLayerCount);
+  // Forgets the previous frame so the time spent paused is not reported as a frame.
+  void Reset();
+  bool IsBatchReady() const;
+  // Sends the recorded frames to Java.
+  void Flush();
+protected:
+  struct State;
+  FrameTimings(State& aState);
+  ~FrameTimings() = default;
+private:
+  State& m;
+  FrameTimings() = delete;
+  VRB_NO_DEFAULTS(FrameTimings)
+};
+
+} // namespace crow
+
+#endif //VRBROWSER_FRAME_TIMINGS_H
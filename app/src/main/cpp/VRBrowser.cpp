@@ -4,6 +4,7 @@
  * file, You can obtain one at http://mozilla.org/MPL/2.0/. */
 
 #include "VRBrowser.h"
+#include "FrameTimings.h"
 #include "vrb/ConcreteClass.h"
 #include "vrb/Logger.h"
 #include "JNIUtil.h"
@@ -56,6 +57,8 @@ const char* const kHaltActivity = "haltActivity";
 const char* const kHaltActivitySignature = "(I)V";
 const char* const kHandlePoorPerformance = "handlePoorPerformance";
 const char* const kHandlePoorPerformanceSignature = "()V";
+const char* const kHandleFrameTimings = "handleFrameTimings";
+const char* const kHandleFrameTimingsSignature = "([II)V";
 const char* const kOnAppLink = "onAppLink";
 const char* const kOnAppLinkSignature = "(Ljava/lang/String;)V";
 const char* const kDisableLayers = "disableLayers";
@@ -89,6 +92,9 @@ jmethodID sAreLayersEnabled = nullptr;
 jmethodID sSetDeviceType = nullptr;
 jmethodID sHaltActivity = nullptr;
 jmethodID sHandlePoorPerformance = nullptr;
+jmethodID sHandleFrameTimings = nullptr;
+jintArray sFrameTimings = nullptr;
+jsize sFrameTimingsLength = 0;
 jmethodID sOnAppLink = nullptr;
 jmethodID sDisableLayers = nullptr;
 jmethodID sAppendAppNotesToCrashReport = nullptr;
@@ -134,6 +140,7 @@ VRBrowser::InitializeJava(JNIEnv* aEnv, jobject aActivity) {
   sSetDeviceType = FindJNIMethodID(sEnv, sBrowserClass, kSetDeviceType, kSetDeviceTypeSignature);
   sHaltActivity = FindJNIMethodID(sEnv, sBrowserClass, kHaltActivity, kHaltActivitySignature);
   sHandlePoorPerformance = FindJNIMethodID(sEnv, sBrowserClass, kHandlePoorPerformance, kHandlePoorPerformanceSignature);
+  sHandleFrameTimings = FindJNIMethodID(sEnv, sBrowserClass, kHandleFrameTimings, kHandleFrameTimingsSignature);
   sOnAppLink = FindJNIMethodID(sEnv, sBrowserClass, kOnAppLink, kOnAppLinkSignature);
   sDisableLayers = FindJNIMethodID(sEnv, sBrowserClass, kDisableLayers, kDisableLayersSignature);
   sAppendAppNotesToCrashReport = FindJNIMethodID(sEnv, sBrowserClass, kAppendAppNotesToCrashReport, kAppendAppNotesToCrashReportSignature);
@@ -173,6 +180,12 @@ VRBrowser::ShutdownJava() {
   sAreLayersEnabled = nullptr;
   sSetDeviceType = nullptr;
   sHaltActivity = nullptr;
+  sHandleFrameTimings = nullptr;
+  if (sFrameTimings) {
+    sEnv->DeleteGlobalRef(sFrameTimings);
+    sFrameTimings = nullptr;
+    sFrameTimingsLength = 0;
+  }
   sOnAppLink = nullptr;
   sDisableLayers = nullptr;
   sEnv = nullptr;
@@ -376,6 +389,30 @@ VRBrowser::HandlePoorPerformance() {
   CheckJNIException(sEnv, __FUNCTION__);
 }
 
+bool
+VRBrowser::HandleFrameTimings(const int32_t* aFrames, const int32_t aCount, const int32_t* aMoreFrames, const int32_t aMoreCount) {
+  if (!ValidateMethodID(sEnv, sActivity, sHandleFrameTimings, __FUNCTION__)) { return false; }
+  const jsize length = (aCount + aMoreCount) * FrameTimings::kFrameTimingFields;
+  // The array is reused between batches, Java copies the frames before returning
+  if (!sFrameTimings || sFrameTimingsLength < length) {
+    if (sFrameTimings) {
+      sEnv->DeleteGlobalRef(sFrameTimings);
+    }
+    jintArray array = sEnv->NewIntArray(length);
+    sFrameTimings = (jintArray)sEnv->NewGlobalRef(array);
+    sEnv->DeleteLocalRef(array);
+    sFrameTimingsLength = length;
+  }
+  sEnv->SetIntArrayRegion(sFrameTimings, 0, aCount * FrameTimings::kFrameTimingFields, aFrames);
+  if (aMoreFrames && aMoreCount > 0) {
+    sEnv->SetIntArrayRegion(sFrameTimings, aCount * FrameTimings::kFrameTimingFields,
+                            aMoreCount * FrameTimings::kFrameTimingFields, aMoreFrames);
+  }
+  sEnv->CallVoidMethod(sActivity, sHandleFrameTimings, sFrameTimings, aCount + aMoreCount);
+  CheckJNIException(sEnv, __FUNCTION__);
+  return true;
+}
+
 void
 VRBrowser::OnAppLink(const std::string& aJSON) {
   if (!ValidateMethodID(sEnv, sActivity, sOnAppLink, __FUNCTION__)) { return; }
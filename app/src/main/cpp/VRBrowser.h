@@ -41,6 +41,7 @@ bool AreLayersEnabled();
 void SetDeviceType(const jint aType);
 void HaltActivity(const jint aReason);
 void HandlePoorPerformance();
+bool HandleFrameTimings(const int32_t* aFrames, const int32_t aCount, const int32_t* aMoreFrames, const int32_t aMoreCount);
 void OnAppLink(const std::string& aJSON);
 void DisableLayers();
 void AppendAppNotesToCrashLog(const std::string& aNotes);
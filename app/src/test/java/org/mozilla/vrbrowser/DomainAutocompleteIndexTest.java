@@ -0,0 +1,104 @@
+package org.mozilla.vrbrowser;
+
+import org.junit.Test;
+import org.mozilla.vrbrowser.search.suggestions.DomainAutocompleteIndex;
+import org.mozilla.vrbrowser.search.suggestions.LocalSuggestionIndex;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class DomainAutocompleteIndexTest {
+
+    private static final long DAY = 24 * 60 * 60 * 1000;
+
+    @Test
+    public void completesShippedDomainsInOrder() {
+        DomainAutocompleteIndex index = new DomainAutocompleteIndex();
+        index.setShippedDomains(Arrays.asList("google.com", "facebook.com", "github.com", "wikipedia.org"));
+
+        DomainAutocompleteIndex.Result result = index.getAutocompleteSuggestion("g");
+        assertEquals("google.com", result.text);
+        assertEquals("http://google.com", result.url);
+        assertEquals(DomainAutocompleteIndex.SOURCE_SHIPPED, result.source);
+        assertEquals("github.com", index.getAutocompleteSuggestion("gi").text);
+        assertEquals("GIthub.com", index.getAutocompleteSuggestion("GI").text);
+        assertEquals("www.facebook.com", index.getAutocompleteSuggestion("www.f").text);
+        assertEquals("wikipedia.org", index.getAutocompleteSuggestion("w").text);
+        assertEquals("www.google.com", index.getAutocompleteSuggestion("ww").text);
+        assertNull(index.getAutocompleteSuggestion("x"));
+        assertNull(index.getAutocompleteSuggestion("google.com/"));
+        assertNull(index.getAutocompleteSuggestion(""));
+    }
+
+    @Test
+    public void visitedHostsRankAboveShippedDomains() {
+        DomainAutocompleteIndex index = new DomainAutocompleteIndex();
+        index.setShippedDomains(Arrays.asList("google.com", "github.com"));
+        long now = System.currentTimeMillis();
+        index.recordVisit("https://www.gitlab.com/project", now);
+
+        DomainAutocompleteIndex.Result result = index.getAutocompleteSuggestion("g");
+        assertEquals("gitlab.com", result.text);
+        assertEquals(DomainAutocompleteIndex.SOURCE_HISTORY, result.source);
+        assertEquals("github.com", index.getAutocompleteSuggestion("gith").text);
+        assertEquals("google.com", index.getAutocompleteSuggestion("go").text);
+    }
+
+    @Test
+    public void ranksVisitedHostsByCountAndRecency() {
+        DomainAutocompleteIndex index = new DomainAutocompleteIndex();
+        long now = System.currentTimeMillis();
+        index.replaceVisits(Arrays.asList(
+                new LocalSuggestionIndex.Visit("https://old.example.com/", null, now - 90 * DAY),
+                new LocalSuggestionIndex.Visit("https://old.example.com/a", null, now - 90 * DAY),
+                new LocalSuggestionIndex.Visit("https://old.example.com/b", null, now - 90 * DAY),
+                new LocalSuggestionIndex.Visit("https://often.example.com/", null, now - DAY),
+                new LocalSuggestionIndex.Visit("https://often.example.com/", null, now - DAY),
+                new LocalSuggestionIndex.Visit("https://once.example.com/", null, now)));
+
+        assertEquals("often.example.com", index.getAutocompleteSuggestion("o").text);
+        assertEquals("old.example.com", index.getAutocompleteSuggestion("ol").text);
+
+        // Recent visits take over as the older ones decay
+        index.recordVisit("https://once.example.com/", now);
+        index.recordVisit("https://once.example.com/", now);
+        assertEquals("once.example.com", index.getAutocompleteSuggestion("o").text);
+    }
+
+    @Test
+    public void clearsAndRestoresVisits() throws Exception {
+        DomainAutocompleteIndex index = new DomainAutocompleteIndex();
+        index.setShippedDomains(Arrays.asList("mozilla.org"));
+        long now = System.currentTimeMillis();
+        List<LocalSuggestionIndex.Visit> visits = new ArrayList<>();
+        for (String host : Arrays.asList("mozilla.com", "mozvr.com", "mozilla.org", "example.com", "ftp://files.com")) {
+            visits.add(new LocalSuggestionIndex.Visit(host.contains("://") ? host : "https://" + host + "/", null, now));
+        }
+        visits.add(new LocalSuggestionIndex.Visit("https://mozvr.com/", null, now));
+        index.replaceVisits(visits);
+        assertEquals("mozvr.com", index.getAutocompleteSuggestion("moz").text);
+        assertNull(index.getAutocompleteSuggestion("files"));
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        index.writeTo(output);
+
+        DomainAutocompleteIndex restored = new DomainAutocompleteIndex();
+        restored.setShippedDomains(Arrays.asList("mozilla.org"));
+        assertTrue(restored.readFrom(new ByteArrayInputStream(output.toByteArray())));
+        assertEquals(index.size(), restored.size());
+        assertEquals("mozvr.com", restored.getAutocompleteSuggestion("moz").text);
+        assertEquals("example.com", restored.getAutocompleteSuggestion("e").text);
+        assertEquals(DomainAutocompleteIndex.SOURCE_HISTORY, restored.getAutocompleteSuggestion("mozilla.o").source);
+
+        // The history is more recent than the saved state
+        restored.clearVisits();
+        assertFalse(restored.readFrom(new ByteArrayInputStream(output.toByteArray())));
+        assertEquals(DomainAutocompleteIndex.SOURCE_SHIPPED, restored.getAutocompleteSuggestion("moz").source);
+        assertNull(restored.getAutocompleteSuggestion("e"));
+    }
+}
@@ -0,0 +1,109 @@
+package org.mozilla.vrbrowser;
+
+import org.junit.Test;
+import org.mozilla.vrbrowser.downloads.DownloadRateEstimator;
+import org.mozilla.vrbrowser.downloads.DownloadThroughputCounters;
+
+import static org.junit.Assert.*;
+
+public class DownloadRateEstimatorTest {
+
+    private static final long KB = 1024;
+
+    @Test
+    public void estimatesSteadyRate() {
+        DownloadRateEstimator estimator = new DownloadRateEstimator();
+        assertEquals(0, estimator.addSample(0, 1000));
+        assertEquals(0, estimator.getBytesPerSecond());
+        assertEquals(-1, estimator.getEtaMillis(1000 * KB));
+
+        long bytes = 0;
+        for (long time = 1250; time <= 5000; time += 250) {
+            bytes += 25 * KB;
+            assertEquals(25 * KB, estimator.addSample(bytes, time));
+        }
+        assertEquals(100 * KB, estimator.getBytesPerSecond());
+        // 1000KB - 400KB at 100KB/s
+        assertEquals(6000, estimator.getEtaMillis(1000 * KB));
+        assertFalse(estimator.isStalled(5000));
+    }
+
+    @Test
+    public void smoothsIrregularSamples() {
+        DownloadRateEstimator estimator = new DownloadRateEstimator();
+        estimator.addSample(0, 0);
+        long bytes = 0;
+        long time = 0;
+        // 100KB/s sampled at uneven intervals, as with the polling backoff
+        long[] intervals = { 250, 500, 1000, 2000, 250, 2000, 500, 1000 };
+        for (long interval : intervals) {
+            time += interval;
+            bytes += 100 * KB * interval / 1000;
+            estimator.addSample(bytes, time);
+        }
+        assertEquals(100 * KB, estimator.getBytesPerSecond());
+
+        // A short burst only moves the rate partially
+        time += 250;
+        bytes += 100 * KB;
+        estimator.addSample(bytes, time);
+        long rate = estimator.getBytesPerSecond();
+        assertTrue(rate > 100 * KB && rate < 400 * KB);
+    }
+
+    @Test
+    public void detectsStalls() {
+        DownloadRateEstimator estimator = new DownloadRateEstimator();
+        estimator.addSample(0, 0);
+        estimator.addSample(100 * KB, 1000);
+        long rate = estimator.getBytesPerSecond();
+
+        estimator.addSample(100 * KB, 3000);
+        assertTrue(estimator.getBytesPerSecond() < rate);
+        assertFalse(estimator.isStalled(3000));
+        assertFalse(estimator.isStalled(1000 + DownloadRateEstimator.STALL_TIMEOUT - 1));
+        assertTrue(estimator.isStalled(1000 + DownloadRateEstimator.STALL_TIMEOUT));
+
+        estimator.addSample(100 * KB, 20000);
+        assertTrue(estimator.getBytesPerSecond() < KB);
+
+        // Progress resumes
+        assertEquals(KB, estimator.addSample(101 * KB, 20500));
+        assertFalse(estimator.isStalled(20500));
+    }
+
+    @Test
+    public void restartsWhenBytesGoBack() {
+        DownloadRateEstimator estimator = new DownloadRateEstimator();
+        estimator.addSample(0, 0);
+        estimator.addSample(500 * KB, 1000);
+        assertEquals(0, estimator.addSample(10 * KB, 2000));
+        assertEquals(0, estimator.getBytesPerSecond());
+        assertEquals(0, estimator.addSample(20 * KB, 2000));
+        assertEquals(10 * KB, estimator.addSample(20 * KB, 3000));
+        assertEquals(10 * KB, estimator.getBytesPerSecond());
+    }
+
+    @Test
+    public void aggregatesCounters() {
+        DownloadThroughputCounters counters = new DownloadThroughputCounters();
+        counters.addBytes(100);
+        counters.addBytes(-5);
+        counters.addBytes(50);
+        counters.setActive(300, 2, 0);
+        counters.setActive(100, 1, 1);
+        counters.onStalled();
+        counters.onCompleted();
+        counters.onCompleted();
+        counters.onFailed();
+
+        assertEquals(150, counters.getBytesDownloaded());
+        assertEquals(100, counters.getCurrentBytesPerSecond());
+        assertEquals(300, counters.getPeakBytesPerSecond());
+        assertEquals(1, counters.getActiveDownloads());
+        assertEquals(1, counters.getStalledDownloads());
+        assertEquals(1, counters.getStallEvents());
+        assertEquals(2, counters.getCompletedDownloads());
+        assertEquals(1, counters.getFailedDownloads());
+    }
+}
@@ -0,0 +1,164 @@
+package org.mozilla.vrbrowser;
+
+import androidx.annotation.NonNull;
+
+import org.junit.Test;
+import org.mozilla.vrbrowser.telemetry.FrameTimingAggregator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class FrameTimingAggregatorTest {
+
+    private static final int VSYNC_US = 13889;
+
+    // Builds a batch like the native FrameTimings ring buffer does
+    private static int[] frames(int[] aFrameTimes, int aWidgets, int aLayers) {
+        int[] data = new int[aFrameTimes.length * FrameTimingAggregator.FIELDS_PER_FRAME];
+        for (int i = 0; i < aFrameTimes.length; i++) {
+            int offset = i * FrameTimingAggregator.FIELDS_PER_FRAME;
+            data[offset] = aFrameTimes[i];
+            data[offset + 1] = Math.max(0, Math.round((float) aFrameTimes[i] / VSYNC_US) - 1);
+            data[offset + 2] = aWidgets;
+            data[offset + 3] = aLayers;
+        }
+        return data;
+    }
+
+    private static int[] steadyFrames(int aCount, Random aRandom) {
+        int[] times = new int[aCount];
+        for (int i = 0; i < aCount; i++) {
+            times[i] = VSYNC_US + aRandom.nextInt(200) - 100;
+        }
+        return times;
+    }
+
+    @Test
+    public void reportsPercentilesPerPage() {
+        FrameTimingAggregator aggregator = new FrameTimingAggregator();
+        Random random = new Random(5);
+
+        aggregator.setContext("smooth.example.com", "1_window");
+        for (int batch = 0; batch < 10; batch++) {
+            aggregator.addFrames(frames(steadyFrames(72, random), 4, 1), 72);
+        }
+
+        // One frame in ten takes three vsyncs
+        aggregator.setContext("janky.example.com", "1_window");
+        int[] times = steadyFrames(720, random);
+        for (int i = 0; i < times.length; i += 10) {
+            times[i] = 3 * VSYNC_US;
+        }
+        aggregator.addFrames(frames(times, 6, 2), times.length);
+
+        FrameTimingAggregator.Report smooth = aggregator.getPageReport("smooth.example.com");
+        assertEquals(720, smooth.getFrameCount());
+        assertEquals(0, smooth.getJankFrames());
+        assertEquals(0, smooth.getMissedVsyncs());
+        long p99 = smooth.getFrameTimes().getP99();
+        assertTrue(String.valueOf(p99), p99 >= VSYNC_US && p99 < VSYNC_US * 17 / 16);
+        assertEquals(4, smooth.getMaxWidgets());
+        assertEquals(1, smooth.getMaxLayers());
+
+        FrameTimingAggregator.Report janky = aggregator.getPageReport("janky.example.com");
+        assertEquals(72, janky.getJankFrames());
+        assertEquals(144, janky.getMissedVsyncs());
+        assertEquals(0.1, janky.getJankRatio(), 0.0001);
+        assertTrue(janky.getFrameTimes().getP50() < VSYNC_US * 17 / 16);
+        assertTrue(janky.getFrameTimes().getP99() >= 3 * VSYNC_US);
+
+        FrameTimingAggregator.Report layout = aggregator.getLayoutReport("1_window");
+        assertEquals(1440, layout.getFrameCount());
+        assertEquals(1440, aggregator.getTotalReport().getFrameCount());
+    }
+
+    @Test
+    public void reportsPerLayout() {
+        FrameTimingAggregator aggregator = new FrameTimingAggregator();
+        Random random = new Random(9);
+        aggregator.setContext("example.com", "1_window");
+        aggregator.addFrames(frames(steadyFrames(100, random), 3, 1), 100);
+        aggregator.setContext("example.com", "3_windows");
+        int[] slow = new int[100];
+        for (int i = 0; i < slow.length; i++) {
+            slow[i] = 2 * VSYNC_US;
+        }
+        aggregator.addFrames(frames(slow, 9, 3), 100);
+        // Frames without a page, e.g. an about page, still count for the layout
+        aggregator.setContext(null, "3_windows");
+        aggregator.addFrames(frames(slow, 9, 3), 50);
+
+        assertEquals(200, aggregator.getPageReport("example.com").getFrameCount());
+        assertEquals(100, aggregator.getLayoutReport("1_window").getFrameCount());
+        FrameTimingAggregator.Report threeWindows = aggregator.getLayoutReport("3_windows");
+        assertEquals(150, threeWindows.getFrameCount());
+        assertEquals(1.0, threeWindows.getJankRatio(), 0.0001);
+        assertEquals(9, threeWindows.getMaxWidgets());
+        assertEquals(3, threeWindows.getMaxLayers());
+        assertEquals(250, aggregator.getTotalReport().getFrameCount());
+        assertNull(aggregator.getLayoutReport("fullscreen"));
+    }
+
+    @Test
+    public void ignoresFramesPastTheCount() {
+        FrameTimingAggregator aggregator = new FrameTimingAggregator();
+        aggregator.setContext("example.com", "1_window");
+        // The native array is reused and can be longer than the batch
+        int[] data = frames(new int[] { VSYNC_US, VSYNC_US, 5 * VSYNC_US, 5 * VSYNC_US }, 1, 0);
+        aggregator.addFrames(data, 2);
+        aggregator.addFrames(data, 10);
+        assertEquals(6, aggregator.getTotalReport().getFrameCount());
+        assertEquals(2, aggregator.getTotalReport().getJankFrames());
+    }
+
+    @Test
+    public void forgetsOldPages() {
+        FrameTimingAggregator aggregator = new FrameTimingAggregator();
+        int[] data = frames(new int[] { VSYNC_US }, 1, 0);
+        for (int i = 0; i < 100; i++) {
+            aggregator.setContext("site" + i + ".com", "1_window");
+            aggregator.addFrames(data, 1);
+        }
+        List<String> pages = aggregator.getPages();
+        assertTrue(pages.size() < 100);
+        assertTrue(pages.contains("site99.com"));
+        assertNull(aggregator.getPageReport("site0.com"));
+        assertEquals(100, aggregator.getTotalReport().getFrameCount());
+
+        aggregator.clear();
+        assertTrue(aggregator.getPages().isEmpty());
+        assertEquals(0, aggregator.getTotalReport().getFrameCount());
+    }
+
+    @Test
+    public void notifiesListeners() {
+        FrameTimingAggregator aggregator = new FrameTimingAggregator();
+        List<String> pages = new ArrayList<>();
+        List<Long> counts = new ArrayList<>();
+        FrameTimingAggregator.Listener listener = new FrameTimingAggregator.Listener() {
+            @Override
+            public void onFrameTimings(@NonNull String aPage, @NonNull FrameTimingAggregator.Report aReport) {
+                pages.add(aPage);
+                counts.add(aReport.getFrameCount());
+            }
+        };
+        aggregator.addListener(listener);
+        int[] data = frames(new int[] { VSYNC_US, VSYNC_US }, 1, 0);
+
+        aggregator.setContext(null, "1_window");
+        aggregator.addFrames(data, 2);
+        aggregator.setContext("example.com", "1_window");
+        aggregator.addFrames(data, 2);
+        aggregator.addFrames(data, 2);
+        aggregator.removeListener(listener);
+        aggregator.addFrames(data, 2);
+
+        assertEquals(2, pages.size());
+        assertEquals("example.com", pages.get(0));
+        assertEquals(Long.valueOf(2), counts.get(0));
+        assertEquals(Long.valueOf(4), counts.get(1));
+    }
+}
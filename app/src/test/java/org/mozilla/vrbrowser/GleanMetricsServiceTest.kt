@@ -3,7 +3,9 @@ package org.mozilla.vrbrowser
 import androidx.test.core.app.ApplicationProvider
 import mozilla.components.concept.sync.DeviceType
 import mozilla.components.service.glean.testing.GleanTestRule
+import org.junit.After
 import org.junit.Assert.*
+import org.junit.Before
 import org.junit.Rule
 import org.junit.Test
 import org.junit.runner.RunWith
@@ -12,6 +14,7 @@ import org.mozilla.vrbrowser.GleanMetrics.FirefoxAccount
 import org.mozilla.vrbrowser.GleanMetrics.Tabs
 import org.mozilla.vrbrowser.GleanMetrics.Url
 import org.mozilla.vrbrowser.telemetry.GleanMetricsService
+import org.mozilla.vrbrowser.telemetry.TelemetryQueue
 import org.robolectric.RobolectricTestRunner
 import org.robolectric.annotation.Config
 
@@ -23,6 +26,16 @@ class GleanMetricsServiceTest {
     @get:Rule
     val gleanRule = GleanTestRule(ApplicationProvider.getApplicationContext())
 
+    @Before
+    fun setUp() {
+        TelemetryQueue.get().setTestingMode(true)
+    }
+
+    @After
+    fun tearDown() {
+        TelemetryQueue.get().setTestingMode(false)
+    }
+
     @Test
     fun testURLTelemetry() {
         assertFalse(Url.domains.testHasValue())
@@ -0,0 +1,104 @@
+package org.mozilla.vrbrowser;
+
+import org.junit.Test;
+import org.mozilla.vrbrowser.telemetry.HyperLogLog;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class HyperLogLogTest {
+
+    // Three times the standard error of the default precision
+    private static final double MAX_ERROR = 3 * 1.04 / Math.sqrt(1 << HyperLogLog.DEFAULT_PRECISION);
+
+    private static String domain(int i) {
+        return "site" + i + ".example.com";
+    }
+
+    @Test
+    public void estimatesWithinErrorBound() {
+        HyperLogLog sketch = new HyperLogLog();
+        assertEquals(0, sketch.estimate());
+        Set<String> exact = new HashSet<>();
+        Random random = new Random(11);
+        int[] checkpoints = { 10, 100, 1000, 5000, 20000, 100000 };
+        int next = 0;
+        while (next < checkpoints.length) {
+            // Revisits are common, they must not be counted twice
+            String domain = domain(random.nextInt(checkpoints[checkpoints.length - 1] * 2));
+            sketch.add(domain);
+            exact.add(domain);
+            if (exact.size() == checkpoints[next]) {
+                long estimate = sketch.estimate();
+                double error = Math.abs(estimate - exact.size()) / (double) exact.size();
+                assertTrue(exact.size() + " estimated as " + estimate, error <= MAX_ERROR);
+                next++;
+            }
+        }
+    }
+
+    @Test
+    public void smallCountsAreNearlyExact() {
+        HyperLogLog sketch = new HyperLogLog();
+        for (int i = 1; i <= 50; i++) {
+            sketch.add(domain(i));
+            assertTrue(i + " estimated as " + sketch.estimate(), Math.abs(sketch.estimate() - i) <= 2);
+        }
+    }
+
+    @Test
+    public void ignoresDuplicates() {
+        HyperLogLog sketch = new HyperLogLog();
+        assertTrue(sketch.add("mozilla.org"));
+        for (int i = 0; i < 1000; i++) {
+            assertFalse(sketch.add("mozilla.org"));
+        }
+        assertEquals(1, sketch.estimate());
+
+        sketch.clear();
+        assertEquals(0, sketch.estimate());
+        assertTrue(sketch.add("mozilla.org"));
+    }
+
+    @Test
+    public void mergesToTheUnion() {
+        HyperLogLog first = new HyperLogLog();
+        HyperLogLog second = new HyperLogLog();
+        HyperLogLog both = new HyperLogLog();
+        // Overlapping windows: 0-5999 and 4000-9999
+        for (int i = 0; i < 10000; i++) {
+            if (i < 6000) {
+                first.add(domain(i));
+            }
+            if (i >= 4000) {
+                second.add(domain(i));
+            }
+            both.add(domain(i));
+        }
+
+        first.merge(second);
+        assertEquals(both.estimate(), first.estimate());
+        assertTrue(Math.abs(first.estimate() - 10000) <= 10000 * MAX_ERROR);
+
+        try {
+            first.merge(new HyperLogLog(12));
+            fail("Merged sketches with different precisions");
+
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void higherPrecisionIsMoreAccurate() {
+        HyperLogLog sketch = new HyperLogLog(14);
+        for (int i = 0; i < 50000; i++) {
+            sketch.add(domain(i));
+        }
+        double error = Math.abs(sketch.estimate() - 50000) / 50000.0;
+        assertTrue(String.valueOf(sketch.estimate()), error <= 3 * 1.04 / Math.sqrt(1 << 14));
+    }
+}
@@ -0,0 +1,190 @@
+package org.mozilla.vrbrowser;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mozilla.vrbrowser.InitializationGraph.Affinity;
+import org.mozilla.vrbrowser.InitializationGraph.Stage;
+import org.mozilla.vrbrowser.telemetry.StartupTracer;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class InitializationGraphTest {
+
+    private final ExecutorService mBackground = Executors.newFixedThreadPool(2);
+    // Stands for the UI thread looper, only run when the test drains it
+    private final List<Runnable> mUIThreadTasks = Collections.synchronizedList(new ArrayList<>());
+    private final StartupTracer mTracer = new StartupTracer(System::nanoTime, () -> 0);
+    private final List<String> mOrder = Collections.synchronizedList(new ArrayList<>());
+
+    private InitializationGraph createGraph() {
+        return new InitializationGraph(mUIThreadTasks::add, mBackground, mTracer);
+    }
+
+    private Runnable record(String aName) {
+        return () -> mOrder.add(aName);
+    }
+
+    private void drainUIThread() {
+        while (!mUIThreadTasks.isEmpty()) {
+            mUIThreadTasks.remove(0).run();
+        }
+    }
+
+    @After
+    public void tearDown() {
+        mBackground.shutdownNow();
+    }
+
+    @Test
+    public void runsNodesAfterTheirDependencies() {
+        InitializationGraph graph = createGraph();
+        graph.add("places", Stage.STARTUP, Affinity.BACKGROUND, record("places"))
+                .add("services", Stage.STARTUP, Affinity.UI_THREAD, record("services"), "places")
+                .add("accounts", Stage.STARTUP, Affinity.UI_THREAD, record("accounts"), "services")
+                .add("downloads_manager", Stage.STARTUP, Affinity.BACKGROUND, record("downloads_manager"));
+        graph.start();
+
+        // Awaiting from the UI thread runs the UI thread nodes without the looper
+        assertTrue(graph.await("accounts"));
+        assertTrue(graph.await("downloads_manager"));
+        assertTrue(mOrder.indexOf("places") < mOrder.indexOf("services"));
+        assertTrue(mOrder.indexOf("services") < mOrder.indexOf("accounts"));
+        assertEquals(4, mOrder.size());
+        assertTrue(graph.isReady("services"));
+
+        // The tasks posted to the looper don't run the nodes twice
+        drainUIThread();
+        assertEquals(4, mOrder.size());
+        assertNotNull(mTracer.getSpan("places"));
+    }
+
+    @Test
+    public void runsIndependentNodesInParallel() {
+        CountDownLatch first = new CountDownLatch(1);
+        CountDownLatch second = new CountDownLatch(1);
+        InitializationGraph graph = createGraph();
+        // Each node waits for the other one, they only finish if they run at the same time
+        graph.add("first", Stage.STARTUP, Affinity.BACKGROUND, () -> {
+            first.countDown();
+            awaitLatch(second);
+        });
+        graph.add("second", Stage.STARTUP, Affinity.BACKGROUND, () -> {
+            second.countDown();
+            awaitLatch(first);
+        });
+        graph.start();
+
+        assertTrue(graph.await("first"));
+        assertTrue(graph.await("second"));
+    }
+
+    @Test
+    public void defersNodesUntilTheFirstFrame() throws Exception {
+        InitializationGraph graph = createGraph();
+        graph.add("accounts", Stage.STARTUP, Affinity.UI_THREAD, record("accounts"))
+                .add("sync", Stage.AFTER_FIRST_FRAME, Affinity.UI_THREAD, record("sync"), "accounts");
+        graph.start();
+        graph.add("geolocation", Stage.AFTER_FIRST_FRAME, Affinity.BACKGROUND, record("geolocation"));
+
+        assertTrue(graph.await("accounts"));
+        drainUIThread();
+        assertFalse(graph.getReadiness("sync").isDone());
+        assertFalse(graph.getReadiness("geolocation").isDone());
+
+        graph.onFirstFrame();
+        assertTrue(graph.isFirstFrameDone());
+        graph.getReadiness("geolocation").get(5, TimeUnit.SECONDS);
+        drainUIThread();
+        assertTrue(graph.isReady("sync"));
+        assertEquals(3, mOrder.size());
+    }
+
+    @Test
+    public void removedNodesAreSkipped() {
+        InitializationGraph graph = createGraph();
+        graph.add("downloads", Stage.AFTER_FIRST_FRAME, Affinity.UI_THREAD, record("downloads"));
+        graph.start();
+        assertFalse(graph.getReadiness("downloads").isDone());
+
+        // The activity is destroyed before the first frame
+        graph.remove("downloads");
+        graph.onFirstFrame();
+        drainUIThread();
+        assertTrue(mOrder.isEmpty());
+
+        // A recreated activity adds it again
+        graph.add("downloads", Stage.AFTER_FIRST_FRAME, Affinity.UI_THREAD, record("downloads"));
+        drainUIThread();
+        assertTrue(graph.isReady("downloads"));
+        assertEquals(Collections.singletonList("downloads"), mOrder);
+    }
+
+    @Test
+    public void failuresPropagateToDependents() {
+        InitializationGraph graph = createGraph();
+        graph.add("places", Stage.STARTUP, Affinity.BACKGROUND, () -> {
+            throw new IllegalStateException("No storage");
+        });
+        graph.add("services", Stage.STARTUP, Affinity.UI_THREAD, record("services"), "places");
+        graph.add("downloads_manager", Stage.STARTUP, Affinity.UI_THREAD, record("downloads_manager"));
+        graph.start();
+
+        assertFalse(graph.await("services"));
+        assertFalse(graph.isReady("places"));
+        assertTrue(graph.getReadiness("services").isCompletedExceptionally());
+        assertTrue(graph.await("downloads_manager"));
+        assertEquals(Collections.singletonList("downloads_manager"), mOrder);
+    }
+
+    @Test
+    public void rejectsInvalidDeclarations() {
+        InitializationGraph graph = createGraph();
+        graph.add("sync", Stage.AFTER_FIRST_FRAME, Affinity.UI_THREAD, record("sync"));
+        assertInvalid(() -> graph.add("sync", Stage.AFTER_FIRST_FRAME, Affinity.UI_THREAD, record("sync")));
+        assertInvalid(() -> graph.add("accounts", Stage.STARTUP, Affinity.UI_THREAD, record("accounts"), "services"));
+        assertInvalid(() -> graph.add("accounts", Stage.STARTUP, Affinity.UI_THREAD, record("accounts"), "sync"));
+        assertInvalid(() -> graph.getReadiness("accounts"));
+        // Awaiting on the UI thread before starting would never return
+        try {
+            graph.await("sync");
+            fail();
+
+        } catch (IllegalStateException e) {
+            // Expected
+        }
+    }
+
+    private static void assertInvalid(Runnable aRunnable) {
+        try {
+            aRunnable.run();
+            fail();
+
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+    }
+
+    private static void awaitLatch(CountDownLatch aLatch) {
+        try {
+            if (!aLatch.await(5, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("The nodes didn't run in parallel");
+            }
+
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package org.mozilla.vrbrowser;
+
+import android.util.SparseArray;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mozilla.vrbrowser.input.InputMailbox;
+import org.mozilla.vrbrowser.input.MotionEventGenerator;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class InputMailboxTest {
+
+    // Controller samples every 11 ms (90 Hz), the UI thread drains every 16 ms (60 Hz)
+    private static final int SAMPLE_MS = 11;
+    private static final int FRAME_MS = 16;
+
+    private static class Sample {
+        final int time;
+        final int handle;
+        final int device;
+        final boolean pressed;
+        final float x;
+        final float y;
+        final boolean scroll;
+
+        Sample(int aTime, int aHandle, int aDevice, boolean aPressed, float aX, float aY, boolean aScroll) {
+            time = aTime;
+            handle = aHandle;
+            device = aDevice;
+            pressed = aPressed;
+            x = aX;
+            y = aY;
+            scroll = aScroll;
+        }
+    }
+
+    private static class Target {
+        final List<String> mEvents = new ArrayList<>();
+        final SparseArray<RecordingWidget> mWidgets = new SparseArray<>();
+        int mDrainRequests;
+
+        Target() {
+            mWidgets.put(1, new RecordingWidget(1, mEvents));
+            mWidgets.put(2, new RecordingWidget(2, mEvents));
+        }
+
+        void dispatch(Sample aSample) {
+            if (aSample.scroll) {
+                MotionEventGenerator.dispatchScroll(mWidgets.get(aSample.handle), aSample.device, true, aSample.x, aSample.y);
+            } else {
+                MotionEventGenerator.dispatch(mWidgets.get(aSample.handle), aSample.device, true, aSample.pressed, aSample.x, aSample.y);
+            }
+        }
+
+        int count(String aAction) {
+            int count = 0;
+            for (String event : mEvents) {
+                if (event.endsWith(aAction)) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        List<String> transitions() {
+            List<String> transitions = new ArrayList<>();
+            for (String event : mEvents) {
+                if (!event.endsWith("MOVE") && !event.endsWith("SCROLL")) {
+                    transitions.add(event);
+                }
+            }
+            return transitions;
+        }
+    }
+
+    // Two controllers: the first one hovers a window, clicks and drags on it, the second one
+    // moves from the window to the tray, scrolls it and clicks it
+    private static List<Sample> recordStream() {
+        List<Sample> stream = new ArrayList<>();
+        for (int i = 0; i < 90; i++) {
+            int time = i * SAMPLE_MS;
+            boolean pressed = (i >= 20 && i < 23) || (i >= 40 && i < 60);
+            stream.add(new Sample(time, 1, 0, pressed, 100 + i * 3, 200 + (i % 7), false));
+
+            int handle = i < 30 ? 1 : 2;
+            if (i >= 50 && i < 56) {
+                stream.add(new Sample(time + 1, handle, 1, false, 0, -0.5f, true));
+            } else {
+                stream.add(new Sample(time + 1, handle, 1, i == 70, 400 - i, 50 + i, false));
+            }
+        }
+        return stream;
+    }
+
+    @After
+    public void tearDown() {
+        MotionEventGenerator.clearDevices();
+    }
+
+    @Test
+    public void coalescesMovesAndKeepsTransitions() {
+        List<Sample> stream = recordStream();
+
+        // Every sample dispatched as it was posted, like runOnUiThread did
+        Target direct = new Target();
+        for (Sample sample : stream) {
+            direct.dispatch(sample);
+        }
+        MotionEventGenerator.clearDevices();
+
+        Target coalesced = new Target();
+        List<Sample> posted = new ArrayList<>();
+        InputMailbox mailbox = new InputMailbox(new InputMailbox.Consumer() {
+            @Override
+            public void onMotionEvent(int aHandle, int aDevice, boolean aFocused, boolean aPressed, float aX, float aY) {
+                coalesced.dispatch(new Sample(0, aHandle, aDevice, aPressed, aX, aY, false));
+            }
+
+            @Override
+            public void onScrollEvent(int aHandle, int aDevice, float aX, float aY) {
+                coalesced.dispatch(new Sample(0, aHandle, aDevice, false, aX, aY, true));
+            }
+
+            @Override
+            public void onDrainRequested() {
+                coalesced.mDrainRequests++;
+            }
+        });
+        int nextFrame = FRAME_MS;
+        for (Sample sample : stream) {
+            while (sample.time >= nextFrame) {
+                mailbox.drain();
+                nextFrame += FRAME_MS;
+            }
+            if (sample.scroll) {
+                mailbox.postScrollEvent(sample.handle, sample.device, sample.x, sample.y);
+            } else {
+                mailbox.postMotionEvent(sample.handle, sample.device, true, sample.pressed, sample.x, sample.y);
+            }
+            posted.add(sample);
+        }
+        mailbox.drain();
+
+        // Same enter, exit, down and up sequence with fewer moves and scrolls
+        assertEquals(direct.transitions(), coalesced.transitions());
+        assertTrue(coalesced.count("MOVE") < direct.count("MOVE"));
+        assertTrue(coalesced.count("SCROLL") > 0);
+        assertTrue(coalesced.count("SCROLL") < direct.count("SCROLL"));
+        assertEquals(posted.size(), mailbox.getPostedCount());
+        assertTrue(mailbox.getDeliveredCount() < mailbox.getPostedCount());
+        assertTrue(coalesced.mDrainRequests <= stream.get(stream.size() - 1).time / FRAME_MS + 1);
+
+        // Each device ends where the stream ends
+        for (int handle : new int[] { 1, 2 }) {
+            List<float[]> directPositions = direct.mWidgets.get(handle).mPositions;
+            List<float[]> coalescedPositions = coalesced.mWidgets.get(handle).mPositions;
+            assertArrayEquals(directPositions.get(directPositions.size() - 1), coalescedPositions.get(coalescedPositions.size() - 1), 0.001f);
+        }
+    }
+
+    @Test
+    public void keepsEveryClickWithinAFrame() {
+        List<String> delivered = new ArrayList<>();
+        InputMailbox mailbox = new InputMailbox(new InputMailbox.Consumer() {
+            @Override
+            public void onMotionEvent(int aHandle, int aDevice, boolean aFocused, boolean aPressed, float aX, float aY) {
+                delivered.add(aDevice + (aPressed ? " down " : " up ") + (int) aX);
+            }
+
+            @Override
+            public void onScrollEvent(int aHandle, int aDevice, float aX, float aY) {
+                delivered.add(aDevice + " scroll " + (int) aY);
+            }
+
+            @Override
+            public void onDrainRequested() {}
+        });
+
+        mailbox.postMotionEvent(1, 0, true, false, 1, 0);
+        mailbox.postMotionEvent(1, 0, true, false, 2, 0);
+        mailbox.postMotionEvent(1, 1, true, false, 50, 0);
+        mailbox.postMotionEvent(1, 0, true, false, 3, 0);
+        mailbox.postMotionEvent(1, 0, true, true, 4, 0);
+        mailbox.postMotionEvent(1, 0, true, false, 5, 0);
+        mailbox.postMotionEvent(1, 0, true, false, 6, 0);
+        mailbox.postScrollEvent(1, 1, 0, 2);
+        mailbox.postScrollEvent(1, 1, 0, 3);
+        mailbox.drain();
+
+        List<String> expected = new ArrayList<>();
+        expected.add("0 up 1");
+        // The hover move keeps its place in the queue with the latest position
+        expected.add("0 up 3");
+        expected.add("1 up 50");
+        expected.add("0 down 4");
+        expected.add("0 up 5");
+        expected.add("0 up 6");
+        expected.add("1 scroll 5");
+        assertEquals(expected, delivered);
+
+        delivered.clear();
+        mailbox.drain();
+        assertTrue(delivered.isEmpty());
+    }
+}
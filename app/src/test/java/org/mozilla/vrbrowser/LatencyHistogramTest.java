@@ -0,0 +1,162 @@
+package org.mozilla.vrbrowser;
+
+import org.junit.Test;
+import org.mozilla.vrbrowser.telemetry.LatencyHistogram;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+public class LatencyHistogramTest {
+
+    private static final long MAX_VALUE = 60 * 60 * 1000;
+
+    @Test
+    public void bucketsAreContiguous() {
+        LatencyHistogram.Snapshot snapshot = new LatencyHistogram(MAX_VALUE).snapshot();
+        assertEquals(0, snapshot.getBucketStartValue(0));
+        for (int i = 1; i < snapshot.getBucketCount(); i++) {
+            long start = snapshot.getBucketStartValue(i);
+            long previous = snapshot.getBucketStartValue(i - 1);
+            assertTrue(start > previous);
+            // Buckets are at most 1/16 of their values wide
+            assertTrue((start - previous) * 16 <= Math.max(16, start));
+        }
+        assertTrue(snapshot.getBucketCount() < 400);
+    }
+
+    @Test
+    public void percentilesAreWithinBucketError() {
+        LatencyHistogram histogram = new LatencyHistogram(MAX_VALUE);
+        Random random = new Random(7);
+        long[] values = new long[20000];
+        for (int i = 0; i < values.length; i++) {
+            // Log-normal-ish page load times
+            values[i] = (long) Math.exp(6 + random.nextGaussian() * 1.2);
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(values.length, snapshot.getCount());
+        assertEquals(values[0], snapshot.getMin());
+        assertEquals(values[values.length - 1], snapshot.getMax());
+        for (double percentile : new double[] { 1, 10, 50, 90, 99, 99.9 }) {
+            long exact = values[(int) Math.ceil(percentile / 100 * values.length) - 1];
+            long estimate = snapshot.getPercentile(percentile);
+            assertTrue("p" + percentile + " " + estimate + " vs " + exact,
+                    estimate >= exact && estimate <= exact + Math.max(1, exact / 16));
+        }
+        assertEquals(snapshot.getPercentile(50), snapshot.getP50());
+        assertEquals(snapshot.getPercentile(90), snapshot.getP90());
+        assertEquals(snapshot.getPercentile(99), snapshot.getP99());
+    }
+
+    @Test
+    public void countsOverflowWithoutLosingValues() {
+        LatencyHistogram histogram = new LatencyHistogram(1000);
+        histogram.record(-5);
+        histogram.record(500);
+        histogram.record(5000);
+        histogram.record(100000);
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(4, snapshot.getCount());
+        assertEquals(2, snapshot.getOverflow());
+        assertEquals(0, snapshot.getMin());
+        assertEquals(100000, snapshot.getMax());
+        assertEquals(105500, snapshot.getSum());
+        assertTrue(snapshot.getP50() >= 500 && snapshot.getP50() < 532);
+        assertEquals(100000, snapshot.getPercentile(100));
+    }
+
+    @Test
+    public void mergesSnapshots() {
+        LatencyHistogram first = new LatencyHistogram(MAX_VALUE);
+        LatencyHistogram second = new LatencyHistogram(MAX_VALUE);
+        LatencyHistogram both = new LatencyHistogram(MAX_VALUE);
+        Random random = new Random(3);
+        for (int i = 0; i < 1000; i++) {
+            long value = random.nextInt(10000);
+            (i % 3 == 0 ? first : second).record(value);
+            both.record(value);
+        }
+
+        LatencyHistogram.Snapshot merged = first.snapshot().merge(second.snapshot());
+        LatencyHistogram.Snapshot expected = both.snapshot();
+        assertEquals(expected.getCount(), merged.getCount());
+        assertEquals(expected.getSum(), merged.getSum());
+        assertEquals(expected.getMin(), merged.getMin());
+        assertEquals(expected.getMax(), merged.getMax());
+        for (int i = 0; i < expected.getBucketCount(); i++) {
+            assertEquals(expected.getBucketValueCount(i), merged.getBucketValueCount(i));
+        }
+
+        LatencyHistogram.Snapshot empty = new LatencyHistogram(MAX_VALUE).snapshot();
+        assertSame(merged, merged.merge(empty));
+        try {
+            merged.merge(new LatencyHistogram(1000).snapshot());
+            fail("Merged histograms with different ranges");
+
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void recordsConcurrently() throws Exception {
+        final int threads = 8;
+        final int valuesPerThread = 50000;
+        LatencyHistogram histogram = new LatencyHistogram(MAX_VALUE);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            final int seed = t;
+            Thread worker = new Thread(() -> {
+                Random random = new Random(seed);
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < valuesPerThread; i++) {
+                    histogram.record(1 + random.nextInt(5000));
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+
+        // Drain the histogram while the workers record
+        AtomicBoolean done = new AtomicBoolean();
+        List<LatencyHistogram.Snapshot> snapshots = new ArrayList<>();
+        Thread reader = new Thread(() -> {
+            while (!done.get()) {
+                snapshots.add(histogram.snapshotAndReset());
+            }
+        });
+        reader.start();
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        done.set(true);
+        reader.join();
+
+        LatencyHistogram.Snapshot total = histogram.snapshotAndReset();
+        for (LatencyHistogram.Snapshot snapshot : snapshots) {
+            total = total.merge(snapshot);
+        }
+        assertEquals(threads * valuesPerThread, total.getCount());
+        assertEquals(1, total.getMin());
+        // Bounds lost to a concurrent reset are taken from the buckets
+        assertTrue(String.valueOf(total.getMax()), total.getMax() >= 5000 - 256 && total.getMax() < 5000 + 256);
+        long p50 = total.getP50();
+        assertTrue(String.valueOf(p50), p50 > 2300 && p50 < 2700);
+    }
+}
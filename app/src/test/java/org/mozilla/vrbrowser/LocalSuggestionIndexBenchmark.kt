@@ -0,0 +1,69 @@
+package org.mozilla.vrbrowser
+
+import androidx.test.core.app.ApplicationProvider
+import kotlinx.coroutines.runBlocking
+import mozilla.components.browser.storage.sync.PlacesHistoryStorage
+import mozilla.components.concept.storage.PageObservation
+import mozilla.components.concept.storage.PageVisit
+import mozilla.components.concept.storage.RedirectSource
+import mozilla.components.concept.storage.VisitType
+import org.junit.Assert.assertEquals
+import org.junit.Ignore
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.mozilla.vrbrowser.search.suggestions.LocalSuggestionIndex
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.annotation.Config
+
+/**
+ * Compares URL bar prefix queries answered by [LocalSuggestionIndex] with the Places storage path
+ * used by SuggestionsProvider before the index existed.
+ */
+@Ignore("Benchmark, run it manually")
+@RunWith(RobolectricTestRunner::class)
+@Config(manifest = Config.NONE)
+class LocalSuggestionIndexBenchmark {
+
+    private val PAGES = 1000
+    private val ITERATIONS = 200
+    private val QUERIES = listOf("e", "ex", "exa", "page", "page 4", "example.com/12")
+
+    @Test
+    fun compareWithPlacesStorage() = runBlocking {
+        val storage = PlacesHistoryStorage(ApplicationProvider.getApplicationContext())
+        val index = LocalSuggestionIndex()
+        val visits = ArrayList<LocalSuggestionIndex.Visit>()
+        val now = System.currentTimeMillis()
+        for (i in 0 until PAGES) {
+            val url = "https://www.example.com/$i"
+            storage.recordVisit(url, PageVisit(VisitType.LINK, RedirectSource.NOT_A_SOURCE))
+            storage.recordObservation(url, PageObservation("Example page $i"))
+            visits.add(LocalSuggestionIndex.Visit(url, "Example page $i", now))
+        }
+        index.replaceHistory(visits)
+        index.replaceBookmarks(emptyList())
+
+        var storageResults = 0
+        val storageStart = System.nanoTime()
+        for (i in 0 until ITERATIONS) {
+            for (query in QUERIES) {
+                storageResults += storage.getSuggestions(query, 100).size
+            }
+        }
+        val storageNanos = (System.nanoTime() - storageStart) / (ITERATIONS * QUERIES.size)
+
+        var indexResults = 0
+        val indexStart = System.nanoTime()
+        for (i in 0 until ITERATIONS) {
+            for (query in QUERIES) {
+                indexResults += index.query(query, 100).size
+            }
+        }
+        val indexNanos = (System.nanoTime() - indexStart) / (ITERATIONS * QUERIES.size)
+
+        println("LocalSuggestionIndexBenchmark: $PAGES pages, storage ${storageNanos / 1000} us/query " +
+                "($storageResults results), index ${indexNanos / 1000} us/query ($indexResults results)")
+
+        assertEquals(100, index.query("exa", 100).size)
+    }
+}
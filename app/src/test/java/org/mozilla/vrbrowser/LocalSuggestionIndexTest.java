@@ -0,0 +1,113 @@
+package org.mozilla.vrbrowser;
+
+import org.junit.Test;
+import org.mozilla.vrbrowser.search.suggestions.LocalSuggestionIndex;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class LocalSuggestionIndexTest {
+
+    private static final long DAY = 24 * 60 * 60 * 1000;
+
+    @Test
+    public void matchesTitleUrlAndHostPrefixes() {
+        LocalSuggestionIndex index = new LocalSuggestionIndex();
+        long now = System.currentTimeMillis();
+        index.replaceHistory(Arrays.asList(
+                new LocalSuggestionIndex.Visit("https://www.mozilla.org/firefox/", "Firefox Browser", now),
+                new LocalSuggestionIndex.Visit("https://example.com/", "Example Domain", now)));
+        index.replaceBookmarks(Collections.emptyList());
+
+        assertTrue(index.isReady());
+        assertEquals("https://www.mozilla.org/firefox/", index.query("moz", 10).get(0).url);
+        assertEquals("https://www.mozilla.org/firefox/", index.query("brow", 10).get(0).url);
+        assertEquals("https://www.mozilla.org/firefox/", index.query("https://www.mozilla.org/fi", 10).get(0).url);
+        assertEquals("https://example.com/", index.query("Example dom", 10).get(0).url);
+        assertTrue(index.query("example firefox", 10).isEmpty());
+        assertTrue(index.query("zzz", 10).isEmpty());
+    }
+
+    @Test
+    public void ranksByFrecency() {
+        LocalSuggestionIndex index = new LocalSuggestionIndex();
+        long now = System.currentTimeMillis();
+        index.replaceHistory(Arrays.asList(
+                new LocalSuggestionIndex.Visit("https://old.example.com/", "Old", now - 60 * DAY),
+                new LocalSuggestionIndex.Visit("https://old.example.com/", "Old", now - 60 * DAY),
+                new LocalSuggestionIndex.Visit("https://recent.example.com/", "Recent", now),
+                new LocalSuggestionIndex.Visit("https://recent.example.com/", "Recent", now - DAY)));
+        index.replaceBookmarks(Collections.singletonList(
+                new LocalSuggestionIndex.Bookmark("guid", "https://bookmark.example.com/", "Bookmark")));
+
+        List<LocalSuggestionIndex.Result> results = index.query("example", 10);
+        assertEquals(3, results.size());
+        assertEquals("https://bookmark.example.com/", results.get(0).url);
+        assertTrue(results.get(0).isBookmark);
+        assertEquals("https://recent.example.com/", results.get(1).url);
+        assertEquals("https://old.example.com/", results.get(2).url);
+
+        assertEquals(2, index.query("example", 2).size());
+    }
+
+    @Test
+    public void replaysChangesMadeDuringARebuild() {
+        LocalSuggestionIndex index = new LocalSuggestionIndex();
+        long now = System.currentTimeMillis();
+        index.replaceHistory(Arrays.asList(
+                new LocalSuggestionIndex.Visit("https://removed.example.com/", "Removed", now - DAY),
+                new LocalSuggestionIndex.Visit("https://stored.example.com/", "Stored", now - DAY)));
+
+        // Storage is read while other visits are recorded and removed
+        index.beginHistoryRebuild();
+        index.recordVisit("https://new.example.com/", now);
+        index.removeHistory("https://removed.example.com/");
+        index.finishHistoryRebuild(Arrays.asList(
+                new LocalSuggestionIndex.Visit("https://removed.example.com/", "Removed", now - DAY),
+                new LocalSuggestionIndex.Visit("https://stored.example.com/", "Stored", now - DAY)));
+
+        assertEquals(1, index.query("new", 10).size());
+        assertTrue(index.query("removed", 10).isEmpty());
+        assertEquals(1, index.query("stored", 10).size());
+
+        // Once finished, the changes are not replayed again
+        index.beginHistoryRebuild();
+        index.finishHistoryRebuild(Collections.singletonList(
+                new LocalSuggestionIndex.Visit("https://stored.example.com/", "Stored", now - DAY)));
+        assertTrue(index.query("new", 10).isEmpty());
+    }
+
+    @Test
+    public void updatesIncrementally() {
+        LocalSuggestionIndex index = new LocalSuggestionIndex();
+        long now = System.currentTimeMillis();
+        index.recordVisit("https://example.com/", now);
+        assertEquals(1, index.query("exa", 10).size());
+
+        index.setTitle("https://example.com/", "Welcome page");
+        assertEquals(1, index.query("welc", 10).size());
+
+        index.addBookmark("guid", "https://example.com/", "Welcome page");
+        assertTrue(index.query("exa", 10).get(0).isBookmark);
+
+        index.removeHistory("https://example.com/");
+        assertEquals(1, index.query("exa", 10).size());
+
+        assertTrue(index.removeBookmark("guid"));
+        assertFalse(index.removeBookmark("guid"));
+        assertTrue(index.query("exa", 10).isEmpty());
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    public void dropsExpiredAndPlaceEntries() {
+        LocalSuggestionIndex index = new LocalSuggestionIndex();
+        long now = System.currentTimeMillis();
+        index.recordVisit("https://expired.example.com/", now - LocalSuggestionIndex.MAX_HISTORY_AGE_MILLIS - DAY);
+        index.addBookmark("guid", "place:sort=8", "Recent tags");
+        assertEquals(0, index.size());
+    }
+}
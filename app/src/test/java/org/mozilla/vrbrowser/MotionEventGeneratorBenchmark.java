@@ -0,0 +1,79 @@
+package org.mozilla.vrbrowser;
+
+import org.junit.After;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mozilla.vrbrowser.input.MotionEventGenerator;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Measures MotionEventGenerator.dispatch throughput for two controllers hovering, clicking and
+ * dragging, with warmup iterations before the measured ones.
+ */
+@Ignore("Benchmark, run it manually")
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class MotionEventGeneratorBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 5;
+    private static final int MEASURED_ITERATIONS = 10;
+    private static final int SAMPLES = 20000;
+
+    private final List<String> mEvents = new ArrayList<>();
+    private final RecordingWidget[] mWidgets = {
+            new RecordingWidget(1, mEvents),
+            new RecordingWidget(2, mEvents)
+    };
+
+    @After
+    public void tearDown() {
+        MotionEventGenerator.clearDevices();
+    }
+
+    // Returns the number of generated events
+    private int run() {
+        mEvents.clear();
+        for (int i = 0; i < SAMPLES; i++) {
+            int device = i % 2;
+            int step = i / 2;
+            // Clicks every 50 samples and drags for 10 of them, moves to the other widget every 200
+            boolean pressed = step % 50 >= 40;
+            RecordingWidget widget = mWidgets[(step / 200 + device) % 2];
+            MotionEventGenerator.dispatch(widget, device, true, pressed, step % 500, device * 100 + step % 7);
+        }
+        return mEvents.size();
+    }
+
+    @Test
+    public void dispatchThroughput() {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            run();
+        }
+
+        int events = 0;
+        long best = Long.MAX_VALUE;
+        long total = 0;
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            long start = System.nanoTime();
+            events = run();
+            long elapsed = System.nanoTime() - start;
+            best = Math.min(best, elapsed);
+            total += elapsed;
+        }
+        long average = total / MEASURED_ITERATIONS;
+
+        System.out.println("MotionEventGeneratorBenchmark: " + SAMPLES + " samples, " + events + " events, " +
+                (SAMPLES * 1000000000L / average) + " samples/s average, " +
+                (SAMPLES * 1000000000L / best) + " samples/s best, " +
+                (average / events) + " ns/event");
+
+        assertTrue(events >= SAMPLES);
+    }
+}
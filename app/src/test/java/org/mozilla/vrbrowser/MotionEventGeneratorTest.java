@@ -0,0 +1,98 @@
+package org.mozilla.vrbrowser;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mozilla.vrbrowser.input.MotionEventGenerator;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class MotionEventGeneratorTest {
+
+    private final List<String> mEvents = new ArrayList<>();
+    private final RecordingWidget mWindow = new RecordingWidget(1, mEvents);
+    private final RecordingWidget mTray = new RecordingWidget(2, mEvents);
+
+    @After
+    public void tearDown() {
+        MotionEventGenerator.clearDevices();
+    }
+
+    @Test
+    public void generatesClickSequence() {
+        MotionEventGenerator.dispatch(mWindow, 0, true, false, 10, 10);
+        MotionEventGenerator.dispatch(mWindow, 0, true, false, 12, 10);
+        MotionEventGenerator.dispatch(mWindow, 0, true, true, 12, 10);
+        MotionEventGenerator.dispatch(mWindow, 0, true, true, 20, 10);
+        MotionEventGenerator.dispatch(mWindow, 0, true, false, 20, 10);
+
+        // The first sample also moves the pointer from the origin
+        assertEquals(Arrays.asList(
+                "1:0:ACTION_HOVER_ENTER",
+                "1:0:ACTION_HOVER_MOVE",
+                "1:0:ACTION_HOVER_MOVE",
+                "1:0:ACTION_HOVER_EXIT",
+                "1:0:ACTION_DOWN",
+                "1:0:ACTION_MOVE",
+                "1:0:ACTION_UP",
+                "1:0:ACTION_HOVER_ENTER"), mEvents);
+    }
+
+    @Test
+    public void otherDevicesAreFoundById() {
+        // No device 0, the ids don't match the SparseArray indices
+        MotionEventGenerator.dispatch(mTray, 2, true, false, 5, 5);
+        MotionEventGenerator.dispatch(mWindow, 1, true, false, 10, 10);
+        MotionEventGenerator.dispatch(mWindow, 1, true, true, 10, 10);
+        mEvents.clear();
+
+        // The second device can't start a touch while the first one is down
+        MotionEventGenerator.dispatch(mTray, 2, true, true, 5, 5);
+        assertFalse(mEvents.contains("2:2:ACTION_DOWN"));
+
+        MotionEventGenerator.dispatch(mWindow, 1, true, false, 10, 10);
+        assertFalse(mEvents.contains("1:1:ACTION_UP"));
+        MotionEventGenerator.dispatch(mTray, 2, true, false, 5, 5);
+        mEvents.clear();
+
+        // Nobody is down anymore
+        MotionEventGenerator.dispatch(mTray, 2, true, true, 5, 5);
+        assertTrue(mEvents.contains("2:2:ACTION_DOWN"));
+    }
+
+    @Test
+    public void pressHidesTheHoverOfOtherDevices() {
+        MotionEventGenerator.dispatch(mTray, 2, true, false, 5, 5);
+        MotionEventGenerator.dispatch(mWindow, 1, true, false, 10, 10);
+        mEvents.clear();
+
+        MotionEventGenerator.dispatch(mWindow, 1, true, true, 10, 10);
+        assertEquals(Arrays.asList(
+                "1:1:ACTION_HOVER_EXIT",
+                "1:1:ACTION_DOWN",
+                "2:2:ACTION_HOVER_EXIT"), mEvents);
+    }
+
+    @Test
+    public void tracksDevicesOutsideTheBitmask() {
+        MotionEventGenerator.dispatch(mWindow, 40, true, false, 10, 10);
+        MotionEventGenerator.dispatch(mWindow, 40, true, true, 10, 10);
+        mEvents.clear();
+
+        MotionEventGenerator.dispatch(mTray, 0, true, false, 5, 5);
+        MotionEventGenerator.dispatch(mTray, 0, true, true, 5, 5);
+        assertFalse(mEvents.contains("2:0:ACTION_DOWN"));
+
+        MotionEventGenerator.dispatch(mWindow, 40, true, false, 10, 10);
+        MotionEventGenerator.dispatch(mWindow, 40, true, true, 10, 10);
+        assertFalse(mEvents.contains("1:40:ACTION_DOWN"));
+    }
+}
@@ -0,0 +1,154 @@
+package org.mozilla.vrbrowser;
+
+import androidx.annotation.NonNull;
+
+import org.junit.Test;
+import org.mozilla.vrbrowser.telemetry.PageLoadTimeline;
+import org.mozilla.vrbrowser.telemetry.PageLoadTimeline.Navigation;
+import org.mozilla.vrbrowser.telemetry.PageLoadTimeline.Phase;
+import org.mozilla.vrbrowser.telemetry.PageLoadTimeline.Step;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class PageLoadTimelineTest {
+
+    private static class RecordingListener implements PageLoadTimeline.Listener {
+        List<Navigation> finished = new ArrayList<>();
+        List<Navigation> snapshots = new ArrayList<>();
+
+        @Override
+        public void onPageLoadFinished(@NonNull Navigation aNavigation) {
+            finished.add(aNavigation);
+        }
+
+        @Override
+        public void onPageSnapshotCaptured(@NonNull Navigation aNavigation) {
+            snapshots.add(aNavigation);
+        }
+    }
+
+    @Test
+    public void computesPhaseDurations() {
+        PageLoadTimeline timeline = new PageLoadTimeline();
+        RecordingListener listener = new RecordingListener();
+        timeline.addListener(listener);
+
+        timeline.onLoadRequest("https://example.com", 1000);
+        timeline.onPageStart("https://example.com", 1100);
+        timeline.onLocationChange("https://example.com/", 1300);
+        timeline.onFirstComposite(1400);
+        timeline.onFirstContentfulPaint(1600);
+        assertTrue(listener.finished.isEmpty());
+        timeline.onPageStop(2100);
+        timeline.onSnapshotCaptured(2150);
+
+        assertEquals(1, listener.finished.size());
+        Navigation navigation = listener.finished.get(0);
+        assertEquals("https://example.com/", navigation.getUri());
+        assertEquals(100, navigation.getDuration(Phase.REQUEST));
+        assertEquals(200, navigation.getDuration(Phase.COMMIT));
+        assertEquals(100, navigation.getDuration(Phase.FIRST_COMPOSITE));
+        assertEquals(500, navigation.getDuration(Phase.FIRST_CONTENTFUL_PAINT));
+        assertEquals(1000, navigation.getDuration(Phase.LOAD));
+        assertEquals(1100, navigation.getDuration(Phase.TOTAL));
+        // Notified before the snapshot
+        assertEquals(-1, navigation.getDuration(Phase.SNAPSHOT));
+
+        assertEquals(1, listener.snapshots.size());
+        assertEquals(50, listener.snapshots.get(0).getDuration(Phase.SNAPSHOT));
+        assertEquals(50, timeline.getCurrentNavigation().getDuration(Phase.SNAPSHOT));
+    }
+
+    @Test
+    public void keepsFirstRequestOfRedirects() {
+        PageLoadTimeline timeline = new PageLoadTimeline();
+        timeline.onLoadRequest("http://example.com", 0);
+        timeline.onLoadRequest("https://example.com", 150);
+        timeline.onLoadRequest("https://www.example.com", 300);
+        timeline.onPageStart("https://www.example.com", 400);
+
+        Navigation navigation = timeline.getCurrentNavigation();
+        assertEquals(0, navigation.getTime(Step.LOAD_REQUEST));
+        assertEquals(400, navigation.getDuration(Phase.REQUEST));
+        assertEquals("https://www.example.com", navigation.getUri());
+    }
+
+    @Test
+    public void startsWithoutLoadRequest() {
+        PageLoadTimeline timeline = new PageLoadTimeline();
+        RecordingListener listener = new RecordingListener();
+        timeline.addListener(listener);
+
+        // History navigation
+        timeline.onPageStart("https://example.com", 500);
+        timeline.onLocationChange("https://example.com", 600);
+        timeline.onPageStop(900);
+
+        Navigation navigation = listener.finished.get(0);
+        assertFalse(navigation.hasStep(Step.LOAD_REQUEST));
+        assertEquals(-1, navigation.getDuration(Phase.REQUEST));
+        assertEquals(-1, navigation.getDuration(Phase.FIRST_CONTENTFUL_PAINT));
+        assertEquals(400, navigation.getDuration(Phase.LOAD));
+        assertEquals(400, navigation.getDuration(Phase.TOTAL));
+    }
+
+    @Test
+    public void ignoresStepsOutsideOfLoads() {
+        PageLoadTimeline timeline = new PageLoadTimeline();
+        RecordingListener listener = new RecordingListener();
+        timeline.addListener(listener);
+
+        timeline.onFirstComposite(10);
+        timeline.onPageStop(20);
+        timeline.onSnapshotCaptured(30);
+        assertNull(timeline.getCurrentNavigation());
+
+        timeline.onPageStart("https://example.com", 100);
+        timeline.onSnapshotCaptured(110);
+        timeline.onFirstComposite(200);
+        timeline.onFirstComposite(250);
+        timeline.onPageStop(300);
+        timeline.onPageStop(350);
+        // pushState after the load and a composite after a tab switch
+        timeline.onLocationChange("https://example.com/#top", 400);
+        timeline.onFirstComposite(500);
+        timeline.onSnapshotCaptured(600);
+        timeline.onSnapshotCaptured(700);
+
+        assertEquals(1, listener.finished.size());
+        assertEquals(1, listener.snapshots.size());
+        Navigation navigation = timeline.getCurrentNavigation();
+        assertEquals("https://example.com", navigation.getUri());
+        assertEquals(-1, navigation.getDuration(Phase.FIRST_COMPOSITE));
+        assertEquals(200, navigation.getTime(Step.FIRST_COMPOSITE));
+        assertEquals(300, navigation.getDuration(Phase.SNAPSHOT));
+    }
+
+    @Test
+    public void restartsOnNewNavigation() {
+        PageLoadTimeline timeline = new PageLoadTimeline();
+        RecordingListener listener = new RecordingListener();
+        timeline.addListener(listener);
+
+        timeline.onLoadRequest("https://example.com", 0);
+        timeline.onPageStart("https://example.com", 100);
+        // The user navigates away before the page stops
+        timeline.onLoadRequest("https://mozilla.org", 200);
+        timeline.onPageStart("https://mozilla.org", 250);
+        timeline.onPageStop(1250);
+
+        assertEquals(1, listener.finished.size());
+        Navigation navigation = listener.finished.get(0);
+        assertEquals("https://mozilla.org", navigation.getUri());
+        assertEquals(1050, navigation.getDuration(Phase.TOTAL));
+
+        timeline.removeListener(listener);
+        timeline.onPageStart("https://mozilla.org", 2000);
+        timeline.onPageStop(2500);
+        assertEquals(1, listener.finished.size());
+        assertEquals(500, timeline.getCurrentNavigation().getDuration(Phase.LOAD));
+    }
+}
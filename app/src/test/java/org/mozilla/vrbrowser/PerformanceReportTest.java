@@ -0,0 +1,100 @@
+package org.mozilla.vrbrowser;
+
+import android.app.Application;
+import android.util.Base64;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mozilla.vrbrowser.telemetry.FrameTimingAggregator;
+import org.mozilla.vrbrowser.telemetry.LatencyHistogram;
+import org.mozilla.vrbrowser.telemetry.PerformanceReport;
+import org.mozilla.vrbrowser.utils.InternalPages;
+import org.mozilla.vrbrowser.utils.UrlUtils;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+// The performance page template is a raw resource of the app
+@RunWith(RobolectricTestRunner.class)
+@Config(application = Application.class)
+public class PerformanceReportTest {
+
+    private static final String HTML_PREFIX = "data:text/html;base64,";
+
+    private static LatencyHistogram.Snapshot snapshot(long... aValues) {
+        LatencyHistogram histogram = new LatencyHistogram(60 * 1000);
+        for (long value : aValues) {
+            histogram.record(value);
+        }
+        return histogram.snapshot();
+    }
+
+    private static PerformanceReport createReport() {
+        Map<String, Long> sessions = new LinkedHashMap<>();
+        sessions.put("total", 3L);
+        sessions.put("active", 1L);
+
+        FrameTimingAggregator aggregator = new FrameTimingAggregator();
+        // A frame on time and one that missed two vsyncs
+        aggregator.addFrames(new int[] { 13889, 0, 2, 1, 41667, 2, 3, 1 }, 2);
+
+        return new PerformanceReport(1000,
+                sessions,
+                Collections.singletonMap("memory_kb", 512L),
+                Collections.singletonMap("disk_io_queue", 2L),
+                Collections.singletonMap("load", snapshot(100, 200, 300)),
+                Collections.singletonMap("history.visits", snapshot(5)),
+                aggregator.getTotalReport());
+    }
+
+    @Test
+    public void writesTheCountersAsJson() throws JSONException {
+        JSONObject json = new JSONObject(createReport().toJson());
+
+        assertEquals(1000, json.getLong("time"));
+        assertEquals(3, json.getJSONObject("sessions").getLong("total"));
+        assertEquals(1, json.getJSONObject("sessions").getLong("active"));
+        assertEquals(512, json.getJSONObject("snapshot_cache").getLong("memory_kb"));
+        assertEquals(2, json.getJSONObject("executors").getLong("disk_io_queue"));
+
+        JSONObject load = json.getJSONObject("page_load_phases_ms").getJSONObject("load");
+        assertEquals(3, load.getLong("count"));
+        assertEquals(100, load.getLong("min"));
+        assertEquals(300, load.getLong("max"));
+        assertEquals(1, json.getJSONObject("queries_ms").getJSONObject("history.visits").getLong("count"));
+
+        JSONObject frames = json.getJSONObject("frames_us");
+        assertEquals(2, frames.getLong("count"));
+        assertEquals(41667, frames.getLong("max"));
+        assertEquals(2, frames.getLong("missed_vsyncs"));
+        assertEquals(3, frames.getInt("max_widgets"));
+        assertEquals(1, frames.getInt("max_layers"));
+    }
+
+    @Test
+    public void rendersThePerformancePage() {
+        String uri = InternalPages.createPerformancePageDataURI(ApplicationProvider.getApplicationContext(), createReport());
+        assertTrue(uri.startsWith(HTML_PREFIX));
+
+        String html = new String(Base64.decode(uri.substring(HTML_PREFIX.length()), Base64.DEFAULT), StandardCharsets.UTF_8);
+        assertTrue(html.contains("<title>about:performance</title>"));
+        assertTrue(html.contains(UrlUtils.ABOUT_PERFORMANCE));
+        assertTrue(html.contains(UrlUtils.ABOUT_PERFORMANCE_EXPORT));
+        assertTrue(html.contains("<tr><td>total</td><td>3</td></tr>"));
+        assertTrue(html.contains("<tr><td>memory_kb</td><td>512</td></tr>"));
+        assertTrue(html.contains("<tr><td>history.visits</td><td>1</td>"));
+        assertTrue(html.contains("<tr><td>missed_vsyncs</td><td>2</td></tr>"));
+        assertFalse(html.contains("%content%"));
+        assertFalse(html.contains("%css%"));
+    }
+}
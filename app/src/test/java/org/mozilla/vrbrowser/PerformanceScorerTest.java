@@ -0,0 +1,193 @@
+package org.mozilla.vrbrowser;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.junit.Test;
+import org.mozilla.vrbrowser.browser.PerformanceScorer;
+import org.mozilla.vrbrowser.browser.PerformanceScorer.Action;
+import org.mozilla.vrbrowser.telemetry.FrameTimingAggregator;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class PerformanceScorerTest {
+
+    private static class MemoryStorage implements PerformanceScorer.Storage {
+        final Map<String, String> values = new HashMap<>();
+
+        @NonNull
+        @Override
+        public Map<String, String> load() {
+            return new HashMap<>(values);
+        }
+
+        @Override
+        public void store(@NonNull String aOrigin, @Nullable String aValue) {
+            if (aValue != null) {
+                values.put(aOrigin, aValue);
+            } else {
+                values.remove(aOrigin);
+            }
+        }
+    }
+
+    private static void poorBatches(PerformanceScorer aScorer, String aOrigin, int aCount) {
+        for (int i = 0; i < aCount; i++) {
+            // Half of the frames miss a vsync
+            aScorer.addBatch(aOrigin, 72, 36);
+        }
+    }
+
+    @Test
+    public void escalatesFromTheLeastVisibleAction() {
+        PerformanceScorer scorer = new PerformanceScorer(new MemoryStorage());
+        List<Action> actions = new ArrayList<>();
+        scorer.setDelegate((origin, action) -> actions.add(action));
+
+        poorBatches(scorer, "slow.example.com", 2);
+        assertEquals(Action.NONE, scorer.getAction("slow.example.com"));
+        poorBatches(scorer, "slow.example.com", 1);
+        assertEquals(Action.THROTTLE_BACKGROUND_TABS, scorer.getAction("slow.example.com"));
+        poorBatches(scorer, "slow.example.com", 9);
+
+        assertEquals(Action.LEAVE_PAGE, scorer.getAction("slow.example.com"));
+        assertEquals(4, actions.size());
+        assertEquals(Action.THROTTLE_BACKGROUND_TABS, actions.get(0));
+        assertEquals(Action.REDUCE_TEXTURE_SCALE, actions.get(1));
+        assertEquals(Action.PAUSE_INACTIVE_WINDOWS, actions.get(2));
+        assertEquals(Action.LEAVE_PAGE, actions.get(3));
+        assertEquals(50, scorer.getScore("slow.example.com"));
+
+        // Other origins are not affected
+        assertEquals(Action.NONE, scorer.getAction("example.com"));
+        assertEquals(100, scorer.getScore("example.com"));
+    }
+
+    @Test
+    public void ignoresShortAndSmoothBatches() {
+        PerformanceScorer scorer = new PerformanceScorer(new MemoryStorage());
+        for (int i = 0; i < 10; i++) {
+            scorer.addBatch("example.com", 10, 10);
+            scorer.addBatch("example.com", 72, 1);
+        }
+        assertEquals(Action.NONE, scorer.getAction("example.com"));
+        assertTrue(scorer.getDecisions().isEmpty());
+        assertTrue(scorer.getScore("example.com") > 95);
+    }
+
+    @Test
+    public void scoresAggregatedFrames() {
+        FrameTimingAggregator aggregator = new FrameTimingAggregator();
+        PerformanceScorer scorer = new PerformanceScorer(new MemoryStorage());
+        aggregator.addListener(scorer);
+        aggregator.setContext("example.com", "1_window");
+
+        // Every frame takes two vsyncs
+        int[] data = new int[72 * FrameTimingAggregator.FIELDS_PER_FRAME];
+        for (int i = 0; i < 72; i++) {
+            data[i * FrameTimingAggregator.FIELDS_PER_FRAME] = 27778;
+            data[i * FrameTimingAggregator.FIELDS_PER_FRAME + 1] = 1;
+        }
+        aggregator.addFrames(data, 72);
+        aggregator.addFrames(data, 72);
+        // Batches too short to be scored are kept for the next one
+        aggregator.addFrames(data, 10);
+        assertEquals(Action.NONE, scorer.getAction("example.com"));
+        aggregator.addFrames(data, 62);
+        assertEquals(Action.THROTTLE_BACKGROUND_TABS, scorer.getAction("example.com"));
+        assertEquals(0, scorer.getScore("example.com"));
+    }
+
+    @Test
+    public void recoversAfterGoodBatches() {
+        PerformanceScorer scorer = new PerformanceScorer(new MemoryStorage());
+        poorBatches(scorer, "example.com", 6);
+        assertEquals(Action.REDUCE_TEXTURE_SCALE, scorer.getAction("example.com"));
+
+        for (int i = 0; i < 119; i++) {
+            scorer.addBatch("example.com", 72, 0);
+        }
+        assertEquals(Action.REDUCE_TEXTURE_SCALE, scorer.getAction("example.com"));
+        scorer.addBatch("example.com", 72, 0);
+        assertEquals(Action.THROTTLE_BACKGROUND_TABS, scorer.getAction("example.com"));
+    }
+
+    @Test
+    public void neverLeavesAllowedOrigins() {
+        PerformanceScorer scorer = new PerformanceScorer(new MemoryStorage());
+        for (int i = 0; i < 4; i++) {
+            scorer.onPoorPerformance("example.com");
+        }
+        assertEquals(Action.LEAVE_PAGE, scorer.getAction("example.com"));
+
+        scorer.allow("example.com");
+        assertTrue(scorer.isAllowed("example.com"));
+        assertEquals(Action.PAUSE_INACTIVE_WINDOWS, scorer.getAction("example.com"));
+        scorer.onPoorPerformance("example.com");
+        poorBatches(scorer, "example.com", 10);
+        assertEquals(Action.PAUSE_INACTIVE_WINDOWS, scorer.getAction("example.com"));
+
+        List<PerformanceScorer.Decision> decisions = scorer.getDecisions();
+        assertEquals(5, decisions.size());
+        assertEquals("example.com", decisions.get(4).getOrigin());
+        assertEquals(Action.PAUSE_INACTIVE_WINDOWS, decisions.get(4).getAction());
+    }
+
+    @Test
+    public void offersToLeaveAgainOnRevisit() {
+        MemoryStorage storage = new MemoryStorage();
+        PerformanceScorer scorer = new PerformanceScorer(storage);
+        for (int i = 0; i < 4; i++) {
+            scorer.onPoorPerformance("slow.example.com");
+        }
+        assertEquals(Action.LEAVE_PAGE, scorer.getAction("slow.example.com"));
+
+        // The next run starts where the last one left the origin
+        PerformanceScorer restored = new PerformanceScorer(storage);
+        List<Action> actions = new ArrayList<>();
+        restored.setDelegate((origin, action) -> actions.add(action));
+        restored.onPoorPerformance("slow.example.com");
+        assertEquals(1, actions.size());
+        assertEquals(Action.LEAVE_PAGE, actions.get(0));
+
+        // Poor performance right after doesn't offer it again
+        restored.onPoorPerformance("slow.example.com");
+        poorBatches(restored, "slow.example.com", 3);
+        assertEquals(1, actions.size());
+        assertEquals(Action.LEAVE_PAGE, restored.getAction("slow.example.com"));
+    }
+
+    @Test
+    public void persistsScores() {
+        MemoryStorage storage = new MemoryStorage();
+        PerformanceScorer scorer = new PerformanceScorer(storage);
+        poorBatches(scorer, "slow.example.com", 3);
+        scorer.allow("allowed.example.com");
+        scorer.addBatch("smooth.example.com", 72, 0);
+        assertFalse(storage.values.containsKey("smooth.example.com"));
+        scorer.flush();
+        storage.values.put("corrupted.example.com", "not,a,score");
+
+        PerformanceScorer restored = new PerformanceScorer(storage);
+        assertEquals(Action.THROTTLE_BACKGROUND_TABS, restored.getAction("slow.example.com"));
+        assertEquals(50, restored.getScore("slow.example.com"));
+        assertTrue(restored.isAllowed("allowed.example.com"));
+        assertEquals(100, restored.getScore("smooth.example.com"));
+        assertFalse(storage.values.containsKey("corrupted.example.com"));
+        assertTrue(restored.getDecisions().isEmpty());
+
+        restored.remove("slow.example.com");
+        assertFalse(storage.values.containsKey("slow.example.com"));
+        assertEquals(Action.NONE, restored.getAction("slow.example.com"));
+        assertTrue(restored.isAllowed("allowed.example.com"));
+
+        restored.clear();
+        assertTrue(storage.values.isEmpty());
+        assertEquals(Action.NONE, restored.getAction("slow.example.com"));
+    }
+}
@@ -0,0 +1,129 @@
+package org.mozilla.vrbrowser
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import org.mozilla.vrbrowser.browser.PlacesChange
+import org.mozilla.vrbrowser.browser.PlacesVisit
+
+class PlacesChangeTest {
+
+    @Test
+    fun mergingEmptyChangesIsEmpty() {
+        val merged = PlacesChange().merge(PlacesChange())
+
+        assertEquals(PlacesChange(), merged)
+        assertFalse(merged.hasRemovedRange())
+        assertFalse(merged.isReset)
+    }
+
+    @Test
+    fun mergingWithAnEmptyChangeKeepsTheOther() {
+        val change = PlacesChange(
+                added = setOf("a"),
+                removed = setOf("b"),
+                changed = setOf("c"),
+                removedVisits = setOf(PlacesVisit("d", 1)),
+                removedRangeStart = 10,
+                removedRangeEnd = 20)
+
+        assertEquals(change, change.merge(PlacesChange()))
+        assertEquals(change, PlacesChange().merge(change))
+    }
+
+    @Test
+    fun addedThenRemovedIsReportedAsRemoved() {
+        val merged = PlacesChange.added("a").merge(PlacesChange.removed("a"))
+
+        assertEquals(emptySet<String>(), merged.added)
+        assertEquals(setOf("a"), merged.removed)
+    }
+
+    @Test
+    fun removedThenAddedIsReportedAsAdded() {
+        val merged = PlacesChange.removed("a").merge(PlacesChange.added("a"))
+
+        assertEquals(setOf("a"), merged.added)
+        assertEquals(emptySet<String>(), merged.removed)
+    }
+
+    @Test
+    fun changedThenRemovedIsNotReportedAsChanged() {
+        val merged = PlacesChange.changed("a").merge(PlacesChange.removed("a"))
+
+        assertEquals(emptySet<String>(), merged.changed)
+        assertEquals(setOf("a"), merged.removed)
+    }
+
+    @Test
+    fun addedThenChangedIsReportedAsBoth() {
+        val merged = PlacesChange.added("a").merge(PlacesChange.changed("a"))
+
+        assertEquals(setOf("a"), merged.added)
+        assertEquals(setOf("a"), merged.changed)
+    }
+
+    @Test
+    fun unrelatedIdsAreKept() {
+        val merged = PlacesChange(added = setOf("a"), removed = setOf("b"))
+                .merge(PlacesChange(added = setOf("c"), removed = setOf("d"), changed = setOf("e")))
+
+        assertEquals(setOf("a", "c"), merged.added)
+        assertEquals(setOf("b", "d"), merged.removed)
+        assertEquals(setOf("e"), merged.changed)
+    }
+
+    @Test
+    fun removedVisitsAreUnited() {
+        val merged = PlacesChange.removedVisit("a", 1)
+                .merge(PlacesChange.removedVisit("a", 2))
+                .merge(PlacesChange.removedVisit("a", 1))
+
+        assertEquals(setOf(PlacesVisit("a", 1), PlacesVisit("a", 2)), merged.removedVisits)
+    }
+
+    @Test
+    fun rangeIsTakenFromTheOnlyChangeThatHasOne() {
+        val first = PlacesChange.removedRange(10, 20).merge(PlacesChange.added("a"))
+        assertTrue(first.hasRemovedRange())
+        assertEquals(10L, first.removedRangeStart)
+        assertEquals(20L, first.removedRangeEnd)
+
+        val second = PlacesChange.added("a").merge(PlacesChange.removedRange(10, 20))
+        assertTrue(second.hasRemovedRange())
+        assertEquals(10L, second.removedRangeStart)
+        assertEquals(20L, second.removedRangeEnd)
+    }
+
+    @Test
+    fun overlappingRangesAreMerged() {
+        val merged = PlacesChange.removedRange(10, 30).merge(PlacesChange.removedRange(20, 40))
+
+        assertEquals(10L, merged.removedRangeStart)
+        assertEquals(40L, merged.removedRangeEnd)
+    }
+
+    @Test
+    fun disjointRangesAreMergedIntoTheirSpan() {
+        val merged = PlacesChange.removedRange(50, 60).merge(PlacesChange.removedRange(10, 20))
+
+        assertEquals(10L, merged.removedRangeStart)
+        assertEquals(60L, merged.removedRangeEnd)
+    }
+
+    @Test
+    fun nestedRangeKeepsTheOuterOne() {
+        val merged = PlacesChange.removedRange(10, 60).merge(PlacesChange.removedRange(20, 30))
+
+        assertEquals(10L, merged.removedRangeStart)
+        assertEquals(60L, merged.removedRangeEnd)
+    }
+
+    @Test
+    fun resetIsKeptByLaterChanges() {
+        assertTrue(PlacesChange.reset().merge(PlacesChange.added("a")).isReset)
+        assertTrue(PlacesChange.added("a").merge(PlacesChange.reset()).isReset)
+        assertFalse(PlacesChange.added("a").merge(PlacesChange.removed("b")).isReset)
+    }
+}
@@ -0,0 +1,70 @@
+package org.mozilla.vrbrowser;
+
+import org.junit.Test;
+import org.mozilla.vrbrowser.telemetry.LatencyHistogram;
+import org.mozilla.vrbrowser.telemetry.QueryLatencies;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class QueryLatenciesTest {
+
+    // The latencies are global, every test uses its own query names
+
+    @Test
+    public void recordsLatenciesPerQuery() {
+        QueryLatencies.record("per_query.visits", 10);
+        QueryLatencies.record("per_query.visits", 30);
+        QueryLatencies.record("per_query.bookmarks", 5);
+
+        Map<String, LatencyHistogram.Snapshot> snapshots = QueryLatencies.getSnapshots();
+        LatencyHistogram.Snapshot visits = snapshots.get("per_query.visits");
+        assertEquals(2, visits.getCount());
+        assertEquals(10, visits.getMin());
+        assertEquals(30, visits.getMax());
+        assertEquals(1, snapshots.get("per_query.bookmarks").getCount());
+
+        List<String> names = new ArrayList<>(snapshots.keySet());
+        assertTrue(names.indexOf("per_query.bookmarks") < names.indexOf("per_query.visits"));
+    }
+
+    @Test
+    public void snapshotsDontChangeAfterwards() {
+        QueryLatencies.record("snapshot.visits", 10);
+        LatencyHistogram.Snapshot snapshot = QueryLatencies.getSnapshots().get("snapshot.visits");
+        QueryLatencies.record("snapshot.visits", 20);
+
+        assertEquals(1, snapshot.getCount());
+        assertEquals(2, QueryLatencies.getSnapshots().get("snapshot.visits").getCount());
+    }
+
+    @Test
+    public void countsSlowQueriesAsOverflow() {
+        QueryLatencies.record("overflow.visits", 2 * 60 * 1000);
+
+        LatencyHistogram.Snapshot snapshot = QueryLatencies.getSnapshots().get("overflow.visits");
+        assertEquals(1, snapshot.getCount());
+        assertEquals(1, snapshot.getOverflow());
+    }
+
+    @Test
+    public void recordsFromSeveralThreads() throws InterruptedException {
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < 1000; j++) {
+                    QueryLatencies.record("threads.visits", j % 50);
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(4000, QueryLatencies.getSnapshots().get("threads.visits").getCount());
+    }
+}
@@ -0,0 +1,74 @@
+package org.mozilla.vrbrowser;
+
+import android.content.res.Configuration;
+import android.graphics.SurfaceTexture;
+import android.view.MotionEvent;
+import android.view.Surface;
+
+import org.mozilla.vrbrowser.ui.widgets.Widget;
+import org.mozilla.vrbrowser.ui.widgets.WidgetPlacement;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Widget that records the events generated by MotionEventGenerator as "handle:device:action".
+ */
+class RecordingWidget implements Widget {
+    final int mHandle;
+    final List<String> mEvents;
+    final List<float[]> mPositions = new ArrayList<>();
+
+    RecordingWidget(int aHandle, List<String> aEvents) {
+        mHandle = aHandle;
+        mEvents = aEvents;
+    }
+
+    private void record(MotionEvent aEvent) {
+        // The generator recycles the events
+        mEvents.add(mHandle + ":" + aEvent.getDeviceId() + ":" + MotionEvent.actionToString(aEvent.getAction()));
+        mPositions.add(new float[] { aEvent.getDeviceId(), aEvent.getX(), aEvent.getY() });
+    }
+
+    @Override
+    public void handleTouchEvent(MotionEvent aEvent) {
+        record(aEvent);
+    }
+
+    @Override
+    public void handleHoverEvent(MotionEvent aEvent) {
+        record(aEvent);
+    }
+
+    @Override
+    public boolean supportsMultipleInputDevices() {
+        return true;
+    }
+
+    @Override
+    public int getHandle() {
+        return mHandle;
+    }
+
+    @Override
+    public int getBorderWidth() {
+        return 0;
+    }
+
+    @Override public void onPause() {}
+    @Override public void onResume() {}
+    @Override public void onConfigurationChanged(Configuration newConfig) {}
+    @Override public void setSurfaceTexture(SurfaceTexture aTexture, int aWidth, int aHeight, Runnable aFirstDrawCallback) {}
+    @Override public void setSurface(Surface aSurface, int aWidth, int aHeight, Runnable aFirstDrawCallback) {}
+    @Override public void resizeSurface(int aWidth, int aHeight) {}
+    @Override public WidgetPlacement getPlacement() { return null; }
+    @Override public void handleResizeEvent(float aWorldWidth, float aWorldHeight) {}
+    @Override public void handleMoveEvent(float aDeltaX, float aDeltaY, float aDeltaZ, float aRotation) {}
+    @Override public void releaseWidget() {}
+    @Override public void setFirstPaintReady(boolean aIsFirstDraw) {}
+    @Override public boolean isFirstPaintReady() { return true; }
+    @Override public boolean isVisible() { return true; }
+    @Override public boolean isDialog() { return false; }
+    @Override public void setVisible(boolean aVisible) {}
+    @Override public void resizeByMultiplier(float aspect, float multiplier) {}
+}
@@ -0,0 +1,248 @@
+package org.mozilla.vrbrowser;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mozilla.vrbrowser.downloads.SegmentedDownloadEngine;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs the download engine against a local HTTP server.
+ */
+public class SegmentedDownloadEngineTest {
+
+    private static final int SEGMENT_SIZE = 256 * 1024;
+
+    private HttpServer mServer;
+    private byte[] mContent;
+    private File mDir;
+    private final AtomicInteger mActiveRequests = new AtomicInteger();
+    private final AtomicInteger mMaxActiveRequests = new AtomicInteger();
+    private final AtomicInteger mRangeRequests = new AtomicInteger();
+    private final AtomicLong mServedBytes = new AtomicLong();
+    private volatile long mChunkDelay;
+
+    @Before
+    public void setUp() throws IOException {
+        mContent = new byte[2 * 1024 * 1024 + 123];
+        new Random(42).nextBytes(mContent);
+        mDir = Files.createTempDirectory("downloads").toFile();
+
+        mServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        mServer.createContext("/ranges", exchange -> serve(exchange, true));
+        mServer.createContext("/plain", exchange -> serve(exchange, false));
+        mServer.setExecutor(Executors.newCachedThreadPool());
+        mServer.start();
+    }
+
+    @After
+    public void tearDown() {
+        mServer.stop(0);
+        File[] files = mDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        mDir.delete();
+    }
+
+    @Test
+    public void downloadsSegmentsInParallel() throws Exception {
+        CountDownLatch completed = new CountDownLatch(1);
+        SegmentedDownloadEngine engine = createEngine(2, completed);
+        File output = new File(mDir, "file.bin");
+
+        long id = engine.enqueue(url("/ranges"), output, "file.bin", "application/octet-stream");
+        assertTrue(completed.await(20, TimeUnit.SECONDS));
+
+        SegmentedDownloadEngine.Task task = engine.getTask(id);
+        assertEquals(SegmentedDownloadEngine.COMPLETED, task.getState());
+        assertEquals(4, task.getSegmentCount());
+        assertEquals(mContent.length, task.getTotalBytes());
+        assertEquals(mContent.length, task.getDownloadedBytes());
+        assertArrayEquals(mContent, Files.readAllBytes(output.toPath()));
+        assertEquals(4, mRangeRequests.get());
+        assertTrue(mMaxActiveRequests.get() <= 2);
+        engine.shutdown();
+    }
+
+    @Test
+    public void downloadsWithoutRangesInOneRequest() throws Exception {
+        CountDownLatch completed = new CountDownLatch(1);
+        SegmentedDownloadEngine engine = createEngine(4, completed);
+        File output = new File(mDir, "plain.bin");
+
+        long id = engine.enqueue(url("/plain"), output, null, null);
+        assertTrue(completed.await(20, TimeUnit.SECONDS));
+
+        assertEquals(1, engine.getTask(id).getSegmentCount());
+        assertEquals(0, mRangeRequests.get());
+        assertArrayEquals(mContent, Files.readAllBytes(output.toPath()));
+        engine.shutdown();
+    }
+
+    @Test
+    public void resumesAfterRestart() throws Exception {
+        mChunkDelay = 20;
+        SegmentedDownloadEngine engine = createEngine(4, new CountDownLatch(1));
+        File output = new File(mDir, "resume.bin");
+        long id = engine.enqueue(url("/ranges"), output, null, null);
+
+        long deadline = System.currentTimeMillis() + 20000;
+        while (engine.getTask(id).getDownloadedBytes() < mContent.length / 4 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        engine.shutdown();
+        assertTrue(engine.awaitTermination(10, TimeUnit.SECONDS));
+        long servedBeforeRestart = mServedBytes.get();
+        assertTrue(servedBeforeRestart < mContent.length);
+
+        mChunkDelay = 0;
+        CountDownLatch completed = new CountDownLatch(1);
+        SegmentedDownloadEngine restored = createEngine(4, completed);
+        restored.restore();
+        assertTrue(completed.await(20, TimeUnit.SECONDS));
+
+        assertEquals(SegmentedDownloadEngine.COMPLETED, restored.getTask(id).getState());
+        assertArrayEquals(mContent, Files.readAllBytes(output.toPath()));
+        // Only the missing parts were requested again
+        assertTrue(mServedBytes.get() < mContent.length + servedBeforeRestart);
+        restored.shutdown();
+    }
+
+    @Test
+    public void pausesAndResumes() throws Exception {
+        mChunkDelay = 20;
+        CountDownLatch completed = new CountDownLatch(1);
+        SegmentedDownloadEngine engine = createEngine(4, completed);
+        File output = new File(mDir, "pause.bin");
+        long id = engine.enqueue(url("/ranges"), output, null, null);
+
+        while (engine.getTask(id).getDownloadedBytes() == 0) {
+            Thread.sleep(10);
+        }
+        engine.pause(id);
+        assertEquals(SegmentedDownloadEngine.PAUSED, engine.getTask(id).getState());
+
+        mChunkDelay = 0;
+        engine.resume(id);
+        assertTrue(completed.await(20, TimeUnit.SECONDS));
+        assertArrayEquals(mContent, Files.readAllBytes(output.toPath()));
+
+        engine.remove(id, true);
+        assertNull(engine.getTask(id));
+        assertFalse(output.exists());
+        engine.shutdown();
+    }
+
+    @Test
+    public void resumesRightAfterPausing() throws Exception {
+        mChunkDelay = 5;
+        CountDownLatch completed = new CountDownLatch(1);
+        SegmentedDownloadEngine engine = createEngine(4, completed);
+        File output = new File(mDir, "pause_resume.bin");
+        long id = engine.enqueue(url("/ranges"), output, null, null);
+
+        while (engine.getTask(id).getDownloadedBytes() == 0) {
+            Thread.sleep(10);
+        }
+        // The workers of the paused run are still reading when the next run starts
+        for (int i = 0; i < 5; i++) {
+            engine.pause(id);
+            engine.resume(id);
+            Thread.sleep(20);
+        }
+
+        mChunkDelay = 0;
+        assertTrue(completed.await(20, TimeUnit.SECONDS));
+        SegmentedDownloadEngine.Task task = engine.getTask(id);
+        assertEquals(SegmentedDownloadEngine.COMPLETED, task.getState());
+        assertEquals(mContent.length, task.getDownloadedBytes());
+        assertArrayEquals(mContent, Files.readAllBytes(output.toPath()));
+        engine.shutdown();
+    }
+
+    private SegmentedDownloadEngine createEngine(int maxConnections, CountDownLatch completed) {
+        return new SegmentedDownloadEngine(mDir, maxConnections, 4, SEGMENT_SIZE, new SegmentedDownloadEngine.Listener() {
+            @Override
+            public void onTaskUpdated(SegmentedDownloadEngine.Task task) {}
+
+            @Override
+            public void onTaskCompleted(SegmentedDownloadEngine.Task task) {
+                completed.countDown();
+            }
+        });
+    }
+
+    private String url(String path) {
+        return "http://127.0.0.1:" + mServer.getAddress().getPort() + path;
+    }
+
+    private void serve(HttpExchange exchange, boolean ranges) throws IOException {
+        int start = 0;
+        int end = mContent.length - 1;
+        int code = 200;
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        if (ranges) {
+            exchange.getResponseHeaders().set("Accept-Ranges", "bytes");
+            exchange.getResponseHeaders().set("ETag", "\"content\"");
+            if (range != null && range.startsWith("bytes=")) {
+                String[] bounds = range.substring(6).split("-", -1);
+                start = Integer.parseInt(bounds[0]);
+                if (!bounds[1].isEmpty()) {
+                    end = Math.min(end, Integer.parseInt(bounds[1]));
+                }
+                code = 206;
+                exchange.getResponseHeaders().set("Content-Range", "bytes " + start + "-" + end + "/" + mContent.length);
+            }
+        }
+
+        if (exchange.getRequestMethod().equals("HEAD")) {
+            exchange.getResponseHeaders().set("Content-Length", String.valueOf(mContent.length));
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+            return;
+        }
+
+        if (code == 206) {
+            mRangeRequests.incrementAndGet();
+        }
+        int active = mActiveRequests.incrementAndGet();
+        mMaxActiveRequests.accumulateAndGet(active, Math::max);
+        try (OutputStream output = exchange.getResponseBody()) {
+            exchange.sendResponseHeaders(code, end - start + 1);
+            for (int position = start; position <= end; position += 16 * 1024) {
+                int length = Math.min(16 * 1024, end - position + 1);
+                output.write(mContent, position, length);
+                output.flush();
+                mServedBytes.addAndGet(length);
+                if (mChunkDelay > 0) {
+                    Thread.sleep(mChunkDelay);
+                }
+            }
+
+        } catch (IOException | InterruptedException e) {
+            // The client went away
+        } finally {
+            mActiveRequests.decrementAndGet();
+            exchange.close();
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package org.mozilla.vrbrowser;
+
+import org.junit.Test;
+import org.mozilla.vrbrowser.telemetry.StartupTracer;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class StartupTracerTest {
+
+    private static final long MS = 1000000;
+
+    private final AtomicLong mTime = new AtomicLong();
+    private final AtomicLong mAllocated = new AtomicLong();
+
+    private StartupTracer createTracer() {
+        return new StartupTracer(mTime::get, mAllocated::get);
+    }
+
+    private void work(long aMillis, long aBytes) {
+        mTime.addAndGet(aMillis * MS);
+        mAllocated.addAndGet(aBytes);
+    }
+
+    @Test
+    public void recordsNestedSpans() {
+        StartupTracer tracer = createTracer();
+        mTime.set(500 * MS);
+        StartupTracer.Span onCreate = tracer.begin("activity.onCreate");
+        tracer.trace("places", () -> work(30, 2048));
+        try (StartupTracer.Span ignored = tracer.begin("widgets")) {
+            work(5, 0);
+            tracer.trace("windows.restore", () -> work(60, 4096));
+        }
+        work(5, 0);
+        onCreate.close();
+        tracer.finish();
+
+        List<StartupTracer.Span> spans = tracer.getSpans();
+        assertEquals(4, spans.size());
+        assertEquals("activity.onCreate", spans.get(0).getName());
+        assertEquals(0, spans.get(0).getDepth());
+        assertEquals(1, spans.get(1).getDepth());
+        assertEquals(2, tracer.getSpan("windows.restore").getDepth());
+        assertEquals(Thread.currentThread().getName(), spans.get(0).getThreadName());
+
+        assertEquals(100 * MS, tracer.getTotalNanos());
+        assertEquals(100 * MS, tracer.getSpan("activity.onCreate").getDurationNanos());
+        assertEquals(65 * MS, tracer.getSpan("widgets").getDurationNanos());
+        assertEquals(30 * MS, tracer.getSpan("widgets").getStartNanos());
+        assertEquals(6144, tracer.getSpan("activity.onCreate").getAllocatedBytes());
+        assertEquals(4096, tracer.getSpan("widgets").getAllocatedBytes());
+        assertNull(tracer.getSpan("search_engine"));
+    }
+
+    @Test
+    public void stopsRecordingWhenFinished() {
+        StartupTracer tracer = createTracer();
+        StartupTracer.Span open = tracer.begin("application.onCreate");
+        work(10, 0);
+        tracer.finish();
+        assertTrue(tracer.isFinished());
+        assertTrue(open.isClosed());
+        assertEquals(10 * MS, open.getDurationNanos());
+
+        work(10, 0);
+        tracer.trace("windows.restore", () -> work(10, 0));
+        assertEquals(1, tracer.getSpans().size());
+        assertEquals(10 * MS, tracer.getTotalNanos());
+    }
+
+    @Test
+    public void attributesThreads() throws InterruptedException {
+        StartupTracer tracer = createTracer();
+        StartupTracer.Span main = tracer.begin("activity.onCreate");
+        Thread thread = new Thread(() -> tracer.trace("disk_io", () -> work(1, 0)), "DiskIO");
+        thread.start();
+        thread.join();
+        main.close();
+
+        // Spans on other threads don't nest in the ones of the main thread
+        StartupTracer.Span diskIO = tracer.getSpan("disk_io");
+        assertEquals("DiskIO", diskIO.getThreadName());
+        assertEquals(0, diskIO.getDepth());
+    }
+
+    @Test
+    public void writesTraceAndSummary() throws Exception {
+        StartupTracer tracer = createTracer();
+        tracer.trace("application.onCreate", () -> work(20, 1024 * 1024));
+        tracer.trace("quote\"d", () -> work(80, 0));
+        tracer.finish();
+
+        String trace = tracer.toChromeTrace();
+        assertTrue(trace, trace.startsWith("{\"displayTimeUnit\":\"ms\",\"traceEvents\":["));
+        assertTrue(trace, trace.endsWith("]}"));
+        assertTrue(trace, trace.contains("\"ph\":\"M\""));
+        assertTrue(trace, trace.contains("{\"name\":\"application.onCreate\",\"cat\":\"startup\",\"ph\":\"X\""));
+        assertTrue(trace, trace.contains("\"ts\":20000,\"dur\":80000"));
+        assertTrue(trace, trace.contains("\"allocated_bytes\":1048576"));
+        assertTrue(trace, trace.contains("\"quote\\\"d\""));
+
+        String summary = tracer.getSummary();
+        assertTrue(summary, summary.startsWith("Startup: 100.0 ms, 2 spans"));
+        assertTrue(summary, summary.contains("80.0%"));
+        assertTrue(summary, summary.contains("1024 KB"));
+
+        File dir = Files.createTempDirectory("startup").toFile();
+        try {
+            assertTrue(tracer.write(dir));
+            assertEquals(trace, new String(Files.readAllBytes(new File(dir, "startup-trace.json").toPath()), StandardCharsets.UTF_8));
+            assertEquals(summary, new String(Files.readAllBytes(new File(dir, "startup-summary.txt").toPath()), StandardCharsets.UTF_8));
+
+        } finally {
+            for (File file : dir.listFiles()) {
+                file.delete();
+            }
+            dir.delete();
+        }
+    }
+}
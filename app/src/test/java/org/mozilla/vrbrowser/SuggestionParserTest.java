@@ -0,0 +1,124 @@
+package org.mozilla.vrbrowser;
+
+import org.json.JSONArray;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mozilla.vrbrowser.search.suggestions.SuggestionParser;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class SuggestionParserTest {
+
+    private static byte[] readFixture(String name) throws IOException {
+        try (InputStream input = SuggestionParserTest.class.getResourceAsStream("/suggestions/" + name)) {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1024];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                output.write(buffer, 0, read);
+            }
+            return output.toByteArray();
+        }
+    }
+
+    private static List<String> parse(String engine, String fixture, int limit) throws IOException {
+        return SuggestionParser.selectResponseParser(engine).parse(new ByteArrayInputStream(readFixture(fixture)), limit);
+    }
+
+    @Test
+    public void parsesDefaultFormat() throws IOException {
+        List<String> results = parse("Google", "default.json", 100);
+        assertEquals(12, results.size());
+        assertEquals("firefox", results.get(0));
+        assertEquals("firefox reality", results.get(2));
+    }
+
+    @Test
+    public void parsesAzerdictFormat() throws IOException {
+        assertEquals(Arrays.asList("salam", "salamat", "salamlaşmaq", "salamlamaq"),
+                parse("Azerdict", "azerdict.json", 100));
+    }
+
+    @Test
+    public void parsesDaumFormat() throws IOException {
+        assertEquals(Arrays.asList("서울역", "서울대학교", "서울시청", "서울숲"),
+                parse("다음지도", "daum.json", 100));
+    }
+
+    @Test
+    public void parsesQwantFormat() throws IOException {
+        assertEquals(Arrays.asList("qwant", "qwant maps", "qwant junior"),
+                parse("Qwant", "qwant.json", 100));
+    }
+
+    @Test
+    public void stopsAtTheLimit() throws IOException {
+        assertEquals(Arrays.asList("firefox", "firefox download", "firefox reality"),
+                parse("Google", "default.json", 3));
+        assertEquals(Collections.singletonList("qwant"), parse("Qwant", "qwant.json", 1));
+    }
+
+    @Test
+    public void toleratesUnexpectedResponses() throws IOException {
+        SuggestionParser.ResponseParser parser = SuggestionParser.selectResponseParser("Azerdict");
+        assertTrue(parser.parse(new ByteArrayInputStream("{\"other\": 1}".getBytes(StandardCharsets.UTF_8)), 10).isEmpty());
+        assertTrue(parser.parse(new ByteArrayInputStream("[]".getBytes(StandardCharsets.UTF_8)), 10).isEmpty());
+    }
+
+    /**
+     * Compares the streaming parser with the previous approach of buffering the whole body into
+     * a String and parsing it with org.json.
+     */
+    @Ignore("Benchmark, run it manually")
+    @Test
+    public void parseBenchmark() throws Exception {
+        final int iterations = 20000;
+        byte[] body = readFixture("default.json");
+        SuggestionParser.ResponseParser parser = SuggestionParser.selectResponseParser("Google");
+
+        long start = System.nanoTime();
+        int bufferedResults = 0;
+        for (int i = 0; i < iterations; i++) {
+            InputStream input = new ByteArrayInputStream(body);
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            byte[] data = new byte[1024];
+            int read;
+            while ((read = input.read(data, 0, data.length)) != -1) {
+                buffer.write(data, 0, read);
+            }
+            JSONArray array = new JSONArray(new String(buffer.toByteArray(), StandardCharsets.UTF_8)).getJSONArray(1);
+            List<String> list = new ArrayList<>();
+            for (int j = 0; j < array.length() && j < 10; j++) {
+                list.add(array.get(j).toString());
+            }
+            bufferedResults += list.size();
+        }
+        long bufferedNanos = (System.nanoTime() - start) / iterations;
+
+        start = System.nanoTime();
+        int streamingResults = 0;
+        for (int i = 0; i < iterations; i++) {
+            streamingResults += parser.parse(new ByteArrayInputStream(body), 10).size();
+        }
+        long streamingNanos = (System.nanoTime() - start) / iterations;
+
+        System.out.println("SuggestionParser benchmark: buffered org.json " + bufferedNanos + " ns/response, " +
+                "streaming " + streamingNanos + " ns/response");
+        assertEquals(bufferedResults, streamingResults);
+    }
+}
@@ -0,0 +1,63 @@
+package org.mozilla.vrbrowser;
+
+import org.junit.Test;
+import org.mozilla.vrbrowser.search.suggestions.SuggestionsCache;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class SuggestionsCacheTest {
+
+    private long mNow = 0;
+
+    private SuggestionsCache createCache(int maxEntries) {
+        return new SuggestionsCache(maxEntries, 1000, () -> mNow);
+    }
+
+    @Test
+    public void exactHitsAreNormalizedAndPerEngine() {
+        SuggestionsCache cache = createCache(10);
+        cache.put("google", "Fire Fox ", Arrays.asList("firefox", "fire fox reality"));
+
+        SuggestionsCache.Lookup lookup = cache.get("google", "  fire   fox");
+        assertNotNull(lookup);
+        assertTrue(lookup.isExact);
+        assertEquals(2, lookup.suggestions.size());
+
+        assertNull(cache.get("bing", "fire fox"));
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void extendedQueriesAreFilteredFromTheLongestPrefix() {
+        SuggestionsCache cache = createCache(10);
+        cache.put("google", "f", Arrays.asList("facebook", "firefox"));
+        cache.put("google", "fi", Arrays.asList("firefox", "fifa", "fire"));
+
+        SuggestionsCache.Lookup lookup = cache.get("google", "fir");
+        assertNotNull(lookup);
+        assertFalse(lookup.isExact);
+        assertEquals(Arrays.asList("firefox", "fire"), lookup.suggestions);
+        assertEquals(1, cache.getPrefixHits());
+    }
+
+    @Test
+    public void entriesExpireAndAreEvicted() {
+        SuggestionsCache cache = createCache(2);
+        cache.put("google", "a", Collections.singletonList("amazon"));
+        cache.put("google", "b", Collections.singletonList("bbc"));
+        cache.get("google", "a");
+        cache.put("google", "c", Collections.singletonList("cnn"));
+
+        // "b" was the least recently used entry
+        assertNull(cache.get("google", "b"));
+        assertNotNull(cache.get("google", "a"));
+
+        mNow = 2000;
+        assertNull(cache.get("google", "a"));
+        assertNull(cache.get("google", "c"));
+    }
+}
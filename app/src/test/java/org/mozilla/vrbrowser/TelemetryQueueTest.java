@@ -0,0 +1,116 @@
+package org.mozilla.vrbrowser;
+
+import org.junit.Test;
+import org.mozilla.vrbrowser.telemetry.TelemetryQueue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class TelemetryQueueTest {
+
+    @Test
+    public void runsEventsInOrder() throws InterruptedException {
+        ExecutorService worker = Executors.newSingleThreadExecutor();
+        TelemetryQueue queue = new TelemetryQueue(worker, TelemetryQueue.DEFAULT_CAPACITY);
+        List<Integer> recorded = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            final int value = i;
+            assertTrue(queue.post(() -> recorded.add(value)));
+        }
+        CountDownLatch done = new CountDownLatch(1);
+        queue.execute(done::countDown);
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+
+        assertEquals(500, recorded.size());
+        for (int i = 0; i < recorded.size(); i++) {
+            assertEquals(Integer.valueOf(i), recorded.get(i));
+        }
+        assertEquals(0, queue.getSize());
+        assertEquals(0, queue.getDroppedCount());
+        worker.shutdown();
+    }
+
+    @Test
+    public void dropsEventsWhenFull() throws InterruptedException {
+        // The worker doesn't run until released, so the queue fills up
+        List<Runnable> pending = new ArrayList<>();
+        TelemetryQueue queue = new TelemetryQueue(pending::add, 10);
+        AtomicInteger recorded = new AtomicInteger();
+        for (int i = 0; i < 25; i++) {
+            queue.post(recorded::incrementAndGet);
+        }
+        assertEquals(10, queue.getSize());
+        assertEquals(15, queue.getDroppedCount());
+
+        // Tasks that can't be lost are queued even when full
+        queue.execute(recorded::incrementAndGet);
+        assertEquals(11, queue.getSize());
+
+        assertEquals(1, pending.size());
+        pending.get(0).run();
+        assertEquals(11, recorded.get());
+        assertEquals(0, queue.getSize());
+        assertEquals(15, queue.getDroppedCount());
+    }
+
+    @Test
+    public void neverLosesEventsFromManyThreads() throws InterruptedException {
+        ExecutorService worker = Executors.newSingleThreadExecutor();
+        TelemetryQueue queue = new TelemetryQueue(worker, Integer.MAX_VALUE);
+        AtomicInteger recorded = new AtomicInteger();
+        int threads = 4;
+        int events = 20000;
+        Thread[] producers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            producers[i] = new Thread(() -> {
+                for (int j = 0; j < events; j++) {
+                    queue.post(recorded::incrementAndGet);
+                }
+            });
+            producers[i].start();
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        CountDownLatch done = new CountDownLatch(1);
+        queue.execute(done::countDown);
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(threads * events, recorded.get());
+        worker.shutdown();
+    }
+
+    @Test
+    public void runsInlineInTestingMode() {
+        TelemetryQueue queue = new TelemetryQueue(runnable -> fail("Scheduled in testing mode"), 1);
+        queue.setTestingMode(true);
+        AtomicInteger recorded = new AtomicInteger();
+        queue.post(recorded::incrementAndGet);
+        queue.post(recorded::incrementAndGet);
+        queue.execute(recorded::incrementAndGet);
+        assertEquals(3, recorded.get());
+        assertEquals(0, queue.getDroppedCount());
+    }
+
+    @Test
+    public void keepsRunningAfterAFailure() throws InterruptedException {
+        ExecutorService worker = Executors.newSingleThreadExecutor();
+        TelemetryQueue queue = new TelemetryQueue(worker, TelemetryQueue.DEFAULT_CAPACITY);
+        AtomicInteger recorded = new AtomicInteger();
+        queue.post(() -> {
+            throw new IllegalStateException("Telemetry not initialized");
+        });
+        queue.post(recorded::incrementAndGet);
+        CountDownLatch done = new CountDownLatch(1);
+        queue.execute(done::countDown);
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(1, recorded.get());
+        worker.shutdown();
+    }
+}
@@ -0,0 +1,65 @@
+package org.mozilla.vrbrowser;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mozilla.telemetry.Telemetry;
+import org.mozilla.telemetry.TelemetryHolder;
+import org.mozilla.telemetry.config.TelemetryConfiguration;
+import org.mozilla.telemetry.net.TelemetryClient;
+import org.mozilla.telemetry.ping.TelemetryCorePingBuilder;
+import org.mozilla.telemetry.ping.TelemetryMobileEventPingBuilder;
+import org.mozilla.telemetry.serialize.JSONPingSerializer;
+import org.mozilla.telemetry.storage.FileTelemetryStorage;
+import org.mozilla.vrbrowser.telemetry.TelemetryQueue;
+import org.mozilla.vrbrowser.telemetry.TelemetryWrapper;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import mozilla.components.lib.fetch.httpurlconnection.HttpURLConnectionClient;
+
+import static org.junit.Assert.*;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class TelemetryWrapperTest {
+
+    private TelemetryConfiguration mConfiguration;
+    private FileTelemetryStorage mStorage;
+
+    @Before
+    public void setUp() {
+        TelemetryQueue.get().setTestingMode(true);
+        mConfiguration = new TelemetryConfiguration(ApplicationProvider.getApplicationContext())
+                .setCollectionEnabled(true)
+                .setUploadEnabled(true)
+                .setMinimumEventsForUpload(1);
+        mStorage = new FileTelemetryStorage(mConfiguration, new JSONPingSerializer());
+        TelemetryHolder.set(new Telemetry(mConfiguration, mStorage, new TelemetryClient(new HttpURLConnectionClient()), configuration -> {})
+                .addPingBuilder(new TelemetryCorePingBuilder(mConfiguration))
+                .addPingBuilder(new TelemetryMobileEventPingBuilder(mConfiguration)));
+    }
+
+    @After
+    public void tearDown() {
+        TelemetryQueue.get().setTestingMode(false);
+    }
+
+    @Test
+    public void sendsTheStatusPingWhenOptingOut() throws InterruptedException {
+        TelemetryWrapper.setTelemetryEnabled(false);
+
+        assertFalse(mConfiguration.isCollectionEnabled());
+        assertFalse(mConfiguration.isUploadEnabled());
+
+        // The telemetry library stores the pings from its own executor
+        long deadline = System.currentTimeMillis() + 5000;
+        while (mStorage.countStoredPings(TelemetryMobileEventPingBuilder.TYPE) == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, mStorage.countStoredPings(TelemetryMobileEventPingBuilder.TYPE));
+    }
+}
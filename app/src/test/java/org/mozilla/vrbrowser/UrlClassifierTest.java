@@ -0,0 +1,245 @@
+package org.mozilla.vrbrowser;
+
+import org.junit.Ignore;
+import org.junit.Test;
+import org.mozilla.vrbrowser.utils.UrlClassifier;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Differential tests of {@link UrlClassifier} against the regular expressions and the URL parsing
+ * that UrlUtils used before.
+ */
+public class UrlClassifierTest {
+
+    private static final Pattern domainPattern = Pattern.compile("^(http:\\/\\/www\\.|https:\\/\\/www\\.|http:\\/\\/|https:\\/\\/)?[a-zA-Z0-9]+([\\-\\.]{1}[a-zA-Z0-9]+)*\\.[a-zA-Z]{2,5}(:[0-9]{1,5})?(\\/[^ ]*)?$");
+    private static final Pattern ipPattern = Pattern.compile("^(([0-9]|[1-9][0-9]|1[0-9]{2}|2[0-4][0-9]|25[0-5])\\.){3}([0-9]|[1-9][0-9]|1[0-9]{2}|2[0-4][0-9]|25[0-5])(:[0-9]+)?(/[^ ]*)?");
+    private static final Pattern localhostPattern = Pattern.compile("^(localhost)(:[0-9]+)?(/[^ ]*)?", Pattern.CASE_INSENSITIVE);
+
+    private static final List<String> CORPUS = Arrays.asList(
+            "", " ", "a", "com", ".com", "a.", "a.b", "a.bc", "a.bcdef", "a.bcdefg", "a.b2", "a-b.com",
+            "a--b.com", "a-.com", "-a.com", "a.-b.com", "a.b-com", "a.com-", "mozilla.org", "www.mozilla.org",
+            "MOZILLA.ORG", "mozilla.org/", "mozilla.org/path?q=1#f", "mozilla.org/with space",
+            "mozilla.org:80", "mozilla.org:", "mozilla.org:123456", "mozilla.org:8080/path",
+            "mozilla.org:8080path", "mozilla.org\n", "mozilla.org\r\n", "mozilla.org\n\n", "mozilla.org\r",
+            "mozilla.org\u0085", "mozilla.org\u2028", "mozilla.org\u2029", "mozilla.org ", " mozilla.org",
+            "mozilla.org/\n", "mozilla.org/a\nb", "mozilla.org/a \n", "http://mozilla.org", "https://mozilla.org",
+            "http://www.mozilla.org", "https://www.mozilla.org/", "http://www.com", "https://www.com",
+            "http://www..com", "http://www.", "http://", "https://", "HTTP://mozilla.org", "Http://mozilla.org",
+            "ftp://mozilla.org", "http:/mozilla.org", "http:mozilla.org", "http://mozilla.org:99",
+            "http://user@mozilla.org", "http://mozilla.org?q", "http://mozilla.org#f", "http://mozilla.org/#f",
+            "http://mozilla.org/a?b/c", "http://mozilla.org?a/b", "http://xn--bcher-kva.example",
+            "http://b\u00fccher.de", "http://[::1]/", "http://[::1]:8080/", "http:///path", "http://:80/",
+            "http://mozilla.org:/", "http://mozilla.org:99999999999/", "  http://mozilla.org  ", "http://a b.com",
+            "url:http://mozilla.org", "file:///sdcard/a.html", "data:text/html,hello", "about:blank",
+            "about://history", "blob:http://mozilla.org/1", "mailto:a@b.com", "javascript:alert(1)",
+            "localhost", "LOCALHOST", "LocalHost:8080", "localhost/path", "localhostx", "localho",
+            "http://localhost", "http://localhost:8080/index.html", " localhost", "http:// localhost",
+            "locaLHOſt", "localhoſt", "localhost\u212a", "data:localhost",
+            "1.2.3.4", "1.2.3.4/", "1.2.3.4:80", "1.2.3.4:80/path", "1.2.3", "1.2.3.", "1.2.3.x", "1.2.3.456",
+            "1.2.3.4.5", "01.2.3.4", "1.02.3.4", "0.0.0.0", "255.255.255.255", "256.1.1.1", "250.1.1.1",
+            "249.1.1.1", "199.1.1.1", "299.1.1.1", "1000.1.1.1", "10.0.0.1", "172.16.0.1", "192.168.1.1",
+            "192.169.1.1", "10.", "172.1.1", "http://10.0.0.1/", "https://192.168.0.1:8443/admin",
+            "  10.0.0.1  ", "10.0.0.1/ ", "data:10.0.0.1", "http://data:10.0.0.1", "a://b://10.0.0.1",
+            "\u0661.\u0662.\u0663.\u0664", "1.2.3.\u0664", "search terms", "what is mozilla.org",
+            "mozilla.org is great", "foo", "foo bar", "123", "a.com.", "a.com..", "a..com", "a.c-om",
+            "a.co1", "1.com", "1a.b2c.com", "a.b.c.d.e.f.g.com"
+    );
+
+    private static final String FUZZ_ALPHABET = "aA0z9.-:/ \n\r?#@[]hptsw" + "\u00e9\u2028";
+
+    @Test
+    public void isDomainMatchesRegex() {
+        for (String text : buildCorpus()) {
+            assertEquals("isDomain(" + escape(text) + ")", legacyIsDomain(text), UrlClassifier.isDomain(text));
+        }
+    }
+
+    @Test
+    public void isIPUriMatchesRegex() {
+        for (String text : buildCorpus()) {
+            assertEquals("isIPUri(" + escape(text) + ")", legacyIsIPUri(text), UrlClassifier.isIPUri(text));
+        }
+        assertFalse(UrlClassifier.isIPUri(null));
+    }
+
+    @Test
+    public void isLocalIPMatchesRegex() {
+        for (String text : buildCorpus()) {
+            assertEquals("isLocalIP(" + escape(text) + ")", legacyIsLocalIP(text), UrlClassifier.isLocalIP(text));
+        }
+        assertFalse(UrlClassifier.isLocalIP(null));
+    }
+
+    @Test
+    public void getHostMatchesURL() {
+        for (String text : buildCorpus()) {
+            assertEquals("getHost(" + escape(text) + ")", legacyGetHost(text), UrlClassifier.getHost(text));
+        }
+        assertEquals(legacyGetHost(null), UrlClassifier.getHost(null));
+    }
+
+    @Test
+    public void classifiesCommonInputs() {
+        assertTrue(UrlClassifier.isDomain("https://www.mozilla.org/en-US/"));
+        assertFalse(UrlClassifier.isDomain("mozilla firefox"));
+        assertTrue(UrlClassifier.isIPUri("http://127.0.0.1:8080"));
+        assertTrue(UrlClassifier.isLocalIP("192.168.1.10"));
+        assertFalse(UrlClassifier.isLocalIP("8.8.8.8"));
+        assertEquals("mozilla.org", UrlClassifier.getHost("https://mozilla.org/path"));
+    }
+
+    /**
+     * Compares the classifier with the regular expressions on typical URL bar inputs.
+     */
+    @Ignore("Benchmark, run it manually")
+    @Test
+    public void classifierBenchmark() {
+        final int iterations = 20000;
+        List<String> inputs = Arrays.asList(
+                "https://www.mozilla.org/en-US/firefox/new/?redirect_source=firefox-com",
+                "https://developer.mozilla.org/en-US/docs/Web/JavaScript/Reference/Global_Objects/Array",
+                "http://192.168.1.1:8080/admin",
+                "localhost:8000",
+                "how to configure a webxr session",
+                "mozilla",
+                "mozilla.o",
+                "github.com/MozillaReality/FirefoxReality/issues");
+
+        int legacyMatches = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            for (String input : inputs) {
+                legacyMatches += legacyIsDomain(input) ? 1 : 0;
+                legacyMatches += legacyIsIPUri(input) ? 1 : 0;
+                legacyMatches += legacyIsLocalIP(input) ? 1 : 0;
+                legacyMatches += legacyGetHost(input).length();
+            }
+        }
+        long legacyNanos = (System.nanoTime() - start) / (iterations * inputs.size());
+
+        int matches = 0;
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            for (String input : inputs) {
+                matches += UrlClassifier.isDomain(input) ? 1 : 0;
+                matches += UrlClassifier.isIPUri(input) ? 1 : 0;
+                matches += UrlClassifier.isLocalIP(input) ? 1 : 0;
+                matches += UrlClassifier.getHost(input).length();
+            }
+        }
+        long nanos = (System.nanoTime() - start) / (iterations * inputs.size());
+
+        System.out.println("UrlClassifier benchmark: regex " + legacyNanos + " ns/input, " +
+                "classifier " + nanos + " ns/input");
+        assertEquals(legacyMatches, matches);
+    }
+
+    private static List<String> buildCorpus() {
+        List<String> corpus = new ArrayList<>(CORPUS);
+        List<String> prefixes = Arrays.asList("", "http://", "https://", "http://www.", "https://www.", "HTTPS://");
+        List<String> suffixes = Arrays.asList("", "/", ":8080", ":8080/a b", "\n", " ", "/?q#f");
+        for (String text : CORPUS) {
+            for (String prefix : prefixes) {
+                for (String suffix : suffixes) {
+                    corpus.add(prefix + text + suffix);
+                }
+            }
+        }
+
+        Random random = new Random(1234);
+        for (int i = 0; i < 20000; i++) {
+            StringBuilder builder = new StringBuilder();
+            if (random.nextBoolean()) {
+                builder.append(prefixes.get(random.nextInt(prefixes.size())));
+            }
+            int length = random.nextInt(16);
+            for (int j = 0; j < length; j++) {
+                builder.append(FUZZ_ALPHABET.charAt(random.nextInt(FUZZ_ALPHABET.length())));
+            }
+            corpus.add(builder.toString());
+        }
+
+        return corpus;
+    }
+
+    private static String escape(String text) {
+        StringBuilder builder = new StringBuilder("\"");
+        for (char c : text.toCharArray()) {
+            if (c < 0x20 || c > 0x7e) {
+                builder.append(String.format("\\u%04x", (int) c));
+            } else {
+                builder.append(c);
+            }
+        }
+        return builder.append('"').toString();
+    }
+
+    // Previous UrlUtils implementation
+
+    private static String legacyStripProtocol(String host) {
+        if (host == null) {
+            return "";
+        }
+
+        if (host.startsWith("data:")) {
+            return "";
+        }
+
+        String result;
+        int index = host.indexOf("://");
+        if (index >= 0) {
+            result = host.substring(index + 3);
+        } else {
+            result = host;
+        }
+
+        if (result.endsWith("/")) {
+            result = result.substring(0, result.length() - 1);
+        }
+
+        return result;
+    }
+
+    private static boolean legacyIsDomain(String text) {
+        return domainPattern.matcher(text).find();
+    }
+
+    private static boolean legacyIsIPUri(String aUri) {
+        if (aUri == null) {
+            return false;
+        }
+        String uri = legacyStripProtocol(aUri).trim();
+        return localhostPattern.matcher(uri).find() || ipPattern.matcher(uri).find();
+    }
+
+    private static boolean legacyIsLocalIP(String aUri) {
+        if (!legacyIsIPUri(aUri)) {
+            return false;
+        }
+        String uri = legacyStripProtocol(aUri).trim();
+        return uri.startsWith("10.") ||
+                uri.startsWith("172.") ||
+                uri.startsWith("192.168.") ||
+                localhostPattern.matcher(uri).find();
+    }
+
+    private static String legacyGetHost(String uri) {
+        try {
+            URL url = new URL(uri);
+            return url.getHost();
+        } catch (MalformedURLException e) {
+            return uri;
+        }
+    }
+}
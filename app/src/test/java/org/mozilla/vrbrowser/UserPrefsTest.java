@@ -0,0 +1,91 @@
+package org.mozilla.vrbrowser;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mozilla.vrbrowser.browser.engine.UserPrefs;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+public class UserPrefsTest {
+
+    private File mDir;
+    private File mFile;
+
+    @Before
+    public void setUp() throws IOException {
+        mDir = Files.createTempDirectory("profile").toFile();
+        mFile = new File(mDir, "user.js");
+    }
+
+    @After
+    public void tearDown() {
+        for (File file : mDir.listFiles()) {
+            file.delete();
+        }
+        mDir.delete();
+    }
+
+    private static UserPrefs prefs(int aMsaa) {
+        return new UserPrefs()
+                .set("dom.vr.enabled", true)
+                .set("apz.allow_double_tap_zooming", false)
+                .set("webgl.msaa-samples", aMsaa);
+    }
+
+    private String read() throws IOException {
+        return new String(Files.readAllBytes(mFile.toPath()), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void serializesInOrder() {
+        UserPrefs prefs = prefs(4).set("dom.vr.enabled", false);
+        assertTrue(prefs.contains("webgl.msaa-samples"));
+        assertFalse(prefs.contains("webgl.msaa-force"));
+        assertEquals("pref(\"dom.vr.enabled\", false);\n" +
+                "pref(\"apz.allow_double_tap_zooming\", false);\n" +
+                "pref(\"webgl.msaa-samples\", 4);\n", prefs.serialize());
+    }
+
+    @Test
+    public void writesOnlyWhenChanged() throws IOException {
+        assertEquals(UserPrefs.Update.WRITTEN, prefs(4).writeIfChanged(mFile));
+        assertEquals(prefs(4).serialize(), read());
+        long modified = mFile.lastModified();
+
+        assertEquals(UserPrefs.Update.UNCHANGED, prefs(4).writeIfChanged(mFile));
+        assertEquals(modified, mFile.lastModified());
+
+        // Same length, different content
+        assertEquals(UserPrefs.Update.WRITTEN, prefs(2).writeIfChanged(mFile));
+        assertEquals(prefs(2).serialize(), read());
+        assertEquals(UserPrefs.Update.WRITTEN, prefs(2).set("webgl.msaa-force", true).writeIfChanged(mFile));
+        assertEquals(1, mDir.listFiles().length);
+    }
+
+    @Test
+    public void replacesFilesEditedOutside() throws IOException {
+        try (FileOutputStream out = new FileOutputStream(mFile)) {
+            out.write("pref(\"dom.vr.enabled\", false);\n".getBytes(StandardCharsets.UTF_8));
+        }
+        assertEquals(UserPrefs.Update.WRITTEN, prefs(4).writeIfChanged(mFile));
+        assertEquals(prefs(4).serialize(), read());
+    }
+
+    @Test
+    public void failsWithoutProfile() {
+        try {
+            prefs(4).writeIfChanged(new File(new File(mDir, "missing"), "user.js"));
+            fail();
+
+        } catch (IOException e) {
+            // Expected
+        }
+    }
+}